@@ -34,6 +34,8 @@ public class AttributeDistance extends BaseAttribute{
 	private String textSimilarityStrategy = "jaccard";
 	private double jaccardSrcNonMatchingTermWeight = 1.0;
 	private double jaccardTrgNonMatchingTermWeight = 1.0;
+	private int minHashNumHash;
+	private double minHashExactCheckDistance = 0.5;
 	
 	/**
 	 * @return
@@ -154,6 +156,34 @@ public class AttributeDistance extends BaseAttribute{
 		this.jaccardTrgNonMatchingTermWeight = jaccardTrgNonMatchingTermWeight;
 	}
 
+	/**
+	 * @return number of hash functions for MinHash signature of text, 0 for exact distance only
+	 */
+	public int getMinHashNumHash() {
+		return minHashNumHash;
+	}
+
+	/**
+	 * @param minHashNumHash
+	 */
+	public void setMinHashNumHash(int minHashNumHash) {
+		this.minHashNumHash = minHashNumHash;
+	}
+
+	/**
+	 * @return text distance estimated with MinHash at or below which exact distance is found
+	 */
+	public double getMinHashExactCheckDistance() {
+		return minHashExactCheckDistance;
+	}
+
+	/**
+	 * @param minHashExactCheckDistance
+	 */
+	public void setMinHashExactCheckDistance(double minHashExactCheckDistance) {
+		this.minHashExactCheckDistance = minHashExactCheckDistance;
+	}
+
 	/**
 	 * @return
 	 */
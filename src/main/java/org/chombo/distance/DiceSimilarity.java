@@ -31,9 +31,41 @@ public class DiceSimilarity extends DynamicVectorSimilarity {
 	 * @see org.sifarish.feature.DynamicAttrSimilarityStrategy#findDistance(java.lang.String, java.lang.String)
 	 */
 	public double findDistance(String src, String target) throws IOException {
+		return fromJaccard(jaccSimStrategy.findDistance(src, target));
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.chombo.distance.DynamicVectorSimilarity#findDistance(java.lang.String, java.lang.String[], java.lang.String, java.lang.String[])
+	 */
+	public double findDistance(String src, String[] srcTerms, String target, String[] trgTerms) throws IOException {
+		return fromJaccard(jaccSimStrategy.findDistance(src, srcTerms, target, trgTerms));
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.chombo.distance.DynamicVectorSimilarity#findDistance(java.lang.String, java.lang.String[], org.chombo.distance.MinHashSignature, java.lang.String, java.lang.String[], org.chombo.distance.MinHashSignature)
+	 */
+	public double findDistance(String src, String[] srcTerms, MinHashSignature srcSignature, String target, 
+		String[] trgTerms, MinHashSignature trgSignature) throws IOException {
+		return fromJaccard(jaccSimStrategy.findDistance(src, srcTerms, srcSignature, target, trgTerms, trgSignature));
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.chombo.distance.DynamicVectorSimilarity#setMinHash(int, double)
+	 */
+	public void setMinHash(int numHash, double exactCheckDistance) {
+		super.setMinHash(numHash, exactCheckDistance);
+		
+		//exact check threshold as jaccard distance
+		jaccSimStrategy.setMinHash(numHash, (1.0 + exactCheckDistance) / 2);
+	}
+	
+	/**
+	 * @param jaccardDist
+	 * @return
+	 */
+	private double fromJaccard(double jaccardDist) {
 		//similarity is twice the jaccard
-		double dist = jaccSimStrategy.findDistance(src, target);
-		dist = 1.0 - 2 * (1 - dist);
+		double dist = 1.0 - 2 * (1 - jaccardDist);
 		dist = dist < 0 ? 0 : dist;
 		return dist;
 	}
@@ -32,6 +32,9 @@ public abstract class DynamicVectorSimilarity {
 	protected boolean isCountIncluded;
 	protected  int intersectionLength;
 	protected String[] matchingContexts;
+	protected long[] minHashSeeds;
+	protected double minHashExactCheckDistance;
+	protected static final long MIN_HASH_SEED = 1000;
 	
 	
 	/**
@@ -47,6 +50,69 @@ public abstract class DynamicVectorSimilarity {
 		return 1.0;
 	}
 	
+	/**
+	 * distance with terms already split with field delimiter
+	 * @param src
+	 * @param srcTerms
+	 * @param target
+	 * @param trgTerms
+	 * @return
+	 * @throws IOException
+	 */
+	public  double findDistance(String src, String[] srcTerms, String target, String[] trgTerms)  throws IOException {
+		return findDistance(src, target);
+	}
+	
+	/**
+	 * distance with terms already split and with MinHash signatures, which are null when not enabled. 
+	 * Exact distance unless overridden
+	 * @param src
+	 * @param srcTerms
+	 * @param srcSignature
+	 * @param target
+	 * @param trgTerms
+	 * @param trgSignature
+	 * @return
+	 * @throws IOException
+	 */
+	public  double findDistance(String src, String[] srcTerms, MinHashSignature srcSignature, String target, 
+		String[] trgTerms, MinHashSignature trgSignature)  throws IOException {
+		return findDistance(src, srcTerms, target, trgTerms);
+	}
+	
+	/**
+	 * enables distance estimate from MinHash signatures
+	 * @param numHash
+	 * @param exactCheckDistance estimated distance at or below which exact distance is found
+	 */
+	public void setMinHash(int numHash, double exactCheckDistance) {
+		minHashSeeds = MinHashSignature.createSeeds(numHash, MIN_HASH_SEED);
+		minHashExactCheckDistance = exactCheckDistance;
+	}
+	
+	/**
+	 * @param terms
+	 * @return signature or null if MinHash is not enabled
+	 */
+	public MinHashSignature createSignature(String[] terms) {
+		return null != minHashSeeds ? MinHashSignature.create(terms, minHashSeeds) : null;
+	}
+	
+	/**
+	 * @param srcTerms
+	 * @param srcSignature
+	 * @param trgTerms
+	 * @param trgSignature
+	 * @return true if signatures are cheaper to compare than the terms and terms don't repeat, since 
+	 * exact distance counts matches of repeated terms pairwise
+	 */
+	protected boolean isEstimated(String[] srcTerms, MinHashSignature srcSignature, String[] trgTerms, 
+		MinHashSignature trgSignature) {
+		return null != srcSignature && null != trgSignature && 
+			!srcSignature.hasDuplicateTerms() && !trgSignature.hasDuplicateTerms() &&
+			(long)srcTerms.length * trgTerms.length > srcSignature.getNumHash();
+	}
+	
 	/**
 	 * @return
 	 */
@@ -128,8 +194,14 @@ public abstract class DynamicVectorSimilarity {
 			double srcNonMatchingTermWeight = attrDist.getJaccardSrcNonMatchingTermWeight();
 			double trgNonMatchingTermWeight = attrDist.getJaccardTrgNonMatchingTermWeight();
 			simStrategy = new JaccardSimilarity(srcNonMatchingTermWeight, trgNonMatchingTermWeight);
+			if (attrDist.getMinHashNumHash() > 0) {
+				simStrategy.setMinHash(attrDist.getMinHashNumHash(), attrDist.getMinHashExactCheckDistance());
+			}
 		} else if (simAlgorithm.equals("dice")){
 			simStrategy = new DiceSimilarity();
+			if (attrDist.getMinHashNumHash() > 0) {
+				simStrategy.setMinHash(attrDist.getMinHashNumHash(), attrDist.getMinHashExactCheckDistance());
+			}
 		} else if (simAlgorithm.equals("charPair")){
 			simStrategy = new CharacterPairSimilarity();
 		} else if (simAlgorithm.equals("cosine")){
@@ -21,7 +21,9 @@ package org.chombo.distance;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -58,6 +60,30 @@ public class InterRecordDistance implements Serializable {
 	private int scale = 1;
 	private int[] facetedFields;
 	private boolean tolerateMissingValue;
+	private transient AttributeKernel[] kernels;
+	private transient int[] aggregatorTypes;
+	private transient int[][] aggregatorKernels;
+	private transient double[] kernelDistances;
+	private transient boolean[] kernelDistanceFound;
+	private transient boolean[] kernelDistanceComputed;
+	private transient double aggregatorWeightSum;
+	private transient boolean boundable;
+	
+	private static final int KERNEL_NONE = 0;
+	private static final int KERNEL_CATEGORICAL = 1;
+	private static final int KERNEL_CATEGORICAL_SET = 2;
+	private static final int KERNEL_CARDINALITY = 3;
+	private static final int KERNEL_VALUE_DIFF_METRIC = 4;
+	private static final int KERNEL_NUMERIC = 5;
+	private static final int KERNEL_NUMERIC_RANGE = 6;
+	private static final int KERNEL_TEXT = 7;
+	private static final int KERNEL_GEO_LOCATION = 8;
+	
+	private static final int AGGR_EUCLIDEAN = 0;
+	private static final int AGGR_MANHATTAN = 1;
+	private static final int AGGR_MINKWOSKI = 2;
+	private static final int AGGR_CATEGORICAL = 3;
+	private static final double BOUND_MARGIN = 1.0e-9;
 	
 	/**
 	 * @param attrSchema
@@ -393,7 +419,7 @@ public class InterRecordDistance implements Serializable {
     	double lat1 = Double.parseDouble(items[0]);
     	double long1 = Double.parseDouble(items[1]);
     	
-    	items = secondItem.split(":");
+    	items = secondItem.split(subFieldDelim);
     	double lat2 = Double.parseDouble(items[0]);
     	double long2 = Double.parseDouble(items[1]);
 		double dist = BasicUtils.getGeoDistance(lat1, long1, lat2, long2);
@@ -404,6 +430,356 @@ public class InterRecordDistance implements Serializable {
 		return dist;
 	}
 	
+	/**
+	 * Parses a record once for repeated distance calculation. Distance finder should be fully 
+	 * configured before records are prepared
+	 * @param record
+	 * @return
+	 */
+	public PreparedRecord prepare(String record) {
+		return prepare(record.split(fieldDelim));
+	}
+	
+	/**
+	 * @param items
+	 * @return
+	 */
+	public PreparedRecord prepare(String[] items) {
+		if (null == kernels) {
+			createKernels();
+		}
+		
+		PreparedRecord record = new PreparedRecord(items, kernels.length);
+		for (int k = 0; k < kernels.length; ++k) {
+			AttributeKernel kernel = kernels[k];
+			String item = items[kernel.ordinal];
+			record.missing[k] = item.isEmpty();
+			if (!item.isEmpty()) {
+				if (kernel.type == KERNEL_CATEGORICAL_SET) {
+					record.tokens[k] = item.split(subFieldDelim);
+				} else if (kernel.type == KERNEL_NUMERIC) {
+					record.values[k] = kernel.isInteger ? Integer.parseInt(item) : Double.parseDouble(item);
+				} else if (kernel.type == KERNEL_NUMERIC_RANGE) {
+					record.ranges[k] = DoubleRange.create(item, subFieldDelim);
+					if (null == record.ranges[k]) {
+						record.values[k] = Double.parseDouble(item);
+					}
+				} else if (kernel.type == KERNEL_TEXT) {
+					record.tokens[k] = item.split(kernel.simStrategy.getFieldDelimRegex());
+					record.signatures[k] = kernel.simStrategy.createSignature(record.tokens[k]);
+					if (kernel.negativeWithDuplicateTerms) {
+						record.duplicateTerms[k] = 
+							new HashSet<String>(Arrays.asList(record.tokens[k])).size() < record.tokens[k].length;
+					}
+				} else if (kernel.type == KERNEL_GEO_LOCATION) {
+			    	String[] subItems = item.split(subFieldDelim);
+			    	record.values[k] = Double.parseDouble(subItems[0]);
+			    	record.secondValues[k] = Double.parseDouble(subItems[1]);
+				}
+			}
+		}
+		return record;
+	}
+	
+	/**
+	 * @param first
+	 * @param second
+	 * @return
+	 * @throws IOException
+	 */
+	public int findScaledDistance(PreparedRecord first, PreparedRecord second) throws IOException {
+		int dist = (int)(scale * findDistance(first, second));
+		return dist;
+	}
+
+	/**
+	 * Same distance as for the unparsed records. Attribute wise distances are not saved
+	 * @param first
+	 * @param second
+	 * @return
+	 * @throws IOException
+	 */
+	public double findDistance(PreparedRecord first, PreparedRecord second) throws IOException {
+		return findDistance(first, second, Double.POSITIVE_INFINITY);
+	}
+	
+	/**
+	 * @param first
+	 * @param second
+	 * @param bound
+	 * @return
+	 * @throws IOException
+	 */
+	public int findScaledDistance(PreparedRecord first, PreparedRecord second, double bound) throws IOException {
+		int dist = (int)(scale * findDistance(first, second, bound));
+		return dist;
+	}
+	
+	/**
+	 * Distance that stops as soon as the partially aggregated distance shows it will exceed the bound, 
+	 * e.g. current k th nearest distance. Distances not exceeding the bound are same as without bound
+	 * @param first
+	 * @param second
+	 * @param bound
+	 * @return distance, or positive infinity if it exceeds the bound
+	 * @throws IOException
+	 */
+	public double findDistance(PreparedRecord first, PreparedRecord second, double bound) throws IOException {
+		if (null == kernels) {
+			createKernels();
+		}
+		
+		//missing values, attribute distances are found lazily
+		boolean bounded = boundable && bound < Double.POSITIVE_INFINITY;
+		for (int k = 0; k < kernels.length; ++k) {
+			boolean anyMissingValue = first.missing[k] || second.missing[k];
+			if (!tolerateMissingValue && anyMissingValue) {
+				throw new IllegalStateException("missing field found");
+			}
+			kernelDistanceFound[k] = !anyMissingValue;
+			kernelDistanceComputed[k] = false;
+			
+			//jaccard distance can be negative with repeated terms
+			bounded = bounded && (anyMissingValue || !(first.duplicateTerms[k] || second.duplicateTerms[k]));
+		}
+		
+		//aggregate distance, remaining aggregators add non negative distance
+		double maxSumDist = (bound + Math.abs(bound) * BOUND_MARGIN) * aggregatorWeightSum;
+		double sumDist = 0;
+		double sumWeight = 0;
+		boolean abandoned = false;
+		AttributeDistanceAggregator[] aggregators = attrDistSchema.getAttrAggregators();
+		for (int a = 0; a < aggregators.length && !abandoned; ++a) {
+			double weight = aggregators[a].getWeight();
+			double maxDist = bounded && weight > 0 ? (maxSumDist - sumDist) / weight : Double.POSITIVE_INFINITY;
+			double dist = aggregate(aggregatorTypes[a], aggregatorKernels[a], aggregators[a].getParam(), 
+					first, second, maxDist);
+			abandoned = dist == Double.POSITIVE_INFINITY && maxDist < Double.POSITIVE_INFINITY;
+			sumDist += dist * weight;
+			sumWeight += weight;
+		}
+		return abandoned ? Double.POSITIVE_INFINITY : sumDist / sumWeight;
+	}
+	
+	/**
+	 * @param kernel
+	 * @param first
+	 * @param second
+	 * @param k
+	 * @return
+	 * @throws IOException
+	 */
+	private double attributeDistance(AttributeKernel kernel, PreparedRecord first, PreparedRecord second, int k) 
+		throws IOException {
+		double dist = 0;
+		String firstItem = first.items[kernel.ordinal];
+		String secondItem = second.items[kernel.ordinal];
+		switch (kernel.type) {
+		case KERNEL_CATEGORICAL:
+			dist = firstItem.equals(secondItem) ? 0 : 1;
+			break;
+		case KERNEL_CATEGORICAL_SET:
+			dist = BasicUtils.listIncluded(Arrays.asList(first.tokens[k]), Arrays.asList(second.tokens[k])) ? 0 : 1;
+			break;
+		case KERNEL_CARDINALITY:
+			dist = firstItem.equals(secondItem) ? 0 : kernel.cardinalityDistance;
+			break;
+		case KERNEL_VALUE_DIFF_METRIC:
+			dist = valueDiffMetricDist.get(fieldOrd).get(distWithAttrValuesSorted(firstItem, secondItem));
+			break;
+		case KERNEL_NUMERIC:
+			dist = numericDistance(first.values[k], second.values[k], kernel.attrDist);
+			break;
+		case KERNEL_NUMERIC_RANGE:
+			if (null != first.ranges[k]) {
+				dist = numericDistance(first.ranges[k], second.getScalar(k), kernel.attrDist);
+			} else if (null != second.ranges[k]) {
+				dist = numericDistance(second.ranges[k], first.values[k], kernel.attrDist);
+			} else {
+				throw new IllegalStateException("no range data found in field");
+			}
+			break;
+		case KERNEL_TEXT:
+			dist = kernel.simStrategy.findDistance(firstItem, first.tokens[k], first.signatures[k], secondItem, 
+					second.tokens[k], second.signatures[k]);
+			break;
+		case KERNEL_GEO_LOCATION:
+			dist = BasicUtils.getGeoDistance(first.values[k], first.secondValues[k], second.values[k], 
+					second.secondValues[k]);
+			if (kernel.attrDist.isMaxGeoDistanceSet()) {
+				dist /= kernel.attrDist.getMaxGeoDistance();
+			}
+			break;
+		}
+		return dist;
+	}
+	
+	/**
+	 * @param type
+	 * @param kernelIndexes
+	 * @param param
+	 * @param first
+	 * @param second
+	 * @param maxDist aggregated distance beyond which computation is abandoned
+	 * @return aggregated distance, or positive infinity if abandoned
+	 * @throws IOException
+	 */
+	private double aggregate(int type, int[] kernelIndexes, double param, PreparedRecord first, 
+			PreparedRecord second, double maxDist) throws IOException {
+		int count = 0;
+		for (int k : kernelIndexes) {
+			if (k >= 0 && kernelDistanceFound[k]) {
+				++count;
+			}
+		}
+		
+		//limit on sum of attribute terms, since the count is known
+		double maxSum = Double.POSITIVE_INFINITY;
+		if (maxDist < 0) {
+			maxSum = -1;
+		} else if (maxDist < Double.POSITIVE_INFINITY) {
+			if (type == AGGR_EUCLIDEAN) {
+				maxSum = (maxDist * count) * (maxDist * count);
+			} else if (type == AGGR_MINKWOSKI) {
+				maxSum = Math.pow(maxDist * count, param);
+			} else {
+				maxSum = maxDist * count;
+			}
+		}
+		
+		double sum = 0;
+		boolean abandoned = maxSum < 0;
+		for (int i = 0; i < kernelIndexes.length && !abandoned; ++i) {
+			int k = kernelIndexes[i];
+			if (k >= 0 && kernelDistanceFound[k]) {
+				if (!kernelDistanceComputed[k]) {
+					kernelDistances[k] = attributeDistance(kernels[k], first, second, k);
+					kernelDistanceComputed[k] = true;
+				}
+				double attrDist = kernelDistances[k];
+				if (type == AGGR_EUCLIDEAN) {
+					sum += attrDist * attrDist;
+				} else if (type == AGGR_MINKWOSKI) {
+					sum += Math.pow(attrDist, param);
+				} else {
+					sum += attrDist;
+				}
+				abandoned = sum > maxSum;
+			}
+		}
+		
+		double dist = Double.POSITIVE_INFINITY;
+		if (!abandoned) {
+			if (type == AGGR_EUCLIDEAN) {
+				dist = Math.sqrt(sum) / count;
+			} else if (type == AGGR_MINKWOSKI) {
+				dist = Math.pow(sum, 1.0/param) / count;
+			} else {
+				dist = sum / count;
+			}
+		}
+		return dist;
+	}
+	
+	/**
+	 * resolves distance algorithm for each attribute and aggregator
+	 */
+	private void createKernels() {
+		List<AttributeKernel> kernelList = new ArrayList<AttributeKernel>();
+		Map<Integer, Integer> kernelIndexes = new HashMap<Integer, Integer>();
+		for (Attribute attr : attrSchema.getAttributes()) {
+			int ordinal = attr.getOrdinal();
+			if (attr.isId() || (null != facetedFields && !ArrayUtils.contains(facetedFields, ordinal))) {
+				continue;
+			}
+			AttributeKernel kernel = new AttributeKernel(ordinal);
+			kernel.attrDist = attrDistSchema.findAttributeDistanceByOrdinal(ordinal);
+			boolean distMetaDataNeeded = attr.isCategorical() || attr.isInteger() || attr.isDouble() || 
+					attr.isText() || attr.isGeoLocation();
+			if (distMetaDataNeeded && null == kernel.attrDist) {
+				throw new IllegalStateException("missing distance meta data for attribute " + ordinal);
+			}
+			
+			if (attr.isCategorical()) {
+				String algorithm = kernel.attrDist.getAlgorithm();
+				if (algorithm.equals("cardinality")) {
+					kernel.type = KERNEL_CARDINALITY;
+					kernel.cardinalityDistance = Math.sqrt(2) / attr.getCardinality().size();
+				} else if (algorithm.equals("valueDiffMetric")) {
+					kernel.type = KERNEL_VALUE_DIFF_METRIC;
+				} else {
+					kernel.type = categoricalSet ? KERNEL_CATEGORICAL_SET : KERNEL_CATEGORICAL;
+				}
+			} else if (attr.isInteger()) {
+				kernel.type = KERNEL_NUMERIC;
+				kernel.isInteger = true;
+			} else if (attr.isDouble()) {
+				kernel.type = doubleRange ? KERNEL_NUMERIC_RANGE : KERNEL_NUMERIC;
+			} else if (attr.isText()) {
+				kernel.type = KERNEL_TEXT;
+				try {
+					kernel.simStrategy = DynamicVectorSimilarity.createSimilarityStrategy(kernel.attrDist);
+				} catch (IOException ex) {
+					throw new IllegalStateException("failed to create text similarity strategy " + ex.getMessage());
+				}
+				kernel.negativeWithDuplicateTerms = kernel.simStrategy instanceof JaccardSimilarity;
+			} else if (attr.isGeoLocation()) {
+				kernel.type = KERNEL_GEO_LOCATION;
+			}
+			kernelIndexes.put(ordinal, kernelList.size());
+			kernelList.add(kernel);
+		}
+		kernels = kernelList.toArray(new AttributeKernel[kernelList.size()]);
+		kernelDistances = new double[kernels.length];
+		kernelDistanceFound = new boolean[kernels.length];
+		kernelDistanceComputed = new boolean[kernels.length];
+		
+		//aggregators
+		AttributeDistanceAggregator[] aggregators = attrDistSchema.getAttrAggregators();
+		aggregatorTypes = new int[aggregators.length];
+		aggregatorKernels = new int[aggregators.length][];
+		boundable = true;
+		for (int a = 0; a < aggregators.length; ++a) {
+			String algorithm = aggregators[a].getAlgorithm();
+			if (algorithm.equals("euclidean")) {
+				aggregatorTypes[a] = AGGR_EUCLIDEAN;
+			} else if (algorithm.equals("manhattan")) {
+				aggregatorTypes[a] = AGGR_MANHATTAN;
+			} else if (algorithm.equals("minkwoski")) {
+				aggregatorTypes[a] = AGGR_MINKWOSKI;
+			} else if (algorithm.equals("categorical")) {
+				aggregatorTypes[a] = AGGR_CATEGORICAL;
+			} else {
+				throw new IllegalStateException("invalid distance aggregation algorithm " + algorithm);
+			}
+			aggregatorWeightSum += aggregators[a].getWeight();
+			boundable = boundable && aggregators[a].getWeight() >= 0 && 
+					(aggregatorTypes[a] != AGGR_MINKWOSKI || aggregators[a].getParam() > 0);
+			int[] ordinals = aggregators[a].getOrdinals();
+			aggregatorKernels[a] = new int[ordinals.length];
+			for (int i = 0; i < ordinals.length; ++i) {
+				Integer kernelIndex = kernelIndexes.get(ordinals[i]);
+				aggregatorKernels[a][i] = null != kernelIndex ? kernelIndex : -1;
+				if (null != kernelIndex) {
+					kernels[kernelIndex].aggregated = true;
+				}
+			}
+		}
+		
+		//early abandoning needs non negative attribute distances and aggregator weights
+		for (AttributeKernel kernel : kernels) {
+			boolean negativeWeight = false;
+			if (kernel.type == KERNEL_NUMERIC || kernel.type == KERNEL_NUMERIC_RANGE) {
+				negativeWeight = kernel.attrDist.isWeightSet() && kernel.attrDist.getWeight() < 0;
+			} else if (kernel.negativeWithDuplicateTerms) {
+				negativeWeight = kernel.attrDist.getJaccardSrcNonMatchingTermWeight() < 0 || 
+						kernel.attrDist.getJaccardTrgNonMatchingTermWeight() < 0;
+			}
+			boundable = boundable && !(kernel.aggregated && negativeWeight);
+			kernel.negativeWithDuplicateTerms = kernel.aggregated && kernel.negativeWithDuplicateTerms;
+		}
+	}
+	
 	/**
 	 * @param ordinals
 	 * @return
@@ -489,6 +865,79 @@ public class InterRecordDistance implements Serializable {
 		return dist;
 	}
 	
+	/**
+	 * Record parsed once, with typed values, split terms and MinHash signatures of text for each 
+	 * compared attribute
+	 * @author pranab
+	 *
+	 */
+	public static class PreparedRecord implements Serializable {
+		private String[] items;
+		private boolean[] missing;
+		private double[] values;
+		private double[] secondValues;
+		private DoubleRange[] ranges;
+		private String[][] tokens;
+		private boolean[] duplicateTerms;
+		private MinHashSignature[] signatures;
+		
+		/**
+		 * @param items
+		 * @param numAttributes
+		 */
+		private PreparedRecord(String[] items, int numAttributes) {
+			this.items = items;
+			missing = new boolean[numAttributes];
+			values = new double[numAttributes];
+			secondValues = new double[numAttributes];
+			ranges = new DoubleRange[numAttributes];
+			tokens = new String[numAttributes][];
+			duplicateTerms = new boolean[numAttributes];
+			signatures = new MinHashSignature[numAttributes];
+		}
+		
+		/**
+		 * @return
+		 */
+		public String[] getItems() {
+			return items;
+		}
+		
+		/**
+		 * @param k
+		 * @return
+		 */
+		private double getScalar(int k) {
+			if (null != ranges[k]) {
+				throw new NumberFormatException("range found where single value expected");
+			}
+			return values[k];
+		}
+	}
+	
+	/**
+	 * distance algorithm resolved for an attribute
+	 * @author pranab
+	 *
+	 */
+	private static class AttributeKernel {
+		private int ordinal;
+		private int type = KERNEL_NONE;
+		private boolean isInteger;
+		private AttributeDistance attrDist;
+		private double cardinalityDistance;
+		private DynamicVectorSimilarity simStrategy;
+		private boolean negativeWithDuplicateTerms;
+		private boolean aggregated;
+		
+		/**
+		 * @param ordinal
+		 */
+		private AttributeKernel(int ordinal) {
+			this.ordinal = ordinal;
+		}
+	}
+	
 	/**
 	 * @author pranab
 	 *
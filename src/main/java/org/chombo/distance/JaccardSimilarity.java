@@ -43,10 +43,49 @@ public class JaccardSimilarity extends DynamicVectorSimilarity {
 	 */
 	@Override
 	public double findDistance(String src, String target) {
+		return findDistance(src.split(fieldDelimRegex), target.split(fieldDelimRegex));
+	}
+
+	/* (non-Javadoc)
+	 * @see org.chombo.distance.DynamicVectorSimilarity#findDistance(java.lang.String, java.lang.String[], java.lang.String, java.lang.String[])
+	 */
+	@Override
+	public double findDistance(String src, String[] srcTerms, String target, String[] trgTerms) {
+		return findDistance(srcTerms, trgTerms);
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.chombo.distance.DynamicVectorSimilarity#findDistance(java.lang.String, java.lang.String[], org.chombo.distance.MinHashSignature, java.lang.String, java.lang.String[], org.chombo.distance.MinHashSignature)
+	 */
+	@Override
+	public double findDistance(String src, String[] srcTerms, MinHashSignature srcSignature, String target, 
+		String[] trgTerms, MinHashSignature trgSignature) {
+		double distance = 1.0;
+		if (isEstimated(srcTerms, srcSignature, trgTerms, trgSignature)) {
+			//estimate from distinct terms, exact distance only for likely matches
+			double matchCount = srcSignature.findIntersectionLength(trgSignature);
+			double srcNonMatchCount = srcSignature.getNumTerms() - matchCount;
+			double trgNonMatchCount = trgSignature.getNumTerms() - matchCount;
+			double denom = matchCount + srcNonMatchingTermWeight * srcNonMatchCount +
+					trgNonMatchingTermWeight * trgNonMatchCount;
+			distance = denom > 0 ? 1.0 - matchCount / denom : 1.0;
+			intersectionLength = (int)Math.round(matchCount);
+			if (distance <= minHashExactCheckDistance) {
+				distance = findDistance(srcTerms, trgTerms);
+			}
+		} else {
+			distance = findDistance(srcTerms, trgTerms);
+		}
+		return distance;
+	}
+	
+	/**
+	 * @param srcTerms
+	 * @param trgTerms
+	 * @return
+	 */
+	private double findDistance(String[] srcTerms, String[] trgTerms) {
 		double distance = 1.0;
-		
-		String[] srcTerms = src.split(fieldDelimRegex);
-		String[] trgTerms = target.split(fieldDelimRegex);
 		
 		int matchCount = 0;
 		for (String srcTerm : srcTerms) {
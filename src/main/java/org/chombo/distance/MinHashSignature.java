@@ -0,0 +1,176 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.distance;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * MinHash signature of the distinct terms of a text field. Fraction of agreeing hash values of two
+ * signatures is an unbiased estimate of Jaccard similarity of the term sets. Signatures are found once
+ * per record and compared in time proportional to the number of hash functions, irrespective of
+ * number of terms. Whether terms repeat is kept, since distances counting repeated terms can't be
+ * estimated from the set
+ * @author pranab
+ *
+ */
+public class MinHashSignature implements Serializable {
+	private int[] minHashes;
+	private int numTerms;
+	private boolean duplicateTerms;
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	/**
+	 * @param minHashes
+	 * @param numTerms
+	 * @param duplicateTerms
+	 */
+	private MinHashSignature(int[] minHashes, int numTerms, boolean duplicateTerms) {
+		this.minHashes = minHashes;
+		this.numTerms = numTerms;
+		this.duplicateTerms = duplicateTerms;
+	}
+
+	/**
+	 * @param numHash
+	 * @param seed should be same wherever signatures are compared
+	 * @return one seed per hash function
+	 */
+	public static long[] createSeeds(int numHash, long seed) {
+		Random random = new Random(seed);
+		long[] seeds = new long[numHash];
+		for (int i = 0; i < numHash; ++i) {
+			seeds[i] = random.nextLong();
+		}
+		return seeds;
+	}
+
+	/**
+	 * @param terms
+	 * @param seeds
+	 * @return
+	 */
+	public static MinHashSignature create(String[] terms, long[] seeds) {
+		long[] minHashes = new long[seeds.length];
+		for (int i = 0; i < minHashes.length; ++i) {
+			minHashes[i] = Long.MAX_VALUE;
+		}
+
+		//distinct term hashes, duplicates don't change min hash values
+		long[] termHashes = new long[terms.length];
+		for (int t = 0; t < terms.length; ++t) {
+			long hash = FNV_OFFSET;
+			String term = terms[t];
+			for (int c = 0; c < term.length(); ++c) {
+				hash = (hash ^ term.charAt(c)) * FNV_PRIME;
+			}
+			termHashes[t] = hash;
+			for (int i = 0; i < minHashes.length; ++i) {
+				long hashValue = mix(hash ^ seeds[i]);
+				if (hashValue < minHashes[i]) {
+					minHashes[i] = hashValue;
+				}
+			}
+		}
+
+		int[] signature = new int[minHashes.length];
+		for (int i = 0; i < minHashes.length; ++i) {
+			signature[i] = (int)(minHashes[i] >>> 32);
+		}
+		int numTerms = countDistinct(termHashes);
+		return new MinHashSignature(signature, numTerms, numTerms < terms.length);
+	}
+
+	/**
+	 * @param other
+	 * @return estimated Jaccard similarity of the distinct term sets
+	 */
+	public double findSimilarity(MinHashSignature other) {
+		if (minHashes.length != other.minHashes.length) {
+			throw new IllegalArgumentException("signatures have different number of hash values");
+		}
+		int matchCount = 0;
+		for (int i = 0; i < minHashes.length; ++i) {
+			if (minHashes[i] == other.minHashes[i]) {
+				++matchCount;
+			}
+		}
+		return minHashes.length > 0 ? (double)matchCount / minHashes.length : 0;
+	}
+
+	/**
+	 * @param other
+	 * @return estimated number of distinct terms common to both
+	 */
+	public double findIntersectionLength(MinHashSignature other) {
+		//similarity is intersection over union and union is sum of sizes less intersection
+		double similarity = findSimilarity(other);
+		double intersectionLength = similarity * (numTerms + other.numTerms) / (1.0 + similarity);
+		return Math.min(intersectionLength, Math.min(numTerms, other.numTerms));
+	}
+
+	/**
+	 * @return number of distinct terms
+	 */
+	public int getNumTerms() {
+		return numTerms;
+	}
+
+	/**
+	 * @return true if some term occurs more than once
+	 */
+	public boolean hasDuplicateTerms() {
+		return duplicateTerms;
+	}
+
+	/**
+	 * @return
+	 */
+	public int getNumHash() {
+		return minHashes.length;
+	}
+
+	/**
+	 * @param termHashes
+	 * @return
+	 */
+	private static int countDistinct(long[] termHashes) {
+		Arrays.sort(termHashes);
+		int count = 0;
+		for (int t = 0; t < termHashes.length; ++t) {
+			if (t == 0 || termHashes[t] != termHashes[t - 1]) {
+				++count;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * 64 bit finalizer
+	 * @param hash
+	 * @return
+	 */
+	private static long mix(long hash) {
+		hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+		hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+		return hash ^ (hash >>> 31);
+	}
+}
@@ -0,0 +1,386 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.distance;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.chombo.util.Attribute;
+import org.chombo.util.BasicUtils;
+import org.chombo.util.GenericAttributeSchema;
+
+/**
+ * Generates block keys for a record, so that only records sharing a block need to be compared.
+ * Blocks come from blocking keys, which are groups of attributes whose values must match exactly,
+ * followed by locality sensitive hashing bands. Within a band, categorical and text attributes
+ * are hashed with MinHash over attribute value tokens and numeric attributes with quantized
+ * random projections. Two records sharing any block are candidate pairs
+ * @author pranab
+ *
+ */
+public class RecordBlocker implements Serializable {
+	private GenericAttributeSchema attrSchema;
+	private AttributeDistanceSchema attrDistSchema;
+	private String subFieldDelim = BasicUtils.DEF_SUB_FIELD_DELIM;
+	private List<int[]> blockingKeys = new ArrayList<int[]>();
+	private int numBands;
+	private int numRows;
+	private double bucketWidth = 1.0;
+	private long seed = 1000;
+	private int[] facetedFields;
+	private boolean categoricalSet;
+	private int[] setOrdinals;
+	private boolean[] textAttributes;
+	private int[] numericOrdinals;
+	private double[] numericWeights;
+	private long[] minHashSeeds;
+	private double[][] projections;
+	private double[] projectionOffsets;
+	private long[] minHashes;
+	private double[] numericValues;
+	private long[] blocks;
+
+	public static final long NO_BLOCK = Long.MIN_VALUE;
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	/**
+	 * @param attrSchema
+	 * @param attrDistSchema
+	 */
+	public RecordBlocker(GenericAttributeSchema attrSchema, AttributeDistanceSchema attrDistSchema) {
+		this.attrSchema = attrSchema;
+		this.attrDistSchema = attrDistSchema;
+	}
+
+	/**
+	 * @param ordinals attributes whose values together form a blocking key
+	 * @return
+	 */
+	public RecordBlocker withBlockingKey(int[] ordinals) {
+		blockingKeys.add(ordinals);
+		return this;
+	}
+
+	/**
+	 * @param numBands
+	 * @param numRows hash values per band for each of MinHash and random projection
+	 * @return
+	 */
+	public RecordBlocker withLocalitySensitiveHashing(int numBands, int numRows) {
+		this.numBands = numBands;
+		this.numRows = numRows;
+		return this;
+	}
+
+	/**
+	 * @param bucketWidth random projection bucket width, in units of weighted attribute distance
+	 * @return
+	 */
+	public RecordBlocker withBucketWidth(double bucketWidth) {
+		this.bucketWidth = bucketWidth;
+		return this;
+	}
+
+	/**
+	 * @param seed should be same for all tasks of a job
+	 * @return
+	 */
+	public RecordBlocker withSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	/**
+	 * @param facetedFields
+	 * @return
+	 */
+	public RecordBlocker withFacetedFields(int[] facetedFields) {
+		this.facetedFields = facetedFields;
+		return this;
+	}
+
+	/**
+	 * @param categoricalSet
+	 * @return
+	 */
+	public RecordBlocker withCategoricalSet(boolean categoricalSet) {
+		this.categoricalSet = categoricalSet;
+		return this;
+	}
+
+	/**
+	 * @param subFieldDelim
+	 * @return
+	 */
+	public RecordBlocker withSubFieldDelim(String subFieldDelim) {
+		this.subFieldDelim = subFieldDelim;
+		return this;
+	}
+
+	/**
+	 * selects hashed attributes and creates hash functions
+	 * @return
+	 */
+	public RecordBlocker initialize() {
+		List<Integer> setOrdList = new ArrayList<Integer>();
+		List<Integer> numericOrdList = new ArrayList<Integer>();
+		for (Attribute attr : attrSchema.getAttributes()) {
+			int ordinal = attr.getOrdinal();
+			if (attr.isId() || (null != facetedFields && !ArrayUtils.contains(facetedFields, ordinal))) {
+				continue;
+			}
+			if (attr.isCategorical() || attr.isText()) {
+				setOrdList.add(ordinal);
+			} else if (attr.isNumerical()) {
+				numericOrdList.add(ordinal);
+			}
+		}
+		setOrdinals = BasicUtils.fromListToIntArray(setOrdList);
+		numericOrdinals = BasicUtils.fromListToIntArray(numericOrdList);
+		textAttributes = new boolean[setOrdinals.length];
+		for (int i = 0; i < setOrdinals.length; ++i) {
+			textAttributes[i] = attrSchema.findAttributeByOrdinal(setOrdinals[i]).isText();
+		}
+
+		if (numBands > 0 && setOrdinals.length == 0 && numericOrdinals.length == 0) {
+			throw new IllegalStateException("no categorical, text or numeric attribute for locality sensitive hashing");
+		}
+		if (blockingKeys.isEmpty() && numBands == 0) {
+			throw new IllegalStateException("neither blocking key nor locality sensitive hashing is configured");
+		}
+
+		//attribute weights as in numeric distance
+		numericWeights = new double[numericOrdinals.length];
+		for (int i = 0; i < numericOrdinals.length; ++i) {
+			AttributeDistance attrDist = attrDistSchema.findAttributeDistanceByOrdinal(numericOrdinals[i]);
+			numericWeights[i] = null != attrDist && attrDist.isWeightSet() ? attrDist.getWeight() : 1.0;
+		}
+
+		//hash functions
+		Random random = new Random(seed);
+		int numHashes = numBands * numRows;
+		minHashSeeds = new long[numHashes];
+		for (int i = 0; i < numHashes; ++i) {
+			minHashSeeds[i] = random.nextLong();
+		}
+		projections = new double[numHashes][numericOrdinals.length];
+		projectionOffsets = new double[numHashes];
+		for (int i = 0; i < numHashes; ++i) {
+			for (int j = 0; j < numericOrdinals.length; ++j) {
+				projections[i][j] = random.nextGaussian();
+			}
+			projectionOffsets[i] = random.nextDouble() * bucketWidth;
+		}
+
+		minHashes = new long[numHashes];
+		numericValues = new double[numericOrdinals.length];
+		blocks = new long[getNumBlocks()];
+		return this;
+	}
+
+	/**
+	 * @return
+	 */
+	public int getNumBlocks() {
+		return blockingKeys.size() + numBands;
+	}
+
+	/**
+	 * block keys for a record. Array is reused across calls
+	 * @param items
+	 * @return block keys, NO_BLOCK when the record does not belong to that block
+	 */
+	public long[] findBlocks(String[] items) {
+		int block = 0;
+
+		//blocking keys
+		for (int[] ordinals : blockingKeys) {
+			long hash = FNV_OFFSET;
+			boolean missing = false;
+			for (int ordinal : ordinals) {
+				String value = items[ordinal];
+				missing = missing || value.isEmpty();
+				hash = hashChars(hash, value);
+				hash = (hash ^ 0x1f) * FNV_PRIME;
+			}
+			hash = mix(hash);
+			hash = hash == NO_BLOCK ? NO_BLOCK + 1 : hash;
+			blocks[block++] = missing ? NO_BLOCK : hash;
+		}
+
+		//locality sensitive hashing bands
+		if (numBands > 0) {
+			boolean hasTokens = setOrdinals.length > 0 && findMinHashes(items);
+			boolean hasNumeric = numericOrdinals.length > 0 && findNumericValues(items);
+			for (int band = 0; band < numBands; ++band) {
+				long hash = NO_BLOCK;
+				if (hasTokens || hasNumeric) {
+					hash = mix(seed + band);
+					for (int r = 0; r < numRows; ++r) {
+						int hashIndex = band * numRows + r;
+						if (hasTokens) {
+							hash = mix(hash ^ minHashes[hashIndex]);
+						}
+						if (hasNumeric) {
+							hash = mix(hash ^ projectionBucket(hashIndex));
+						}
+					}
+					hash = hash == NO_BLOCK ? NO_BLOCK + 1 : hash;
+				}
+				blocks[block++] = hash;
+			}
+		}
+		return blocks;
+	}
+
+	/**
+	 * MinHash signature over attribute value tokens
+	 * @param items
+	 * @return false if there are no tokens
+	 */
+	private boolean findMinHashes(String[] items) {
+		boolean hasTokens = false;
+		for (int i = 0; i < minHashes.length; ++i) {
+			minHashes[i] = Long.MAX_VALUE;
+		}
+		for (int s = 0; s < setOrdinals.length; ++s) {
+			int ordinal = setOrdinals[s];
+			String value = items[ordinal];
+			if (value.isEmpty()) {
+				continue;
+			}
+			if (textAttributes[s]) {
+				//whitespace separated terms as in text similarity
+				int begin = -1;
+				for (int i = 0; i <= value.length(); ++i) {
+					boolean isSpace = i == value.length() || Character.isWhitespace(value.charAt(i));
+					if (!isSpace && begin < 0) {
+						begin = i;
+					} else if (isSpace && begin >= 0) {
+						addToken(ordinal, value, begin, i);
+						hasTokens = true;
+						begin = -1;
+					}
+				}
+			} else if (categoricalSet) {
+				for (String subValue : value.split(subFieldDelim)) {
+					addToken(ordinal, subValue, 0, subValue.length());
+					hasTokens = true;
+				}
+			} else {
+				addToken(ordinal, value, 0, value.length());
+				hasTokens = true;
+			}
+		}
+		return hasTokens;
+	}
+
+	/**
+	 * @param ordinal
+	 * @param value
+	 * @param begin
+	 * @param end
+	 */
+	private void addToken(int ordinal, String value, int begin, int end) {
+		long hash = (FNV_OFFSET ^ ordinal) * FNV_PRIME;
+		for (int i = begin; i < end; ++i) {
+			hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+		}
+		for (int i = 0; i < minHashes.length; ++i) {
+			long tokenHash = mix(hash ^ minHashSeeds[i]);
+			if (tokenHash < minHashes[i]) {
+				minHashes[i] = tokenHash;
+			}
+		}
+	}
+
+	/**
+	 * @param items
+	 * @return false if all numeric values are missing
+	 */
+	private boolean findNumericValues(String[] items) {
+		boolean hasNumeric = false;
+		for (int i = 0; i < numericOrdinals.length; ++i) {
+			String value = items[numericOrdinals[i]];
+			numericValues[i] = 0;
+			if (!value.isEmpty()) {
+				String[] range = value.split(subFieldDelim);
+				double numValue = range.length == 2 ?
+						(Double.parseDouble(range[0]) + Double.parseDouble(range[1])) / 2 : Double.parseDouble(value);
+				numericValues[i] = numValue / numericWeights[i];
+				hasNumeric = true;
+			}
+		}
+		return hasNumeric;
+	}
+
+	/**
+	 * @param hashIndex
+	 * @return
+	 */
+	private long projectionBucket(int hashIndex) {
+		double[] projection = projections[hashIndex];
+		double dotProduct = projectionOffsets[hashIndex];
+		for (int i = 0; i < numericValues.length; ++i) {
+			dotProduct += projection[i] * numericValues[i];
+		}
+		return (long)Math.floor(dotProduct / bucketWidth);
+	}
+
+	/**
+	 * @param first
+	 * @param second
+	 * @return index of the first block shared by both records, -1 if none
+	 */
+	public static int findFirstSharedBlock(long[] first, long[] second) {
+		int shared = -1;
+		for (int i = 0; i < first.length && shared < 0; ++i) {
+			if (first[i] != NO_BLOCK && first[i] == second[i]) {
+				shared = i;
+			}
+		}
+		return shared;
+	}
+
+	/**
+	 * @param hash
+	 * @param value
+	 * @return
+	 */
+	private static long hashChars(long hash, String value) {
+		for (int i = 0; i < value.length(); ++i) {
+			hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+		}
+		return hash;
+	}
+
+	/**
+	 * 64 bit finalizer
+	 * @param hash
+	 * @return
+	 */
+	private static long mix(long hash) {
+		hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+		hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+		return hash ^ (hash >>> 31);
+	}
+}
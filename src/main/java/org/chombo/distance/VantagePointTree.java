@@ -0,0 +1,329 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.distance;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.chombo.distance.InterRecordDistance.PreparedRecord;
+
+/**
+ * Vantage point tree over prepared records with inter record distance as the metric. Supports k nearest
+ * neighbor and radius queries without finding distance to all records. Each node splits its records
+ * at the median distance from a randomly chosen vantage point. Search prunes a side with the triangle
+ * inequality, so results are exact when the configured distance is a metric and approximate otherwise
+ * @author pranab
+ *
+ */
+public class VantagePointTree {
+	private InterRecordDistance distance;
+	private PreparedRecord[] records;
+	private String[] ids;
+	private int[] order;
+	private double[] medians;
+	private double[] buildDistances;
+	private long distanceCount;
+	private static final int LEAF_SIZE = 8;
+
+	/**
+	 * @param distance
+	 * @param records
+	 * @param ids
+	 * @param seed for vantage point selection
+	 * @throws IOException
+	 */
+	public VantagePointTree(InterRecordDistance distance, List<PreparedRecord> records, List<String> ids, long seed)
+		throws IOException {
+		if (records.size() != ids.size()) {
+			throw new IllegalArgumentException("record and ID counts differ");
+		}
+		this.distance = distance;
+		this.records = records.toArray(new PreparedRecord[records.size()]);
+		this.ids = ids.toArray(new String[ids.size()]);
+		int size = this.records.length;
+		order = new int[size];
+		for (int i = 0; i < size; ++i) {
+			order[i] = i;
+		}
+		medians = new double[size];
+		buildDistances = new double[size];
+		build(0, size, new Random(seed));
+		buildDistances = null;
+	}
+
+	/**
+	 * node for range [begin, end) has vantage point at begin, inner records with distance up to median
+	 * in [begin + 1, mid) and outer records in [mid, end)
+	 * @param begin
+	 * @param end
+	 * @param random
+	 * @throws IOException
+	 */
+	private void build(int begin, int end, Random random) throws IOException {
+		if (end - begin > LEAF_SIZE) {
+			swap(begin, begin + random.nextInt(end - begin));
+			PreparedRecord vantage = records[order[begin]];
+			for (int i = begin + 1; i < end; ++i) {
+				buildDistances[i] = distance.findDistance(vantage, records[order[i]]);
+			}
+			int mid = (begin + 1 + end) / 2;
+			select(begin + 1, end - 1, mid);
+			medians[begin] = buildDistances[mid];
+			build(begin + 1, mid, random);
+			build(mid, end, random);
+		}
+	}
+
+	/**
+	 * partial sort so that position k has the record whose distance rank is k
+	 * @param left
+	 * @param right
+	 * @param k
+	 */
+	private void select(int left, int right, int k) {
+		while (right > left) {
+			double pivot = buildDistances[(left + right) >>> 1];
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (buildDistances[i] < pivot) {
+					++i;
+				}
+				while (buildDistances[j] > pivot) {
+					--j;
+				}
+				if (i <= j) {
+					swap(i, j);
+					++i;
+					--j;
+				}
+			}
+			if (k <= j) {
+				right = j;
+			} else if (k >= i) {
+				left = i;
+			} else {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * @param i
+	 * @param j
+	 */
+	private void swap(int i, int j) {
+		int index = order[i];
+		order[i] = order[j];
+		order[j] = index;
+		double dist = buildDistances[i];
+		buildDistances[i] = buildDistances[j];
+		buildDistances[j] = dist;
+	}
+
+	/**
+	 * @param query
+	 * @param count
+	 * @return nearest neighbors, closest first
+	 * @throws IOException
+	 */
+	public List<Neighbor> findNearest(PreparedRecord query, int count) throws IOException {
+		return findNearest(query, count, Double.MAX_VALUE, null);
+	}
+
+	/**
+	 * @param query
+	 * @param radius
+	 * @return neighbors within radius, closest first
+	 * @throws IOException
+	 */
+	public List<Neighbor> findWithin(PreparedRecord query, double radius) throws IOException {
+		return findNearest(query, Integer.MAX_VALUE, radius, null);
+	}
+
+	/**
+	 * @param query
+	 * @param count maximum number of neighbors
+	 * @param radius maximum distance
+	 * @param excludedId record with this ID is not a neighbor, may be null
+	 * @return neighbors, closest first
+	 * @throws IOException
+	 */
+	public List<Neighbor> findNearest(PreparedRecord query, int count, double radius, String excludedId)
+		throws IOException {
+		PriorityQueue<Neighbor> neighbors = new PriorityQueue<Neighbor>(Math.min(count, 64) + 1,
+			new Comparator<Neighbor>() {
+				@Override
+				public int compare(Neighbor first, Neighbor second) {
+					return Double.compare(second.distance, first.distance);
+				}
+			});
+		if (count > 0) {
+			search(0, records.length, query, count, radius, excludedId, neighbors);
+		}
+
+		List<Neighbor> nearest = new ArrayList<Neighbor>(neighbors);
+		Collections.sort(nearest, new Comparator<Neighbor>() {
+			@Override
+			public int compare(Neighbor first, Neighbor second) {
+				return Double.compare(first.distance, second.distance);
+			}
+		});
+		return nearest;
+	}
+
+	/**
+	 * @param begin
+	 * @param end
+	 * @param query
+	 * @param count
+	 * @param radius
+	 * @param excludedId
+	 * @param neighbors farthest at head
+	 * @throws IOException
+	 */
+	private void search(int begin, int end, PreparedRecord query, int count, double radius, String excludedId,
+		PriorityQueue<Neighbor> neighbors) throws IOException {
+		if (end - begin > LEAF_SIZE) {
+			double dist = consider(order[begin], query, count, radius, excludedId, neighbors);
+			int mid = (begin + 1 + end) / 2;
+			double median = medians[begin];
+			if (dist < median) {
+				if (dist - searchRadius(count, radius, neighbors) <= median) {
+					search(begin + 1, mid, query, count, radius, excludedId, neighbors);
+				}
+				if (dist + searchRadius(count, radius, neighbors) >= median) {
+					search(mid, end, query, count, radius, excludedId, neighbors);
+				}
+			} else {
+				if (dist + searchRadius(count, radius, neighbors) >= median) {
+					search(mid, end, query, count, radius, excludedId, neighbors);
+				}
+				if (dist - searchRadius(count, radius, neighbors) <= median) {
+					search(begin + 1, mid, query, count, radius, excludedId, neighbors);
+				}
+			}
+		} else {
+			for (int i = begin; i < end; ++i) {
+				consider(order[i], query, count, radius, excludedId, neighbors);
+			}
+		}
+	}
+
+	/**
+	 * @param index
+	 * @param query
+	 * @param count
+	 * @param radius
+	 * @param excludedId
+	 * @param neighbors
+	 * @return distance to the record
+	 * @throws IOException
+	 */
+	private double consider(int index, PreparedRecord query, int count, double radius, String excludedId,
+		PriorityQueue<Neighbor> neighbors) throws IOException {
+		double dist = distance.findDistance(query, records[index]);
+		++distanceCount;
+		if (dist <= radius && (null == excludedId || !excludedId.equals(ids[index]))) {
+			if (neighbors.size() < count) {
+				neighbors.add(new Neighbor(index, dist));
+			} else if (dist < neighbors.peek().distance) {
+				neighbors.poll();
+				neighbors.add(new Neighbor(index, dist));
+			}
+		}
+		return dist;
+	}
+
+	/**
+	 * @param count
+	 * @param radius
+	 * @param neighbors
+	 * @return distance beyond which no record can be a neighbor
+	 */
+	private double searchRadius(int count, double radius, PriorityQueue<Neighbor> neighbors) {
+		return neighbors.size() < count ? radius : Math.min(radius, neighbors.peek().distance);
+	}
+
+	/**
+	 * @return
+	 */
+	public int size() {
+		return records.length;
+	}
+
+	/**
+	 * @param index
+	 * @return
+	 */
+	public PreparedRecord getRecord(int index) {
+		return records[index];
+	}
+
+	/**
+	 * @param index
+	 * @return
+	 */
+	public String getId(int index) {
+		return ids[index];
+	}
+
+	/**
+	 * @return number of distance calculations for queries so far
+	 */
+	public long getDistanceCount() {
+		return distanceCount;
+	}
+
+	/**
+	 * @author pranab
+	 *
+	 */
+	public static class Neighbor {
+		private int index;
+		private double distance;
+
+		/**
+		 * @param index
+		 * @param distance
+		 */
+		public Neighbor(int index, double distance) {
+			this.index = index;
+			this.distance = distance;
+		}
+
+		/**
+		 * @return index of the record in the tree
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * @return
+		 */
+		public double getDistance() {
+			return distance;
+		}
+	}
+}
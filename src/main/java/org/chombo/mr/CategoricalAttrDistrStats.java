@@ -37,11 +37,14 @@ import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.chombo.stats.CategoricalHistogramStat;
+import org.chombo.stats.TopKSketch;
 import org.chombo.util.GenericAttributeSchema;
 import org.chombo.util.Tuple;
 import org.chombo.util.Utility;
 
 /**
+ * Distribution, entropy, gini index and mode of categorical attributes. Optionally only the top k
+ * values, found with heavy hitter sketch
  * @author pranab
  *
  */
@@ -59,12 +62,17 @@ public class CategoricalAttrDistrStats  extends Configured implements Tool {
         FileOutputFormat.setOutputPath(job, new Path(args[1]));
 
         Utility.setConfiguration(job.getConfiguration(), "chombo");
-        job.setMapperClass(CategoricalAttrDistrStats.StatsMapper.class);
-        job.setReducerClass(CategoricalAttrDistrStats.StatsReducer.class);
-        job.setCombinerClass(CategoricalAttrDistrStats.StatsCombiner.class);
-        
         job.setMapOutputKeyClass(Tuple.class);
-        job.setMapOutputValueClass(Tuple.class);
+        if (job.getConfiguration().getBoolean("cads.top.k.mode", false)) {
+        	//top k values with heavy hitter sketch instead of full distribution
+        	ValueCounter.setTopKMode(job, "cads");
+            job.setMapperClass(CategoricalAttrDistrStats.TopKMapper.class);
+        } else {
+	        job.setMapperClass(CategoricalAttrDistrStats.StatsMapper.class);
+	        job.setReducerClass(CategoricalAttrDistrStats.StatsReducer.class);
+	        job.setCombinerClass(CategoricalAttrDistrStats.StatsCombiner.class);
+	        job.setMapOutputValueClass(Tuple.class);
+        }
 
         job.setOutputKeyClass(NullWritable.class);
         job.setOutputValueClass(Text.class);
@@ -128,6 +136,78 @@ public class CategoricalAttrDistrStats  extends Configured implements Tool {
         }
  	}
 
+	/**
+	 * Builds heavy hitter sketch for each key in memory, emitted in cleanup or when there are too many keys
+	 * @author pranab
+	 *
+	 */
+	public static class TopKMapper extends Mapper<LongWritable, Text, Tuple, TopKSketch> {
+		private Tuple outKey = new Tuple();
+		private int[]  attributes;
+        private String fieldDelimRegex;
+        private int conditionedAttr;
+        private String[] items;
+        private int[] partIdOrdinals;
+        private Map<Tuple, TopKSketch> sketches = new HashMap<Tuple, TopKSketch>();
+        private int maxKeys;
+        private Configuration config;
+        
+        /* (non-Javadoc)
+         * @see org.apache.hadoop.mapreduce.Mapper#setup(org.apache.hadoop.mapreduce.Mapper.Context)
+         */
+        protected void setup(Context context) throws IOException, InterruptedException {
+        	config = context.getConfiguration();
+        	fieldDelimRegex = config.get("field.delim.regex", ",");
+        	attributes = Utility.assertIntArrayConfigParam(config, "cads.attr.list", Utility.configDelim, "missing attribute ordinals");
+        	conditionedAttr = config.getInt("cads.conditioned.attr",-1);
+        	partIdOrdinals = Utility.intArrayFromString(config.get("cads.id.field.ordinals"),  Utility.configDelim);
+        	maxKeys = config.getInt("cads.top.k.max.keys", 100);
+        }
+        
+        @Override
+        protected void map(LongWritable key, Text value, Context context)
+            throws IOException, InterruptedException {
+            items  =  value.toString().split(fieldDelimRegex, -1);
+        	for (int attr : attributes) {
+            	outKey.initialize();
+                String condAttrVal = conditionedAttr >= 0 ?  items[conditionedAttr] : "$";
+            	if (null != partIdOrdinals) {
+            		outKey.addFromArray(items, partIdOrdinals);
+            	}
+            	outKey.add(attr, condAttrVal);
+            	
+            	TopKSketch sketch = sketches.get(outKey);
+            	if (null == sketch) {
+            		if (sketches.size() == maxKeys) {
+            			emitSketches(context);
+            		}
+            		sketch = ValueCounter.createTopKSketch(config);
+            		sketches.put(outKey.createClone(), sketch);
+            	}
+            	sketch.add(items[attr]);
+        	}
+        }
+        
+		/* (non-Javadoc)
+		 * @see org.apache.hadoop.mapreduce.Mapper#cleanup(org.apache.hadoop.mapreduce.Mapper.Context)
+		 */
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			emitSketches(context);
+		}
+		
+		/**
+		 * @param context
+		 * @throws IOException
+		 * @throws InterruptedException
+		 */
+		private void emitSketches(Context context) throws IOException, InterruptedException {
+			for (Map.Entry<Tuple, TopKSketch> entry : sketches.entrySet()) {
+				context.write(entry.getKey(), entry.getValue());
+			}
+			sketches.clear();
+		}
+	}
+
 	/**
 	 * @author pranab
 	 *
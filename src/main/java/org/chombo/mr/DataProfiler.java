@@ -0,0 +1,594 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.mr;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.chombo.stats.ValueCounter;
+import org.chombo.stats.ValueCounters;
+import org.chombo.util.Attribute;
+import org.chombo.util.BasicUtils;
+import org.chombo.util.DuplicateRemover;
+import org.chombo.util.GenericAttributeSchema;
+import org.chombo.util.RichAttribute;
+import org.chombo.util.RichAttributeSchema;
+import org.chombo.util.Tuple;
+import org.chombo.util.Utility;
+import org.codehaus.jackson.map.ObjectMapper;
+
+/**
+ * Data profiling in one pass over the data. Computes what NumericalAttrStats, StringAttrStats,
+ * MissingValueCounter (column wise), UniqueValueCounter, DataTypeInferencer and Histogram do,
+ * with one shuffle. Each profile is driven by configuration parameters of the corresponding job
+ * and written to a separate named output
+ * @author pranab
+ *
+ */
+public class DataProfiler extends Configured implements Tool {
+	private static String configDelim = ",";
+	public static final String PROF_NUM_STATS = "nas";
+	public static final String PROF_STR_STATS = "sas";
+	public static final String PROF_MISSING_VALUE = "mvc";
+	public static final String PROF_UNIQUE_VALUE = "unc";
+	public static final String PROF_DATA_TYPE = "dti";
+	public static final String PROF_HISTOGRAM = "his";
+
+	@Override
+	public int run(String[] args) throws Exception {
+        Job job = new Job(getConf());
+        String jobName = "Data profiling in one pass";
+        job.setJobName(jobName);
+
+        job.setJarByClass(DataProfiler.class);
+
+        FileInputFormat.addInputPath(job, new Path(args[0]));
+        FileOutputFormat.setOutputPath(job, new Path(args[1]));
+
+        Utility.setConfiguration(job.getConfiguration(), "chombo");
+        job.setMapperClass(DataProfiler.ProfilerMapper.class);
+        job.setReducerClass(DataProfiler.ProfilerReducer.class);
+        job.setCombinerClass(DataProfiler.ProfilerCombiner.class);
+
+        job.setMapOutputKeyClass(Tuple.class);
+        job.setMapOutputValueClass(Tuple.class);
+
+        job.setOutputKeyClass(NullWritable.class);
+        job.setOutputValueClass(Text.class);
+
+        //one output for each profile
+        String[] profiles = getProfiles(job.getConfiguration());
+        for (String profile : profiles) {
+        	MultipleOutputs.addNamedOutput(job, profile, TextOutputFormat.class, NullWritable.class, Text.class);
+        }
+
+        int numReducer = job.getConfiguration().getInt("dpr.num.reducer", -1);
+        numReducer = -1 == numReducer ? job.getConfiguration().getInt("num.reducer", 1) : numReducer;
+        job.setNumReduceTasks(numReducer);
+
+        int status =  job.waitForCompletion(true) ? 0 : 1;
+        return status;
+	}
+
+	/**
+	 * @param config
+	 * @return
+	 */
+	private static String[] getProfiles(Configuration config) {
+		String[] profiles = BasicUtils.stringArrayFromString(config.get("dpr.profile.list",
+				"nas,sas,mvc,unc,dti"), configDelim);
+		for (String profile : profiles) {
+			if (!profile.equals(PROF_NUM_STATS) && !profile.equals(PROF_STR_STATS) &&
+					!profile.equals(PROF_MISSING_VALUE) && !profile.equals(PROF_UNIQUE_VALUE) &&
+					!profile.equals(PROF_DATA_TYPE) && !profile.equals(PROF_HISTOGRAM)) {
+				throw new IllegalArgumentException("invalid profile " + profile);
+			}
+		}
+		return profiles;
+	}
+
+	/**
+	 * @author pranab
+	 *
+	 */
+	public static class ProfilerMapper extends Mapper<LongWritable, Text, Tuple, Tuple> {
+		private Tuple outKey = new Tuple();
+		private Tuple outVal = new Tuple();
+        private String fieldDelimRegex;
+        private String[] items;
+        private int[] numAttributes;
+        private int[] numIdOrdinals;
+        private int[] strAttributes;
+        private int[] strIdOrdinals;
+        private boolean missingValueProfile;
+        private int missingValueSkipCount;
+        private boolean uniqueValueProfile;
+        private int[] uniqueAttributes;
+        private int[] uniquePartIdOrdinals;
+        private int uniqueValueSkipCount;
+        private boolean dataTypeProfile;
+        private int[] dataTypeAttributes;
+        private DataTypeInferencer.TypeDetector typeDetector;
+        private RichAttributeSchema histogramSchema;
+
+        /* (non-Javadoc)
+         * @see org.apache.hadoop.mapreduce.Mapper#setup(org.apache.hadoop.mapreduce.Mapper.Context)
+         */
+        protected void setup(Context context) throws IOException, InterruptedException {
+        	Configuration config = context.getConfiguration();
+        	fieldDelimRegex = config.get("field.delim.regex", ",");
+        	String[] profiles = getProfiles(config);
+
+        	//numerical attribute stats
+        	if (ArrayUtils.contains(profiles, PROF_NUM_STATS)) {
+        		GenericAttributeSchema schema = Utility.getGenericAttributeSchema(config,  "nas.schema.file.path");
+        		numAttributes =  Utility.getAttributes("nas.attr.list", configDelim, schema, config,
+        			Attribute.DATA_TYPE_INT, Attribute.DATA_TYPE_LONG, Attribute.DATA_TYPE_DOUBLE);
+        		numIdOrdinals = Utility.intArrayFromString(config.get("nas.id.field.ordinals"), configDelim);
+        	}
+
+        	//string attribute length stats
+        	if (ArrayUtils.contains(profiles, PROF_STR_STATS)) {
+        		GenericAttributeSchema schema = Utility.getGenericAttributeSchema(config,  "sas.schema.file.path");
+        		strAttributes = Utility.getAttributes("sas.attr.list", configDelim,  schema, config,
+        			Attribute.DATA_TYPE_STRING);
+        		strIdOrdinals = Utility.intArrayFromString(config.get("sas.id.field.ordinals"), configDelim);
+        	}
+
+        	//column wise missing values
+        	missingValueProfile = ArrayUtils.contains(profiles, PROF_MISSING_VALUE);
+        	if (missingValueProfile) {
+        		int[] idOrdinals = Utility.intArrayFromString(config.get("mvc.id.field.ordinals"));
+        		missingValueSkipCount = null != idOrdinals ? idOrdinals.length : 0;
+        	}
+
+        	//unique values
+        	uniqueValueProfile = ArrayUtils.contains(profiles, PROF_UNIQUE_VALUE);
+        	if (uniqueValueProfile) {
+            	if (config.getBoolean("unc.enforce.schema", true)) {
+            		GenericAttributeSchema schema = Utility.getGenericAttributeSchema(config,  "unc.schema.file.path");
+            		uniqueAttributes = Utility.getAttributes("unc.attr.list", configDelim,  schema, config,
+            			Attribute.DATA_TYPE_CATEGORICAL, Attribute.DATA_TYPE_DATE, Attribute.DATA_TYPE_INT,
+            			Attribute.DATA_TYPE_LONG, Attribute.DATA_TYPE_STRING);
+            	} else {
+            		uniqueAttributes =  Utility.intArrayFromString(config.get("unc.attr.list"));
+            	}
+            	uniquePartIdOrdinals = Utility.intArrayFromString(config.get("unc.part.id.field.ordinals"));
+            	int[] idOrdinals = Utility.intArrayFromString(config.get("unc.id.field.ordinals"));
+            	uniqueValueSkipCount = null != uniquePartIdOrdinals ? uniquePartIdOrdinals.length : 0;
+            	uniqueValueSkipCount += null != idOrdinals ? idOrdinals.length : 0;
+        	}
+
+        	//data type
+        	dataTypeProfile = ArrayUtils.contains(profiles, PROF_DATA_TYPE);
+        	if (dataTypeProfile) {
+            	if (!config.get("dti.attr.list", "*").equals("*")) {
+            		dataTypeAttributes = Utility.intArrayFromString(config, "dti.attr.list", Utility.configDelim);
+            	}
+            	typeDetector = new DataTypeInferencer.TypeDetector(config);
+        	}
+
+        	//histogram
+        	if (ArrayUtils.contains(profiles, PROF_HISTOGRAM)) {
+                FileSystem dfs = FileSystem.get(config);
+                FSDataInputStream fs = dfs.open(new Path(config.get("histogram.schema.file.path")));
+                ObjectMapper mapper = new ObjectMapper();
+                histogramSchema = mapper.readValue(fs, RichAttributeSchema.class);
+        	}
+        }
+
+        @Override
+        protected void map(LongWritable key, Text value, Context context)
+            throws IOException, InterruptedException {
+        	//split once for all profiles
+            items  =  value.toString().split(fieldDelimRegex, -1);
+
+            if (null != numAttributes) {
+            	emitStats(PROF_NUM_STATS, numAttributes, numIdOrdinals, false, context);
+            }
+            if (null != strAttributes) {
+            	emitStats(PROF_STR_STATS, strAttributes, strIdOrdinals, true, context);
+            }
+            if (missingValueProfile) {
+            	emitMissingValues(context);
+            }
+            if (uniqueValueProfile) {
+            	emitUniqueValues(context);
+            }
+            if (dataTypeProfile) {
+            	emitDataTypes(context);
+            }
+            if (null != histogramSchema) {
+            	emitHistogramBuckets(context);
+            }
+        }
+
+        /**
+         * @param profile
+         * @param attributes
+         * @param idOrdinals
+         * @param length
+         * @param context
+         * @throws IOException
+         * @throws InterruptedException
+         */
+        private void emitStats(String profile, int[] attributes, int[] idOrdinals, boolean length, Context context)
+        	throws IOException, InterruptedException {
+        	for (int attr : attributes) {
+        		initialize(profile);
+            	if (null != idOrdinals) {
+            		outKey.addFromArray(items, idOrdinals);
+            	}
+            	outKey.add(attr);
+
+            	double val = length ? items[attr].length() : Double.parseDouble(items[attr]);
+            	outVal.add(val, val, val, val * val, 1);
+            	context.write(outKey, outVal);
+        	}
+        }
+
+        /**
+         * @param context
+         * @throws IOException
+         * @throws InterruptedException
+         */
+        private void emitMissingValues(Context context) throws IOException, InterruptedException {
+        	for (int i = missingValueSkipCount; i < items.length; ++i) {
+        		if (items[i].isEmpty()) {
+            		initialize(PROF_MISSING_VALUE);
+        			outKey.add(i);
+        			outVal.add(1);
+        			context.write(outKey, outVal);
+        		}
+        	}
+        }
+
+        /**
+         * @param context
+         * @throws IOException
+         * @throws InterruptedException
+         */
+        private void emitUniqueValues(Context context) throws IOException, InterruptedException {
+        	if (null != uniqueAttributes) {
+        		for (int attr : uniqueAttributes) {
+        			emitUniqueValue(attr, context);
+        		}
+        	} else {
+        		//variable number of columns
+        		for (int i = uniqueValueSkipCount; i < items.length; ++i) {
+        			emitUniqueValue(i, context);
+        		}
+        	}
+        }
+
+        /**
+         * @param attr
+         * @param context
+         * @throws IOException
+         * @throws InterruptedException
+         */
+        private void emitUniqueValue(int attr, Context context) throws IOException, InterruptedException {
+    		initialize(PROF_UNIQUE_VALUE);
+        	if (null != uniquePartIdOrdinals) {
+        		outKey.addFromArray(items, uniquePartIdOrdinals);
+        	}
+    		outKey.add(attr);
+    		outVal.add(items[attr]);
+        	context.write(outKey, outVal);
+        }
+
+        /**
+         * @param context
+         * @throws IOException
+         * @throws InterruptedException
+         */
+        private void emitDataTypes(Context context) throws IOException, InterruptedException {
+        	if (null != dataTypeAttributes) {
+        		for (int attr : dataTypeAttributes) {
+        			emitDataType(attr, context);
+        		}
+        	} else {
+        		for (int i = 0; i < items.length; ++i) {
+        			emitDataType(i, context);
+        		}
+        	}
+        }
+
+        /**
+         * @param attr
+         * @param context
+         * @throws IOException
+         * @throws InterruptedException
+         */
+        private void emitDataType(int attr, Context context) throws IOException, InterruptedException {
+    		initialize(PROF_DATA_TYPE);
+    		outKey.add(attr);
+    		typeDetector.detect(items[attr], outVal);
+        	context.write(outKey, outVal);
+        }
+
+        /**
+         * @param context
+         * @throws IOException
+         * @throws InterruptedException
+         */
+        private void emitHistogramBuckets(Context context) throws IOException, InterruptedException {
+            for (RichAttribute field : histogramSchema.getFields()) {
+            	String bucket = null;
+            	int ordinal = field.getOrdinal();
+            	if (field.isCategorical()){
+            		bucket = items[ordinal];
+            	} else if (field.isInteger()) {
+            		bucket = "" + Integer.parseInt(items[ordinal]) /  field.getBucketWidth();
+            	} else if (field.isDouble()) {
+            		bucket = "" + ((int)Double.parseDouble(items[ordinal])) /  field.getBucketWidth();
+            	}
+            	if (null != bucket) {
+	        		initialize(PROF_HISTOGRAM);
+	        		outKey.add(ordinal, bucket);
+	        		outVal.add(1);
+	            	context.write(outKey, outVal);
+            	}
+            }
+        }
+
+        /**
+         * @param profile
+         */
+        private void initialize(String profile) {
+        	outKey.initialize();
+        	outVal.initialize();
+        	outKey.add(profile);
+        }
+	}
+
+	/**
+	 * @author pranab
+	 *
+	 */
+	public static class ProfilerCombiner extends Reducer<Tuple, Tuple, Tuple, Tuple> {
+		private Tuple outVal = new Tuple();
+		private DuplicateRemover<String> dupRemover = new DuplicateRemover<String>();
+		private DataTypeInferencer.TypeResolver typeResolver;
+
+        /* (non-Javadoc)
+         * @see org.apache.hadoop.mapreduce.Reducer#setup(org.apache.hadoop.mapreduce.Reducer.Context)
+         */
+        protected void setup(Context context) throws IOException, InterruptedException {
+        	typeResolver = new DataTypeInferencer.TypeResolver(context.getConfiguration());
+        }
+
+        /* (non-Javadoc)
+         * @see org.apache.hadoop.mapreduce.Reducer#reduce(KEYIN, java.lang.Iterable, org.apache.hadoop.mapreduce.Reducer.Context)
+         */
+        protected void reduce(Tuple key, Iterable<Tuple> values, Context context)
+        		throws IOException, InterruptedException {
+        	String profile = key.getString(0);
+        	outVal.initialize();
+        	if (profile.equals(PROF_NUM_STATS) || profile.equals(PROF_STR_STATS)) {
+        		mergeStats(values, outVal);
+        	} else if (profile.equals(PROF_MISSING_VALUE) || profile.equals(PROF_HISTOGRAM)) {
+        		outVal.add(getCount(values));
+        	} else if (profile.equals(PROF_UNIQUE_VALUE)) {
+        		dupRemover.initialize();
+        		for (Tuple val : values) {
+        			for (int i = 0; i < val.getSize(); ++i) {
+        				dupRemover.add(val.getString(i));
+        			}
+        		}
+        		for (String uniqueValue : dupRemover.getData()) {
+        			outVal.add(uniqueValue);
+        		}
+        	} else if (profile.equals(PROF_DATA_TYPE)) {
+        		typeResolver.initialize();
+        		for (Tuple val : values) {
+        			typeResolver.add(val);
+        		}
+        		typeResolver.getTypeCounts(outVal);
+        	}
+        	context.write(key, outVal);
+        }
+	}
+
+	/**
+	 * @author pranab
+	 *
+	 */
+	public static class ProfilerReducer extends Reducer<Tuple, Tuple, NullWritable, Text> {
+		private Text outVal = new Text();
+		private Tuple stats = new Tuple();
+		private String fieldDelim;
+		private StringBuilder stBld =  new StringBuilder();
+		private MultipleOutputs<NullWritable, Text> multiOutputs;
+        private int outputPrecision;
+        private int colMissingCountMin;
+        private ValueCounters<Integer> colCounters = new ValueCounters<Integer>(false);
+		private DuplicateRemover<String> dupRemover = new DuplicateRemover<String>();
+		private boolean outputUniqueCount;
+		private DataTypeInferencer.TypeResolver typeResolver;
+		private String histFieldDelim;
+
+		/* (non-Javadoc)
+		 * @see org.apache.hadoop.mapreduce.Reducer#setup(org.apache.hadoop.mapreduce.Reducer.Context)
+		 */
+		protected void setup(Context context) throws IOException, InterruptedException {
+        	Configuration config = context.getConfiguration();
+        	fieldDelim = config.get("field.delim.out", ",");
+        	multiOutputs = new MultipleOutputs<NullWritable, Text>(context);
+        	outputPrecision = config.getInt("nas.output.prec", 3);
+        	colMissingCountMin = config.getInt("mvc.col.missing.count.min", -1);
+        	outputUniqueCount = config.getBoolean("unc.output.count", true);
+        	typeResolver = new DataTypeInferencer.TypeResolver(config);
+        	histFieldDelim = config.get("field.delim", "[]");
+		}
+
+		/* (non-Javadoc)
+		 * @see org.apache.hadoop.mapreduce.Reducer#cleanup(org.apache.hadoop.mapreduce.Reducer.Context)
+		 */
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			//column index and missing value count in descending order of count
+        	List<ValueCounter<Integer>> sortedcounters = colCounters.getSorted();
+        	for (ValueCounter<Integer> counter : sortedcounters) {
+        		int count = counter.getCount();
+        		if (colMissingCountMin == -1  || count > colMissingCountMin) {
+        			outVal.set("" + counter.getObj() + fieldDelim +count);
+        			multiOutputs.write(PROF_MISSING_VALUE, NullWritable.get(), outVal);
+        		} else {
+        			break;
+        		}
+        	}
+			multiOutputs.close();
+		}
+
+    	/* (non-Javadoc)
+    	 * @see org.apache.hadoop.mapreduce.Reducer#reduce(KEYIN, java.lang.Iterable, org.apache.hadoop.mapreduce.Reducer.Context)
+    	 */
+    	protected void reduce(Tuple key, Iterable<Tuple> values, Context context)
+        	throws IOException, InterruptedException {
+    		key.setDelim(fieldDelim);
+        	String profile = key.getString(0);
+        	if (profile.equals(PROF_MISSING_VALUE)) {
+        		colCounters.add(key.getInt(1), getCount(values));
+        	} else {
+        		stBld.delete(0, stBld.length());
+	        	if (profile.equals(PROF_NUM_STATS) || profile.equals(PROF_STR_STATS)) {
+	        		stats.initialize();
+	        		mergeStats(values, stats);
+	        		formatStats(key);
+	        	} else if (profile.equals(PROF_UNIQUE_VALUE)) {
+	        		formatUniqueValues(key, values);
+	        	} else if (profile.equals(PROF_DATA_TYPE)) {
+	        		typeResolver.initialize();
+	        		for (Tuple val : values) {
+	        			typeResolver.add(val);
+	        		}
+	        		stBld.append(typeResolver.resolve(key.getInt(1)));
+	        	} else if (profile.equals(PROF_HISTOGRAM)) {
+	        		stBld.append(key.getInt(1)).append(histFieldDelim).append(key.getString(2)).
+	        			append(histFieldDelim).append(getCount(values));
+	        	}
+	        	outVal.set(stBld.toString());
+	        	multiOutputs.write(profile, NullWritable.get(), outVal);
+        	}
+    	}
+
+    	/**
+    	 * same as NumericalAttrStats output
+    	 * @param key
+    	 */
+    	private void formatStats(Tuple key) {
+    		double sum = stats.getDouble(0);
+    		double min = stats.getDouble(1);
+    		double max = stats.getDouble(2);
+    		double sumSq = stats.getDouble(3);
+    		int totalCount = stats.getInt(4);
+    		double mean = sum / totalCount;
+    		double variance = sumSq / totalCount - mean * mean;
+    		double stdDev = Math.sqrt(variance);
+
+        	stBld.append(key.toString(1)).append(fieldDelim);
+    		stBld.append(sum).append(fieldDelim).append(Utility.formatDouble(sumSq, outputPrecision)).
+    			append(fieldDelim).append(totalCount).append(fieldDelim) ;
+    		stBld.append(Utility.formatDouble(mean, outputPrecision)).append(fieldDelim).append(Utility.formatDouble(variance, outputPrecision)).
+    			append(fieldDelim).append(Utility.formatDouble(stdDev, outputPrecision)).append(fieldDelim)  ;
+    		stBld.append(Utility.formatDouble(min, outputPrecision)).append(fieldDelim).append(Utility.formatDouble(max, outputPrecision)) ;
+    	}
+
+    	/**
+    	 * same as UniqueValueCounter output
+    	 * @param key
+    	 * @param values
+    	 */
+    	private void formatUniqueValues(Tuple key, Iterable<Tuple> values) {
+    		dupRemover.initialize();
+    		for (Tuple val : values) {
+    			for (int i = 0; i < val.getSize(); ++i) {
+    				dupRemover.add(val.getString(i));
+    			}
+    		}
+       		stBld.append(key.toString(1)).append(fieldDelim);
+       		if (outputUniqueCount) {
+	       		stBld.append(dupRemover.getSize());
+    		} else {
+	    		for (String uniqueValue : dupRemover.getData()) {
+	    			stBld.append(uniqueValue).append(fieldDelim);
+	    		}
+	    		stBld.setLength(stBld.length() - 1);
+    		}
+    	}
+	}
+
+	/**
+	 * Merges sum, min, max, sum of square and count
+	 * @param values
+	 * @param outVal
+	 */
+	private static void mergeStats(Iterable<Tuple> values, Tuple outVal) {
+		double sum = 0;
+		double min = Double.MAX_VALUE;
+		double max = -Double.MAX_VALUE;
+		double sumSq = 0;
+		int count = 0;
+		for (Tuple val : values) {
+			sum += val.getDouble(0);
+			min = Math.min(min, val.getDouble(1));
+			max = Math.max(max, val.getDouble(2));
+			sumSq += val.getDouble(3);
+			count += val.getInt(4);
+		}
+		outVal.add(sum, min, max, sumSq, count);
+	}
+
+	/**
+	 * @param values
+	 * @return
+	 */
+	private static int getCount(Iterable<Tuple> values) {
+		int count = 0;
+		for (Tuple val : values) {
+			count += val.getInt(0);
+		}
+		return count;
+	}
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) throws Exception {
+		int exitCode = ToolRunner.run(new DataProfiler(), args);
+		System.exit(exitCode);
+	}
+}
@@ -19,7 +19,6 @@ package org.chombo.mr;
 
 import java.io.IOException;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -43,9 +42,11 @@ import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.chombo.util.BaseAttribute;
 import org.chombo.util.BasicUtils;
+import org.chombo.util.DateCodec;
 import org.chombo.util.Pair;
 import org.chombo.util.Tuple;
 import org.chombo.util.Utility;
+import org.chombo.util.ValueTypeScanner;
 
 /**
  * Inferences data type of fields
@@ -105,11 +106,7 @@ public class DataTypeInferencer extends Configured implements Tool {
         private String[] items;
         private String fieldDelimRegex;
         private boolean allAttributes;
-        private long timeWindowBegin = -1;
-        private SimpleDateFormat[] dateFormats;
-        private Pattern ssnPattern;
-        private Pattern phoneNumPattern;
-        private int maxAge = -1;
+        private TypeDetector typeDetector;
         
         /* (non-Javadoc)
          * @see org.apache.hadoop.mapreduce.Mapper#setup(org.apache.hadoop.mapreduce.Mapper.Context)
@@ -122,7 +119,56 @@ public class DataTypeInferencer extends Configured implements Tool {
         	} else {
         		attributes = Utility.intArrayFromString(config, "dti.attr.list", Utility.configDelim);
         	}
-        	
+        	typeDetector = new TypeDetector(config);
+        }
+        
+        @Override
+        protected void map(LongWritable key, Text value, Context context)
+            throws IOException, InterruptedException {
+            items = value.toString().split(fieldDelimRegex, -1);
+            
+            if (allAttributes) {
+            	for (int i = 0; i < items.length; ++i) {
+            		emitOutput(i, items[i], context);
+            	}
+            } else {
+            	for (int i : attributes) {
+            		emitOutput(i, items[i], context);
+            	}
+            }
+        }
+        
+        /**
+         * @param ordinal
+         * @param value
+         * @throws InterruptedException 
+         * @throws IOException 
+         */
+        private void emitOutput(int ordinal, String value, Context context) throws IOException, InterruptedException {
+        	outKey.set(ordinal);
+        	outVal.initialize();
+        	typeDetector.detect(value, outVal);
+        	context.write(outKey, outVal);
+        }
+	}
+	
+	/**
+	 * Type match flags for a field value, as type and count pairs
+	 * @author pranab
+	 *
+	 */
+	public static class TypeDetector {
+        private long timeWindowBegin = -1;
+        private DateCodec[] dateFormats;
+        private Pattern ssnPattern;
+        private Pattern phoneNumPattern;
+        private int maxAge = -1;
+        private ValueTypeScanner scanner = new ValueTypeScanner();
+        
+        /**
+         * @param config
+         */
+        public TypeDetector(Configuration config) {
         	//epoch time
         	int epochTimeWindowYears = config.getInt("dti.epoch.time.window.years", -1);
         	if (epochTimeWindowYears > 0) {
@@ -134,9 +180,9 @@ public class DataTypeInferencer extends Configured implements Tool {
         	String[] dateFormatStrList = Utility.stringArrayFromString(config, "dti.date.formats", Utility.configDelim);
         	if (null != dateFormatStrList) {
         		int size = dateFormatStrList.length;
-        		dateFormats = new SimpleDateFormat[size];
+        		dateFormats = new DateCodec[size];
         		for(int i = 0; i < size; ++i) {
-        			dateFormats[i] = new SimpleDateFormat(dateFormatStrList[i]);
+        			dateFormats[i] = DateCodec.create(dateFormatStrList[i]);
         		}
         	}
         	
@@ -154,60 +200,42 @@ public class DataTypeInferencer extends Configured implements Tool {
         	if (config.getBoolean("dti.verify.age", true)) {
         		maxAge = config.getInt("dti.max.age", 100);
         	}
-        	
-        }
-        
-        @Override
-        protected void map(LongWritable key, Text value, Context context)
-            throws IOException, InterruptedException {
-            items = value.toString().split(fieldDelimRegex, -1);
-            
-            if (allAttributes) {
-            	for (int i = 0; i < items.length; ++i) {
-            		emitOutput(i, items[i], context);
-            	}
-            } else {
-            	for (int i : attributes) {
-            		emitOutput(i, items[i], context);
-            	}
-            }
         }
         
         /**
-         * @param ordinal
          * @param value
-         * @throws InterruptedException 
-         * @throws IOException 
+         * @param outVal
          */
-        private void emitOutput(int ordinal, String value, Context context) throws IOException, InterruptedException {
+        public void detect(String value, Tuple outVal) {
         	boolean isNumeric = false;
-        	outKey.set(ordinal);
-        	outVal.initialize();
+        	
+        	//all numeric types in one pass without exceptions
+        	scanner.scan(value);
         	
         	//epoch time
-        	boolean isEpoch = timeWindowBegin > 0 && BasicUtils.isLong(value) && Long.parseLong(value) > timeWindowBegin;
+        	boolean isEpoch = timeWindowBegin > 0 && scanner.isEpochTime(timeWindowBegin);
         	outVal.add(EPOCH_TIME_TYPE, isEpoch ? 1 : 0);
         	
         	//integer
-        	boolean isInt = BasicUtils.isInt(value);
+        	boolean isInt = scanner.isInt();
         	outVal.add(INT_TYPE,isInt ? 1 : 0);
         	isNumeric = isInt;
         	
         	//age
-        	boolean isAge = isInt && maxAge > 0 && Integer.parseInt(value) <= maxAge;
+        	boolean isAge = isInt && maxAge > 0 && scanner.getIntValue() <= maxAge;
        		outVal.add(AGE_TYPE, isAge ? 1 : 0);	
        	        	
         	//floating point
-        	boolean isFloat = BasicUtils.isFloat(value);
+        	boolean isFloat = scanner.isFloat();
         	outVal.add(FLOAT_TYPE, isFloat ? 1 : 0);
         	isNumeric = isFloat;
         	
-        	//date type
+        	//date type, only values with digits for numeric date formats
         	boolean isDate = false;
         	if (!isNumeric){
- 		    	for (SimpleDateFormat dateFormat : dateFormats) {
+ 		    	for (DateCodec dateFormat : dateFormats) {
 		    		//date if at least 1 format is able to parse
-		    		isDate = BasicUtils.isDate(value, dateFormat);
+		    		isDate = (scanner.isDateCandidate() || !dateFormat.isNumericLayout()) && dateFormat.isValid(value);
 		    		if (isDate)
 		    			break;
 		    	}
@@ -237,8 +265,6 @@ public class DataTypeInferencer extends Configured implements Tool {
         	
         	//any type
         	outVal.add(ANY_TYPE, 1);
-        	
-        	context.write(outKey, outVal);
         }
 	}
 	
@@ -248,15 +274,13 @@ public class DataTypeInferencer extends Configured implements Tool {
 	 */
 	public static class InferenceCombiner extends Reducer<IntWritable, Tuple,IntWritable, Tuple> {
 		private Tuple outVal = new Tuple();
-		private Map<Integer, Integer> typeCounts = new HashMap<Integer, Integer>();
+		private TypeResolver typeResolver;
 		
 		/* (non-Javadoc)
 		 * @see org.apache.hadoop.mapreduce.Reducer#setup(org.apache.hadoop.mapreduce.Reducer.Context)
 		 */
 		protected void setup(Context context) throws IOException, InterruptedException {
-        	for (int t = NUM_TYPES-1; t >= 0; --t) {
-        		typeCounts.put(t, 0);
-        	}
+			typeResolver = new TypeResolver(context.getConfiguration());
 		}
 		
         /* (non-Javadoc)
@@ -264,22 +288,13 @@ public class DataTypeInferencer extends Configured implements Tool {
          */
         protected void reduce(IntWritable  key, Iterable<Tuple> values, Context context)
         		throws IOException, InterruptedException {
-        	for (int t = NUM_TYPES-1; t >= 0; --t) {
-        		typeCounts.put(t, 0);
-        	}
+        	typeResolver.initialize();
     		for (Tuple val : values) {
-            	int offset = 0;
-    			for (int i = 0; i < NUM_TYPES; ++i) {
-    				int type = val.getInt(offset++);
-    				int count =  val.getInt(offset++);
-    				typeCounts.put(type, typeCounts.get(type) + count);
-    			}
+    			typeResolver.add(val);
     		}
     		
     		outVal.initialize();
-    		for (int t = NUM_TYPES-1; t >= 0; --t) {
-    			outVal.add(t, typeCounts.get(t));
-    		}
+    		typeResolver.getTypeCounts(outVal);
         	context.write(key, outVal);
         }	
 	}
@@ -290,7 +305,36 @@ public class DataTypeInferencer extends Configured implements Tool {
 	*/
 	public static class InferenceReducer extends Reducer<IntWritable, Tuple, NullWritable, Text> {
 		protected Text outVal = new Text();
-		protected String fieldDelim;
+		private TypeResolver typeResolver;
+
+		/* (non-Javadoc)
+		 * @see org.apache.hadoop.mapreduce.Reducer#setup(org.apache.hadoop.mapreduce.Reducer.Context)
+		 */
+		protected void setup(Context context) throws IOException, InterruptedException {
+			typeResolver = new TypeResolver(context.getConfiguration());
+		}
+	   	
+		/* (non-Javadoc)
+		 * @see org.apache.hadoop.mapreduce.Reducer#reduce(KEYIN, java.lang.Iterable, org.apache.hadoop.mapreduce.Reducer.Context)
+	 	*/
+		protected void reduce(IntWritable  key, Iterable<Tuple> values, Context context)
+			throws IOException, InterruptedException {
+        	typeResolver.initialize();
+    		for (Tuple val : values) {
+    			typeResolver.add(val);
+    		}
+    		outVal.set(typeResolver.resolve(key.get()));
+			context.write(NullWritable.get(), outVal);
+		}
+	}
+	
+	/**
+	 * Aggregates type counts and finds type of a field 
+	 * @author pranab
+	 *
+	 */
+	public static class TypeResolver {
+		private String fieldDelim;
 		private int ambiguityThresholdPercent;
 		private Map<Integer, Integer> typeCounts = new HashMap<Integer, Integer>();
 		private Map<Integer, String> typeNames = new HashMap<Integer, String>();
@@ -302,16 +346,13 @@ public class DataTypeInferencer extends Configured implements Tool {
 		private int ambiguityThreshold;
 		private StringBuilder stBld =  new StringBuilder();
 
-		/* (non-Javadoc)
-		 * @see org.apache.hadoop.mapreduce.Reducer#setup(org.apache.hadoop.mapreduce.Reducer.Context)
+		/**
+		 * @param config
 		 */
-		protected void setup(Context context) throws IOException, InterruptedException {
-			Configuration config = context.getConfiguration();
+		public TypeResolver(Configuration config) {
 			fieldDelim = config.get("field.delim.out", ",");
 			ambiguityThresholdPercent = config.getInt("dti.ambiguity.threshold.percent", 90);
-        	for (int t = NUM_TYPES-1; t >= 0; --t) {
-        		typeCounts.put(t, 0);
-        	}
+			initialize();
         	
         	//type names
         	typeNames.put(STRING_TYPE, BaseAttribute.DATA_TYPE_INT);
@@ -323,25 +364,43 @@ public class DataTypeInferencer extends Configured implements Tool {
         	typeNames.put(PHONE_NUM_TYPE, BaseAttribute.DATA_TYPE_PHONE_NUM);
         	typeNames.put(AGE_TYPE, BaseAttribute.DATA_TYPE_AGE);
 		}
-	   	
-		/* (non-Javadoc)
-		 * @see org.apache.hadoop.mapreduce.Reducer#reduce(KEYIN, java.lang.Iterable, org.apache.hadoop.mapreduce.Reducer.Context)
-	 	*/
-		protected void reduce(IntWritable  key, Iterable<Tuple> values, Context context)
-			throws IOException, InterruptedException {
+		
+		/**
+		 * 
+		 */
+		public void initialize() {
 			isAmbiguous = false;
         	for (int t = NUM_TYPES-1; t >= 0; --t) {
         		typeCounts.put(t, 0);
         	}
-    		for (Tuple val : values) {
-            	int offset = 0;
-    			for (int i = 0; i < NUM_TYPES; ++i) {
-    				int type = val.getInt(offset++);
-    				int count =  val.getInt(offset++);
-    				typeCounts.put(type, typeCounts.get(type) + count);
-    			}
+		}
+		
+		/**
+		 * @param val type and count pairs
+		 */
+		public void add(Tuple val) {
+        	int offset = 0;
+			for (int i = 0; i < NUM_TYPES; ++i) {
+				int type = val.getInt(offset++);
+				int count =  val.getInt(offset++);
+				typeCounts.put(type, typeCounts.get(type) + count);
+			}
+		}
+		
+		/**
+		 * @param outVal
+		 */
+		public void getTypeCounts(Tuple outVal) {
+    		for (int t = NUM_TYPES-1; t >= 0; --t) {
+    			outVal.add(t, typeCounts.get(t));
     		}
-    		
+		}
+		
+		/**
+		 * @param ordinal
+		 * @return field ordinal and type
+		 */
+		public String resolve(int ordinal) {
     		//find type
     		int type = STRING_TYPE;
     		anyCount = typeCounts.get(ANY_TYPE);
@@ -402,14 +461,12 @@ public class DataTypeInferencer extends Configured implements Tool {
     		}
     		
     		stBld.delete(0, stBld.length());
-    		stBld.append(key.get()).append(fieldDelim).append(typeNames.get(type));
+    		stBld.append(ordinal).append(fieldDelim).append(typeNames.get(type));
     		if (isAmbiguous) {
     			stBld.append(" (ambiguous with correctness probability ").
     				append(BasicUtils.formatDouble(discoveryProb)).append(" ");
     		}
-    		
-    		outVal.set(stBld.toString());
-			context.write(NullWritable.get(), outVal);
+    		return stBld.toString();
 		}
 		
 		/**
@@ -17,13 +17,24 @@
 
 package org.chombo.mr;
 
+import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.filecache.DistributedCache;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.NullWritable;
@@ -37,18 +48,24 @@ import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.chombo.util.AttributeFilter;
+import org.chombo.util.BigTupleList;
+import org.chombo.util.BloomFilter;
+import org.chombo.util.DelimitedFieldTokenizer;
 import org.chombo.util.SecondarySort;
 import org.chombo.util.TextInt;
 import org.chombo.util.Tuple;
 import org.chombo.util.Utility;
 
 /**
- * Inner joins two sets of records. Join can be done with one or more keys
+ * Inner joins two sets of records. Join can be done with one or more keys. Optionally
+ * joins map side when the first set is small enough to be broadcast to all mappers. In skew
+ * mode, hot keys of the second set are salted across multiple reducers
  * @author pranab
  *
  */
 public class Joiner extends Configured implements Tool {
 		private static String configDelim = ",";
+		private static final String SALT_DELIM = "\u0001";
 
 		@Override
 		public int run(String[] args) throws Exception {
@@ -62,27 +79,222 @@ public class Joiner extends Configured implements Tool {
 	        FileOutputFormat.setOutputPath(job, new Path(args[1]));
 
 	        Utility.setConfiguration(job.getConfiguration());
+	        Configuration config = job.getConfiguration();
 	        
-	        job.setMapperClass(Joiner.JoinerMapper.class);
-	        job.setReducerClass(Joiner.JoinerReducer.class);
-
-	        job.setMapOutputKeyClass(TextInt.class);
-	        job.setMapOutputValueClass(Tuple.class);
-
 	        job.setOutputKeyClass(NullWritable.class);
 	        job.setOutputValueClass(Text.class);
 
-	        job.setGroupingComparatorClass(SecondarySort.TextIntIdPairGroupComprator.class);
-	        job.setPartitionerClass(SecondarySort.TextIntIdPairTuplePartitioner.class);
+	        //left outer join needs all second set records, not available to any one mapper
+	        boolean broadcastJoin = config.getBoolean("joi.broadcast.join", false) && 
+	        		null == createDefaultValue(config, "joi.second.set.default.value", "1") && setBroadcastJoin(job);
+	        if (broadcastJoin) {
+	        	//map only join, falls back to reduce side join if first set too big
+	        	job.setMapperClass(Joiner.BroadcastJoinMapper.class);
+	        	job.setNumReduceTasks(0);
+	        } else {
+		        job.setMapperClass(Joiner.JoinerMapper.class);
+		        job.setReducerClass(Joiner.JoinerReducer.class);
+	
+		        job.setMapOutputKeyClass(TextInt.class);
+		        job.setMapOutputValueClass(Tuple.class);
+	
+		        job.setGroupingComparatorClass(SecondarySort.TextIntIdPairGroupComprator.class);
+		        job.setPartitionerClass(SecondarySort.TextIntIdPairTuplePartitioner.class);
+	
+		        int numReducer = config.getInt("joi.num.reducer", -1);
+		        numReducer = -1 == numReducer ? config.getInt("num.reducer", 1) : numReducer;
+		        job.setNumReduceTasks(numReducer);
+		        
+		        if (config.getBoolean("joi.skew.join", false)) {
+		        	//salting hot keys
+		        	if (config.getInt("joi.skew.num.salts", -1) < 0) {
+		        		config.setInt("joi.skew.num.salts", numReducer);
+		        	}
+		        	setHotKeys(job);
+		        }
 
-	        int numReducer = job.getConfiguration().getInt("joi.num.reducer", -1);
-	        numReducer = -1 == numReducer ? job.getConfiguration().getInt("num.reducer", 1) : numReducer;
-	        job.setNumReduceTasks(numReducer);
+		        if (config.getBoolean("joi.bloom.filter", false) &&
+		        		null == createDefaultValue(config, "joi.first.set.default.value", "0")) {
+		        	//semi join pruning of second set, not valid for right outer join
+		        	setBloomFilter(job);
+		        }
+	        }
 	        
 	        int status =  job.waitForCompletion(true) ? 0 : 1;
 	        return status;
 		}
 		
+		/**
+		 * Sets up broadcast join if the estimated in memory size of the first set is within the memory 
+		 * budget. First set files go to the distributed cache and only second set files remain as job input
+		 * @param job
+		 * @return true if broadcast join is feasible
+		 * @throws IOException
+		 */
+		private boolean setBroadcastJoin(Job job) throws IOException {
+			Configuration config = job.getConfiguration();
+        	long maxSize = (long)config.getInt("joi.broadcast.max.size.mb", 64) * 1024 * 1024;
+        	
+        	//strings as UTF-16, tuple, list and hash map overhead
+        	double expansionFactor = Double.parseDouble(config.get("joi.broadcast.heap.expansion.factor", "6.0"));
+			List<Path> firstSetFiles = new ArrayList<Path>();
+			List<Path> secondSetFiles = new ArrayList<Path>();
+			long firstSetSize = Utility.listInputFiles(job, config.get("joi.first.type.prefix", "first"), 
+					firstSetFiles, secondSetFiles);
+			
+			boolean broadcast = !firstSetFiles.isEmpty() && !secondSetFiles.isEmpty() && 
+					firstSetSize * expansionFactor <= maxSize;
+			if (broadcast) {
+				for (Path firstSetFile : firstSetFiles) {
+					DistributedCache.addCacheFile(firstSetFile.toUri(), config);
+				}
+				FileInputFormat.setInputPaths(job, secondSetFiles.toArray(new Path[secondSetFiles.size()]));
+			}
+			return broadcast;
+		}
+		
+		/**
+		 * Builds bloom filter over first set join keys, used by mappers to drop second set
+		 * records that can not join
+		 * @param job
+		 * @throws IOException
+		 */
+		private void setBloomFilter(Job job) throws IOException {
+			Configuration config = job.getConfiguration();
+			List<Path> firstSetFiles = new ArrayList<Path>();
+			List<Path> secondSetFiles = new ArrayList<Path>();
+			Utility.listInputFiles(job, config.get("joi.first.type.prefix", "first"), firstSetFiles, secondSetFiles);
+
+			String fieldDelimRegex = config.get("field.delim.regex", ",");
+			int[] keyFieldFirst = Utility.intArrayFromString(config.get("joi.key.field.first"), fieldDelimRegex );
+			SemiJoinFilter.setup(job, "joi", firstSetFiles, keyFieldFirst, config.get("field.delim", ","),
+					config.getBoolean("joi.sort.key.fields", false),
+					createAttributeFilter(config, "joi.first.set.filter"));
+		}
+
+		/**
+		 * Sets hot keys of the second set for skew join. Hot keys are either provided as a list or file, 
+		 * or found by sampling the beginning of each second set file
+		 * @param job
+		 * @throws IOException
+		 */
+		private void setHotKeys(Job job) throws IOException {
+			Configuration config = job.getConfiguration();
+			String hotKeyDelim = config.get("joi.hot.key.delim", ";");
+			if (null == config.get("joi.hot.keys")) {
+				List<String> hotKeys = null;
+				if (null != config.get("joi.hot.key.file.path")) {
+					hotKeys = Utility.getFileLines(config, "joi.hot.key.file.path");
+				} else {
+					hotKeys = sampleHotKeys(job);
+				}
+				config.set("joi.hot.keys", StringUtils.join(hotKeys, hotKeyDelim));
+			}
+		}
+		
+		/**
+		 * Samples second set key frequencies
+		 * @param job
+		 * @return keys whose share of sampled records exceeds threshold
+		 * @throws IOException
+		 */
+		private List<String> sampleHotKeys(Job job) throws IOException {
+			Configuration config = job.getConfiguration();
+			List<Path> firstSetFiles = new ArrayList<Path>();
+			List<Path> secondSetFiles = new ArrayList<Path>();
+			Utility.listInputFiles(job, config.get("joi.first.type.prefix", "first"), firstSetFiles, secondSetFiles);
+			
+			String fieldDelimRegex = config.get("field.delim.regex", ",");
+			String fieldDelimOut = config.get("field.delim", ",");
+			String hotKeyDelim = config.get("joi.hot.key.delim", ";");
+			DelimitedFieldTokenizer tokenizer = new DelimitedFieldTokenizer(fieldDelimRegex).
+					withGuard(config.get("field.delim.guard"));
+			int[] keyFieldSecond = Utility.intArrayFromString(config.get("joi.key.field.second"), fieldDelimRegex ); 
+			boolean sortKeyFields = config.getBoolean("joi.sort.key.fields", false);
+			AttributeFilter secondSetAttrFilter = createAttributeFilter(config, "joi.second.set.filter");
+			
+			//sample from each file
+			int sampleSize = config.getInt("joi.skew.sample.size", 100000);
+			int perFileSampleSize = secondSetFiles.isEmpty() ? 0 : Math.max(sampleSize / secondSetFiles.size(), 1);
+			Map<String, Integer> keyCounts = new HashMap<String, Integer>();
+			int sampleCount = 0;
+			for (Path secondSetFile : secondSetFiles) {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(
+						secondSetFile.getFileSystem(config).open(secondSetFile), StandardCharsets.UTF_8));
+				String line = null;
+				int fileSampleCount = 0;
+				while(fileSampleCount < perFileSampleSize && (line = reader.readLine()) != null) {
+	        		byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+	        		tokenizer.tokenize(bytes, bytes.length);
+	            	if (null == secondSetAttrFilter || secondSetAttrFilter.evaluate(tokenizer.getItems())) {
+	            		String joinKey = tokenizer.extractFields(keyFieldSecond, fieldDelimOut, sortKeyFields);
+	            		Integer count = keyCounts.get(joinKey);
+	            		keyCounts.put(joinKey, null == count ? 1 : count + 1);
+	            		++fileSampleCount;
+	            	}
+				}
+				reader.close();
+				sampleCount += fileSampleCount;
+			}
+			
+			//keys above threshold
+			double minShare = Double.parseDouble(config.get("joi.skew.hot.key.min.share", "0.01"));
+			List<String> hotKeys = new ArrayList<String>();
+			for (Map.Entry<String, Integer> entry : keyCounts.entrySet()) {
+				if (entry.getValue() > minShare * sampleCount && !entry.getKey().contains(hotKeyDelim)) {
+					hotKeys.add(entry.getKey());
+				}
+			}
+			return hotKeys;
+		}
+		
+		/**
+		 * @param config
+		 * @return hot keys for skew join
+		 */
+		public static Set<String> getHotKeys(Configuration config) {
+			Set<String> hotKeys = new HashSet<String>();
+			String hotKeyList = config.get("joi.hot.keys");
+			if (!StringUtils.isEmpty(hotKeyList)) {
+	    		for (String hotKey : hotKeyList.split(Pattern.quote(config.get("joi.hot.key.delim", ";")))) {
+	    			hotKeys.add(hotKey);
+	    		}
+			}
+			return hotKeys;
+		}
+		
+		/**
+		 * @param config
+		 * @param defaultValueParam
+		 * @param setPrefix
+		 * @return default tuple or null if not configured
+		 */
+		public static Tuple createDefaultValue(Configuration config, String defaultValueParam, String setPrefix) {
+			Tuple defaultValue = null;
+        	String defaultValueSt = config.get(defaultValueParam);
+        	if(!StringUtils.isBlank(defaultValueSt)) {
+        		defaultValue = new  Tuple();
+        		Utility.createTuple(defaultValueSt, defaultValue);
+        		defaultValue.prepend(setPrefix);
+        	}
+        	return defaultValue;
+		}
+		
+		/**
+		 * @param config
+		 * @param filterParam
+		 * @return filter or null if not configured
+		 */
+		public static AttributeFilter createAttributeFilter(Configuration config, String filterParam) {
+			AttributeFilter attrFilter = null;
+			String filter = config.get(filterParam);
+			if (null != filter) {
+				attrFilter = new AttributeFilter(filter).
+					withAdaptiveOrdering(config.getBoolean("joi.filter.adaptive.ordering", false));
+			}
+			return attrFilter;
+		}
+		
 		/**
 		 * @author pranab
 		 *
@@ -100,6 +312,10 @@ public class Joiner extends Configured implements Tool {
 	        private int[] secondSetProjectedFields ;
 	        private AttributeFilter firstSetAttrFilter;
 	        private AttributeFilter secondSetAttrFilter;
+	        private DelimitedFieldTokenizer tokenizer;
+	        private Map<String, Integer> hotKeySalts;
+	        private int numSalts;
+	        private BloomFilter firstSetKeyFilter;
 	        
 	        /* (non-Javadoc)
 	         * @see org.apache.hadoop.mapreduce.Mapper#setup(org.apache.hadoop.mapreduce.Mapper.Context)
@@ -108,6 +324,7 @@ public class Joiner extends Configured implements Tool {
 	        	Configuration config = context.getConfiguration();
 	        	fieldDelimRegex = config.get("field.delim.regex", ",");
 	        	fieldDelimOut = config.get("field.delim", ",");
+	        	tokenizer = new DelimitedFieldTokenizer(fieldDelimRegex).withGuard(config.get("field.delim.guard"));
 	        	String firstTypePrefix = config.get("joi.first.type.prefix", "first");
 	        	isFirstTypeSplit = ((FileSplit)context.getInputSplit()).getPath().getName().startsWith(firstTypePrefix);
 	        	keyFieldFirst = Utility.intArrayFromString(config.get("joi.key.field.first"), fieldDelimRegex ); 
@@ -120,31 +337,52 @@ public class Joiner extends Configured implements Tool {
 	        	firstSetProjectedFields = Utility.intArrayFromString(config.get("joi.first.set.projected.fields"), configDelim);
 	        	secondSetProjectedFields = Utility.intArrayFromString(config.get("joi.second.set.projected.fields"), configDelim);
 	        	
-	        	String firstSetFilter = config.get("joi.first.set.filter");
-	        	if (null  !=   firstSetFilter) {
-	        		firstSetAttrFilter = new AttributeFilter(firstSetFilter);
+	        	firstSetAttrFilter = createAttributeFilter(config, "joi.first.set.filter");
+	        	secondSetAttrFilter = createAttributeFilter(config, "joi.second.set.filter");
+	        	
+	        	//hot keys for skew join
+	        	if (config.getBoolean("joi.skew.join", false)) {
+	        		hotKeySalts = new HashMap<String, Integer>();
+	        		for (String hotKey : getHotKeys(config)) {
+	        			hotKeySalts.put(hotKey, 0);
+	        		}
+	        		numSalts = config.getInt("joi.skew.num.salts", 1);
 	        	}
 	        	
-	        	String secondSetFilter = config.get("joi.second.set.filter");
-	        	if (null  !=   secondSetFilter) {
-	        		secondSetAttrFilter = new AttributeFilter(secondSetFilter);
+	        	//first set key bloom filter for semi join
+	        	if (!isFirstTypeSplit) {
+	        		firstSetKeyFilter = SemiJoinFilter.load(config);
 	        	}
 	       }
 
+	        /* (non-Javadoc)
+	         * @see org.apache.hadoop.mapreduce.Mapper#cleanup(org.apache.hadoop.mapreduce.Mapper.Context)
+	         */
+	        protected void cleanup(Context context) throws IOException, InterruptedException {
+	        	if (context.getConfiguration().getBoolean("joi.filter.pass.rate.counters", false)) {
+	        		AttributeFilter attrFilter = isFirstTypeSplit ? firstSetAttrFilter : secondSetAttrFilter;
+	        		if (null != attrFilter) {
+	        			attrFilter.reportPassRates(context);
+	        		}
+	        	}
+	        }
+
 	        @Override
 	        protected void map(LongWritable key, Text value, Context context)
 	            throws IOException, InterruptedException {
-	            String[] items  =  value.toString().split(fieldDelimRegex, -1);
+	            tokenizer.tokenize(value);
 	            boolean toEmit = false;
+	            String joinKey = null;
 	            //key fields as key and remaining as value
 	            if (isFirstTypeSplit) {
-	            	if (null == firstSetAttrFilter || firstSetAttrFilter.evaluate(items)) {
-		            	outKey.set(Utility.extractFields(items , keyFieldFirst, fieldDelimOut, sortKeyFields) , 0);
+	            	if (null == firstSetAttrFilter || firstSetAttrFilter.evaluate(tokenizer.getItems())) {
+	            		joinKey = tokenizer.extractFields(keyFieldFirst, fieldDelimOut, sortKeyFields);
+		            	outKey.set(joinKey, 0);
 		            	
 		            	if (null == firstSetProjectedFields) {
-		            		Utility.createStringTuple(items, keyFieldFirst, outVal, false); 
+		            		tokenizer.createStringTuple(keyFieldFirst, outVal, false); 
 		            	} else {
-		            		Utility.createStringTuple(items, firstSetProjectedFields, outVal, true); 
+		            		tokenizer.createStringTuple(firstSetProjectedFields, outVal, true); 
 		            	}
 		            	outVal.prepend("0");
 	   	    			context.getCounter("Join stats", "left set count").increment(1);
@@ -152,21 +390,44 @@ public class Joiner extends Configured implements Tool {
 	            	}
    	    			
 	            } else {
-	            	if (null == secondSetAttrFilter || secondSetAttrFilter.evaluate(items)) {
-		            	outKey.set(Utility.extractFields(items , keyFieldSecond, fieldDelimOut, sortKeyFields) , 1);
-	
-		            	if (null == secondSetProjectedFields) {
-		            		Utility.createStringTuple(items, keyFieldSecond, outVal, false); 
-		            	} else {
-		            		Utility.createStringTuple(items, secondSetProjectedFields, outVal, true); 
-		            	}
-		            	outVal.prepend("1");
-	   	    			context.getCounter("Join stats", "right set count").increment(1);
-	   	    			toEmit = true;
+	            	if (null == secondSetAttrFilter || secondSetAttrFilter.evaluate(tokenizer.getItems())) {
+	            		joinKey = tokenizer.extractFields(keyFieldSecond, fieldDelimOut, sortKeyFields);
+	            		if (null != firstSetKeyFilter && !firstSetKeyFilter.mightContain(joinKey)) {
+	            			//can not have matching first set record
+	   	    				context.getCounter("Join stats", "right set pruned count").increment(1);
+	            		} else {
+			            	outKey.set(joinKey, 1);
+		
+			            	if (null == secondSetProjectedFields) {
+			            		tokenizer.createStringTuple(keyFieldSecond, outVal, false); 
+			            	} else {
+			            		tokenizer.createStringTuple(secondSetProjectedFields, outVal, true); 
+			            	}
+			            	outVal.prepend("1");
+		   	    			context.getCounter("Join stats", "right set count").increment(1);
+		   	    			toEmit = true;
+	            		}
 		            }
 	            }
 	            if (toEmit) {
-	            	context.write(outKey, outVal);
+	            	Integer salt = null != hotKeySalts ? hotKeySalts.get(joinKey) : null;
+	            	if (null != salt) {
+	            		if (isFirstTypeSplit) {
+	            			//replicate to all salts
+	            			for (int i = 0; i < numSalts; ++i) {
+	            				outKey.set(joinKey + SALT_DELIM + i, 0);
+	            				context.write(outKey, outVal);
+	            			}
+	            		} else {
+	            			//round robin across salts, always starting with salt 0 
+	            			outKey.set(joinKey + SALT_DELIM + salt, 1);
+	            			hotKeySalts.put(joinKey, (salt + 1) % numSalts);
+	            			context.write(outKey, outVal);
+	   	    				context.getCounter("Join stats", "right set salted count").increment(1);
+	            		}
+	            	} else {
+	            		context.write(outKey, outVal);
+	            	}
 	            }
 	        }
 		}
@@ -177,19 +438,23 @@ public class Joiner extends Configured implements Tool {
 	     */
 	    public static class JoinerReducer extends Reducer<TextInt, Tuple, NullWritable, Text> {
 			private Text outVal = new Text();
-	    	private List<Tuple> fistTypeList = new ArrayList<Tuple>();
+	    	private BigTupleList fistTypeList;
+	    	private List<Tuple> secondTypeBatch = new ArrayList<Tuple>();
+	    	private int maxInMemory;
 			private int[]  keyFieldFirst;
 			private int[]  keyFieldSecond;
 	        private String fieldDelimRegex;
 			private String fieldDelimOut;
 			private Tuple secondType;
-			private StringBuilder stBld = new  StringBuilder();
-			private boolean outputKeyAtBeg;
-			private boolean outputFirstType;
-			private boolean outputSecondType;
+			private JoinedRecordFormatter formatter;
 			private int secondSetCount;
 	    	private Tuple firstTypeDefaultValue;
 	    	private Tuple secondTypeDefaultValue;
+	    	private Set<String> hotKeys;
+	    	private String joinKey;
+	    	private boolean saltedReplica;
+	    	private long recordCount;
+	    	private boolean reducerLoadCounter;
 	    	
 	        /* (non-Javadoc)
 	         * @see org.apache.hadoop.mapreduce.Reducer#setup(org.apache.hadoop.mapreduce.Reducer.Context)
@@ -200,74 +465,359 @@ public class Joiner extends Configured implements Tool {
 	        	fieldDelimOut = config.get("field.delim", ",");
 	        	keyFieldFirst = Utility.intArrayFromString(context.getConfiguration().get("joi.key.field.first"), fieldDelimRegex ); 
 	        	keyFieldSecond = Utility.intArrayFromString(context.getConfiguration().get("joi.key.field.second"), fieldDelimRegex ); 
-	        	outputKeyAtBeg = config.getBoolean("joi.output.key.at.begin",true);
-	        	outputFirstType = config.getBoolean("joi.output.first.type",true);
-	        	outputSecondType = config.getBoolean("joi.output.second.type",true);
-
-	        	String firstTypeDefaultValueSt = config.get("joi.first.set.default.value");
-	        	if(!StringUtils.isBlank(firstTypeDefaultValueSt)) {
-	        		firstTypeDefaultValue = new  Tuple();
-	        		Utility.createTuple(firstTypeDefaultValueSt, firstTypeDefaultValue);
-	        		firstTypeDefaultValue.prepend("0");
-	        	}
+	        	formatter = new JoinedRecordFormatter(config);
+	        	firstTypeDefaultValue = createDefaultValue(config, "joi.first.set.default.value", "0");
+	        	secondTypeDefaultValue = createDefaultValue(config, "joi.second.set.default.value", "1");
 	        	
-	        	String secondTypeDefaultValueSt = config.get("joi.second.set.default.value");
-	        	if(!StringUtils.isBlank(secondTypeDefaultValueSt)) {
-	        		secondTypeDefaultValue = new  Tuple();
-	        		Utility.createTuple(secondTypeDefaultValueSt, secondTypeDefaultValue);
-	        		secondTypeDefaultValue.prepend("1");
+	        	//first set spills to local disk beyond threshold
+	        	maxInMemory = config.getInt("joi.max.in.memory.tuples", 100000);
+	        	fistTypeList = new BigTupleList(maxInMemory, config.get("joi.spill.dir", System.getProperty("java.io.tmpdir")));
+	        	if (config.getBoolean("joi.skew.join", false)) {
+	        		hotKeys = getHotKeys(config);
+	        		
+	        		//one counter per reducer, only for small number of reducers
+	        		reducerLoadCounter = config.getBoolean("joi.skew.reducer.load.counter", false);
 	        	}
 	       }
+	        
+	        /* (non-Javadoc)
+	         * @see org.apache.hadoop.mapreduce.Reducer#cleanup(org.apache.hadoop.mapreduce.Reducer.Context)
+	         */
+	        protected void cleanup(Context context) throws IOException, InterruptedException {
+	        	fistTypeList.clear();
+	        	if (reducerLoadCounter) {
+	        		//per reducer load to verify balance
+	        		context.getCounter("Reducer load", "reducer-" + context.getTaskAttemptID().getTaskID().getId()).
+	        			increment(recordCount);
+	        	}
+	        }
 
 	        /* (non-Javadoc)
 	         * @see org.apache.hadoop.mapreduce.Reducer#reduce(KEYIN, java.lang.Iterable, org.apache.hadoop.mapreduce.Reducer.Context)
 	         */
 	        protected void reduce(TextInt key, Iterable<Tuple> values, Context context)
 	        	throws IOException, InterruptedException {
-	        	fistTypeList.clear();
+	        	fistTypeList.open(BigTupleList.Mode.Write);
+	        	boolean firstTypeDone = false;
+	        	secondTypeBatch.clear();
 	        	secondSetCount = 0;
+	        	joinKey = key.getFirst().toString();
+	        	saltedReplica = false;
+	        	int pos = null != hotKeys ? joinKey.lastIndexOf(SALT_DELIM) : -1;
+	        	if (pos >= 0 && hotKeys.contains(joinKey.substring(0, pos))) {
+	        		saltedReplica = Integer.parseInt(joinKey.substring(pos + SALT_DELIM.length())) > 0;
+	        		joinKey = joinKey.substring(0, pos);
+	        	}
 	        	for (Tuple value : values){
+	        		++recordCount;
 	        		if (value.startsWith("0")) {
-	        			fistTypeList.add(value.createClone());
+	        			fistTypeList.write(value.createClone());
 	        		} else {
+	        			if (!firstTypeDone) {
+	        				closeFirstTypeList(context);
+	        				firstTypeDone = true;
+	        			}
 	        			secondType = value;
 	        			++secondSetCount;
- 	        			for (Tuple firstType :  fistTypeList) {
- 	        				setOutValue(key,  firstType, secondType);
-	    	 				context.write(NullWritable.get(), outVal);
+	        			if (fistTypeList.isSpilled()) {
+	        				//block nested loop, one pass over spilled first set for a batch of second set
+	        				secondTypeBatch.add(secondType.createClone());
+	        				if (secondTypeBatch.size() == maxInMemory) {
+	        					joinSecondTypeBatch(key, context);
+	        				}
+	        			} else {
+	        				joinFirstTypes(key, secondType, context);
 	        			}
  	        			
  	        			//if first set empty use default, basically right outer join 
- 	        			if (fistTypeList.isEmpty() && null != firstTypeDefaultValue) {
+ 	        			if (fistTypeList.getSize() == 0 && null != firstTypeDefaultValue) {
 	        				setOutValue(key,  firstTypeDefaultValue, secondType);
 	    	 				context.write(NullWritable.get(), outVal);
 		   	    			context.getCounter("Join stats", "Right outer  join").increment(1);
  	        			}
 	        		}
 	        	}
+	        	if (!firstTypeDone) {
+	        		closeFirstTypeList(context);
+	        	}
+	        	if (!secondTypeBatch.isEmpty()) {
+	        		joinSecondTypeBatch(key, context);
+	        	}
 	        	
 	        	//if second set is empty, use default value if provided, basically left outer join
-	        	if (secondSetCount == 0 && null != secondTypeDefaultValue)  {
-	        		secondType = secondTypeDefaultValue;
-	        			for (Tuple firstType :  fistTypeList) {
- 	        				setOutValue(key,  firstType, secondType);
-	    	 				context.write(NullWritable.get(), outVal);
-		   	    			context.getCounter("Join stats", "Left outer  join").increment(1);
-	        			}
+	        	//for salted key, second set is empty everywhere only if it's empty for salt 0
+	        	if (secondSetCount == 0 && null != secondTypeDefaultValue && !saltedReplica)  {
+	        		joinFirstTypes(key, secondTypeDefaultValue, context);
+	   	    		context.getCounter("Join stats", "Left outer  join").increment(fistTypeList.getSize());
 	        	}
+	        	fistTypeList.clear();
 	    	}
+	        
+	        /**
+	         * @param context
+	         */
+	        private void closeFirstTypeList(Context context) {
+	        	fistTypeList.close(false);
+	        	if (fistTypeList.isSpilled()) {
+   	    			context.getCounter("Join stats", "Spilled keys").increment(1);
+   	    			context.getCounter("Join stats", "Spilled bytes").increment(fistTypeList.getSpilledBytes());
+	        	}
+	        }
+	        
+	        /**
+	         * joins one second set tuple with all first set tuples
+	         * @param key
+	         * @param secondType
+	         * @param context
+	         * @throws IOException
+	         * @throws InterruptedException
+	         */
+	        private void joinFirstTypes(TextInt key, Tuple secondType, Context context) 
+	        		throws IOException, InterruptedException {
+	        	fistTypeList.open(BigTupleList.Mode.Read);
+	        	Tuple firstType = null;
+	        	while (null != (firstType = fistTypeList.read())) {
+	        		setOutValue(key,  firstType, secondType);
+	        		context.write(NullWritable.get(), outVal);
+	        	}
+	        	fistTypeList.close(false);
+	        }
 	    	
+	        /**
+	         * joins batch of second set tuples with all first set tuples
+	         * @param key
+	         * @param context
+	         * @throws IOException
+	         * @throws InterruptedException
+	         */
+	        private void joinSecondTypeBatch(TextInt key, Context context) 
+	        		throws IOException, InterruptedException {
+	        	fistTypeList.open(BigTupleList.Mode.Read);
+	        	Tuple firstType = null;
+	        	while (null != (firstType = fistTypeList.read())) {
+	        		for (Tuple secondType : secondTypeBatch) {
+	        			setOutValue(key,  firstType, secondType);
+	        			context.write(NullWritable.get(), outVal);
+	        		}
+	        	}
+	        	fistTypeList.close(false);
+	        	secondTypeBatch.clear();
+	        }
+	        
 	        /**
 	         * @param key
 	         * @param firstType
 	         */
 	        private void setOutValue(TextInt key, Tuple firstType, Tuple secondType) {
+				outVal.set(formatter.format(joinKey, firstType, secondType));
+	        }
+	    }
+
+	    /**
+	     * Map side join with first set loaded from distributed cache into a hash index
+	     * @author pranab
+	     *
+	     */
+	    public static class BroadcastJoinMapper extends Mapper<LongWritable, Text, NullWritable, Text> {
+			private Text outVal = new Text();
+			private Tuple secondType = new Tuple();
+			private int[]  keyFieldSecond;
+	        private String fieldDelimOut;
+	        private boolean sortKeyFields;
+	        private int[] secondSetProjectedFields ;
+	        private AttributeFilter secondSetAttrFilter;
+	        private DelimitedFieldTokenizer tokenizer;
+	        private FirstSetIndex firstSetIndex;
+	        private JoinedRecordFormatter formatter;
+	    	private Tuple firstTypeDefaultValue;
+	    	
+	        /* (non-Javadoc)
+	         * @see org.apache.hadoop.mapreduce.Mapper#setup(org.apache.hadoop.mapreduce.Mapper.Context)
+	         */
+	        protected void setup(Context context) throws IOException, InterruptedException {
+	        	Configuration config = context.getConfiguration();
+	        	String fieldDelimRegex = config.get("field.delim.regex", ",");
+	        	fieldDelimOut = config.get("field.delim", ",");
+	        	tokenizer = new DelimitedFieldTokenizer(fieldDelimRegex).withGuard(config.get("field.delim.guard"));
+	        	keyFieldSecond = Utility.intArrayFromString(config.get("joi.key.field.second"), fieldDelimRegex ); 
+	        	sortKeyFields = config.getBoolean("joi.sort.key.fields", false);
+	        	secondSetProjectedFields = Utility.intArrayFromString(config.get("joi.second.set.projected.fields"), configDelim);
+	        	secondSetAttrFilter = createAttributeFilter(config, "joi.second.set.filter");
+	        	formatter = new JoinedRecordFormatter(config);
+	        	firstTypeDefaultValue = createDefaultValue(config, "joi.first.set.default.value", "0");
+	        	
+	        	//first set hash index
+	        	firstSetIndex = new FirstSetIndex(config);
+	        	String firstTypePrefix = config.get("joi.first.type.prefix", "first");
+	        	Path[] cacheFiles = DistributedCache.getLocalCacheFiles(config);
+	        	if (null == cacheFiles) {
+	        		throw new IllegalStateException("first set not found in distributed cache");
+	        	}
+	        	for (Path cacheFile : cacheFiles) {
+	        		if (cacheFile.getName().startsWith(firstTypePrefix)) {
+	        			firstSetIndex.load(new FileInputStream(cacheFile.toString()));
+	        		}
+	        	}
+	   			context.getCounter("Join stats", "left set key count").increment(firstSetIndex.getIndex().size());
+	        }
+	        
+	        @Override
+	        protected void map(LongWritable key, Text value, Context context)
+	            throws IOException, InterruptedException {
+	            tokenizer.tokenize(value);
+            	if (null == secondSetAttrFilter || secondSetAttrFilter.evaluate(tokenizer.getItems())) {
+            		String joinKey = tokenizer.extractFields(keyFieldSecond, fieldDelimOut, sortKeyFields);
+	            	if (null == secondSetProjectedFields) {
+	            		tokenizer.createStringTuple(keyFieldSecond, secondType, false); 
+	            	} else {
+	            		tokenizer.createStringTuple(secondSetProjectedFields, secondType, true); 
+	            	}
+	            	secondType.prepend("1");
+   	    			context.getCounter("Join stats", "right set count").increment(1);
+   	    			
+   	    			List<Tuple> fistTypeList = firstSetIndex.get(joinKey);
+   	    			if (null != fistTypeList) {
+   	    				for (Tuple firstType : fistTypeList) {
+   	    					outVal.set(formatter.format(joinKey, firstType, secondType));
+   	    					context.write(NullWritable.get(), outVal);
+   	    				}
+   	    			} else if (null != firstTypeDefaultValue) {
+   	    				//right outer join
+	    				outVal.set(formatter.format(joinKey, firstTypeDefaultValue, secondType));
+	    				context.write(NullWritable.get(), outVal);
+	   	    			context.getCounter("Join stats", "Right outer  join").increment(1);
+   	    			}
+            	}
+	        }
+	    }
+	    
+	    /**
+	     * In memory hash index of first set records keyed by join key, with the same filtering
+	     * and projection as the reduce side join. Fails fast when the estimated size of the index
+	     * exceeds the allowed fraction of heap
+	     * @author pranab
+	     *
+	     */
+	    public static class FirstSetIndex {
+	    	private Map<String, List<Tuple>> index = new HashMap<String, List<Tuple>>();
+	    	private long size;
+	    	private long maxSize;
+	    	private static final int STRING_OVERHEAD = 40;
+	    	private static final int TUPLE_OVERHEAD = 80;
+	    	private static final int KEY_OVERHEAD = 112;
+			private int[]  keyFieldFirst;
+	        private String fieldDelimOut;
+	        private boolean sortKeyFields;
+	        private int[] firstSetProjectedFields ;
+	        private AttributeFilter firstSetAttrFilter;
+	        private DelimitedFieldTokenizer tokenizer;
+	        
+	        /**
+	         * @param config
+	         */
+	        public FirstSetIndex(Configuration config) {
+	        	String fieldDelimRegex = config.get("field.delim.regex", ",");
+	        	fieldDelimOut = config.get("field.delim", ",");
+	        	tokenizer = new DelimitedFieldTokenizer(fieldDelimRegex).withGuard(config.get("field.delim.guard"));
+	        	keyFieldFirst = Utility.intArrayFromString(config.get("joi.key.field.first"), fieldDelimRegex ); 
+	        	sortKeyFields = config.getBoolean("joi.sort.key.fields", false);
+	        	firstSetProjectedFields = Utility.intArrayFromString(config.get("joi.first.set.projected.fields"), configDelim);
+	        	firstSetAttrFilter = createAttributeFilter(config, "joi.first.set.filter");
+	        	maxSize = (long)(Runtime.getRuntime().maxMemory() * 
+	        		Double.parseDouble(config.get("joi.broadcast.max.heap.fraction", "0.6")));
+	        }
+	        
+	        /**
+	         * @param inStrm
+	         * @throws IOException
+	         */
+	        public void load(InputStream inStrm) throws IOException {
+	        	BufferedReader reader = new BufferedReader(new InputStreamReader(inStrm, StandardCharsets.UTF_8));
+	        	String line = null;
+	        	while((line = reader.readLine()) != null) {
+	        		if (line.isEmpty()) {
+	        			continue;
+	        		}
+	        		byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+	        		tokenizer.tokenize(bytes, bytes.length);
+	            	if (null == firstSetAttrFilter || firstSetAttrFilter.evaluate(tokenizer.getItems())) {
+	            		String joinKey = tokenizer.extractFields(keyFieldFirst, fieldDelimOut, sortKeyFields);
+	            		Tuple firstType = new Tuple();
+		            	if (null == firstSetProjectedFields) {
+		            		tokenizer.createStringTuple(keyFieldFirst, firstType, false); 
+		            	} else {
+		            		tokenizer.createStringTuple(firstSetProjectedFields, firstType, true); 
+		            	}
+		            	firstType.prepend("0");
+		            	
+		            	List<Tuple> fistTypeList = index.get(joinKey);
+		            	if (null == fistTypeList) {
+		            		fistTypeList = new ArrayList<Tuple>();
+		            		index.put(joinKey, fistTypeList);
+		            		size += KEY_OVERHEAD + STRING_OVERHEAD + 2 * joinKey.length();
+		            	}
+		            	fistTypeList.add(firstType);
+		            	size += TUPLE_OVERHEAD + firstType.getSize() * STRING_OVERHEAD + 2 * line.length();
+		            	if (size > maxSize) {
+		            		throw new IllegalStateException("first set does not fit in memory, estimated size " + size + 
+		            			" exceeds " + maxSize + ", increase joi.broadcast.heap.expansion.factor or use reduce side join");
+		            	}
+	            	}
+	        	}
+	        	reader.close();
+	        }
+	        
+	        /**
+	         * @param joinKey
+	         * @return
+	         */
+	        public List<Tuple> get(String joinKey) {
+	        	return index.get(joinKey);
+	        }
+
+			/**
+			 * @return
+			 */
+			public Map<String, List<Tuple>> getIndex() {
+				return index;
+			}
+	    }
+	    
+	    /**
+	     * Formats joined output record
+	     * @author pranab
+	     *
+	     */
+	    public static class JoinedRecordFormatter {
+	    	private String fieldDelimOut;
+			private boolean outputKeyAtBeg;
+			private boolean outputFirstType;
+			private boolean outputSecondType;
+			private StringBuilder stBld = new  StringBuilder();
+			
+			/**
+			 * @param config
+			 */
+			public JoinedRecordFormatter(Configuration config) {
+	        	fieldDelimOut = config.get("field.delim", ",");
+	        	outputKeyAtBeg = config.getBoolean("joi.output.key.at.begin",true);
+	        	outputFirstType = config.getBoolean("joi.output.first.type",true);
+	        	outputSecondType = config.getBoolean("joi.output.second.type",true);
+			}
+			
+	        /**
+	         * @param key
+	         * @param firstType
+	         * @param secondType
+	         * @return
+	         */
+	        public String format(String key, Tuple firstType, Tuple secondType) {
 				stBld.delete(0, stBld.length());
 				firstType.setDelim(fieldDelimOut);
 				secondType.setDelim(fieldDelimOut);
 				
 				if (outputKeyAtBeg) {
-					stBld.append(key.getFirst()).append(fieldDelimOut);
+					stBld.append(key).append(fieldDelimOut);
 				}
 				if (outputFirstType) {
 					if (outputSecondType) {
@@ -283,9 +833,9 @@ public class Joiner extends Configured implements Tool {
 					if(outputSecondType) {
 						stBld.append(fieldDelimOut);
 					}
-					stBld.append(key.getFirst());
+					stBld.append(key);
 				}
-				outVal.set(stBld.toString());
+				return stBld.toString();
 	        }
 	    }
 
@@ -39,6 +39,7 @@ import org.apache.hadoop.util.ToolRunner;
 import org.chombo.stats.ValueCounter;
 import org.chombo.stats.ValueCounters;
 import org.chombo.util.BasicUtils;
+import org.chombo.util.InMapperAggregator;
 import org.chombo.util.Pair;
 import org.chombo.util.Tuple;
 import org.chombo.util.Utility;
@@ -71,8 +72,7 @@ public class MissingValueCounter extends Configured implements Tool {
         }
     	job.setReducerClass(MissingValueCounter.CounterReducer.class);
         
-        job.setMapOutputKeyClass(Tuple.class);
-        job.setMapOutputValueClass(Tuple.class);
+        Utility.setTupleMapOutput(job, "mvc");
 
         job.setOutputKeyClass(NullWritable.class);
         job.setOutputValueClass(Text.class);
@@ -90,25 +90,40 @@ public class MissingValueCounter extends Configured implements Tool {
 	 *
 	 */
 	public static class CounterMapper extends Mapper<LongWritable, Text, Tuple, Tuple> {
-		private Tuple outKey = new Tuple();
-		private Tuple outVal = new Tuple();
+		private Tuple outKey;
+		private Tuple outVal;
 		private int[]  attributes;
         private String[] items;
         private String fieldDelimRegex;
         private int[] idOrdinals;
         private String operation;
         private int count;
+        private InMapperAggregator<Tuple, Tuple> aggregator;
 
         /* (non-Javadoc)
          * @see org.apache.hadoop.mapreduce.Mapper#setup(org.apache.hadoop.mapreduce.Mapper.Context)
          */
         protected void setup(Context context) throws IOException, InterruptedException {
         	Configuration config = context.getConfiguration();
+        	outKey = Utility.createTuple(config);
+        	outVal = Utility.createTuple(config);
         	fieldDelimRegex = Utility.getFieldDelimiter(config, "mvc.field.delim.regex", "field.delim.regex", ",");
         	idOrdinals = Utility.intArrayFromString(config.get("mvc.id.field.ordinals"));
         	operation = config.get("mvc.counting.operation", "column");
+        	if (!operation.equals(OP_ROW)) {
+        		aggregator = InMapperAggregator.create(config, "mvc", new CountMerger());
+        	}
         }    
         
+        /* (non-Javadoc)
+         * @see org.apache.hadoop.mapreduce.Mapper#cleanup(org.apache.hadoop.mapreduce.Mapper.Context)
+         */
+        protected void cleanup(Context context) throws IOException, InterruptedException {
+        	if (null != aggregator) {
+        		aggregator.flush(context);
+        	}
+        }
+        
         @Override
         protected void map(LongWritable key, Text value, Context context)
             throws IOException, InterruptedException {
@@ -144,7 +159,7 @@ public class MissingValueCounter extends Configured implements Tool {
 	    			
 	       			outVal.initialize();
 	    			outVal.add(1);
-	            	context.write(outKey, outVal);
+	            	emitCount(context);
 	            }
             	
             	//column wise
@@ -175,11 +190,37 @@ public class MissingValueCounter extends Configured implements Tool {
         			//count
         			outVal.initialize();
         			outVal.add(1);
-                	context.write(outKey, outVal);
+        			emitCount(context);
         		}
         	}
         	
         }
+        
+        /**
+         * @param context
+         * @throws IOException
+         * @throws InterruptedException
+         */
+        private void emitCount(Context context) throws IOException, InterruptedException {
+        	if (null != aggregator) {
+        		aggregator.aggregate(outKey, outVal, context);
+        	} else {
+        		context.write(outKey, outVal);
+        	}
+        }
+	}	
+
+	/**
+	 * Adds counts for in mapper aggregation
+	 * @author pranab
+	 *
+	 */
+	public static class CountMerger implements InMapperAggregator.ValueMerger<Tuple> {
+		@Override
+		public int merge(Tuple aggregate, Tuple value) {
+			aggregate.set(0, aggregate.getInt(0) + value.getInt(0));
+			return 0;
+		}
 	}	
 
 	/**
@@ -187,9 +228,16 @@ public class MissingValueCounter extends Configured implements Tool {
 	 *
 	 */
 	public static class CounterCombiner extends Reducer<Tuple, Tuple, Tuple, Tuple> {
-		private Tuple outVal = new Tuple();
+		private Tuple outVal;
 		private int count;
 		
+        /* (non-Javadoc)
+         * @see org.apache.hadoop.mapreduce.Reducer#setup(org.apache.hadoop.mapreduce.Reducer.Context)
+         */
+        protected void setup(Context context) throws IOException, InterruptedException {
+        	outVal = Utility.createTuple(context.getConfiguration());
+        }
+        
         /* (non-Javadoc)
          * @see org.apache.hadoop.mapreduce.Reducer#reduce(KEYIN, java.lang.Iterable, org.apache.hadoop.mapreduce.Reducer.Context)
          */
@@ -19,9 +19,7 @@ package org.chombo.mr;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
@@ -38,6 +36,9 @@ import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.chombo.util.AttributeFilter;
+import org.chombo.util.BasicUtils;
+import org.chombo.util.BigTupleList;
+import org.chombo.util.BloomFilter;
 import org.chombo.util.SecondarySort;
 import org.chombo.util.Tuple;
 import org.chombo.util.Utility;
@@ -79,10 +80,36 @@ public class MultiJoiner extends Configured implements Tool {
         numReducer = -1 == numReducer ? job.getConfiguration().getInt("num.reducer", 1) : numReducer;
         job.setNumReduceTasks(numReducer);
         
+        Configuration config = job.getConfiguration();
+        if (config.getBoolean("muj.bloom.filter", false) && !config.getBoolean("muj.outer.join", false)) {
+        	//semi join pruning of other splits, not valid for outer join
+        	setBloomFilter(job);
+        }
+        
         int status =  job.waitForCompletion(true) ? 0 : 1;
         return status;
 	}
 	
+	/**
+	 * Builds bloom filter over join keys of the smallest split, used by mappers to drop
+	 * records of other splits that can not join
+	 * @param job
+	 * @throws IOException
+	 */
+	private void setBloomFilter(Job job) throws IOException {
+		Configuration config = job.getConfiguration();
+		String bloomSplitPrefix = Utility.assertStringConfigParam(config, "muj.bloom.filter.split.prefix", 
+				"missing bloom filter split file prefix");
+		List<Path> bloomSplitFiles = new ArrayList<Path>();
+		List<Path> otherSplitFiles = new ArrayList<Path>();
+		Utility.listInputFiles(job, bloomSplitPrefix, bloomSplitFiles, otherSplitFiles);
+		
+		int[] keyFields = Utility.intArrayFromString(config.get("muj.key.fields." + bloomSplitPrefix),Utility.configDelim);
+		String filtExp = config.get("muj.filter." + bloomSplitPrefix);
+		SemiJoinFilter.setup(job, "muj", bloomSplitFiles, keyFields, configDelim, false, 
+				null != filtExp ? new AttributeFilter(filtExp) : null);
+	}
+	
 	/**
 	 * @author pranab
 	 *
@@ -99,6 +126,7 @@ public class MultiJoiner extends Configured implements Tool {
         private AttributeFilter currentFilter;
         private int[] currentKeyFields;
         private int[] currentProjectedFields;
+        private BloomFilter keyFilter;
 		
         /* (non-Javadoc)
          * @see org.apache.hadoop.mapreduce.Mapper#setup(org.apache.hadoop.mapreduce.Mapper.Context)
@@ -130,6 +158,11 @@ public class MultiJoiner extends Configured implements Tool {
         	currentKeyFields = keyFields.get(currentSplit);
         	currentProjectedFields = projectedFields.get(currentSplit);
             currentFilter = attrFilters[currentSplit];
+            
+            //bloom filter for semi join, not applicable to the split it's built from 
+            if (!splitPrefixes[currentSplit].equals(config.get("muj.bloom.filter.split.prefix"))) {
+            	keyFilter = SemiJoinFilter.load(config);
+            }
         }
         
         @Override
@@ -137,7 +170,10 @@ public class MultiJoiner extends Configured implements Tool {
             throws IOException, InterruptedException {
             String[] items  =  value.toString().split(fieldDelimRegex, -1);
             
-            if (null == currentFilter || currentFilter.evaluate(items)) {
+            if (null != keyFilter && !keyFilter.mightContain(BasicUtils.extractFields(items, currentKeyFields, configDelim))) {
+            	//can not have matching record in the bloom filter split
+            	context.getCounter("Join stats", "pruned count").increment(1);
+            } else if (null == currentFilter || currentFilter.evaluate(items)) {
             	Utility.createStringTuple(items, currentKeyFields, outKey);
             	outKey.add(currentSplit);
             	
@@ -158,18 +194,14 @@ public class MultiJoiner extends Configured implements Tool {
         private String fieldDelimRegex;
 		private String fieldDelimOut;
 		private StringBuilder stBld = new  StringBuilder();
-		private Map<Integer, List<Tuple>> projectedFields = new HashMap<Integer, List<Tuple>>();
+		private BigTupleList[] projectedFields;
 		private String[] splitPrefixes;
 		private int numSplits;
 		private boolean outerJoin;
 		private boolean missingJoin;
-		private int[] tupleIndexes;
-		private int[] tupleListSizes;
-		private int[] tupleSizes;
-		private List<Tuple> tuples;
-		private Tuple tuple;
-		private boolean tupleTraversalDone;
-		
+		private Tuple[] dummyTuples;
+		private Tuple[] joinedTuples;
+		private String keyPart;
 		
         /* (non-Javadoc)
          * @see org.apache.hadoop.mapreduce.Reducer#setup(org.apache.hadoop.mapreduce.Reducer.Context)
@@ -182,16 +214,30 @@ public class MultiJoiner extends Configured implements Tool {
         			Utility.configDelim,"missing split file prefix list");
         	numSplits = splitPrefixes.length;
         	outerJoin = config.getBoolean("muj.outer.join", false);
-        	tupleIndexes = new int[numSplits];
         	
-        	
-        	//key fields and projected fields
+        	//per split tuples spill to local disk beyond threshold
+        	int maxInMemory = config.getInt("muj.max.in.memory.tuples", 100000);
+        	String spillDir = config.get("muj.spill.dir", System.getProperty("java.io.tmpdir"));
+        	projectedFields = new BigTupleList[numSplits];
+        	dummyTuples = new Tuple[numSplits];
+        	joinedTuples = new Tuple[numSplits];
         	for (int i = 0; i < numSplits; ++i) {
-        		String prefix = splitPrefixes[i];
-        		tupleSizes[i] = Utility.intArrayFromString(config.get("muj.projected.fields." + prefix), 
-        				Utility.configDelim).length;
+        		projectedFields[i] = new BigTupleList(maxInMemory, spillDir);
+        		
+        		//dummy tuple for outer join when there is no match from a split
+        		int[] fields = Utility.intArrayFromString(config.get("muj.projected.fields." + splitPrefixes[i]), 
+        				Utility.configDelim);
+        		dummyTuples[i] = createDummyTuple(null != fields ? fields.length : 0);
+        	}
+        }
+        
+        /* (non-Javadoc)
+         * @see org.apache.hadoop.mapreduce.Reducer#cleanup(org.apache.hadoop.mapreduce.Reducer.Context)
+         */
+        protected void cleanup(Context context) throws IOException, InterruptedException {
+        	for (BigTupleList tuples : projectedFields) {
+        		tuples.clear();
         	}
-        	
         }
  
         /* (non-Javadoc)
@@ -200,74 +246,73 @@ public class MultiJoiner extends Configured implements Tool {
         protected void reduce(Tuple key, Iterable<Tuple> values, Context context)
         	throws IOException, InterruptedException {
         	key.setDelim(fieldDelimOut);
-        	projectedFields.clear();
-        	int lastSplitIndex = 0;
-        	missingJoin  = false;
-        	
+        	for (BigTupleList tuples : projectedFields) {
+        		tuples.open(BigTupleList.Mode.Write);
+        	}
         	for (Tuple value : values){
         		int splitIndex = value.getInt(0);
-        		tuples = projectedFields.get(splitIndex);
-        		if (null == tuples) {
-        			if (splitIndex > lastSplitIndex + 1) {
-        				//happens when there is no match from 1 or more splits
-        				for (int cur = lastSplitIndex + 1; cur < splitIndex; ++ cur) {
-        					//for outer join adding dummy tuple helps when there is missing tuple because join fails                 			tuples = new ArrayList<Tuple>();
-                			tuples.add(createDummyTuple(tupleSizes[cur]));
-                			projectedFields.put(splitIndex, tuples);
-                			missingJoin = true;
-        				}
-        			}
-        			tuples = new ArrayList<Tuple>();
-        			projectedFields.put(splitIndex, tuples);
-        			lastSplitIndex = splitIndex;
+        		projectedFields[splitIndex].write(value.endSubTuple(1));
+        	}
+        	
+        	missingJoin  = false;
+        	boolean spilled = false;
+        	for (BigTupleList tuples : projectedFields) {
+        		tuples.close(false);
+        		if (tuples.getSize() == 0) {
+        			//happens when there is no match from 1 or more splits
+        			missingJoin = true;
         		}
-        		tuples.add(value.beginningSubTuple(1));
+        		if (tuples.isSpilled()) {
+        			spilled = true;
+	    			context.getCounter("Join stats", "Spilled bytes").increment(tuples.getSpilledBytes());
+        		}
+        	}
+        	if (spilled) {
+    			context.getCounter("Join stats", "Spilled keys").increment(1);
         	}
        
         	//emit joined tuples
         	if (outerJoin || !outerJoin && !missingJoin) {
-            	for (int i = 0; i < numSplits; ++i) {
-            		tupleIndexes[i] = 0;
-            		tupleListSizes[i] = projectedFields.get(i).size();
-            	}
-            	
-            	//traverse all levels 
-            	tupleTraversalDone = false;
-        		while(!tupleTraversalDone) {
-                	stBld.delete(0, stBld.length());
-                	stBld.append(key.toStringEnd(key.getSize()-1));
-                	//nested join
-                	for (int i = 0; i < numSplits; ++i) {
-                		//tuple list for a split and the a tuple within list
-                		tuples = projectedFields.get(i);
-                		tuple = tuples.get(tupleIndexes[i]);
-                		stBld.append(fieldDelimOut).append(tuple.toString());
-                	}  
-                	outVal.set(stBld.toString());
-                	context.write(NullWritable.get(), outVal);
-                	
-                	updateTupleIndexes();
-        		}
+        		keyPart = key.toStringEnd(key.getSize()-1);
+        		emitJoined(0, context);
         	} 
         	
+        	for (BigTupleList tuples : projectedFields) {
+        		tuples.clear();
+        	}
         }
         
         /**
-         * 
+         * Nested join, streaming each split's tuples from memory or spill file
+         * @param split
+         * @param context
+         * @throws IOException
+         * @throws InterruptedException
          */
-        private void updateTupleIndexes() {
-        	for (int i = numSplits -1; i >= 0; --i) {
-        		if (tupleIndexes[i] < tupleListSizes[i] -1) {
-        			tupleIndexes[i] += 1;
-        			break;
+        private void emitJoined(int split, Context context) throws IOException, InterruptedException {
+        	if (split == numSplits) {
+            	stBld.delete(0, stBld.length());
+            	stBld.append(keyPart);
+            	for (Tuple tuple : joinedTuples) {
+            		tuple.setDelim(fieldDelimOut);
+            		stBld.append(fieldDelimOut).append(tuple.toString());
+            	}  
+            	outVal.set(stBld.toString());
+            	context.write(NullWritable.get(), outVal);
+        	} else {
+        		BigTupleList tuples = projectedFields[split];
+        		if (tuples.getSize() == 0) {
+        			//for outer join adding dummy tuple helps when there is missing tuple because join fails
+        			joinedTuples[split] = dummyTuples[split];
+        			emitJoined(split + 1, context);
         		} else {
-        			//reset to zero and increment one level up
-        			tupleIndexes[i] = 0;
-        			
-        			if (i == 0) {
-        				//we are at top level and done
-        				tupleTraversalDone = true;
+        			tuples.open(BigTupleList.Mode.Read);
+        			Tuple tuple = null;
+        			while (null != (tuple = tuples.read())) {
+        				joinedTuples[split] = tuple;
+        				emitJoined(split + 1, context);
         			}
+        			tuples.close(false);
         		}
         	}
         }
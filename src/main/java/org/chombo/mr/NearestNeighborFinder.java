@@ -0,0 +1,260 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.mr;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.chombo.distance.AttributeDistanceSchema;
+import org.chombo.distance.InterRecordDistance;
+import org.chombo.distance.InterRecordDistance.PreparedRecord;
+import org.chombo.distance.VantagePointTree;
+import org.chombo.distance.VantagePointTree.Neighbor;
+import org.chombo.util.Attribute;
+import org.chombo.util.BasicUtils;
+import org.chombo.util.GenericAttributeSchema;
+import org.chombo.util.Utility;
+
+/**
+ * Map only nearest neighbor search. Reference records are loaded in each mapper and indexed with a
+ * vantage point tree, one per partition. Each input record is queried for neighbors by count and / or
+ * distance, without finding distance between all pairs. Neighbor list output has the same layout as
+ * record similarity output, i.e. source ID, target ID and scaled distance
+ * @author pranab
+ *
+ */
+public class NearestNeighborFinder extends Configured implements Tool {
+
+	@Override
+	public int run(String[] args) throws Exception {
+        Job job = new Job(getConf());
+        String jobName = "Nearest neighbor finder with metric index MR";
+        job.setJobName(jobName);
+
+        job.setJarByClass(NearestNeighborFinder.class);
+
+        FileInputFormat.addInputPath(job, new Path(args[0]));
+        FileOutputFormat.setOutputPath(job, new Path(args[1]));
+
+        Utility.setConfiguration(job.getConfiguration(), "chombo");
+        job.setMapperClass(NearestNeighborFinder.FinderMapper.class);
+
+        job.setOutputKeyClass(NullWritable.class);
+        job.setOutputValueClass(Text.class);
+
+        job.setNumReduceTasks(0);
+
+        int status =  job.waitForCompletion(true) ? 0 : 1;
+        return status;
+	}
+
+	/**
+	 * @author pranab
+	 *
+	 */
+	public static class FinderMapper extends Mapper<LongWritable, Text, NullWritable, Text> {
+		private Text outVal  = new Text();
+        private String fieldDelimRegex;
+		private String fieldDelim;
+		private InterRecordDistance recDistance;
+		private Map<String, VantagePointTree> indexes = new HashMap<String, VantagePointTree>();
+		private int idOrdinal;
+		private int partitonOrdinal;
+		private int scale;
+    	private boolean nearestByCount;
+    	private boolean nearestByDistance;
+    	private int topMatchCount;
+    	private int topMatchDistance;
+    	private double radius;
+    	private boolean excludeSelf;
+        private boolean recordInOutput;
+        private boolean compactOutput;
+    	private boolean outputWithNoNeighbor;
+		private StringBuilder stBld =  new StringBuilder();
+		private long queryCount;
+
+        /* (non-Javadoc)
+         * @see org.apache.hadoop.mapreduce.Mapper#setup(org.apache.hadoop.mapreduce.Mapper.Context)
+         */
+        protected void setup(Context context) throws IOException, InterruptedException {
+			Configuration config = context.getConfiguration();
+        	fieldDelimRegex = config.get("field.delim.regex", ",");
+			fieldDelim = config.get("field.delim.out", ",");
+
+        	//schema
+        	String shemaPath = Utility.assertStringConfigParam(config, "nnf.schema.path", "missing shema file path");
+        	InputStream inStr = Utility.getFileStream(shemaPath);
+        	GenericAttributeSchema schema = BasicUtils.getGenericAttributeSchema(inStr);
+        	Attribute partField =  schema.getPartitionField();
+        	partitonOrdinal = null  !=  partField ? partField.getOrdinal() : -1;
+        	idOrdinal = schema.getIdField().getOrdinal();
+
+        	//distance calculation related schema
+        	String distSchemaPath = Utility.assertStringConfigParam(config, "nnf.dist.schema.path", "missing distance shema file path");
+        	InputStream inStrDist = Utility.getFileStream(distSchemaPath);
+        	AttributeDistanceSchema distSchema = BasicUtils.getDistanceSchema(inStrDist);
+
+        	//inter record distance finder
+        	recDistance = new InterRecordDistance(schema,distSchema,fieldDelim);
+        	scale = config.getInt("nnf.distance.scale", 1000);
+        	recDistance.withScale(scale);
+        	int[] facetedFields = Utility.intArrayFromString(config, "nnf.faceted.field.ordinal", Utility.configDelim);
+        	if (null != facetedFields) {
+        		recDistance.withFacetedFields(facetedFields);
+        	}
+        	recDistance.withDoubleRange(config.getBoolean("nnf.double.range", false));
+        	recDistance.withCategoricalSet(config.getBoolean("nnf.categorical.set", false));
+
+        	//neighborhood by count and / or distance
+        	nearestByCount = config.getBoolean("nnf.nearest.by.count", true);
+        	nearestByDistance = config.getBoolean("nnf.nearest.by.distance", false);
+        	topMatchCount = nearestByCount ? config.getInt("nnf.top.match.count", 10) : Integer.MAX_VALUE;
+        	if (nearestByDistance) {
+        		//scaled distance is truncated
+        		topMatchDistance = config.getInt("nnf.top.match.distance", 200);
+        		radius = (topMatchDistance + 1.0) / scale;
+        	} else {
+        		topMatchDistance = Integer.MAX_VALUE;
+        		radius = Double.MAX_VALUE;
+        	}
+        	if (!nearestByCount && !nearestByDistance) {
+        		throw new IllegalStateException("neighborhood should be based on count or distance or both");
+        	}
+        	excludeSelf = config.getBoolean("nnf.exclude.self", true);
+        	recordInOutput =  config.getBoolean("nnf.record.in.output", false);
+        	compactOutput =  config.getBoolean("nnf.compact.output", false);
+        	outputWithNoNeighbor =  config.getBoolean("nnf.output.with.no.neighbor", false);
+
+        	buildIndexes(config);
+        }
+
+        /**
+         * one index for each partition of reference records
+         * @param config
+         * @throws IOException
+         */
+        private void buildIndexes(Configuration config) throws IOException {
+        	List<String> lines = Utility.assertFileLines(config, "nnf.reference.file.path", "missing reference records");
+        	Map<String, List<PreparedRecord>> partRecords = new HashMap<String, List<PreparedRecord>>();
+        	Map<String, List<String>> partIds = new HashMap<String, List<String>>();
+        	for (String line : lines) {
+        		String[] items = line.split(fieldDelimRegex, -1);
+        		String partition = partitonOrdinal >= 0 ? items[partitonOrdinal] :  "N";
+        		List<PreparedRecord> records = partRecords.get(partition);
+        		if (null == records) {
+        			records = new ArrayList<PreparedRecord>();
+        			partRecords.put(partition, records);
+        			partIds.put(partition, new ArrayList<String>());
+        		}
+        		records.add(recDistance.prepare(items));
+        		partIds.get(partition).add(items[idOrdinal]);
+        	}
+
+        	long seed = config.getLong("nnf.index.seed", 1000);
+        	for (String partition : partRecords.keySet()) {
+        		indexes.put(partition, new VantagePointTree(recDistance, partRecords.get(partition),
+        			partIds.get(partition), seed));
+        	}
+        }
+
+        /* (non-Javadoc)
+         * @see org.apache.hadoop.mapreduce.Mapper#cleanup(org.apache.hadoop.mapreduce.Mapper.Context)
+         */
+        protected void cleanup(Context context) throws IOException, InterruptedException {
+        	long distanceCount = 0;
+        	for (VantagePointTree index : indexes.values()) {
+        		distanceCount += index.getDistanceCount();
+        	}
+        	context.getCounter("Nearest neighbor", "queries").increment(queryCount);
+        	context.getCounter("Nearest neighbor", "distance calculations").increment(distanceCount);
+        }
+
+        /* (non-Javadoc)
+         * @see org.apache.hadoop.mapreduce.Mapper#map(KEYIN, VALUEIN, org.apache.hadoop.mapreduce.Mapper.Context)
+         */
+        @Override
+        protected void map(LongWritable key, Text value, Context context)
+            throws IOException, InterruptedException {
+        	String record = value.toString();
+            String[] items  =  record.split(fieldDelimRegex, -1);
+            String partition = partitonOrdinal >= 0 ? items[partitonOrdinal] :  "N";
+            String srcId = items[idOrdinal];
+            VantagePointTree index = indexes.get(partition);
+            List<Neighbor> neighbors = null;
+            if (null != index) {
+            	neighbors = index.findNearest(recDistance.prepare(items), topMatchCount, radius,
+            		excludeSelf ? srcId : null);
+            	++queryCount;
+            } else {
+            	neighbors = new ArrayList<Neighbor>();
+            }
+
+            //scaled distance threshold
+            int numNeighbor = 0;
+            stBld.delete(0, stBld.length());
+            stBld.append(recordInOutput ? record : srcId);
+            for (Neighbor neighbor : neighbors) {
+            	int dist = (int)(scale * neighbor.getDistance());
+            	if (dist <= topMatchDistance) {
+            		String target = recordInOutput ?
+            			BasicUtils.join(index.getRecord(neighbor.getIndex()).getItems(), fieldDelim) :
+            			index.getId(neighbor.getIndex());
+            		if (compactOutput) {
+            			stBld.append(fieldDelim).append(target);
+            		} else {
+            			outVal.set((recordInOutput ? record : srcId) + fieldDelim + target + fieldDelim + dist);
+            			context.write(NullWritable.get(), outVal);
+            		}
+            		++numNeighbor;
+            	}
+            }
+
+            //compact output or source only
+            if ((compactOutput && (numNeighbor > 0 || outputWithNoNeighbor)) ||
+            		(!compactOutput && numNeighbor == 0 && outputWithNoNeighbor)) {
+            	outVal.set(stBld.toString());
+        		context.write(NullWritable.get(), outVal);
+            }
+        }
+	}
+
+	/**
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+        int exitCode = ToolRunner.run(new NearestNeighborFinder(), args);
+        System.exit(exitCode);
+	}
+}
@@ -41,6 +41,7 @@ import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.chombo.stats.MedianStatsManager;
+import org.chombo.stats.QuantileSketch;
 import org.chombo.util.RichAttribute;
 import org.chombo.util.RichAttributeSchema;
 import org.chombo.util.SeasonalAnalyzer;
@@ -68,18 +69,24 @@ public class NumericalAttrMedian extends Configured implements Tool {
         FileOutputFormat.setOutputPath(job, new Path(args[1]));
 
         Utility.setConfiguration(job.getConfiguration(), "chombo");
-        job.setMapperClass(NumericalAttrMedian.StatsMapper.class);
-        job.setReducerClass(NumericalAttrMedian.StatsReducer.class);
-
         job.setMapOutputKeyClass(Tuple.class);
-        job.setMapOutputValueClass(Tuple.class);
+        if (job.getConfiguration().getBoolean("nam.sketch.mode", false)) {
+        	//mergeable quantile sketch per key instead of all values
+            job.setMapperClass(NumericalAttrMedian.SketchMapper.class);
+            job.setCombinerClass(NumericalAttrMedian.SketchCombiner.class);
+            job.setReducerClass(NumericalAttrMedian.SketchReducer.class);
+            job.setMapOutputValueClass(QuantileSketch.class);
+        } else {
+	        job.setMapperClass(NumericalAttrMedian.StatsMapper.class);
+	        job.setReducerClass(NumericalAttrMedian.StatsReducer.class);
+	        job.setMapOutputValueClass(Tuple.class);
+	        job.setPartitionerClass(SecondarySort.TuplePairPartitioner.class);
+	        job.setGroupingComparatorClass(SecondarySort.TuplePairGroupComprator.class);
+        }
 
         job.setOutputKeyClass(NullWritable.class);
         job.setOutputValueClass(Text.class);
 
-        job.setPartitionerClass(SecondarySort.TuplePairPartitioner.class);
-        job.setGroupingComparatorClass(SecondarySort.TuplePairGroupComprator.class);
-
         int numReducer = job.getConfiguration().getInt("nam.num.reducer", -1);
         numReducer = -1 == numReducer ? job.getConfiguration().getInt("num.reducer", 1) : numReducer;
         job.setNumReduceTasks(numReducer);
@@ -89,37 +96,31 @@ public class NumericalAttrMedian extends Configured implements Tool {
 	}
 
 	/**
+	 * Extracts attribute values and their keys. Shared by the mappers
 	 * @author pranab
 	 *
 	 */
-	public static class StatsMapper extends Mapper<LongWritable, Text, Tuple, Tuple> {
-		private Tuple outKey = new Tuple();
-		private Tuple outVal = new Tuple();
+	public static class AttributeValueExtractor {
 		private int[]  attributes;
         private String fieldDelimRegex;
         private String[] items;
-        private RichAttributeSchema schema;
         private RichAttribute[] numericAttrs;
-        private double val;
-        private int bin;
         private String operation;
         private int[] idOrdinals;
         private MedianStatsManager statsManager;
-        private double median;
         private boolean seasonalAnalysis;
         private String seasonalCycleType;
         private int timeStampFieldOrdinal;
         private SeasonalAnalyzer seasonalAnalyzer;
-        private long timeStamp;
         private int cycleIndex;
         
-        /* (non-Javadoc)
-         * @see org.apache.hadoop.mapreduce.Mapper#setup(org.apache.hadoop.mapreduce.Mapper.Context)
+        /**
+         * @param config
+         * @throws IOException
          */
-        protected void setup(Context context) throws IOException, InterruptedException {
-        	Configuration config = context.getConfiguration();
+        public AttributeValueExtractor(Configuration config) throws IOException {
         	fieldDelimRegex = config.get("field.delim.regex", ",");
-        	schema = Utility.getRichAttributeSchema(config, "nam.med.schema.file.path");
+        	RichAttributeSchema schema = Utility.getRichAttributeSchema(config, "nam.med.schema.file.path");
         	attributes = Utility.intArrayFromString(config.get("nam.attr.list"), fieldDelimRegex);
         	if (null == attributes) {
         		//all numeric fields
@@ -164,63 +165,123 @@ public class NumericalAttrMedian extends Configured implements Tool {
             	boolean timeStampInMili = config.getBoolean("nam.time.stamp.in.mili", true);
             	seasonalAnalyzer.setTimeStampInMili(timeStampInMili);
         	}
-       }
-
-        /* (non-Javadoc)
-         * @see org.apache.hadoop.mapreduce.Mapper#map(KEYIN, VALUEIN, org.apache.hadoop.mapreduce.Mapper.Context)
+        }
+        
+        /**
+         * @param value
+         * @return false if record is outside seasonal time band
          */
-        @Override
-        protected void map(LongWritable key, Text value, Context context)
-            throws IOException, InterruptedException {
+        public boolean extract(Text value) {
             items  =  value.toString().split(fieldDelimRegex, -1);
+            boolean valid = true;
             
             //seasonality
     		if (seasonalAnalysis) {
-            	if (operation.equals("med")) {
-            		//use timestamp data
-	                timeStamp = Long.parseLong(items[timeStampFieldOrdinal]);
+            	if (!operation.equals("mad")) {
+            		//first pass operations use timestamp data
+	                long timeStamp = Long.parseLong(items[timeStampFieldOrdinal]);
 	                cycleIndex = seasonalAnalyzer.getCycleIndex(timeStamp);
 	                    
 	                //outside seasonal time band
-	                if (cycleIndex < 0) {
-	                	return;
-	                }
+	                valid = cycleIndex >= 0;
             	} else {
             		//seasonal cycle index already in data
-            		int cycleIndexPos = null != idOrdinals ? 0 : idOrdinals.length;
+            		int cycleIndexPos = null != idOrdinals ? idOrdinals.length : 0;
             		cycleIndex = Integer.parseInt(items[cycleIndexPos]);
             	}
+    		}
+    		return valid;
+        }
+        
+        /**
+         * @return
+         */
+        public int getNumAttributes() {
+        	return attributes.length;
+        }
+        
+        /**
+         * @param i attribute index
+         * @return value or absolute deviation from median 
+         */
+        public double getValue(int i) {
+        	double val = Double.parseDouble(items[attributes[i]]);
+        	if (operation.equals("mad")) {
+        		double median = 0;
+        		if (null != idOrdinals) {
+    				String compId = Utility.join(items, 0, idOrdinals.length, fieldDelimRegex);
+    				median = statsManager.getKeyedMedian(compId, attributes[i]);
+        		} else {
+    				median = statsManager.getMedian(attributes[i]);
+        		}
+    			val = Math.abs(val - median);
+        	}
+        	return val;
+        }
+        
+        /**
+         * @param i attribute index
+         * @param val
+         * @return
+         */
+        public int getBin(int i, double val) {
+        	return (int)(val / numericAttrs[i].getBucketWidth());
+        }
+        
+        /**
+         * sets record partition id, seasonal cycle index and attribute ordinal
+         * @param outKey
+         * @param i attribute index
+         */
+        public void setKey(Tuple outKey, int i) {
+        	outKey.initialize();
+        	if (null != idOrdinals) {
+        		outKey.addFromArray(items, idOrdinals);
+        	}
+    		if (seasonalAnalysis) {
+                outKey.add(cycleIndex);
     		}            	
+    		outKey.add(attributes[i]);
+        }
+	}
+	
+	/**
+	 * @author pranab
+	 *
+	 */
+	public static class StatsMapper extends Mapper<LongWritable, Text, Tuple, Tuple> {
+		private Tuple outKey = new Tuple();
+		private Tuple outVal = new Tuple();
+        private double val;
+        private int bin;
+        private AttributeValueExtractor extractor;
+        
+        /* (non-Javadoc)
+         * @see org.apache.hadoop.mapreduce.Mapper#setup(org.apache.hadoop.mapreduce.Mapper.Context)
+         */
+        protected void setup(Context context) throws IOException, InterruptedException {
+        	extractor = new AttributeValueExtractor(context.getConfiguration());
+       }
+
+        /* (non-Javadoc)
+         * @see org.apache.hadoop.mapreduce.Mapper#map(KEYIN, VALUEIN, org.apache.hadoop.mapreduce.Mapper.Context)
+         */
+        @Override
+        protected void map(LongWritable key, Text value, Context context)
+            throws IOException, InterruptedException {
+        	if (!extractor.extract(value)) {
+        		return;
+        	}
             
             //all attributes
-        	for (int i = 0; i < attributes.length; ++i) {
-            	outKey.initialize();
+        	for (int i = 0; i < extractor.getNumAttributes(); ++i) {
             	outVal.initialize();
-            	val = Double.parseDouble(items[attributes[i]]);
-            	if (operation.equals("mad")) {
-            		if (null != idOrdinals) {
-        				String compId = Utility.join(items, 0, idOrdinals.length, fieldDelimRegex);
-        				median = statsManager.getKeyedMedian(compId, attributes[i]);
-            			val = Math.abs(val - median);
-            		} else {
-        				median = statsManager.getMedian(attributes[i]);
-            			val = Math.abs(val - median);
-            		}
-            	}
-            	bin = (int)(val / numericAttrs[i].getBucketWidth());
+            	val = extractor.getValue(i);
+            	bin = extractor.getBin(i, val);
             	
-        		//record partition id available
-            	if (null != idOrdinals) {
-            		outKey.addFromArray(items, idOrdinals);
-            	}
-            	
-        		//seasonal analysis
-        		if (seasonalAnalysis) {
-	                outKey.add(cycleIndex);
-        		}            	
-
         		//attribute ord and bin
-        		outKey.add(attributes[i], bin);
+            	extractor.setKey(outKey, i);
+        		outKey.add(bin);
         		
             	outVal.add(bin, val);
             	context.write(outKey, outVal);
@@ -228,6 +289,99 @@ public class NumericalAttrMedian extends Configured implements Tool {
         }
 	}
 	
+	/**
+	 * Builds quantile sketch for each key in memory, emitted in cleanup or when there are too many keys
+	 * @author pranab
+	 *
+	 */
+	public static class SketchMapper extends Mapper<LongWritable, Text, Tuple, QuantileSketch> {
+		private Tuple outKey = new Tuple();
+        private AttributeValueExtractor extractor;
+        private Map<Tuple, QuantileSketch> sketches = new HashMap<Tuple, QuantileSketch>();
+        private int sketchSize;
+        private int maxKeys;
+        
+        /* (non-Javadoc)
+         * @see org.apache.hadoop.mapreduce.Mapper#setup(org.apache.hadoop.mapreduce.Mapper.Context)
+         */
+        protected void setup(Context context) throws IOException, InterruptedException {
+        	Configuration config = context.getConfiguration();
+        	extractor = new AttributeValueExtractor(config);
+        	sketchSize = config.getInt("nam.sketch.size", QuantileSketch.DEF_K);
+        	maxKeys = config.getInt("nam.sketch.max.keys", 10000);
+        }
+
+        /* (non-Javadoc)
+         * @see org.apache.hadoop.mapreduce.Mapper#map(KEYIN, VALUEIN, org.apache.hadoop.mapreduce.Mapper.Context)
+         */
+        @Override
+        protected void map(LongWritable key, Text value, Context context)
+            throws IOException, InterruptedException {
+        	if (!extractor.extract(value)) {
+        		return;
+        	}
+        	for (int i = 0; i < extractor.getNumAttributes(); ++i) {
+            	extractor.setKey(outKey, i);
+            	QuantileSketch sketch = sketches.get(outKey);
+            	if (null == sketch) {
+            		if (sketches.size() == maxKeys) {
+            			emitSketches(context);
+            		}
+            		sketch = new QuantileSketch(sketchSize);
+            		sketches.put(outKey.createClone(), sketch);
+            	}
+            	sketch.add(extractor.getValue(i));
+        	}
+        }
+        
+		/* (non-Javadoc)
+		 * @see org.apache.hadoop.mapreduce.Mapper#cleanup(org.apache.hadoop.mapreduce.Mapper.Context)
+		 */
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			emitSketches(context);
+		}
+		
+		/**
+		 * @param context
+		 * @throws IOException
+		 * @throws InterruptedException
+		 */
+		private void emitSketches(Context context) throws IOException, InterruptedException {
+			for (Map.Entry<Tuple, QuantileSketch> entry : sketches.entrySet()) {
+				context.write(entry.getKey(), entry.getValue());
+			}
+			sketches.clear();
+		}
+	}
+	
+	/**
+	 * Merges sketches
+	 * @author pranab
+	 *
+	 */
+	public static class SketchCombiner extends Reducer<Tuple, QuantileSketch, Tuple, QuantileSketch> {
+		private QuantileSketch sketch;
+		
+		/* (non-Javadoc)
+		 * @see org.apache.hadoop.mapreduce.Reducer#setup(org.apache.hadoop.mapreduce.Reducer.Context)
+		 */
+		protected void setup(Context context) throws IOException, InterruptedException {
+			sketch = new QuantileSketch(context.getConfiguration().getInt("nam.sketch.size", QuantileSketch.DEF_K));
+		}
+		
+		/* (non-Javadoc)
+		 * @see org.apache.hadoop.mapreduce.Reducer#reduce(KEYIN, java.lang.Iterable, org.apache.hadoop.mapreduce.Reducer.Context)
+		 */
+		protected void reduce(Tuple key, Iterable<QuantileSketch> values, Context context)
+        	throws IOException, InterruptedException {
+			sketch.initialize();
+			for (QuantileSketch value : values) {
+				sketch.merge(value);
+			}
+			context.write(key, sketch);
+		}
+	}
+	
 	/**
 	* @author pranab
   	*
@@ -305,10 +459,10 @@ public class NumericalAttrMedian extends Configured implements Tool {
 			}
 			
         	//everything from key except last field which is bin
-        	stBld.append(key.toString(0, key.getSize()-1));
+        	stBld.append(key.toString(0, key.getSize()-1)).append(fieldDelim);
         	
         	if (operation.equals("mad")) {
-        		mad = 1.4296 * med;
+        		mad = MedianStatsManager.MAD_SCALE * med;
         		stBld.append(mad);
         	} else {
         		stBld.append(med);
@@ -319,6 +473,65 @@ public class NumericalAttrMedian extends Configured implements Tool {
 		}
 	}	
 	
+	/**
+	 * Merges sketches and outputs median, median absolute deviation, quantiles or the sketch 
+	 * itself for use by MedianStatsManager
+	 * @author pranab
+	 *
+	 */
+	public static class SketchReducer extends Reducer<Tuple, QuantileSketch, NullWritable, Text> {
+		private Text outVal = new Text();
+		private StringBuilder stBld =  new StringBuilder();
+		private String fieldDelim;
+        private String operation;
+        private double[] quantiles;
+		private QuantileSketch sketch;
+
+		/* (non-Javadoc)
+		 * @see org.apache.hadoop.mapreduce.Reducer#setup(org.apache.hadoop.mapreduce.Reducer.Context)
+		 */
+		protected void setup(Context context) throws IOException, InterruptedException {
+			Configuration config = context.getConfiguration();
+			fieldDelim = config.get("field.delim.out", ",");
+        	operation = config.get("nam.op.type", "med");
+        	if (operation.equals("quant")) {
+        		quantiles = Utility.assertDoubleArrayConfigParam(config, "nam.sketch.quantiles", Utility.configDelim, 
+        				"missing quantile list");
+        	}
+			sketch = new QuantileSketch(config.getInt("nam.sketch.size", QuantileSketch.DEF_K));
+		}
+		
+		/* (non-Javadoc)
+		 * @see org.apache.hadoop.mapreduce.Reducer#reduce(KEYIN, java.lang.Iterable, org.apache.hadoop.mapreduce.Reducer.Context)
+		 */
+		protected void reduce(Tuple key, Iterable<QuantileSketch> values, Context context)
+     	throws IOException, InterruptedException {
+			sketch.initialize();
+			for (QuantileSketch value : values) {
+				sketch.merge(value);
+			}
+			
+			key.setDelim(fieldDelim);
+			stBld.delete(0, stBld.length());
+        	stBld.append(key.toString()).append(fieldDelim);
+        	if (operation.equals("mad")) {
+        		stBld.append(MedianStatsManager.MAD_SCALE * sketch.getMedian());
+        	} else if (operation.equals("quant")) {
+        		for (int i = 0; i < quantiles.length; ++i) {
+        			if (i > 0) {
+        				stBld.append(fieldDelim);
+        			}
+        			stBld.append(sketch.getQuantile(quantiles[i]));
+        		}
+        	} else if (operation.equals("sketch")) {
+        		stBld.append(sketch.toBase64());
+        	} else {
+        		stBld.append(sketch.getMedian());
+        	}
+        	outVal.set(stBld.toString());
+			context.write(NullWritable.get(), outVal);
+		}
+	}
 
 	/**
 	 * @param args
@@ -35,8 +35,11 @@ import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.chombo.util.Attribute;
 import org.chombo.util.AttributeZscoreFilter;
+import org.chombo.util.DelimitedFieldTokenizer;
 import org.chombo.util.GenericAttributeSchema;
+import org.chombo.util.InMapperAggregator;
 import org.chombo.util.SeasonalAnalyzer;
+import org.chombo.util.NumericTuple;
 import org.chombo.util.Tuple;
 import org.chombo.util.Utility;
 
@@ -64,8 +67,8 @@ public class NumericalAttrStats  extends Configured implements Tool {
         job.setReducerClass(NumericalAttrStats.StatsReducer.class);
         job.setCombinerClass(NumericalAttrStats.StatsCombiner.class);
         
-        job.setMapOutputKeyClass(Tuple.class);
-        job.setMapOutputValueClass(Tuple.class);
+        Utility.setTupleMapOutput(job, "nas");
+        job.setMapOutputValueClass(NumericTuple.class);
 
         job.setOutputKeyClass(NullWritable.class);
         job.setOutputValueClass(Text.class);
@@ -82,15 +85,15 @@ public class NumericalAttrStats  extends Configured implements Tool {
 	 * @author pranab
 	 *
 	 */
-	public static class StatsMapper extends Mapper<LongWritable, Text, Tuple, Tuple> {
-		private Tuple outKey = new Tuple();
-		private Tuple outVal = new Tuple();
+	public static class StatsMapper extends Mapper<LongWritable, Text, Tuple, NumericTuple> {
+		private Tuple outKey;
+		private NumericTuple outVal = new NumericTuple();
 		private int[]  attributes;
         private String fieldDelimRegex;
         private double val;
         private double sqVal;
         private int count = 1;
-        private String[] items;
+        private DelimitedFieldTokenizer tokenizer;
         private int[] idOrdinals;
         private GenericAttributeSchema schema;
         private boolean seasonalAnalysis;
@@ -100,6 +103,7 @@ public class NumericalAttrStats  extends Configured implements Tool {
         private long timeStamp;
         private int cycleIndex;
         private AttributeZscoreFilter attrZscoreFilter;
+        private InMapperAggregator<Tuple, NumericTuple> aggregator;
         
         
         /* (non-Javadoc)
@@ -107,7 +111,9 @@ public class NumericalAttrStats  extends Configured implements Tool {
          */
         protected void setup(Context context) throws IOException, InterruptedException {
         	Configuration config = context.getConfiguration();
+        	outKey = Utility.createTuple(config);
         	fieldDelimRegex = config.get("field.delim.regex", ",");
+        	tokenizer = new DelimitedFieldTokenizer(fieldDelimRegex).withGuard(config.get("field.delim.guard"));
         	schema = Utility.getGenericAttributeSchema(config,  "nas.schema.file.path");
         	attributes =  Utility.getAttributes("nas.attr.list", configDelim,schema, config,  
         			Attribute.DATA_TYPE_INT, Attribute.DATA_TYPE_LONG, Attribute.DATA_TYPE_DOUBLE);        	
@@ -146,16 +152,27 @@ public class NumericalAttrStats  extends Configured implements Tool {
         				Utility.configDelim, Utility.configSubFieldDelim, "attribute max zscore missing");
         		attrZscoreFilter = new AttributeZscoreFilter(attrZscores, config, "nas.stats.file.path", fieldDelim);
         	}
+        	
+        	aggregator = InMapperAggregator.create(config, "nas", new StatsMerger());
        }
 
+        /* (non-Javadoc)
+         * @see org.apache.hadoop.mapreduce.Mapper#cleanup(org.apache.hadoop.mapreduce.Mapper.Context)
+         */
+        protected void cleanup(Context context) throws IOException, InterruptedException {
+        	if (null != aggregator) {
+        		aggregator.flush(context);
+        	}
+        }
+
         @Override
         protected void map(LongWritable key, Text value, Context context)
             throws IOException, InterruptedException {
-            items  =  value.toString().split(fieldDelimRegex, -1);
+            tokenizer.tokenize(value);
 
             //seasonality cycle index
     		if (seasonalAnalysis) {
-                timeStamp = Long.parseLong(items[timeStampFieldOrdinal]);
+                timeStamp = tokenizer.getLong(timeStampFieldOrdinal);
                 cycleIndex = seasonalAnalyzer.getCycleIndex(timeStamp);
                 
                 //outside seasonal time band
@@ -169,7 +186,7 @@ public class NumericalAttrStats  extends Configured implements Tool {
             	outVal.initialize();
             	
             	if (null != idOrdinals) {
-            		outKey.addFromArray(items, idOrdinals);
+            		tokenizer.addToTuple(outKey, idOrdinals);
             	}
         		
         		//seasonal analysis
@@ -178,23 +195,45 @@ public class NumericalAttrStats  extends Configured implements Tool {
         		}
         		outKey.add(attr);
 
-            	val = Double.parseDouble(items[attr]);
+            	val = tokenizer.getDouble(attr);
             	if (null == attrZscoreFilter || attrZscoreFilter.isWithinBound(attr, val))  {
             		//emit if filter is not set or value is within zscore bounds 
                 	sqVal = val * val;
-                	outVal.add(val, val, val, sqVal, count);
-                	context.write(outKey, outVal);
+                	outVal.addDouble(val, val, val, sqVal);
+                	outVal.addLong(count);
+                	if (null != aggregator) {
+                		aggregator.aggregate(outKey, outVal, context);
+                	} else {
+                		context.write(outKey, outVal);
+                	}
             	}
         	}
         }
 	}
 
 	/**
+	 * Merges sum, min, max, sum of square and count for in mapper aggregation
 	 * @author pranab
 	 *
 	 */
-	public static class StatsCombiner extends Reducer<Tuple, Tuple, Tuple, Tuple> {
-		private Tuple outVal = new Tuple();
+	public static class StatsMerger implements InMapperAggregator.ValueMerger<NumericTuple> {
+		@Override
+		public int merge(NumericTuple aggregate, NumericTuple value) {
+			aggregate.setDouble(0, aggregate.getDouble(0) + value.getDouble(0));
+			aggregate.setDouble(1, Math.min(aggregate.getDouble(1), value.getDouble(1)));
+			aggregate.setDouble(2, Math.max(aggregate.getDouble(2), value.getDouble(2)));
+			aggregate.setDouble(3, aggregate.getDouble(3) + value.getDouble(3));
+			aggregate.setLong(0, aggregate.getLong(0) + value.getLong(0));
+			return 0;
+		}
+	}
+
+	/**
+	 * @author pranab
+	 *
+	 */
+	public static class StatsCombiner extends Reducer<Tuple, NumericTuple, Tuple, NumericTuple> {
+		private NumericTuple outVal = new NumericTuple();
 		private double sum;
 		private double sumSq;
 		private int totalCount;
@@ -206,32 +245,34 @@ public class NumericalAttrStats  extends Configured implements Tool {
         /* (non-Javadoc)
          * @see org.apache.hadoop.mapreduce.Reducer#reduce(KEYIN, java.lang.Iterable, org.apache.hadoop.mapreduce.Reducer.Context)
          */
-        protected void reduce(Tuple  key, Iterable<Tuple> values, Context context)
+        protected void reduce(Tuple  key, Iterable<NumericTuple> values, Context context)
         		throws IOException, InterruptedException {
     		sum = 0;
     		sumSq = 0;
     		totalCount = 0;
     		int i = 0;
-    		for (Tuple val : values) {
+    		for (NumericTuple val : values) {
     			sum  += val.getDouble(0);
     			curMin = val.getDouble(1);
     			curMax = val.getDouble(2);
     			sumSq += val.getDouble(3);
-    			totalCount += val.getInt(4);
+    			totalCount += val.getInt(0);
     			if (i == 0) {
     				min = curMin;
     				max = curMax;
     			} else {
     				if (curMin < min) {
-    						min = curMin;
-    				} else if (curMax > max) {
+    					min = curMin;
+    				}
+    				if (curMax > max) {
     					max = curMax;
     				}
     			}
     			++i;
     		}
     		outVal.initialize();
-    		outVal.add(sum, min, max, sumSq, totalCount);
+    		outVal.addDouble(sum, min, max, sumSq);
+    		outVal.addLong(totalCount);
         	context.write(key, outVal);       	
         }		
 	}	
@@ -240,7 +281,7 @@ public class NumericalAttrStats  extends Configured implements Tool {
      * @author pranab
      *
      */
-    public static class StatsReducer extends Reducer<Tuple, Tuple, NullWritable, Text> {
+    public static class StatsReducer extends Reducer<Tuple, NumericTuple, NullWritable, Text> {
     	protected Text outVal = new Text();
 		protected StringBuilder stBld =  new StringBuilder();;
 		protected String fieldDelim;
@@ -270,7 +311,7 @@ public class NumericalAttrStats  extends Configured implements Tool {
     	/* (non-Javadoc)
     	 * @see org.apache.hadoop.mapreduce.Reducer#reduce(KEYIN, java.lang.Iterable, org.apache.hadoop.mapreduce.Reducer.Context)
     	 */
-    	protected void reduce(Tuple key, Iterable<Tuple> values, Context context)
+    	protected void reduce(Tuple key, Iterable<NumericTuple> values, Context context)
         	throws IOException, InterruptedException {
     		key.setDelim(fieldDelim);
     		processReduce(values);
@@ -280,24 +321,25 @@ public class NumericalAttrStats  extends Configured implements Tool {
     	/**
     	 * @param values
     	 */
-    	protected void processReduce(Iterable<Tuple> values) {
+    	protected void processReduce(Iterable<NumericTuple> values) {
     		sum = 0;
     		sumSq = 0;
     		totalCount = 0;
     		int i = 0;
-    		for (Tuple val : values) {
+    		for (NumericTuple val : values) {
        			sum  += val.getDouble(0);
     			curMin = val.getDouble(1);
     			curMax = val.getDouble(2);
     			sumSq += val.getDouble(3);
-    			totalCount += val.getInt(4);
+    			totalCount += val.getInt(0);
     			if (i == 0) {
     				min = curMin;
     				max = curMax;
     			} else {
     				if (curMin < min) {
     					min = curMin;
-    				} else if (curMax > max) {
+    				}
+    				if (curMax > max) {
     					max = curMax;
     				}
     			}
@@ -21,8 +21,6 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
@@ -39,6 +37,7 @@ import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.chombo.util.Attribute;
 import org.chombo.util.GenericAttributeSchema;
+import org.chombo.util.MultiPatternMatcher;
 import org.chombo.util.Tuple;
 import org.chombo.util.Utility;
 
@@ -93,8 +92,8 @@ public class PatternMatchedValueCounter extends Configured implements Tool {
         private String fieldDelimRegex;
         private GenericAttributeSchema schema;
         private Map<Integer, String[]> attrPatternTexts = new HashMap<Integer, String[]>();
-        private Map<Integer, Pattern[]> attrPatterns = new HashMap<Integer, Pattern[]>();
-        private Matcher matcher;
+        private Map<Integer, MultiPatternMatcher> attrPatterns = new HashMap<Integer, MultiPatternMatcher>();
+        private int[] matchedIds;
         
         /* (non-Javadoc)
          * @see org.apache.hadoop.mapreduce.Mapper#setup(org.apache.hadoop.mapreduce.Mapper.Context)
@@ -116,12 +115,9 @@ public class PatternMatchedValueCounter extends Configured implements Tool {
     			if (null != values) {
     				//specified pattern tests
     				String[] pattrenTexts = values.split(configDelim);
-    				Pattern[] patterns = new Pattern[pattrenTexts.length];
-    				int i = 0;
-    				for (String pattrenText :  pattrenTexts) {
-    					patterns[i++] = Pattern.compile(pattrenText);
-    				}
-    				attrPatterns.put(ord,  patterns);
+    				attrPatterns.put(ord,  new MultiPatternMatcher(pattrenTexts, true));
+    				matchedIds = null == matchedIds || matchedIds.length < pattrenTexts.length ?
+    					new int[pattrenTexts.length] : matchedIds;
     				attrPatternTexts.put(ord, pattrenTexts);
     			} 
     		}
@@ -133,17 +129,13 @@ public class PatternMatchedValueCounter extends Configured implements Tool {
             items  =  value.toString().split(fieldDelimRegex, -1);
             //all attributes
             for (int attr :  attrPatterns.keySet()) {
-            	//all matching values
-            	int i = 0;
+            	//all matching values in one pass
             	String[] patternTexts = attrPatternTexts.get(attr);
-            	for (Pattern pattern :  attrPatterns.get(attr)) {
-            		matcher = pattern.matcher(items[attr]);
-            		if (matcher.matches()) {
-            			outKey.initialize();
-            			outKey.add(attr, patternTexts[i]);
-            			context.write(outKey, outVal);
-            		}
-            		++i;
+            	int count = attrPatterns.get(attr).match(items[attr], matchedIds);
+            	for (int i = 0; i < count; ++i) {
+            		outKey.initialize();
+            		outKey.add(attr, patternTexts[matchedIds[i]]);
+            		context.write(outKey, outVal);
             	}
             }
         }
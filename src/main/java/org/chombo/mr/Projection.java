@@ -44,6 +44,7 @@ import org.chombo.redis.RedisCache;
 import org.chombo.util.AttributeFilter;
 import org.chombo.util.BaseAttributeFilter;
 import org.chombo.util.BasicUtils;
+import org.chombo.util.DelimitedFieldTokenizer;
 import org.chombo.util.Pair;
 import org.chombo.util.RowColumnFilter;
 import org.chombo.util.Tuple;
@@ -107,6 +108,7 @@ public class Projection extends Configured implements Tool {
         private AttributeFilter attrFilter;
         private RowColumnFilter rowColFilter = new RowColumnFilter();
         private boolean idIncluded;
+        private DelimitedFieldTokenizer tokenizer;
 
         @Override
         protected void setup(Context context) throws IOException, InterruptedException {
@@ -114,6 +116,7 @@ public class Projection extends Configured implements Tool {
         	keyField = config.getInt("pro.key.field", 0);
         	fieldDelimRegex = config.get("field.delim.regex", ",");
         	fieldDelimOut = config.get("field.delim", ",");
+        	tokenizer = new DelimitedFieldTokenizer(fieldDelimRegex).withGuard(config.get("field.delim.guard"));
         	
         	//filter expression delimetrs
            	setFilterExprDelimeter(config);
@@ -133,17 +136,27 @@ public class Projection extends Configured implements Tool {
         	} 
        }
         
+        /* (non-Javadoc)
+         * @see org.apache.hadoop.mapreduce.Mapper#cleanup(org.apache.hadoop.mapreduce.Mapper.Context)
+         */
+        @Override
+        protected void cleanup(Context context) throws IOException, InterruptedException {
+        	if (null != attrFilter && context.getConfiguration().getBoolean("pro.filter.pass.rate.counters", false)) {
+        		attrFilter.reportPassRates(context);
+        	}
+        }
+        
         @Override
         protected void map(LongWritable key, Text value, Context context)
             throws IOException, InterruptedException {
-            String[] items  =  value.toString().split(fieldDelimRegex, -1);
+            tokenizer.tokenize(value);
             
             //only if filter matched
-            if (null == attrFilter || attrFilter.evaluate(items)) {
+            if (null == attrFilter || attrFilter.evaluate(tokenizer.getItems())) {
             	if (idIncluded) {
-            		outVal.set(Utility.extractFields(items , projectionFields, fieldDelimOut, false));
+            		tokenizer.setFields(outVal, projectionFields, fieldDelimOut);
             	} else {
-            		outVal.set(items[keyField] + fieldDelimOut +  Utility.extractFields(items , projectionFields, 
+            		outVal.set(tokenizer.getString(keyField) + fieldDelimOut +  tokenizer.extractFields(projectionFields, 
             				fieldDelimOut, false));
             	}
             	context.write(NullWritable.get(), outVal);
@@ -168,6 +181,7 @@ public class Projection extends Configured implements Tool {
         private int[] groupByFieldOrdinals;
         private BaseAttributeFilter attrFilter;
         private RowColumnFilter rowColFilter = new RowColumnFilter();
+        private DelimitedFieldTokenizer tokenizer;
         
         /* (non-Javadoc)
          * @see org.apache.hadoop.mapreduce.Mapper#setup(org.apache.hadoop.mapreduce.Mapper.Context)
@@ -176,6 +190,7 @@ public class Projection extends Configured implements Tool {
         	Configuration config = context.getConfiguration();
         	fieldDelimRegex = config.get("field.delim.regex", ",");
         	fieldDelimOut = config.get("field.delim.out", ",");
+        	tokenizer = new DelimitedFieldTokenizer(fieldDelimRegex).withGuard(config.get("field.delim.guard"));
         	
         	String operation = config.get("pro.projection.operation", "project");
         	groupBy = operation.startsWith("group");
@@ -219,34 +234,45 @@ public class Projection extends Configured implements Tool {
          	}
        }
 
+        /* (non-Javadoc)
+         * @see org.apache.hadoop.mapreduce.Mapper#cleanup(org.apache.hadoop.mapreduce.Mapper.Context)
+         */
+        @Override
+        protected void cleanup(Context context) throws IOException, InterruptedException {
+        	if (attrFilter instanceof AttributeFilter && 
+        		context.getConfiguration().getBoolean("pro.filter.pass.rate.counters", false)) {
+        		((AttributeFilter)attrFilter).reportPassRates(context);
+        	}
+        }
+
         /* (non-Javadoc)
          * @see org.apache.hadoop.mapreduce.Mapper#map(KEYIN, VALUEIN, org.apache.hadoop.mapreduce.Mapper.Context)
          */
         @Override
         protected void map(LongWritable key, Text value, Context context)
             throws IOException, InterruptedException {
-            String[] items  =  value.toString().split(fieldDelimRegex, -1);
+            tokenizer.tokenize(value);
             
             //only if filter matched
-            if (null == attrFilter || attrFilter.evaluate(items)) {
+            if (null == attrFilter || attrFilter.evaluate(tokenizer.getItems())) {
 	        	outKey.initialize();
         		if (includeKey) {
-        			outKey.add(items[keyField]);
+        			outKey.add(tokenizer.getString(keyField));
         		}
 	            if (null != orderByFieldOrdinals) {
 	            	//order by
 	            	for (Pair<Integer, Boolean> field : orderByFieldOrdinals) {
 	            		if (field.getRight()) {
-		               		outKey.add(Double.parseDouble(items[field.getLeft()]));
+		               		outKey.add(tokenizer.getDouble(field.getLeft()));
 	            		} else {
-		               		outKey.add(items[field.getLeft()]);
+		               		outKey.add(tokenizer.getString(field.getLeft()));
 	            		}
 	            	}
 	            } else {
 	            	//group by
-	            	outKey.addArrayElements(items, groupByFieldOrdinals);
+	            	tokenizer.addToTuple(outKey, groupByFieldOrdinals);
 	            }
-	        	outVal.set(BasicUtils.extractFields(items , projectionFields, fieldDelimOut, false));
+	            tokenizer.setFields(outVal, projectionFields, fieldDelimOut);
 	        	context.write(outKey, outVal);
             }
         }
@@ -609,6 +635,9 @@ public class Projection extends Configured implements Tool {
 				
 			}
     	}
+    	if (null != attrFilter) {
+    		attrFilter.withAdaptiveOrdering(config.getBoolean("pro.filter.adaptive.ordering", false));
+    	}
     	return attrFilter;
     }
  
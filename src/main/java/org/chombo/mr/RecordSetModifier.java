@@ -18,6 +18,8 @@
 package org.chombo.mr;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
@@ -33,6 +35,7 @@ import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
+import org.chombo.util.BloomFilter;
 import org.chombo.util.SecondarySort;
 import org.chombo.util.Tuple;
 import org.chombo.util.Utility;
@@ -72,6 +75,16 @@ public class RecordSetModifier  extends Configured implements Tool{
         numReducer = -1 == numReducer ? job.getConfiguration().getInt("num.reducer", 1) : numReducer;
         job.setNumReduceTasks(numReducer);
         
+        Configuration config = job.getConfiguration();
+        if (config.getBoolean("rsm.bloom.filter", false) && !config.getBoolean("rsm.exclude.rec", true)) {
+        	//semi join pruning of records, only for include mode since bloom filter can have false positives
+        	List<Path> recIdFiles = new ArrayList<Path>();
+        	List<Path> recFiles = new ArrayList<Path>();
+        	Utility.listInputFiles(job, config.get("rsm.record.identifier.file.prefix", "recid"), recIdFiles, recFiles);
+        	SemiJoinFilter.setup(job, "rsm", recIdFiles, new int[]{ModifierMapper.FIELD_VALUE_ORDINAL}, 
+        			config.get("field.delim", ","), false, null);
+        }
+        
         int status =  job.waitForCompletion(true) ? 0 : 1;
         return status;
     }
@@ -87,6 +100,7 @@ public class RecordSetModifier  extends Configured implements Tool{
     	private Tuple valOut = new Tuple();
     	private boolean isRecIdFileSplit;
     	private int idFieldOrdinal;
+    	private BloomFilter recIdFilter;
     	private static final int FIELD_VALUE_ORDINAL = 0;
     	
         /* (non-Javadoc)
@@ -98,6 +112,9 @@ public class RecordSetModifier  extends Configured implements Tool{
         	String recordIdentifierFilePrefix = config.get("rsm.record.identifier.file.prefix", "recid");
         	isRecIdFileSplit = ((FileSplit)context.getInputSplit()).getPath().getName().startsWith(recordIdentifierFilePrefix);
         	idFieldOrdinal = config.getInt("rsm.id.field.ordinal", -1);
+        	if (!isRecIdFileSplit) {
+        		recIdFilter = SemiJoinFilter.load(config);
+        	}
         }
 
         /* (non-Javadoc)
@@ -114,12 +131,16 @@ public class RecordSetModifier  extends Configured implements Tool{
            		//record identifier
            		keyOut.add(items[FIELD_VALUE_ORDINAL],0);
            		valOut.add(0);
+               	context.write(keyOut, valOut);
+           	} else if (null != recIdFilter && !recIdFilter.mightContain(items[idFieldOrdinal])) {
+           		//not in included record identifiers
+           		context.getCounter("Record set stats", "pruned count").increment(1);
            	} else {
            		//actual records
            		keyOut.add(items[idFieldOrdinal],1);
            		valOut.add(1, value.toString());
+               	context.write(keyOut, valOut);
            	}
-           	context.write(keyOut, valOut);
         }
     
     }
@@ -20,7 +20,10 @@ package org.chombo.mr;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
@@ -38,6 +41,8 @@ import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.chombo.distance.AttributeDistanceSchema;
 import org.chombo.distance.InterRecordDistance;
+import org.chombo.distance.InterRecordDistance.PreparedRecord;
+import org.chombo.distance.RecordBlocker;
 import org.chombo.util.Attribute;
 import org.chombo.util.BasicUtils;
 import org.chombo.util.GenericAttributeSchema;
@@ -46,11 +51,17 @@ import org.chombo.util.Tuple;
 import org.chombo.util.Utility;
 
 /**
+ * Finds similar record pairs. Candidate pairs are either all pairs or, with blocking, only pairs
+ * sharing a blocking key value or a locality sensitive hashing band. Optionally only top matches of
+ * each record within a reducer group are emitted, which is a lossless pre filter for TopMatches
  * @author pranab
  *
  */
 public class RecordSimilarity extends Configured implements Tool {
 	private static final int hashMultiplier = 1000;
+	private static final int EVAL_BLOCK = -1;
+	private static final int EVAL_SAMPLE_SCALE = 10000;
+	private static final String EVAL_COUNTER_GROUP = "Blocking evaluation";
 
 	@Override
 	public int run(String[] args) throws Exception {
@@ -81,8 +92,65 @@ public class RecordSimilarity extends Configured implements Tool {
         job.setNumReduceTasks(numReducer);
 
         int status =  job.waitForCompletion(true) ? 0 : 1;
+        
+        //blocking recall and precision against all pairs of the sample
+        if (0 == status && isBlocking(job.getConfiguration())) {
+        	long matches = job.getCounters().findCounter(EVAL_COUNTER_GROUP, "sample matches").getValue();
+        	long candidates = job.getCounters().findCounter(EVAL_COUNTER_GROUP, "sample candidate pairs").getValue();
+        	long matchedCandidates = job.getCounters().findCounter(EVAL_COUNTER_GROUP, "sample matched candidate pairs").getValue();
+        	if (matches > 0 && candidates > 0) {
+        		System.out.println("blocking recall:" + BasicUtils.formatDouble((double)matchedCandidates / matches, 3) + 
+        			" precision:" + BasicUtils.formatDouble((double)matchedCandidates / candidates, 3));
+        	}
+        }
         return status;
 	}
+	
+	/**
+	 * @param config
+	 * @return
+	 */
+	private static boolean isBlocking(Configuration config) {
+		return config.get("resi.candidate.gen.strategy", "exhaustive").equals("blocking");
+	}
+	
+	/**
+	 * @param config
+	 * @param schema
+	 * @return
+	 * @throws IOException
+	 */
+	private static RecordBlocker createRecordBlocker(Configuration config, GenericAttributeSchema schema) 
+		throws IOException {
+    	String distSchemaPath = Utility.assertStringConfigParam(config, "resi.dist.schema.path", "missing distance shema file path");
+    	InputStream inStrDist = Utility.getFileStream(distSchemaPath);
+    	AttributeDistanceSchema distSchema = BasicUtils.getDistanceSchema(inStrDist);
+    	RecordBlocker blocker = new RecordBlocker(schema, distSchema);
+		
+    	//blocking keys, each one a set of attributes
+    	String[] blockingKeys = Utility.stringArrayFromString(config, "resi.blocking.key.ordinals", Utility.configDelim);
+    	if (null != blockingKeys) {
+    		for (String blockingKey : blockingKeys) {
+    			blocker.withBlockingKey(BasicUtils.intArrayFromString(blockingKey, Utility.configSubFieldDelim));
+    		}
+    	}
+    	
+    	//locality sensitive hashing
+    	int numBands = config.getInt("resi.lsh.num.bands", 0);
+    	if (numBands > 0) {
+    		blocker.withLocalitySensitiveHashing(numBands, config.getInt("resi.lsh.num.rows", 4)).
+    			withBucketWidth(config.getFloat("resi.lsh.bucket.width", (float)1.0)).
+    			withSeed(config.getLong("resi.lsh.seed", 1000));
+    	}
+    	
+    	int[] facetedFields = Utility.intArrayFromString(config, "resi.faceted.field.ordinal", Utility.configDelim);
+    	if (null != facetedFields) {
+    		blocker.withFacetedFields(facetedFields);
+    	}
+    	blocker.withCategoricalSet(config.getBoolean("resi.categorical.set", false)).
+    		withSubFieldDelim(config.get("resi.sub.field.delim.regex", "::"));
+    	return blocker.initialize();
+	}
 
 	/**
 	 * @author pranab
@@ -102,6 +170,9 @@ public class RecordSimilarity extends Configured implements Tool {
    	 	private boolean interSetMatching;
    	 	private  boolean  isBaseSetSplit;
    	 	private GenericAttributeSchema schema;
+   	 	private boolean blocking;
+   	 	private RecordBlocker blocker;
+   	 	private int evalSampleThreshold;
         
         /* (non-Javadoc)
          * @see org.apache.hadoop.mapreduce.Mapper#setup(org.apache.hadoop.mapreduce.Mapper.Context)
@@ -129,6 +200,14 @@ public class RecordSimilarity extends Configured implements Tool {
        	 				"missing base split prefix");
        	 		isBaseSetSplit = ((FileSplit)context.getInputSplit()).getPath().getName().startsWith(baseSetSplitPrefix);
        	 	}
+       	 	
+       	 	//blocking and sampling for evaluating blocking against all pairs
+       	 	blocking = isBlocking(config);
+       	 	if (blocking) {
+       	 		blocker = createRecordBlocker(config, schema);
+       	 		float evalSampleFraction = config.getFloat("resi.blocking.eval.sample.fraction", (float)0.0);
+       	 		evalSampleThreshold = (int)(evalSampleFraction * EVAL_SAMPLE_SCALE);
+       	 	}
         }
         
         @Override
@@ -138,7 +217,27 @@ public class RecordSimilarity extends Configured implements Tool {
             String partition = partitonOrdinal >= 0 ? items[partitonOrdinal] :  "N";
             hashCode = BasicUtils.positiveHashCode(items[idOrdinal]);
 
-            if (interSetMatching) {
+            if (blocking) {
+            	//only to the blocks the record belongs to
+            	int side = interSetMatching && !isBaseSetSplit ? 1 : 0;
+            	long[] blocks = blocker.findBlocks(items);
+            	for (int b = 0; b < blocks.length; ++b) {
+            		if (blocks[b] != RecordBlocker.NO_BLOCK) {
+            			initKeyVal();
+            			outKey.add(partition, b, blocks[b], side);
+            			setBlockedValue(side, value.toString(), blocks);
+            			context.write(outKey, outVal);
+            		}
+            	}
+            	
+            	//sample compared exhaustively 
+            	if (hashCode % EVAL_SAMPLE_SCALE < evalSampleThreshold) {
+        			initKeyVal();
+        			outKey.add(partition, EVAL_BLOCK, 0L, side);
+        			setBlockedValue(side, value.toString(), blocks);
+        			context.write(outKey, outVal);
+            	}
+            } else if (interSetMatching) {
             	// 2 sets
 	    		hash = hashCode %  bucketCount ;
             	if (isBaseSetSplit) {
@@ -185,6 +284,19 @@ public class RecordSimilarity extends Configured implements Tool {
 			outKey.initialize();
 			outVal.initialize();
         }
+        
+        /**
+         * record with all its blocks, for skipping pairs already compared in another block
+         * @param side
+         * @param record
+         * @param blocks
+         */
+        private void setBlockedValue(int side, String record, long[] blocks) {
+			outVal.add(side, record);
+			for (long block : blocks) {
+				outVal.append(block);
+			}
+        }
 	}
 	
 	/**
@@ -210,7 +322,20 @@ public class RecordSimilarity extends Configured implements Tool {
         private int dist;
         private boolean outputRecord;
         private boolean outputIdFirst;
-
+        private boolean blocking;
+        private boolean interSetMatching;
+        private List<String> idList = new ArrayList<String>();
+        private List<PreparedRecord> preparedList = new ArrayList<PreparedRecord>();
+        private List<long[]> blockList = new ArrayList<long[]>();
+        private long comparedCount;
+        private long samplePairCount;
+        private long sampleMatchCount;
+        private long sampleCandidateCount;
+        private long sampleMatchedCandidateCount;
+        private int scale;
+        private double thresholdBound;
+        private int topMatchCount;
+        private Map<String, PriorityQueue<Match>> topMatches = new HashMap<String, PriorityQueue<Match>>();
 		
 		/* (non-Javadoc)
 		 * @see org.apache.hadoop.mapreduce.Reducer#setup(org.apache.hadoop.mapreduce.Reducer.Context)
@@ -238,7 +363,7 @@ public class RecordSimilarity extends Configured implements Tool {
             idOrdinal = schema.getIdField().getOrdinal();
             
             //scale
-        	int scale = config.getInt("resi.distance.scale", 1000);
+        	scale = config.getInt("resi.distance.scale", 1000);
         	recDistance.withScale(scale);
         	
         	//faceted fields
@@ -264,8 +389,31 @@ public class RecordSimilarity extends Configured implements Tool {
         	//distance threshold for output
         	distThreshold = config.getInt("resi.dist.threshold", scale);
         	
+        	//scaled distance is truncated, pairs beyond are abandoned early
+        	thresholdBound = (distThreshold + 1.0) / scale;
+        	
+        	//only top matches of each record within a group, as pre filter for top matches
+        	topMatchCount = config.getInt("resi.top.match.count", -1);
+        	
         	//output whole record
         	outputRecord =  config.getBoolean("resi.output.record", false);     
+        	
+        	//blocking
+        	blocking = isBlocking(config);
+        	interSetMatching = config.getBoolean("resi.inter.set.matching",  false);
+		}
+		
+		/* (non-Javadoc)
+		 * @see org.apache.hadoop.mapreduce.Reducer#cleanup(org.apache.hadoop.mapreduce.Reducer.Context)
+		 */
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			if (blocking) {
+				context.getCounter("Record similarity", "compared pairs").increment(comparedCount);
+				context.getCounter(EVAL_COUNTER_GROUP, "sample pairs").increment(samplePairCount);
+				context.getCounter(EVAL_COUNTER_GROUP, "sample matches").increment(sampleMatchCount);
+				context.getCounter(EVAL_COUNTER_GROUP, "sample candidate pairs").increment(sampleCandidateCount);
+				context.getCounter(EVAL_COUNTER_GROUP, "sample matched candidate pairs").increment(sampleMatchedCandidateCount);
+			}
 		}
 		
 		/* (non-Javadoc)
@@ -274,28 +422,32 @@ public class RecordSimilarity extends Configured implements Tool {
 		protected void reduce(Tuple key, Iterable<Tuple> values, Context context)
 				throws IOException, InterruptedException {
         	valueList.clear();
+        	idList.clear();
+        	preparedList.clear();
         	inFirstBucket = true;
         	firstBucketSize = secondBucketSize = 0;
         	int secondPart = key.getInt(1);
         	//System.out.println("hash pair:" + secondPart);
         	
-        	if (secondPart / hashMultiplier == secondPart % hashMultiplier){
+        	if (blocking) {
+        		//records in the same block
+        		findBlockDistances(secondPart, values, context);
+        	} else if (secondPart / hashMultiplier == secondPart % hashMultiplier){
         		//same hash bucket
 	        	for (Tuple value : values){
-	        		valueList.add(value.getString(1));
+	        		addRecord(value.getString(1));
 	        	}
 	        	firstBucketSize = secondBucketSize = valueList.size();
 	        	for (int i = 0;  i < valueList.size();  ++i){
 	        		String first = valueList.get(i);
-	        		firstId =  first.split(fieldDelimRegex, -1)[idOrdinal];
+	        		firstId =  idList.get(i);
 	        		for (int j = i+1;  j < valueList.size();  ++j) {
 	            		String second = valueList.get(j);
-	            		secondId =  second.split(fieldDelimRegex, -1)[idOrdinal];
+	            		secondId =  idList.get(j);
 	            		if (!firstId.equals(secondId)){
-		        			dist  = recDistance.findScaledDistance(first, second);
+		        			dist  = recDistance.findScaledDistance(preparedList.get(i), preparedList.get(j), findBound());
 		        			if (dist <= distThreshold) {
-		        				outVal.set(createValueField(first, second));
-		        				context.write(NullWritable.get(), outVal);
+		        				emitMatch(first, second, context);
 		        			}
 	            		} 
 	   				}
@@ -305,7 +457,7 @@ public class RecordSimilarity extends Configured implements Tool {
         		//different hash bucket
 	        	for (Tuple value : values){
 	        		if (value.getInt(0) == 0) {
-	        			valueList.add(value.getString(1));
+	        			addRecord(value.getString(1));
 	        		} else {
 	        			if (inFirstBucket) {
 	        				firstBucketSize = valueList.size();
@@ -314,12 +466,13 @@ public class RecordSimilarity extends Configured implements Tool {
 	        			++secondBucketSize;
 	        			String second = value.getString(1);
 	            		secondId =  second.split(fieldDelimRegex, -1)[idOrdinal];
-	            		for (String first : valueList){
-	                		firstId =  first.split(fieldDelimRegex, -1)[idOrdinal];
-		        			dist  = recDistance.findScaledDistance(first, second);
+	            		PreparedRecord secondPrepared = recDistance.prepare(second);
+	            		for (int i = 0;  i < valueList.size();  ++i){
+	            			String first = valueList.get(i);
+	                		firstId =  idList.get(i);
+		        			dist  = recDistance.findScaledDistance(preparedList.get(i), secondPrepared, findBound());
 		        			if (dist <= distThreshold) {
-		        				outVal.set(createValueField(first, second));
-		        				context.write(NullWritable.get(), outVal);
+		        				emitMatch(first, second, context);
 		        			}
 	            		}
 	        		}
@@ -327,8 +480,168 @@ public class RecordSimilarity extends Configured implements Tool {
             	//System.out.println("firstBucketSize:" + firstBucketSize + " secondBucketSize:" + secondBucketSize );
         	}
         	
+        	if (topMatchCount > 0) {
+        		emitTopMatches(context);
+        	}
 		}	
 		
+		/**
+		 * compares records of a block. A pair sharing more than one block is compared only in the 
+		 * first shared block. Evaluation sample pairs are all compared, to find how many matches 
+		 * blocking finds and how many candidates match 
+		 * @param block
+		 * @param values
+		 * @param context
+		 * @throws IOException
+		 * @throws InterruptedException
+		 */
+		private void findBlockDistances(int block, Iterable<Tuple> values, Context context) 
+				throws IOException, InterruptedException {
+			blockList.clear();
+			boolean evaluation = block == EVAL_BLOCK;
+        	for (Tuple value : values){
+        		int side = value.getInt(0);
+        		String second = value.getString(1);
+        		secondId =  second.split(fieldDelimRegex, -1)[idOrdinal];
+        		PreparedRecord secondPrepared = recDistance.prepare(second);
+        		long[] secondBlocks = new long[value.getSize() - 2];
+        		for (int b = 0; b < secondBlocks.length; ++b) {
+        			secondBlocks[b] = value.getLong(b + 2);
+        		}
+        		
+        		//base set records are only compared with the other set
+        		if (!interSetMatching || side == 1) {
+        			for (int i = 0; i < valueList.size(); ++i) {
+        				firstId = idList.get(i);
+        				if (firstId.equals(secondId)) {
+        					continue;
+        				}
+        				int sharedBlock = RecordBlocker.findFirstSharedBlock(blockList.get(i), secondBlocks);
+        				if (evaluation) {
+        					dist  = recDistance.findScaledDistance(preparedList.get(i), secondPrepared, thresholdBound);
+        					++samplePairCount;
+        					if (dist <= distThreshold) {
+        						++sampleMatchCount;
+        					}
+        					if (sharedBlock >= 0) {
+        						++sampleCandidateCount;
+        						if (dist <= distThreshold) {
+        							++sampleMatchedCandidateCount;
+        						}
+        					}
+        				} else if (sharedBlock == block) {
+        					String first = valueList.get(i);
+        					dist  = recDistance.findScaledDistance(preparedList.get(i), secondPrepared, findBound());
+        					++comparedCount;
+        					if (dist <= distThreshold) {
+        						emitMatch(first, second, context);
+        					}
+        				}
+        			}
+        		}
+        		if (side == 0) {
+        			valueList.add(second);
+        			idList.add(secondId);
+        			preparedList.add(secondPrepared);
+        			blockList.add(secondBlocks);
+        		}
+        	}
+		}
+		
+		/**
+		 * distance beyond which current pair is neither within threshold nor among the top matches 
+		 * of either record
+		 * @return
+		 */
+		private double findBound() {
+			double bound = thresholdBound;
+			if (topMatchCount > 0) {
+				int kthDist = Math.max(findKthDistance(firstId), findKthDistance(secondId));
+				bound = Math.min(bound, (double)kthDist / scale);
+			}
+			return bound;
+		}
+		
+		/**
+		 * @param id
+		 * @return scaled distance of k th top match or max value if there are fewer matches
+		 */
+		private int findKthDistance(String id) {
+			PriorityQueue<Match> matches = topMatches.get(id);
+			return null != matches && matches.size() == topMatchCount ? matches.peek().dist : Integer.MAX_VALUE;
+		}
+		
+		/**
+		 * emits matching pair right away or saves it as a top match of both records
+		 * @param first
+		 * @param second
+		 * @param context
+		 * @throws IOException
+		 * @throws InterruptedException
+		 */
+		private void emitMatch(String first, String second, Context context) 
+				throws IOException, InterruptedException {
+			if (topMatchCount > 0) {
+				Match match = new Match(first, second, firstId, secondId, dist);
+				addTopMatch(firstId, match);
+				addTopMatch(secondId, match);
+			} else {
+				outVal.set(createValueField(first, second));
+				context.write(NullWritable.get(), outVal);
+			}
+		}
+		
+		/**
+		 * @param id
+		 * @param match
+		 */
+		private void addTopMatch(String id, Match match) {
+			PriorityQueue<Match> matches = topMatches.get(id);
+			if (null == matches) {
+				matches = new PriorityQueue<Match>(topMatchCount + 1);
+				topMatches.put(id, matches);
+			}
+			if (matches.size() < topMatchCount) {
+				matches.add(match);
+			} else if (match.dist < matches.peek().dist) {
+				matches.poll();
+				matches.add(match);
+			}
+		}
+		
+		/**
+		 * emits top matches of all records in the group, a pair among the top matches of both 
+		 * records is emitted once
+		 * @param context
+		 * @throws IOException
+		 * @throws InterruptedException
+		 */
+		private void emitTopMatches(Context context) throws IOException, InterruptedException {
+			for (PriorityQueue<Match> matches : topMatches.values()) {
+				for (Match match : matches) {
+					if (!match.emitted) {
+						firstId = match.firstId;
+						secondId = match.secondId;
+						dist = match.dist;
+						outVal.set(createValueField(match.first, match.second));
+						context.write(NullWritable.get(), outVal);
+						match.emitted = true;
+					}
+				}
+			}
+			topMatches.clear();
+		}
+		
+		/**
+		 * saves record with its ID and parsed fields
+		 * @param record
+		 */
+		private void addRecord(String record) {
+			valueList.add(record);
+			idList.add(record.split(fieldDelimRegex, -1)[idOrdinal]);
+			preparedList.add(recDistance.prepare(record));
+		}
+		
         /**
          * generates output to emit
          * @return
@@ -347,6 +660,40 @@ public class RecordSimilarity extends Configured implements Tool {
         }
 	}	
 	
+	/**
+	 * Matching pair, ordered with the farthest first
+	 * @author pranab
+	 *
+	 */
+	private static class Match implements Comparable<Match> {
+		private String first;
+		private String second;
+		private String firstId;
+		private String secondId;
+		private int dist;
+		private boolean emitted;
+		
+		/**
+		 * @param first
+		 * @param second
+		 * @param firstId
+		 * @param secondId
+		 * @param dist
+		 */
+		public Match(String first, String second, String firstId, String secondId, int dist) {
+			this.first = first;
+			this.second = second;
+			this.firstId = firstId;
+			this.secondId = secondId;
+			this.dist = dist;
+		}
+
+		@Override
+		public int compareTo(Match other) {
+			return Integer.compare(other.dist, dist);
+		}
+	}
+	
 	/**
 	 * @param args
 	 */
@@ -43,7 +43,7 @@ import org.apache.hadoop.util.ToolRunner;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.chombo.stats.LongRunningStats;
-import org.chombo.util.Tuple;
+import org.chombo.util.NumericTuple;
 import org.chombo.util.Utility;
 
 
@@ -71,8 +71,8 @@ public class RunningAggregator  extends Configured implements Tool {
         job.setMapperClass(RunningAggregator.AggrMapper.class);
         job.setReducerClass(RunningAggregator.AggrReducer.class);
         
-        job.setMapOutputKeyClass(Tuple.class);
-        job.setMapOutputValueClass(Tuple.class);
+        job.setMapOutputKeyClass(NumericTuple.class);
+        job.setMapOutputValueClass(NumericTuple.class);
 
         job.setOutputKeyClass(NullWritable.class);
         job.setOutputValueClass(Text.class);
@@ -89,9 +89,9 @@ public class RunningAggregator  extends Configured implements Tool {
 	 * @author pranab
 	 *
 	 */
-	public static class AggrMapper extends Mapper<LongWritable, Text, Tuple, Tuple> {
-		private Tuple outKey = new Tuple();
-		private Tuple outVal = new Tuple();
+	public static class AggrMapper extends Mapper<LongWritable, Text, NumericTuple, NumericTuple> {
+		private NumericTuple outKey = new NumericTuple();
+		private NumericTuple outVal = new NumericTuple();
         private String fieldDelimRegex;
         private String[] items;
         private int[] quantityAttrOrdinals;
@@ -137,11 +137,11 @@ public class RunningAggregator  extends Configured implements Tool {
         		initKey();
     			statOrd = idFieldOrdinals.length;
         		int quantAttrOrd = Integer.parseInt(items[statOrd]);
-        		outKey.append(quantAttrOrd);
+        		outKey.addLong(quantAttrOrd);
         		
     			//existing aggregation - quantity attrubute ordinal, count, sum, sum of squares
             	outVal.initialize();
-                outVal.add(REC_TYPE_AGGR, quantAttrOrd, Long.parseLong(items[statOrd+1]) ,  
+                outVal.addLong(REC_TYPE_AGGR, quantAttrOrd, Long.parseLong(items[statOrd+1]) ,  
                 		Long.parseLong(items[statOrd + 2]),  Long.parseLong(items[statOrd + 3]));
                 context.write(outKey, outVal);
         	} else {
@@ -149,24 +149,22 @@ public class RunningAggregator  extends Configured implements Tool {
     			for (int ord : quantityAttrOrdinals) {
     				//emit one for each quant field
             		initKey();
-            		outKey.append(ord);
+            		outKey.addLong(ord);
 
                 	outVal.initialize();
 	        		newValue = Long.parseLong( items[ord]);
-	                outVal.add(REC_TYPE_INCR, ord, (long)1, newValue, newValue * newValue);
+	                outVal.addLong(REC_TYPE_INCR, ord, 1, newValue, newValue * newValue);
 	               	context.write(outKey, outVal);
 	            }
         	}
         }
         
         /**
-         * 
+         * ID fields as key prefix
          */
         private void initKey() {
         	outKey.initialize();
-    		for (int indx : idFieldOrdinals) {
-  				outKey.append(items[indx]);
-    		}
+    		outKey.setPrefix(items, idFieldOrdinals);
         }
  	}	
 
@@ -174,7 +172,7 @@ public class RunningAggregator  extends Configured implements Tool {
   * @author pranab
   *
   */
- public static class AggrReducer extends Reducer<Tuple, Tuple, NullWritable, Text> {
+ public static class AggrReducer extends Reducer<NumericTuple, NumericTuple, NullWritable, Text> {
  		private Text outVal = new Text();
  		private StringBuilder stBld =  new StringBuilder();;
  		private  String fieldDelim;
@@ -223,13 +221,13 @@ public class RunningAggregator  extends Configured implements Tool {
     	/* (non-Javadoc)
     	 * @see org.apache.hadoop.mapreduce.Reducer#reduce(KEYIN, java.lang.Iterable, org.apache.hadoop.mapreduce.Reducer.Context)
     	 */
-    	protected void reduce(Tuple key, Iterable<Tuple> values, Context context)
+    	protected void reduce(NumericTuple key, Iterable<NumericTuple> values, Context context)
         	throws IOException, InterruptedException {
     		key.setDelim(fieldDelim);
     		runningStats.clear();
     		recCount = 0;
     		recTypes.clear();
-    		for (Tuple val : values) {
+    		for (NumericTuple val : values) {
     			index = 0;
     			recType = val.getInt(index++);
     			recTypes.add(recType);
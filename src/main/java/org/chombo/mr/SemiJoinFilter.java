@@ -0,0 +1,181 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.mr;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.chombo.util.AttributeFilter;
+import org.chombo.util.BloomFilter;
+import org.chombo.util.DelimitedFieldTokenizer;
+
+/**
+ * Bloom filter based semi join support. Bloom filter over the join keys of the smaller set is
+ * built in the driver, or a prebuilt one is used, and shipped through distributed cache. Mappers
+ * drop records of the other sets whose key is definitely not in the smaller set.
+ * Configuration parameters are under the job specific prefix
+ * @author pranab
+ *
+ */
+public class SemiJoinFilter {
+	private static final String CACHE_FILE_NAME_PARAM = "semi.join.bloom.filter.file.name";
+	private static final int SAMPLE_LINE_COUNT = 1000;
+
+	/**
+	 * Sets up bloom filter in distributed cache
+	 * @param job
+	 * @param configPrefix
+	 * @param keyFiles files of the smaller set
+	 * @param keyFields
+	 * @param keyDelim
+	 * @param sortKeyFields
+	 * @param filter optional filter for smaller set records
+	 * @throws IOException
+	 */
+	public static void setup(Job job, String configPrefix, List<Path> keyFiles, int[] keyFields, String keyDelim,
+			boolean sortKeyFields, AttributeFilter filter) throws IOException {
+		Configuration config = job.getConfiguration();
+		Path filterPath = null;
+		String inputPath = config.get(configPrefix + ".bloom.filter.input.path");
+		if (null != inputPath) {
+			//prebuilt side input
+			filterPath = new Path(inputPath);
+		} else {
+			String outputPath = config.get(configPrefix + ".bloom.filter.output.path");
+			filterPath = null != outputPath ? new Path(outputPath) :
+				new Path(FileOutputFormat.getOutputPath(job).toString() + "_bloom");
+			BloomFilter bloomFilter = build(config, configPrefix, keyFiles, keyFields, keyDelim, sortKeyFields, filter);
+			FSDataOutputStream outStrm = filterPath.getFileSystem(config).create(filterPath, true);
+			bloomFilter.write(outStrm);
+			outStrm.close();
+		}
+
+		FileSystem fs = filterPath.getFileSystem(config);
+		DistributedCache.addCacheFile(filterPath.makeQualified(fs).toUri(), config);
+		config.set(CACHE_FILE_NAME_PARAM, filterPath.getName());
+	}
+
+	/**
+	 * Builds bloom filter over the keys of the files
+	 * @param config
+	 * @param configPrefix
+	 * @param keyFiles
+	 * @param keyFields
+	 * @param keyDelim
+	 * @param sortKeyFields
+	 * @param filter
+	 * @return
+	 * @throws IOException
+	 */
+	public static BloomFilter build(Configuration config, String configPrefix, List<Path> keyFiles, int[] keyFields,
+			String keyDelim, boolean sortKeyFields, AttributeFilter filter) throws IOException {
+		long expectedCount = config.getLong(configPrefix + ".bloom.expected.count", -1);
+		if (expectedCount < 0) {
+			expectedCount = estimateCount(config, keyFiles);
+		}
+		double falsePosProb = Double.parseDouble(config.get(configPrefix + ".bloom.false.pos.prob", "0.01"));
+		BloomFilter bloomFilter = new BloomFilter(expectedCount, falsePosProb);
+
+		DelimitedFieldTokenizer tokenizer = new DelimitedFieldTokenizer(config.get("field.delim.regex", ",")).
+				withGuard(config.get("field.delim.guard"));
+		for (Path keyFile : keyFiles) {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(
+					keyFile.getFileSystem(config).open(keyFile), StandardCharsets.UTF_8));
+			String line = null;
+			while((line = reader.readLine()) != null) {
+				if (line.isEmpty()) {
+					continue;
+				}
+				byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+				tokenizer.tokenize(bytes, bytes.length);
+				if (null == filter || filter.evaluate(tokenizer.getItems())) {
+					bloomFilter.add(tokenizer.extractFields(keyFields, keyDelim, sortKeyFields));
+				}
+			}
+			reader.close();
+		}
+		return bloomFilter;
+	}
+
+	/**
+	 * estimates record count from total size and average size of the beginning records
+	 * @param config
+	 * @param keyFiles
+	 * @return
+	 * @throws IOException
+	 */
+	private static long estimateCount(Configuration config, List<Path> keyFiles) throws IOException {
+		long totalSize = 0;
+		long sampleSize = 0;
+		int sampleCount = 0;
+		for (Path keyFile : keyFiles) {
+			FileSystem fs = keyFile.getFileSystem(config);
+			totalSize += fs.getFileStatus(keyFile).getLen();
+			if (sampleCount < SAMPLE_LINE_COUNT) {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(fs.open(keyFile), StandardCharsets.UTF_8));
+				String line = null;
+				while(sampleCount < SAMPLE_LINE_COUNT && (line = reader.readLine()) != null) {
+					sampleSize += line.getBytes(StandardCharsets.UTF_8).length + 1;
+					++sampleCount;
+				}
+				reader.close();
+			}
+		}
+		return sampleCount > 0 ? totalSize * sampleCount / sampleSize + 1 : 1;
+	}
+
+	/**
+	 * Loads bloom filter from distributed cache
+	 * @param config
+	 * @return bloom filter or null if semi join filtering is not enabled
+	 * @throws IOException
+	 */
+	public static BloomFilter load(Configuration config) throws IOException {
+		BloomFilter bloomFilter = null;
+		String fileName = config.get(CACHE_FILE_NAME_PARAM);
+		if (null != fileName) {
+			Path[] cacheFiles = DistributedCache.getLocalCacheFiles(config);
+			for (int i = 0; null != cacheFiles && i < cacheFiles.length && null == bloomFilter; ++i) {
+				if (cacheFiles[i].getName().equals(fileName)) {
+					DataInputStream inStrm = new DataInputStream(new BufferedInputStream(
+							new FileInputStream(cacheFiles[i].toString())));
+					bloomFilter = new BloomFilter();
+					bloomFilter.readFields(inStrm);
+					inStrm.close();
+				}
+			}
+			if (null == bloomFilter) {
+				throw new IllegalStateException("bloom filter not found in distributed cache");
+			}
+		}
+		return bloomFilter;
+	}
+}
@@ -33,6 +33,7 @@ import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.chombo.util.GenericAttributeSchema;
+import org.chombo.util.NumericTuple;
 import org.chombo.util.Tuple;
 import org.chombo.util.Utility;
 import org.chombo.util.Attribute;
@@ -62,7 +63,7 @@ public class StringAttrStats extends Configured implements Tool {
         job.setCombinerClass(NumericalAttrStats.StatsCombiner.class);
         
         job.setMapOutputKeyClass(Tuple.class);
-        job.setMapOutputValueClass(Tuple.class);
+        job.setMapOutputValueClass(NumericTuple.class);
 
         job.setOutputKeyClass(NullWritable.class);
         job.setOutputValueClass(Text.class);
@@ -79,9 +80,9 @@ public class StringAttrStats extends Configured implements Tool {
 	 * @author pranab
 	 *
 	 */
-	public static class StatsMapper extends Mapper<LongWritable, Text, Tuple, Tuple> {
+	public static class StatsMapper extends Mapper<LongWritable, Text, Tuple, NumericTuple> {
 		private Tuple outKey = new Tuple();
-		private Tuple outVal = new Tuple();
+		private NumericTuple outVal = new NumericTuple();
 		private int[]  attributes;
         private String fieldDelimRegex;
         private double val;
@@ -114,7 +115,8 @@ public class StringAttrStats extends Configured implements Tool {
             	
             	val = items[attr].length();
             	sqVal = val * val;
-            	outVal.add(val, val, val, sqVal, count);
+            	outVal.addDouble(val, val, val, sqVal);
+            	outVal.addLong(count);
             	context.write(outKey, outVal);
         	}
         }
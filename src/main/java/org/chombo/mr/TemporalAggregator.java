@@ -33,7 +33,8 @@ import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
-import org.chombo.util.Tuple;
+import org.chombo.util.InMapperAggregator;
+import org.chombo.util.NumericTuple;
 import org.chombo.util.Utility;
 
 /**
@@ -62,8 +63,8 @@ public class TemporalAggregator  extends Configured implements Tool {
         job.setReducerClass(TemporalAggregator.AggregateReducer.class);
         job.setCombinerClass(TemporalAggregator.AggregateCombiner.class);
         
-        job.setMapOutputKeyClass(Tuple.class);
-        job.setMapOutputValueClass(Tuple.class);
+        job.setMapOutputKeyClass(NumericTuple.class);
+        job.setMapOutputValueClass(NumericTuple.class);
 
         job.setOutputKeyClass(NullWritable.class);
         job.setOutputValueClass(Text.class);
@@ -80,9 +81,9 @@ public class TemporalAggregator  extends Configured implements Tool {
 	 * @author pranab
 	 *
 	 */
-	public static class AggregatorMapper extends Mapper<LongWritable, Text, Tuple, Tuple> {
-		private Tuple outKey = new Tuple();
-		private Tuple outVal = new Tuple();
+	public static class AggregatorMapper extends Mapper<LongWritable, Text, NumericTuple, NumericTuple> {
+		private NumericTuple outKey = new NumericTuple();
+		private NumericTuple outVal = new NumericTuple();
 		private int[]  attributes;
         private String fieldDelimRegex;
         private String[] items;
@@ -94,6 +95,7 @@ public class TemporalAggregator  extends Configured implements Tool {
         private String aggregatorType;
         private long timeZoneShift;
         private long cycleLengthSec;
+        private InMapperAggregator<NumericTuple, NumericTuple> aggregator;
         
         protected void setup(Context context) throws IOException, InterruptedException {
         	Configuration config = context.getConfiguration();
@@ -105,8 +107,18 @@ public class TemporalAggregator  extends Configured implements Tool {
         	aggregatorType = config.get("tag.aggregator.type");
         	int  timeZoneHours = config.getInt("tag.time.zone.hours",  0);
         	timeZoneShift = timeZoneHours * secInHour;
+        	aggregator = InMapperAggregator.create(config, "tag", new AggregateMerger());
        }
 		
+        /* (non-Javadoc)
+         * @see org.apache.hadoop.mapreduce.Mapper#cleanup(org.apache.hadoop.mapreduce.Mapper.Context)
+         */
+        protected void cleanup(Context context) throws IOException, InterruptedException {
+        	if (null != aggregator) {
+        		aggregator.flush(context);
+        	}
+        }
+		
         @Override
         protected void map(LongWritable key, Text value, Context context)
             throws IOException, InterruptedException {
@@ -118,28 +130,50 @@ public class TemporalAggregator  extends Configured implements Tool {
             	outKey.initialize();
             	outVal.initialize();
             	if (null != idOrdinals) {
-            		outKey.addFromArray(items, idOrdinals);
+            		//ID fields as key prefix
+            		outKey.setPrefix(items, idOrdinals);
             	}
-            	outKey.add( cycleIndex, attr);
+            	outKey.addLong( cycleIndex, attr);
             	
             	if (aggregatorType.equals(AGGR_COUNT)) {
-            		outVal.add(1);
+            		outVal.addLong(1);
             	} else if (aggregatorType.equals(AGGR_SUM)) {
-            		outVal.add(Double.parseDouble(items[attr]));
+            		outVal.addDouble(Double.parseDouble(items[attr]));
             	} else {
         			throw new IllegalArgumentException("invalid aggregation function");
         		}
-            	context.write(outKey, outVal);
+            	if (null != aggregator) {
+            		aggregator.aggregate(outKey, outVal, context);
+            	} else {
+            		context.write(outKey, outVal);
+            	}
         	}
         }
 	}
 	
+	/**
+	 * Adds count or sum for in mapper aggregation
+	 * @author pranab
+	 *
+	 */
+	public static class AggregateMerger implements InMapperAggregator.ValueMerger<NumericTuple> {
+		@Override
+		public int merge(NumericTuple aggregate, NumericTuple value) {
+			if (aggregate.getNumLongs() > 0) {
+				aggregate.setLong(0, aggregate.getLong(0) + value.getLong(0));
+			} else {
+				aggregate.setDouble(0, aggregate.getDouble(0) + value.getDouble(0));
+			}
+			return 0;
+		}
+	}
+	
 	/**
 	 * @author pranab
 	 *
 	 */
-	public static class AggregateCombiner extends Reducer<Tuple, Tuple, Tuple, Tuple> {
-		private Tuple outVal = new Tuple();
+	public static class AggregateCombiner extends Reducer<NumericTuple, NumericTuple, NumericTuple, NumericTuple> {
+		private NumericTuple outVal = new NumericTuple();
 		private int totalCount;
 		private double sum;
 		private String aggregatorType;
@@ -155,11 +189,11 @@ public class TemporalAggregator  extends Configured implements Tool {
         /* (non-Javadoc)
          * @see org.apache.hadoop.mapreduce.Reducer#reduce(KEYIN, java.lang.Iterable, org.apache.hadoop.mapreduce.Reducer.Context)
          */
-        protected void reduce(Tuple  key, Iterable<Tuple> values, Context context)
+        protected void reduce(NumericTuple  key, Iterable<NumericTuple> values, Context context)
         		throws IOException, InterruptedException {
     		sum = 0;
     		totalCount = 0;
-    		for (Tuple val : values) {
+    		for (NumericTuple val : values) {
             	if (aggregatorType.equals(AGGR_COUNT)) {
             		totalCount += val.getInt(0);
             	} else {
@@ -169,9 +203,9 @@ public class TemporalAggregator  extends Configured implements Tool {
         
     		outVal.initialize();
     		if (aggregatorType.equals(AGGR_COUNT)) {
-    			outVal.add(totalCount);
+    			outVal.addLong(totalCount);
     		} else if (aggregatorType.equals(AGGR_SUM)) {
-    			outVal.add(sum);
+    			outVal.addDouble(sum);
     		} 
         	context.write(key, outVal);       	
         }
@@ -181,7 +215,7 @@ public class TemporalAggregator  extends Configured implements Tool {
 	    * @author pranab
 	    *
 	    */
-	public static class  AggregateReducer extends Reducer<Tuple, Tuple, NullWritable, Text> {
+	public static class  AggregateReducer extends Reducer<NumericTuple, NumericTuple, NullWritable, Text> {
 		protected Text outVal = new Text();
 		protected String fieldDelim;
 		protected double sum;
@@ -194,12 +228,12 @@ public class TemporalAggregator  extends Configured implements Tool {
         	aggregatorType = config.get("tag.aggregator.type");
 		}
 
-		protected void reduce(Tuple  key, Iterable<Tuple> values, Context context)
+		protected void reduce(NumericTuple  key, Iterable<NumericTuple> values, Context context)
      		throws IOException, InterruptedException {
 			key.setDelim(fieldDelim);
  			sum = 0;
  			totalCount = 0;
- 			for (Tuple val : values) {
+ 			for (NumericTuple val : values) {
          		if (aggregatorType.equals(AGGR_COUNT)) {
          			totalCount += val.getInt(0);
          		}	else if (aggregatorType.equals(AGGR_SUM)) {
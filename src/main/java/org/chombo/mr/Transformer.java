@@ -40,6 +40,7 @@ import org.chombo.transformer.AttributeTransformer;
 import org.chombo.transformer.ContextAwareTransformer;
 import org.chombo.transformer.TransformerFactory;
 import org.chombo.util.BasicUtils;
+import org.chombo.util.DelimitedFieldTokenizer;
 import org.chombo.util.ProcessorAttribute;
 import org.chombo.util.ProcessorAttributeSchema;
 import org.chombo.util.Utility;
@@ -117,6 +118,7 @@ public class Transformer extends Configured implements Tool {
 		private List<AttributeTransformer> generators = new ArrayList<AttributeTransformer>();
 		private AttributeTransformer transformer;
 		private String[] transformedValues;
+        private DelimitedFieldTokenizer tokenizer;
         private String[] items;
         private String[] itemsOut;
         private String[] singleTransformedValue = new String[1];
@@ -138,6 +140,7 @@ public class Transformer extends Configured implements Tool {
         	fieldDelimRegex = config.get("field.delim.regex", "\\[\\]");
         	fieldDelimOut = config.get("field.delim", ",");
         	numFields = config.getInt("tra.num.fields", -1);
+        	tokenizer = new DelimitedFieldTokenizer(fieldDelimRegex).withGuard(config.get("field.delim.guard"));
         	
         	//schema
         	transformerSchema = Utility.getProcessingSchema(config, "tra.transformer.schema.file.path");
@@ -280,14 +283,13 @@ public class Transformer extends Configured implements Tool {
         protected void map(LongWritable key, Text value, Context context)
             throws IOException, InterruptedException {
         	inputRec = value.toString();
-            if (numFields > 0){
-            	//validate with field count
-            	items = Utility.splitFields(value.toString(), fieldDelimRegex, numFields, false);
-            	if (null == items) {
-            		return;
-            	}
-            } else {
-                items  =  value.toString().split(fieldDelimRegex, -1);
+        	tokenizer.tokenize(value);
+        	
+        	//whole record materialized only if needed by context aware transformers
+        	items = null;
+            if (numFields > 0 && tokenizer.getNumFields() != numFields){
+            	//invalid field count
+            	return;
             }
             
             stBld.delete(0, stBld.length());
@@ -305,14 +307,14 @@ public class Transformer extends Configured implements Tool {
 				context.write(NullWritable.get(), outVal);
             } else {
             	//using directly built transformers
-	            for (int i = 0; i < items.length; ++i) {
+	            for (int i = 0; i < tokenizer.getNumFields(); ++i) {
 	            	//either transform or pass through
 	            	transformerList = transformers.get(i);
 	            	int t = 0;
-	            	source = items[i];
 	            	
             		//skip field if no transformers defined
 	            	if (null != transformerList) {
+		            	source = tokenizer.getString(i);
 		            	//all transformers
 		            	for (AttributeTransformer trans :  transformerList) {
 			        		if (null !=trans) {
@@ -358,7 +360,7 @@ public class Transformer extends Configured implements Tool {
         		}
         		if (isTransformer) {
         			fieldOrd = prAttr.getOrdinal();
-                	source = items[fieldOrd];
+                	source = tokenizer.getString(fieldOrd);
         			transformerList = transformers.get(fieldOrd);
         		} else {
         			source = inputRec;
@@ -409,6 +411,9 @@ public class Transformer extends Configured implements Tool {
     	 */
     	private void setTransformerContext(AttributeTransformer trans) {
     		if (trans instanceof ContextAwareTransformer) {
+    			if (null == items) {
+    				items = tokenizer.getItems();
+    			}
     			context.clear();
     			context.put("record", items);
     			((ContextAwareTransformer)trans).setContext(context);
@@ -19,7 +19,12 @@
 package org.chombo.mr;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.fs.Path;
@@ -33,14 +38,17 @@ import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
+import org.chombo.stats.HyperLogLog;
 import org.chombo.util.Attribute;
 import org.chombo.util.DuplicateRemover;
 import org.chombo.util.GenericAttributeSchema;
+import org.chombo.util.InMapperAggregator;
 import org.chombo.util.Tuple;
 import org.chombo.util.Utility;
 
 /**
- * Counts unique values or cardinality for fields except for double and text type
+ * Counts unique values or cardinality for fields except for double and text type. Optionally
+ * estimates cardinality with HyperLogLog for high cardinality fields
  * @author pranab
  *
  */
@@ -63,8 +71,7 @@ public class UniqueValueCounter  extends Configured implements Tool {
         job.setReducerClass(UniqueValueCounter.CounterReducer.class);
         job.setCombinerClass(UniqueValueCounter.CounterCombiner.class);
         
-        job.setMapOutputKeyClass(Tuple.class);
-        job.setMapOutputValueClass(Tuple.class);
+        Utility.setTupleMapOutput(job, "unc");
 
         job.setOutputKeyClass(NullWritable.class);
         job.setOutputValueClass(Text.class);
@@ -82,8 +89,8 @@ public class UniqueValueCounter  extends Configured implements Tool {
 	 *
 	 */
 	public static class CounterMapper extends Mapper<LongWritable, Text, Tuple, Tuple> {
-		private Tuple outKey = new Tuple();
-		private Tuple outVal = new Tuple();
+		private Tuple outKey;
+		private Tuple outVal;
 		private int[]  attributes;
         private String[] items;
         private String fieldDelimRegex;
@@ -91,12 +98,20 @@ public class UniqueValueCounter  extends Configured implements Tool {
         private boolean enforceSchema;
         private int[] partIdOrdinals;
         private int[] idOrdinals;
+        private int[] approxAttributes;
+        private Map<Tuple, HyperLogLog> estimators = new HashMap<Tuple, HyperLogLog>();
+        private int precision;
+        private int maxKeys;
+        private Configuration config;
+        private InMapperAggregator<Tuple, Tuple> aggregator;
         
         /* (non-Javadoc)
          * @see org.apache.hadoop.mapreduce.Mapper#setup(org.apache.hadoop.mapreduce.Mapper.Context)
          */
         protected void setup(Context context) throws IOException, InterruptedException {
-        	Configuration config = context.getConfiguration();
+        	config = context.getConfiguration();
+        	outKey = Utility.createTuple(config);
+        	outVal = Utility.createTuple(config);
         	fieldDelimRegex = Utility.getFieldDelimiter(config, "unc.field.delim.regex", "field.delim.regex", ",");
         	enforceSchema = config.getBoolean("unc.enforce.schema", true);
         	
@@ -110,6 +125,21 @@ public class UniqueValueCounter  extends Configured implements Tool {
         	
         	partIdOrdinals = Utility.intArrayFromString(config.get("unc.part.id.field.ordinals"));
         	idOrdinals = Utility.intArrayFromString(config.get("unc.id.field.ordinals"));
+        	
+        	//approximate cardinality with HyperLogLog, for all or selected columns
+        	if (config.getBoolean("unc.approx.mode", false)) {
+        		approxAttributes = Utility.intArrayFromString(config.get("unc.approx.attr.list"));
+        		if (null == approxAttributes) {
+        			approxAttributes = new int[0];
+        		}
+        		precision = config.getInt("unc.hll.precision", HyperLogLog.DEF_PRECISION);
+        		if (precision < HyperLogLog.MIN_PRECISION || precision > HyperLogLog.MAX_PRECISION) {
+        			throw new IllegalArgumentException("unc.hll.precision should be between " + HyperLogLog.MIN_PRECISION + 
+        				" and " + HyperLogLog.MAX_PRECISION);
+        		}
+        		maxKeys = config.getInt("unc.hll.max.keys", 1000);
+        	}
+        	aggregator = InMapperAggregator.create(config, "unc", new UniqueValueAccumulator(config));
        }
         
         @Override
@@ -146,19 +176,113 @@ public class UniqueValueCounter  extends Configured implements Tool {
         	}
     		outKey.add(attr);
     		
-    		outVal.add(items[attr]);
-        	context.write(outKey, outVal);
+    		if (null != approxAttributes && (approxAttributes.length == 0 || ArrayUtils.contains(approxAttributes, attr))) {
+    			//estimator aggregated in memory
+    			HyperLogLog estimator = estimators.get(outKey);
+    			if (null == estimator) {
+    				if (estimators.size() == maxKeys) {
+    					emitEstimators(context);
+    				}
+    				estimator = new HyperLogLog(precision);
+    				estimators.put(outKey.createClone(Utility.createTuple(config)), estimator);
+    			}
+    			estimator.add(items[attr]);
+    		} else {
+	    		outVal.add(items[attr]);
+	    		if (null != aggregator) {
+	    			aggregator.aggregate(outKey, outVal, context);
+	    		} else {
+	    			context.write(outKey, outVal);
+	    		}
+    		}
+        }
+        
+		/* (non-Javadoc)
+		 * @see org.apache.hadoop.mapreduce.Mapper#cleanup(org.apache.hadoop.mapreduce.Mapper.Context)
+		 */
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			emitEstimators(context);
+			if (null != aggregator) {
+				aggregator.flush(context);
+			}
+		}
+		
+        /**
+         * estimator registers as value
+         * @param context
+         * @throws IOException
+         * @throws InterruptedException
+         */
+        private void emitEstimators(Context context) throws IOException, InterruptedException {
+        	for (Map.Entry<Tuple, HyperLogLog> entry : estimators.entrySet()) {
+        		outVal.initialize();
+        		outVal.add(entry.getValue().getRegisters());
+        		context.write(entry.getKey(), outVal);
+        	}
+        	estimators.clear();
         }
 	}
 	
+	/**
+	 * Unique values union for in mapper aggregation. Values are kept in a set and converted to
+	 * tuple only when emitted
+	 * @author pranab
+	 *
+	 */
+	public static class UniqueValueAccumulator implements InMapperAggregator.ValueAccumulator<Tuple, Set<String>> {
+		private Tuple outVal;
+		
+		/**
+		 * @param config
+		 */
+		public UniqueValueAccumulator(Configuration config) {
+			outVal = Utility.createTuple(config);
+		}
+		
+		@Override
+		public Set<String> createAggregate(Tuple value) {
+			Set<String> aggregate = new HashSet<String>();
+			merge(aggregate, value);
+			return aggregate;
+		}
+
+		@Override
+		public int merge(Set<String> aggregate, Tuple value) {
+			int growth = 0;
+			for (int i = 0; i < value.getSize(); ++i) {
+				String newValue = value.getString(i);
+				if (aggregate.add(newValue)) {
+					growth += 2 * newValue.length() + 48;
+				}
+			}
+			return growth;
+		}
+
+		@Override
+		public Tuple getValue(Set<String> aggregate) {
+			outVal.initialize();
+			for (String value : aggregate) {
+				outVal.add(value);
+			}
+			return outVal;
+		}
+	}
+	
 	/**
 	 * @author pranab
 	 *
 	 */
 	public static class CounterCombiner extends Reducer<Tuple, Tuple, Tuple, Tuple> {
-		private Tuple outVal = new Tuple();
+		private Tuple outVal;
 		private DuplicateRemover<String> dupRemover = new DuplicateRemover<String>(); 
 		
+        /* (non-Javadoc)
+         * @see org.apache.hadoop.mapreduce.Reducer#setup(org.apache.hadoop.mapreduce.Reducer.Context)
+         */
+        protected void setup(Context context) throws IOException, InterruptedException {
+        	outVal = Utility.createTuple(context.getConfiguration());
+        }
+        
         /* (non-Javadoc)
          * @see org.apache.hadoop.mapreduce.Reducer#reduce(KEYIN, java.lang.Iterable, org.apache.hadoop.mapreduce.Reducer.Context)
          */
@@ -166,14 +290,28 @@ public class UniqueValueCounter  extends Configured implements Tool {
         		throws IOException, InterruptedException {
         	dupRemover.initialize();
         	outVal.initialize();
+        	HyperLogLog estimator = null;
     		for (Tuple val : values) {
-    			for (int i = 0; i < val.getSize(); ++i) {
-    				dupRemover.add(val.getString(i));
+    			if (isEstimator(val)) {
+    				//merge registers
+    				if (null == estimator) {
+    					estimator = new HyperLogLog((byte[])val.get(0));
+    				} else {
+    					estimator.merge((byte[])val.get(0));
+    				}
+    			} else {
+	    			for (int i = 0; i < val.getSize(); ++i) {
+	    				dupRemover.add(val.getString(i));
+	    			}
     			}
     		}
     		
-    		for (String uniqueValue : dupRemover.getData()) {
-    			outVal.add(uniqueValue);
+    		if (null != estimator) {
+    			outVal.add(estimator.getRegisters());
+    		} else {
+	    		for (String uniqueValue : dupRemover.getData()) {
+	    			outVal.add(uniqueValue);
+	    		}
     		}
         	context.write(key, outVal);
         }	
@@ -206,14 +344,26 @@ public class UniqueValueCounter  extends Configured implements Tool {
         	throws IOException, InterruptedException {
     		key.setDelim(fieldDelim);
     		dupRemover.initialize();
+        	HyperLogLog estimator = null;
     		for (Tuple val : values) {
-    			for (int i = 0; i < val.getSize(); ++i) {
-    				dupRemover.add(val.getString(i));
+    			if (isEstimator(val)) {
+    				if (null == estimator) {
+    					estimator = new HyperLogLog((byte[])val.get(0));
+    				} else {
+    					estimator.merge((byte[])val.get(0));
+    				}
+    			} else {
+	    			for (int i = 0; i < val.getSize(); ++i) {
+	    				dupRemover.add(val.getString(i));
+	    			}
     			}
     		}
     		
        		stBld.delete(0, stBld.length());
-    		if (outputCount) {
+       		if (null != estimator) {
+    			//estimated count, values are not available in approximate mode
+	       		stBld.append(key.toString()).append(fieldDelim).append(estimator.getCardinality()).append(fieldDelim);
+       		} else if (outputCount) {
     			//count
 	       		stBld.append(key.toString()).append(fieldDelim).append(dupRemover.getSize()).append(fieldDelim);
     		} else {
@@ -228,6 +378,14 @@ public class UniqueValueCounter  extends Configured implements Tool {
     	}		
  	}	
 	
+	/**
+	 * @param value
+	 * @return true if value contains HyperLogLog registers instead of actual values
+	 */
+	private static boolean isEstimator(Tuple value) {
+		return value.getSize() == 1 && value.get(0) instanceof byte[];
+	}
+	
 	/**
 	 * @param args
 	 */
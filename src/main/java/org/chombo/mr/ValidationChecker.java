@@ -39,6 +39,7 @@ import org.apache.hadoop.util.ToolRunner;
 import org.chombo.stats.MedianStatsManager;
 import org.chombo.stats.NumericalAttrStatsManager;
 import org.chombo.util.BasicUtils;
+import org.chombo.util.DelimitedFieldTokenizer;
 import org.chombo.util.ProcessorAttribute;
 import org.chombo.util.ProcessorAttributeSchema;
 import org.chombo.util.Utility;
@@ -90,7 +91,7 @@ public class ValidationChecker extends Configured implements Tool {
         private String fieldDelimRegex;
         private String fieldDelimOut;
 		private StringBuilder stBld = new  StringBuilder();
-        private String[] items;
+        private DelimitedFieldTokenizer tokenizer;
         private Map<Integer, List<Validator>> validators = new HashMap<Integer, List<Validator>>();
         private List<InvalidData> invalidDataList = new ArrayList<InvalidData>();
         private boolean filterInvalidRecords;
@@ -112,6 +113,7 @@ public class ValidationChecker extends Configured implements Tool {
         	Configuration config = context.getConfiguration();
         	fieldDelimRegex = config.get("field.delim.regex", ",");
         	fieldDelimOut = config.get("field.delim", ",");
+        	tokenizer = new DelimitedFieldTokenizer(fieldDelimRegex).withGuard(config.get("field.delim.guard"));
         	filterInvalidRecords = config.getBoolean("vac.filter.invalid.records", true);
         	invalidDataFilePath = config.get("vac.invalid.data.file.path");
         	outputValidationFailures = config.getBoolean("vac.output.validation.failures", true);
@@ -263,8 +265,14 @@ public class ValidationChecker extends Configured implements Tool {
         private void getAttributeMeds(Configuration config, String medFilePathParam, String madFilePathParam, int[] idOrdinals) 
         	throws IOException {
         	if (null == medStatManager) {
-        		medStatManager = new MedianStatsManager(config, medFilePathParam, madFilePathParam,  
-        			",",  idOrdinals, false);
+        		if (null != config.get("vac.med.sketch.file.path")) {
+        			//median and median absolute divergence from quantile sketches
+        			medStatManager = MedianStatsManager.createFromSketches(config, "vac.med.sketch.file.path", 
+        				",",  idOrdinals, false);
+        		} else {
+        			medStatManager = new MedianStatsManager(config, medFilePathParam, madFilePathParam,  
+        				",",  idOrdinals, false);
+        		}
         	}
         	validatorContext.clear();
 			validatorContext.put("stats",  medStatManager);
@@ -292,16 +300,16 @@ public class ValidationChecker extends Configured implements Tool {
         @Override
         protected void map(LongWritable key, Text value, Context context)
             throws IOException, InterruptedException {
-            items  =  value.toString().split(fieldDelimRegex, -1);
+            tokenizer.tokenize(value);
             stBld.delete(0, stBld.length());
             valid = true;
             InvalidData invalidData = null;
             
-            //field wise validation
-            for (int i = 0; i < items.length; ++i) {
+            //field wise validation, only fields with validators are decoded
+            for (int i = 0; i < tokenizer.getNumFields(); ++i) {
             	List<Validator> validatorList = validators.get(i);
-            	fieldValue = items[i]; 
             	if(null != validatorList) {
+            		fieldValue = tokenizer.getString(i); 
             		for (Validator validator : validatorList) {
             			if (ValidatorFactory.isCustomValidator(validator.getTag())) {
             				//custom validator, pass whole record
@@ -337,7 +345,7 @@ public class ValidationChecker extends Configured implements Tool {
             
             //valid or all records
             if (null == invalidData || !filterInvalidRecords ) {
-            	outVal.set(value.toString());
+            	outVal.set(value);
             	context.write(NullWritable.get(), outVal);
             }
             
@@ -38,6 +38,7 @@ import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
+import org.chombo.stats.TopKSketch;
 import org.chombo.util.Attribute;
 import org.chombo.util.GenericAttributeSchema;
 import org.chombo.util.Tuple;
@@ -45,12 +46,13 @@ import org.chombo.util.Utility;
 
 /**
  * Counts occurences of specified values for specified columns. Can be used for counting
- * missing values
+ * missing values. In top k mode, finds most frequent values of the columns with heavy hitter sketch
  * @author pranab
  *
  */
 public class ValueCounter  extends Configured implements Tool {
 	private static String configDelim = ",";
+	private static final String TOP_K_CONFIG_PREFIX_PARAM = "top.k.config.prefix";
 
 	@Override
 	public int run(String[] args) throws Exception {
@@ -64,12 +66,17 @@ public class ValueCounter  extends Configured implements Tool {
         FileOutputFormat.setOutputPath(job, new Path(args[1]));
 
         Utility.setConfiguration(job.getConfiguration(), "chombo");
-        job.setMapperClass(ValueCounter.CounterMapper.class);
-        job.setReducerClass(ValueCounter.CounterReducer.class);
-        job.setCombinerClass(ValueCounter.CounterCombiner.class);
-        
         job.setMapOutputKeyClass(Tuple.class);
-        job.setMapOutputValueClass(IntWritable.class);
+        if (job.getConfiguration().getBoolean("vlc.top.k.mode", false)) {
+        	//top k values of all values instead of counts of specified values
+        	setTopKMode(job, "vlc");
+            job.setMapperClass(ValueCounter.TopKMapper.class);
+        } else {
+	        job.setMapperClass(ValueCounter.CounterMapper.class);
+	        job.setReducerClass(ValueCounter.CounterReducer.class);
+	        job.setCombinerClass(ValueCounter.CounterCombiner.class);
+	        job.setMapOutputValueClass(IntWritable.class);
+        }
 
         job.setOutputKeyClass(NullWritable.class);
         job.setOutputValueClass(Text.class);
@@ -82,6 +89,29 @@ public class ValueCounter  extends Configured implements Tool {
         return status;
 	}
 
+	/**
+	 * Sets up combiner and reducer for top k values with heavy hitter sketch
+	 * @param job
+	 * @param configPrefix
+	 */
+	public static void setTopKMode(Job job, String configPrefix) {
+		job.getConfiguration().set(TOP_K_CONFIG_PREFIX_PARAM, configPrefix);
+        job.setCombinerClass(ValueCounter.TopKCombiner.class);
+        job.setReducerClass(ValueCounter.TopKReducer.class);
+        job.setMapOutputValueClass(TopKSketch.class);
+	}
+	
+	/**
+	 * @param config
+	 * @return
+	 */
+	public static TopKSketch createTopKSketch(Configuration config) {
+		String prefix = config.get(TOP_K_CONFIG_PREFIX_PARAM);
+		int topK = config.getInt(prefix + ".top.k.count", 100);
+		return new TopKSketch(config.getInt(prefix + ".top.k.counters", 10 * topK), 
+				config.getInt(prefix + ".cms.width", 2048), config.getInt(prefix + ".cms.depth", 5));
+	}
+
 	/**
 	 * @author pranab
 	 *
@@ -153,6 +183,62 @@ public class ValueCounter  extends Configured implements Tool {
         
 	}
 	
+	/**
+	 * Builds heavy hitter sketch for each column in memory, emitted in cleanup
+	 * @author pranab
+	 *
+	 */
+	public static class TopKMapper extends Mapper<LongWritable, Text,  Tuple, TopKSketch> {
+		private int[]  attributes;
+        private String[] items;
+        private String fieldDelimRegex;
+        private Set<Integer> caseInsensitiveAttributeSet = new HashSet<Integer>();
+        private TopKSketch[] sketches;
+        
+        /* (non-Javadoc)
+         * @see org.apache.hadoop.mapreduce.Mapper#setup(org.apache.hadoop.mapreduce.Mapper.Context)
+         */
+        protected void setup(Context context) throws IOException, InterruptedException {
+        	Configuration config = context.getConfiguration();
+        	fieldDelimRegex = config.get("field.delim.regex", ",");
+        	GenericAttributeSchema schema = Utility.getGenericAttributeSchema(config,  "vlc.schema.file.path");
+            attributes = Utility.getAttributes("vlc..attr.list", configDelim,  schema, config,  Attribute.DATA_TYPE_CATEGORICAL, 
+            		Attribute.DATA_TYPE_DATE, Attribute.DATA_TYPE_INT, Attribute.DATA_TYPE_LONG, Attribute.DATA_TYPE_STRING);        	
+    		int[] caseInsensitiveAttributes = Utility.intArrayFromString(config.get("vlc.case.insensitive.attr.list"),configDelim );
+    		if (null !=caseInsensitiveAttributes) {
+    			for (int attr :  caseInsensitiveAttributes) {
+    				caseInsensitiveAttributeSet.add(attr);
+    			}
+    		}
+    		sketches = new TopKSketch[attributes.length];
+    		for (int i = 0; i < attributes.length; ++i) {
+    			sketches[i] = createTopKSketch(config);
+    		}
+        }
+        
+        @Override
+        protected void map(LongWritable key, Text value, Context context)
+            throws IOException, InterruptedException {
+            items  =  value.toString().split(fieldDelimRegex, -1);
+            for (int i = 0; i < attributes.length; ++i) {
+            	String attrValue = items[attributes[i]];
+            	sketches[i].add(caseInsensitiveAttributeSet.contains(attributes[i]) ? attrValue.toLowerCase() : attrValue);
+            }
+        }
+        
+		/* (non-Javadoc)
+		 * @see org.apache.hadoop.mapreduce.Mapper#cleanup(org.apache.hadoop.mapreduce.Mapper.Context)
+		 */
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			Tuple outKey = new Tuple();
+            for (int i = 0; i < attributes.length; ++i) {
+            	outKey.initialize();
+            	outKey.add(attributes[i]);
+            	context.write(outKey, sketches[i]);
+            }
+		}
+	}
+	
 	/**
 	 * @author pranab
 	 *
@@ -208,6 +294,79 @@ public class ValueCounter  extends Configured implements Tool {
 		}		
 	}	
 	
+	/**
+	 * Merges heavy hitter sketches
+	 * @author pranab
+	 *
+	 */
+	public static class TopKCombiner extends Reducer<Tuple, TopKSketch, Tuple, TopKSketch> {
+		private TopKSketch sketch;
+		
+		/* (non-Javadoc)
+		 * @see org.apache.hadoop.mapreduce.Reducer#setup(org.apache.hadoop.mapreduce.Reducer.Context)
+		 */
+		protected void setup(Context context) throws IOException, InterruptedException {
+			sketch = createTopKSketch(context.getConfiguration());
+		}
+		
+        /* (non-Javadoc)
+         * @see org.apache.hadoop.mapreduce.Reducer#reduce(KEYIN, java.lang.Iterable, org.apache.hadoop.mapreduce.Reducer.Context)
+         */
+        protected void reduce(Tuple  key, Iterable<TopKSketch> values, Context context)
+        		throws IOException, InterruptedException {
+        	sketch.initialize();
+    		for (TopKSketch val : values) {
+    			sketch.merge(val);
+    		}
+        	context.write(key, sketch);
+        }	
+	}
+	
+	/**
+	 * Merges heavy hitter sketches and outputs total count followed by top k values, each with 
+	 * estimated count and maximum over estimation 
+	 * @author pranab
+	 *
+	 */
+	public static class TopKReducer extends Reducer<Tuple, TopKSketch, NullWritable, Text> {
+		private Text outVal = new Text();
+		private StringBuilder stBld =  new StringBuilder();
+		private String fieldDelim;
+		private TopKSketch sketch;
+		private int topK;
+
+		/* (non-Javadoc)
+		 * @see org.apache.hadoop.mapreduce.Reducer#setup(org.apache.hadoop.mapreduce.Reducer.Context)
+		 */
+		protected void setup(Context context) throws IOException, InterruptedException {
+			Configuration config = context.getConfiguration();
+			fieldDelim = config.get("field.delim.out", ",");
+			topK = config.getInt(config.get(TOP_K_CONFIG_PREFIX_PARAM) + ".top.k.count", 100);
+			sketch = createTopKSketch(config);
+ 		}
+	   	
+		/* (non-Javadoc)
+		 * @see org.apache.hadoop.mapreduce.Reducer#reduce(KEYIN, java.lang.Iterable, org.apache.hadoop.mapreduce.Reducer.Context)
+ 	 	*/
+		protected void reduce(Tuple key, Iterable<TopKSketch> values, Context context)
+     	throws IOException, InterruptedException {
+        	sketch.initialize();
+    		for (TopKSketch val : values) {
+    			sketch.merge(val);
+    		}
+    		
+			key.setDelim(fieldDelim);
+			stBld.delete(0, stBld.length());
+			stBld.append(key.toString()).append(fieldDelim).append(sketch.getTotalCount());
+			for (TopKSketch.Counter counter : sketch.getTopK(topK)) {
+				stBld.append(fieldDelim).append(counter.getItem()).append(fieldDelim).append(counter.getCount()).
+					append(fieldDelim).append(counter.getError());
+			}
+			outVal.set(stBld.toString());
+			context.write(NullWritable.get(), outVal);
+		}		
+	}	
+	
 	/**
 	 * @param args
 	 */
@@ -35,10 +35,14 @@ public class AdditiveOperator extends Operator {
 	public Object evaluate() {
 		BasicUtils.assertCondition(children.size() >= 2, "need at least 2 operands");
 		boolean first = true;
+		Object[] childValues = new Object[children.size()];
+		for (int i = 0; i < children.size(); ++i) {
+			childValues[i] = children.get(i).evaluate();
+		}
 		if (anyDouble()) {
 			double dValue = 0;
-			for (Expression child : children) {
-				double childVal = (Double)child.evaluate();
+			for (Object childObj : childValues) {
+				double childVal = ((Number)childObj).doubleValue();
 				if (token.equals(PLUS_OP)) {
 					dValue += childVal;
 				} else if (token.equals(MINUS_OP)) {
@@ -51,10 +55,11 @@ public class AdditiveOperator extends Operator {
 				}
 			}	
 			value = dValue;
+			type = promotedType = BaseAttribute.DATA_TYPE_DOUBLE;
 		} else {
 			int iValue = 0;
-			for (Expression child : children) {
-				int childVal = (Integer)child.evaluate();
+			for (Object childObj : childValues) {
+				int childVal = (Integer)childObj;
 				if (token.equals(PLUS_OP)) {
 					iValue += childVal;
 				} else if (token.equals(MINUS_OP)) {
@@ -67,6 +72,7 @@ public class AdditiveOperator extends Operator {
 				}
 			}			
 			value = iValue;
+			type = promotedType = BaseAttribute.DATA_TYPE_INT;
 		}
 		
 		return value;
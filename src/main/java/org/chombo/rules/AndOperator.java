@@ -40,14 +40,15 @@ public class AndOperator extends Operator{
 		BasicUtils.assertCondition(children.size() >= 2, "need at least 2 operands");
 		boolean bValue = true;
 		for (Expression child : children) {
+			Object cValue = child.evaluate();
 			if (child.type.equals(BaseAttribute.DATA_TYPE_BOOLEAN)) {
-				boolean  cValue = (Boolean)child.evaluate();
-				bValue =  bValue && cValue;
+				bValue =  bValue && (Boolean)cValue;
 			} else {
 				BasicUtils.assertFail("incorrect operand type");
 			}
 		}
 		value = bValue;
+		type = promotedType = BaseAttribute.DATA_TYPE_BOOLEAN;
 		return value;
 	}
 
@@ -0,0 +1,107 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.rules;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * Expression compiled once against a schema and evaluated for each record. Same usage as
+ * parse tree root i.e. set record data and evaluate. Not thread safe, since record is held
+ * in the instance.
+ * @author pranab
+ *
+ */
+public class CompiledExpression implements Serializable {
+	private Evaluator evaluator;
+	protected String[] input;
+	protected String inputKey;
+	protected Map<String, Double> keyedMeanValues;
+	protected Map<String, Double> keyedStdDevValues;
+
+	/**
+	 * @param evaluator
+	 */
+	public CompiledExpression(Evaluator evaluator) {
+		this.evaluator = evaluator;
+	}
+
+	/**
+	 * @param input
+	 * @return
+	 */
+	public CompiledExpression withInput(String[] input) {
+		this.input = input;
+		return this;
+	}
+
+	/**
+	 * @param inputKey
+	 * @return
+	 */
+	public CompiledExpression withInputKey(String inputKey) {
+		this.inputKey = inputKey;
+		return this;
+	}
+
+	/**
+	 * @param keyedMeanValues
+	 * @return
+	 */
+	public CompiledExpression withKeyedMeanValues(Map<String, Double> keyedMeanValues) {
+		this.keyedMeanValues = keyedMeanValues;
+		return this;
+	}
+
+	/**
+	 * @param keyedStdDevValues
+	 * @return
+	 */
+	public CompiledExpression withKeyedStdDevValues(Map<String, Double> keyedStdDevValues) {
+		this.keyedStdDevValues = keyedStdDevValues;
+		return this;
+	}
+
+	/**
+	 * @return
+	 */
+	public String getType() {
+		return evaluator.getType();
+	}
+
+	/**
+	 * @return boxed value
+	 */
+	public Object evaluate() {
+		return evaluator.evaluate(this);
+	}
+
+	/**
+	 * @return
+	 */
+	public boolean evaluateBoolean() {
+		return evaluator.evalBoolean(this);
+	}
+
+	/**
+	 * @return
+	 */
+	public double evaluateDouble() {
+		return evaluator.evalDouble(this);
+	}
+}
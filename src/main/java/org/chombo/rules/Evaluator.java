@@ -0,0 +1,103 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.rules;
+
+import java.io.Serializable;
+
+import org.chombo.util.BaseAttribute;
+
+/**
+ * Compiled expression node with statically known result type. Only the eval method matching
+ * the type needs to be implemented. Int evaluator can be evaluated as double.
+ * @author pranab
+ *
+ */
+public abstract class Evaluator implements Serializable {
+	protected String type;
+
+	/**
+	 * @param type
+	 */
+	public Evaluator(String type) {
+		this.type = type;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * @return
+	 */
+	public boolean isNumeric() {
+		return type.equals(BaseAttribute.DATA_TYPE_INT) || type.equals(BaseAttribute.DATA_TYPE_DOUBLE);
+	}
+
+	/**
+	 * @param record
+	 * @return
+	 */
+	public boolean evalBoolean(CompiledExpression record) {
+		throw new IllegalStateException("not a boolean expression, type " + type);
+	}
+
+	/**
+	 * @param record
+	 * @return
+	 */
+	public int evalInt(CompiledExpression record) {
+		throw new IllegalStateException("not an int expression, type " + type);
+	}
+
+	/**
+	 * @param record
+	 * @return
+	 */
+	public double evalDouble(CompiledExpression record) {
+		if (!type.equals(BaseAttribute.DATA_TYPE_INT)) {
+			throw new IllegalStateException("not a numeric expression, type " + type);
+		}
+		return evalInt(record);
+	}
+
+	/**
+	 * @param record
+	 * @return
+	 */
+	public String evalString(CompiledExpression record) {
+		throw new IllegalStateException("not a string expression, type " + type);
+	}
+
+	/**
+	 * @param record
+	 * @return boxed value
+	 */
+	public Object evaluate(CompiledExpression record) {
+		Object value = null;
+		if (type.equals(BaseAttribute.DATA_TYPE_BOOLEAN)) {
+			value = evalBoolean(record);
+		} else if (type.equals(BaseAttribute.DATA_TYPE_INT)) {
+			value = evalInt(record);
+		} else if (type.equals(BaseAttribute.DATA_TYPE_DOUBLE)) {
+			value = evalDouble(record);
+		} else {
+			value = evalString(record);
+		}
+		return value;
+	}
+}
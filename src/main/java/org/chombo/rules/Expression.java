@@ -208,7 +208,10 @@ public  class Expression implements Serializable {
 	 * @return
 	 */
 	public  Object evaluate() {
-		return children.get(0).evaluate();
+		Expression child = children.get(0);
+		value = child.evaluate();
+		type = promotedType = child.type;
+		return value;
 	}
 	
 	/**
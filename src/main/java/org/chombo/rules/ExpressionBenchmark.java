@@ -0,0 +1,165 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.rules;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.chombo.util.BaseAttribute;
+
+/**
+ * Compares compiled expression with parse tree interpreter over generated records. Results are
+ * checked to be identical before timing. Usage: ExpressionBenchmark [numRecords] [numRepeats]
+ * @author pranab
+ *
+ */
+public class ExpressionBenchmark {
+	private static final String[] EXPRESSIONS = {
+		"$a > 10 and $b < 3.5 or $c = abc",
+		"if $a > 1 then $b < 2",
+		"$a + $b * 2 - 1 >= ( $d - 1 )",
+		"$a + $d + 3 > 5",
+		"$a * 2 * $d > 100 and $c eq x and $d < 20",
+		"$a / 3 = $d - 2 or $b * $b > 10.5 and $a + 1 >= $d"
+	};
+	private static final String[] CATEGORIES = {"abc", "x", "y"};
+	private static final int NUM_WARM_UP = 2;
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		int numRecords = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int numRepeats = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		List<BaseAttribute> attributes = new ArrayList<BaseAttribute>();
+		attributes.add(createAttribute("a", 0, BaseAttribute.DATA_TYPE_INT));
+		attributes.add(createAttribute("b", 1, BaseAttribute.DATA_TYPE_DOUBLE));
+		attributes.add(createAttribute("c", 2, BaseAttribute.DATA_TYPE_STRING));
+		attributes.add(createAttribute("d", 3, BaseAttribute.DATA_TYPE_INT));
+		String[][] records = createRecords(numRecords);
+
+		ExpressionCompiler compiler = new ExpressionCompiler(attributes);
+		for (String exprStr : EXPRESSIONS) {
+			Expression root = new ParseTreeBuilder().buildParseTree(exprStr);
+			root.withAttributes(attributes);
+			CompiledExpression compiled = compiler.compile(exprStr);
+
+			//same result for every record
+			for (String[] record : records) {
+				Object expected = root.withInput(record).evaluate();
+				Object actual = compiled.withInput(record).evaluate();
+				if (!expected.equals(actual)) {
+					throw new IllegalStateException("compiled expression result differs for " + exprStr +
+						" record " + Arrays.toString(record) + " interpreted " + expected + " compiled " + actual);
+				}
+			}
+
+			long interpretedTime = 0;
+			long compiledTime = 0;
+			for (int i = 0; i <= NUM_WARM_UP; ++i) {
+				interpretedTime = timeInterpreted(root, records, numRepeats);
+				compiledTime = timeCompiled(compiled, records, numRepeats);
+			}
+			double numEvaluations = (double)numRecords * numRepeats;
+			System.out.println(String.format("%-55s interpreted %8.1f ns compiled %8.1f ns speedup %5.1f", exprStr,
+				interpretedTime / numEvaluations, compiledTime / numEvaluations, (double)interpretedTime / compiledTime));
+		}
+	}
+
+	/**
+	 * @param name
+	 * @param ordinal
+	 * @param dataType
+	 * @return
+	 */
+	private static BaseAttribute createAttribute(String name, int ordinal, String dataType) {
+		BaseAttribute attr = new BaseAttribute();
+		attr.setName(name);
+		attr.setOrdinal(ordinal);
+		attr.setDataType(dataType);
+		return attr;
+	}
+
+	/**
+	 * @param numRecords
+	 * @return
+	 */
+	private static String[][] createRecords(int numRecords) {
+		Random random = new Random(1);
+		String[][] records = new String[numRecords][];
+		for (int i = 0; i < numRecords; ++i) {
+			records[i] = new String[] {"" + random.nextInt(30), "" + random.nextDouble() * 6,
+				CATEGORIES[random.nextInt(CATEGORIES.length)], "" + (1 + random.nextInt(25))};
+		}
+		return records;
+	}
+
+	/**
+	 * @param root
+	 * @param records
+	 * @param numRepeats
+	 * @return elapsed nano sec
+	 */
+	private static long timeInterpreted(Expression root, String[][] records, int numRepeats) {
+		int count = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < numRepeats; ++i) {
+			for (String[] record : records) {
+				if ((Boolean)root.withInput(record).evaluate()) {
+					++count;
+				}
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		checkCount(count);
+		return elapsed;
+	}
+
+	/**
+	 * @param compiled
+	 * @param records
+	 * @param numRepeats
+	 * @return elapsed nano sec
+	 */
+	private static long timeCompiled(CompiledExpression compiled, String[][] records, int numRepeats) {
+		int count = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < numRepeats; ++i) {
+			for (String[] record : records) {
+				if (compiled.withInput(record).evaluateBoolean()) {
+					++count;
+				}
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		checkCount(count);
+		return elapsed;
+	}
+
+	/**
+	 * keeps the evaluation from being optimized away
+	 * @param count
+	 */
+	private static void checkCount(int count) {
+		if (count < 0) {
+			throw new IllegalStateException("invalid count");
+		}
+	}
+}
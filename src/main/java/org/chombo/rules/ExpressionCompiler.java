@@ -0,0 +1,494 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.rules;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.chombo.util.BaseAttribute;
+import org.chombo.util.BasicUtils;
+
+/**
+ * Compiles parse tree into a tree of typed evaluators. Variables are resolved to field ordinals,
+ * literals are parsed and types are checked once, instead of for every record. Numeric operations
+ * work on primitives and logical operators short circuit.
+ * @author pranab
+ *
+ */
+public class ExpressionCompiler implements Serializable {
+	private Map<String, BaseAttribute> attributes = new HashMap<String, BaseAttribute>();
+
+	private static final int LESS_THAN = 0;
+	private static final int LESS_THAN_EQUAL_TO = 1;
+	private static final int GREATER_THAN = 2;
+	private static final int GREATER_THAN_EQUAL_TO = 3;
+	private static final int EQUAL_TO = 4;
+	private static final int PLUS = 5;
+	private static final int MINUS = 6;
+	private static final int MULTIPLY = 7;
+	private static final int DIVIDE = 8;
+
+	/**
+	 * @param attributes
+	 */
+	public ExpressionCompiler(List<? extends BaseAttribute> attributes) {
+		for (BaseAttribute attr : attributes) {
+			this.attributes.put(attr.getName(), attr);
+		}
+	}
+
+	/**
+	 * @param exprStr
+	 * @return
+	 */
+	public CompiledExpression compile(String exprStr) {
+		ParseTreeBuilder builder = new ParseTreeBuilder();
+		return compile(builder.buildParseTree(exprStr));
+	}
+
+	/**
+	 * @param root
+	 * @return
+	 */
+	public CompiledExpression compile(Expression root) {
+		return new CompiledExpression(build(root));
+	}
+
+	/**
+	 * @param expr
+	 * @return
+	 */
+	public Evaluator build(Expression expr) {
+		Evaluator evaluator = null;
+		if (expr instanceof VariableTerm) {
+			evaluator = buildVariable(expr.getToken());
+		} else if (expr instanceof LiteralTerm) {
+			evaluator = buildLiteral(expr.getToken());
+		} else if (expr instanceof FunctionOperator) {
+			evaluator = buildFunction((FunctionOperator)expr);
+		} else if (expr instanceof RelationalOperator) {
+			evaluator = buildRelational(expr);
+		} else if (expr instanceof AndOperator) {
+			evaluator = buildAnd(expr);
+		} else if (expr instanceof OrOperator) {
+			evaluator = buildOr(expr);
+		} else if (expr instanceof AdditiveOperator || expr instanceof MultiplicativeOperator) {
+			evaluator = buildArithmetic(expr);
+		} else if (expr instanceof ThenOperator || expr instanceof RuleOperator) {
+			evaluator = buildRule(expr);
+		} else if (expr instanceof IfOperator) {
+			evaluator = buildOperands(expr, 1, 1)[0];
+			assertBoolean(evaluator, expr);
+		} else if (expr instanceof ParenthesisOperator || expr.getClass() == Expression.class) {
+			evaluator = buildOperands(expr, 1, 1)[0];
+		} else {
+			throw new IllegalStateException("can not compile expression " + expr.getToken());
+		}
+		return evaluator;
+	}
+
+	/**
+	 * @param name
+	 * @return
+	 */
+	private Evaluator buildVariable(String name) {
+		BaseAttribute attr = attributes.get(name);
+		BasicUtils.assertNotNull(attr, "undefined variable " + name);
+		final int ord = attr.getOrdinal();
+		Evaluator evaluator = null;
+		if (attr.isInteger()) {
+			evaluator = new Evaluator(BaseAttribute.DATA_TYPE_INT) {
+				@Override
+				public int evalInt(CompiledExpression record) {
+					return Integer.parseInt(record.input[ord]);
+				}
+			};
+		} else if (attr.isDouble()) {
+			evaluator = new Evaluator(BaseAttribute.DATA_TYPE_DOUBLE) {
+				@Override
+				public double evalDouble(CompiledExpression record) {
+					return Double.parseDouble(record.input[ord]);
+				}
+			};
+		} else if (attr.isString()) {
+			evaluator = new Evaluator(BaseAttribute.DATA_TYPE_STRING) {
+				@Override
+				public String evalString(CompiledExpression record) {
+					return record.input[ord];
+				}
+			};
+		} else {
+			throw new IllegalStateException("unsupported data type for variable " + name);
+		}
+		return evaluator;
+	}
+
+	/**
+	 * @param token
+	 * @return
+	 */
+	private Evaluator buildLiteral(final String token) {
+		Evaluator evaluator = null;
+		try {
+			final int iValue = Integer.parseInt(token);
+			evaluator = new Evaluator(BaseAttribute.DATA_TYPE_INT) {
+				@Override
+				public int evalInt(CompiledExpression record) {
+					return iValue;
+				}
+			};
+		} catch (NumberFormatException iEx) {
+			try {
+				final double dValue = Double.parseDouble(token);
+				evaluator = new Evaluator(BaseAttribute.DATA_TYPE_DOUBLE) {
+					@Override
+					public double evalDouble(CompiledExpression record) {
+						return dValue;
+					}
+				};
+			} catch (NumberFormatException dEx) {
+				evaluator = new Evaluator(BaseAttribute.DATA_TYPE_STRING) {
+					@Override
+					public String evalString(CompiledExpression record) {
+						return token;
+					}
+				};
+			}
+		}
+		return evaluator;
+	}
+
+	/**
+	 * @param func
+	 * @return
+	 */
+	private Evaluator buildFunction(FunctionOperator func) {
+		String name = func.getName();
+		BasicUtils.assertCondition(null != func.getArgs() && !func.getArgs().isEmpty(),
+				"missing argument for function " + name);
+		BaseAttribute attr = attributes.get(func.getArgs().get(0));
+		BasicUtils.assertNotNull(attr, "undefined variable " + func.getArgs().get(0));
+		final String keySuffix = "," + attr.getOrdinal();
+		Evaluator evaluator = null;
+		if (name.equals("mean")) {
+			evaluator = new Evaluator(BaseAttribute.DATA_TYPE_DOUBLE) {
+				@Override
+				public double evalDouble(CompiledExpression record) {
+					return record.keyedMeanValues.get(record.inputKey + keySuffix);
+				}
+			};
+		} else if (name.equals("stdDev")) {
+			evaluator = new Evaluator(BaseAttribute.DATA_TYPE_DOUBLE) {
+				@Override
+				public double evalDouble(CompiledExpression record) {
+					return record.keyedStdDevValues.get(record.inputKey + keySuffix);
+				}
+			};
+		} else {
+			throw new IllegalStateException("unsupported function " + name);
+		}
+		return evaluator;
+	}
+
+	/**
+	 * @param expr
+	 * @return
+	 */
+	private Evaluator buildRelational(Expression expr) {
+		Evaluator[] operands = buildOperands(expr, 2, 2);
+		final Evaluator left = operands[0];
+		final Evaluator right = operands[1];
+		String token = expr.getToken();
+		Evaluator evaluator = null;
+		if (left.getType().equals(BaseAttribute.DATA_TYPE_STRING) && right.getType().equals(BaseAttribute.DATA_TYPE_STRING)) {
+			if (token.equals(Operator.EQUAL_TO_OP) || token.equals(Operator.EQUAL_TO_STRING_OP)) {
+				evaluator = new Evaluator(BaseAttribute.DATA_TYPE_BOOLEAN) {
+					@Override
+					public boolean evalBoolean(CompiledExpression record) {
+						return left.evalString(record).equals(right.evalString(record));
+					}
+				};
+			}
+		} else if (left.isNumeric() && right.isNumeric()) {
+			final int opCode = getOpCode(token);
+			if (left.getType().equals(BaseAttribute.DATA_TYPE_INT) && right.getType().equals(BaseAttribute.DATA_TYPE_INT)) {
+				evaluator = new Evaluator(BaseAttribute.DATA_TYPE_BOOLEAN) {
+					@Override
+					public boolean evalBoolean(CompiledExpression record) {
+						return compare(opCode, left.evalInt(record), right.evalInt(record));
+					}
+				};
+			} else {
+				evaluator = new Evaluator(BaseAttribute.DATA_TYPE_BOOLEAN) {
+					@Override
+					public boolean evalBoolean(CompiledExpression record) {
+						return compare(opCode, left.evalDouble(record), right.evalDouble(record));
+					}
+				};
+			}
+		}
+
+		if (null == evaluator) {
+			throw new IllegalStateException("invalid operand types for relational operator " + left.getType() +
+				"  " + right.getType() + "  " + token);
+		}
+		return evaluator;
+	}
+
+	/**
+	 * @param expr
+	 * @return
+	 */
+	private Evaluator buildAnd(Expression expr) {
+		final Evaluator[] operands = buildOperands(expr, 2, Integer.MAX_VALUE);
+		for (Evaluator operand : operands) {
+			assertBoolean(operand, expr);
+		}
+		return new Evaluator(BaseAttribute.DATA_TYPE_BOOLEAN) {
+			@Override
+			public boolean evalBoolean(CompiledExpression record) {
+				boolean value = true;
+				for (int i = 0; value && i < operands.length; ++i) {
+					value = operands[i].evalBoolean(record);
+				}
+				return value;
+			}
+		};
+	}
+
+	/**
+	 * @param expr
+	 * @return
+	 */
+	private Evaluator buildOr(Expression expr) {
+		final Evaluator[] operands = buildOperands(expr, 2, Integer.MAX_VALUE);
+		for (Evaluator operand : operands) {
+			assertBoolean(operand, expr);
+		}
+		return new Evaluator(BaseAttribute.DATA_TYPE_BOOLEAN) {
+			@Override
+			public boolean evalBoolean(CompiledExpression record) {
+				boolean value = false;
+				for (int i = 0; !value && i < operands.length; ++i) {
+					value = operands[i].evalBoolean(record);
+				}
+				return value;
+			}
+		};
+	}
+
+	/**
+	 * @param expr
+	 * @return
+	 */
+	private Evaluator buildArithmetic(Expression expr) {
+		final Evaluator[] operands = buildOperands(expr, 2, Integer.MAX_VALUE);
+		final int opCode = getOpCode(expr.getToken());
+		boolean allInt = true;
+		for (Evaluator operand : operands) {
+			if (!operand.isNumeric()) {
+				throw new IllegalStateException("non numeric operand for arithmetic operator " + expr.getToken());
+			}
+			allInt = allInt && operand.getType().equals(BaseAttribute.DATA_TYPE_INT);
+		}
+
+		Evaluator evaluator = null;
+		if (allInt) {
+			evaluator = new Evaluator(BaseAttribute.DATA_TYPE_INT) {
+				@Override
+				public int evalInt(CompiledExpression record) {
+					int value = operands[0].evalInt(record);
+					for (int i = 1; i < operands.length; ++i) {
+						value = operate(opCode, value, operands[i].evalInt(record));
+					}
+					return value;
+				}
+			};
+		} else {
+			evaluator = new Evaluator(BaseAttribute.DATA_TYPE_DOUBLE) {
+				@Override
+				public double evalDouble(CompiledExpression record) {
+					double value = operands[0].evalDouble(record);
+					for (int i = 1; i < operands.length; ++i) {
+						value = operate(opCode, value, operands[i].evalDouble(record));
+					}
+					return value;
+				}
+			};
+		}
+		return evaluator;
+	}
+
+	/**
+	 * Rule with condition and consequent holds when condition is false or consequent is true
+	 * @param expr
+	 * @return
+	 */
+	private Evaluator buildRule(Expression expr) {
+		Evaluator[] operands = buildOperands(expr, 1, 2);
+		for (Evaluator operand : operands) {
+			assertBoolean(operand, expr);
+		}
+		Evaluator evaluator = null;
+		if (operands.length == 2) {
+			final Evaluator cond = operands[0];
+			final Evaluator consequent = operands[1];
+			evaluator = new Evaluator(BaseAttribute.DATA_TYPE_BOOLEAN) {
+				@Override
+				public boolean evalBoolean(CompiledExpression record) {
+					return !cond.evalBoolean(record) || consequent.evalBoolean(record);
+				}
+			};
+		} else {
+			evaluator = operands[0];
+		}
+		return evaluator;
+	}
+
+	/**
+	 * @param expr
+	 * @param minCount
+	 * @param maxCount
+	 * @return
+	 */
+	private Evaluator[] buildOperands(Expression expr, int minCount, int maxCount) {
+		List<Expression> children = expr.getChildren();
+		if (children.size() < minCount || children.size() > maxCount) {
+			throw new IllegalStateException("operator " + expr.getToken() + " has invalid number of operands " +
+				children.size());
+		}
+		Evaluator[] operands = new Evaluator[children.size()];
+		for (int i = 0; i < operands.length; ++i) {
+			operands[i] = build(children.get(i));
+		}
+		return operands;
+	}
+
+	/**
+	 * @param operand
+	 * @param expr
+	 */
+	private void assertBoolean(Evaluator operand, Expression expr) {
+		if (!operand.getType().equals(BaseAttribute.DATA_TYPE_BOOLEAN)) {
+			throw new IllegalStateException("non boolean operand for operator " + expr.getToken() + " type " +
+				operand.getType());
+		}
+	}
+
+	/**
+	 * @param token
+	 * @return
+	 */
+	private static int getOpCode(String token) {
+		int opCode = -1;
+		if (token.equals(Operator.LESS_THAN_OP)) {
+			opCode = LESS_THAN;
+		} else if (token.equals(Operator.LESS_THAN_EQUAL_TO_OP)) {
+			opCode = LESS_THAN_EQUAL_TO;
+		} else if (token.equals(Operator.GREATER_THAN_OP)) {
+			opCode = GREATER_THAN;
+		} else if (token.equals(Operator.GREATER_THAN_EQUAL_TO_OP)) {
+			opCode = GREATER_THAN_EQUAL_TO;
+		} else if (token.equals(Operator.EQUAL_TO_OP) || token.equals(Operator.EQUAL_TO_STRING_OP)) {
+			opCode = EQUAL_TO;
+		} else if (token.equals(Operator.PLUS_OP)) {
+			opCode = PLUS;
+		} else if (token.equals(Operator.MINUS_OP)) {
+			opCode = MINUS;
+		} else if (token.equals(Operator.MULTIPLY_OP)) {
+			opCode = MULTIPLY;
+		} else if (token.equals(Operator.DIVIDE_OP)) {
+			opCode = DIVIDE;
+		} else {
+			throw new IllegalStateException("unsupported operator " + token);
+		}
+		return opCode;
+	}
+
+	/**
+	 * @param opCode
+	 * @param left
+	 * @param right
+	 * @return
+	 */
+	private static boolean compare(int opCode, int left, int right) {
+		boolean result = false;
+		switch (opCode) {
+			case LESS_THAN: result = left < right; break;
+			case LESS_THAN_EQUAL_TO: result = left <= right; break;
+			case GREATER_THAN: result = left > right; break;
+			case GREATER_THAN_EQUAL_TO: result = left >= right; break;
+			case EQUAL_TO: result = left == right; break;
+		}
+		return result;
+	}
+
+	/**
+	 * @param opCode
+	 * @param left
+	 * @param right
+	 * @return
+	 */
+	private static boolean compare(int opCode, double left, double right) {
+		boolean result = false;
+		switch (opCode) {
+			case LESS_THAN: result = left < right; break;
+			case LESS_THAN_EQUAL_TO: result = left <= right; break;
+			case GREATER_THAN: result = left > right; break;
+			case GREATER_THAN_EQUAL_TO: result = left >= right; break;
+			case EQUAL_TO: result = left == right; break;
+		}
+		return result;
+	}
+
+	/**
+	 * @param opCode
+	 * @param left
+	 * @param right
+	 * @return
+	 */
+	private static int operate(int opCode, int left, int right) {
+		int result = 0;
+		switch (opCode) {
+			case PLUS: result = left + right; break;
+			case MINUS: result = left - right; break;
+			case MULTIPLY: result = left * right; break;
+			case DIVIDE: result = left / right; break;
+		}
+		return result;
+	}
+
+	/**
+	 * @param opCode
+	 * @param left
+	 * @param right
+	 * @return
+	 */
+	private static double operate(int opCode, double left, double right) {
+		double result = 0;
+		switch (opCode) {
+			case PLUS: result = left + right; break;
+			case MINUS: result = left - right; break;
+			case MULTIPLY: result = left * right; break;
+			case DIVIDE: result = left / right; break;
+		}
+		return result;
+	}
+}
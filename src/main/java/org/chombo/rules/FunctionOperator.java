@@ -49,6 +49,14 @@ public class FunctionOperator extends Operator {
 		return this;
 	}
 
+	public String getName() {
+		return name;
+	}
+
+	public List<String> getArgs() {
+		return args;
+	}
+
 	@Override
 	public Object evaluate() {
 		if (name.equals("mean")) {
@@ -60,7 +68,8 @@ public class FunctionOperator extends Operator {
 		} else {
 			BasicUtils.assertFail("unsupported function");
 		}
-
+		type = promotedType = BaseAttribute.DATA_TYPE_DOUBLE;
+		
 		return value;
 	}
 	
@@ -48,6 +48,7 @@ public class IfOperator extends Operator{
 		if (null == value) {
 			throw new IllegalStateException("failed evaluation for if operator " + child.type);
 		}
+		type = promotedType = BaseAttribute.DATA_TYPE_BOOLEAN;
 		return value;
 	}
 
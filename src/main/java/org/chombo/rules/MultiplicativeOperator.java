@@ -36,47 +36,38 @@ public class MultiplicativeOperator extends Operator {
 	
 	@Override
 	public Object evaluate() {
-		if (children.size() != 2) {
-			throw new IllegalStateException("binary operator has invalid number of operands " + children.size());
+		if (children.size() < 2) {
+			throw new IllegalStateException("need at least 2 operands " + children.size());
 		}
 		
-		Expression left = children.get(0);
-		Expression right = children.get(1);
-		Object leftVal = left.evaluate();
-		Object rightVal = right.evaluate();
-		
-		value = null;
-		if (left.type.equals(BaseAttribute.DATA_TYPE_INT) && right.type.equals(BaseAttribute.DATA_TYPE_INT)) {
-			if (token.equals(MULTIPLY_OP)) {
-				value = (Integer)leftVal * (Integer)rightVal;
-			} else if (token.equals(DIVIDE_OP)) {
-				value = (Integer)leftVal / (Integer)rightVal;
-			}
-			type = promotedType = BaseAttribute.DATA_TYPE_INT;
-		} else if (left.type.equals(BaseAttribute.DATA_TYPE_DOUBLE) && right.type.equals(BaseAttribute.DATA_TYPE_DOUBLE)) {
-			if (token.equals(MULTIPLY_OP)) {
-				value = (Double)leftVal * (Double)rightVal;
-			} else if (token.equals(DIVIDE_OP)) {
-				value = (Double)leftVal / (Double)rightVal;
+		Object[] childValues = new Object[children.size()];
+		boolean anyDouble = false;
+		for (int i = 0; i < children.size(); ++i) {
+			Expression child = children.get(i);
+			childValues[i] = child.evaluate();
+			if (child.type.equals(BaseAttribute.DATA_TYPE_DOUBLE)) {
+				anyDouble = true;
+			} else if (!child.type.equals(BaseAttribute.DATA_TYPE_INT)) {
+				throw new IllegalStateException("failed evaluation for multiplicative operator " + child.type);
 			}
-			type = promotedType = BaseAttribute.DATA_TYPE_DOUBLE;
-		} else if (left.type.equals(BaseAttribute.DATA_TYPE_INT) && right.type.equals(BaseAttribute.DATA_TYPE_DOUBLE)) {
-			if (token.equals(MULTIPLY_OP)) {
-				value = (Integer)leftVal * (Double)rightVal;
-			} else if (token.equals(DIVIDE_OP)) {
-				value = (Integer)leftVal / (Double)rightVal;
+		}
+		
+		if (anyDouble) {
+			double dValue = ((Number)childValues[0]).doubleValue();
+			for (int i = 1; i < childValues.length; ++i) {
+				double childVal = ((Number)childValues[i]).doubleValue();
+				dValue = token.equals(MULTIPLY_OP) ? dValue * childVal : dValue / childVal;
 			}
+			value = dValue;
 			type = promotedType = BaseAttribute.DATA_TYPE_DOUBLE;
-		} else if (left.type.equals(BaseAttribute.DATA_TYPE_DOUBLE) && right.type.equals(BaseAttribute.DATA_TYPE_INT)) {
-			if (token.equals(MULTIPLY_OP)) {
-				value = (Double)leftVal * (Integer)rightVal;
-			} else if (token.equals(DIVIDE_OP)) {
-				value = (Double)leftVal / (Integer)rightVal;
+		} else {
+			int iValue = (Integer)childValues[0];
+			for (int i = 1; i < childValues.length; ++i) {
+				int childVal = (Integer)childValues[i];
+				iValue = token.equals(MULTIPLY_OP) ? iValue * childVal : iValue / childVal;
 			}
-			type = promotedType = BaseAttribute.DATA_TYPE_DOUBLE;
-		}
-		if (null == value) {
-			throw new IllegalStateException("failed evaluation for multiplicative operator");
+			value = iValue;
+			type = promotedType = BaseAttribute.DATA_TYPE_INT;
 		}
 		return value;
 	}
@@ -37,7 +37,14 @@ public class ParenthesisOperator extends Operator{
 	@Override
 	public Object evaluate() {
 		BasicUtils.assertCondition(children.size() == 1, "unary operator has invalid number of operands " + children.size());
-		return children.get(0).evaluate();
+		
+		//nested expression has it's own root, pass on record
+		Expression child = children.get(0);
+		child.withAttributes(root.attributes).withInput(root.input).withInputKey(root.inputKey).
+			withKeyedMeanValues(root.keyedMeanValues).withKeyedStdDevValues(root.keyedStdDevValues);
+		value = child.evaluate();
+		type = promotedType = child.type;
+		return value;
 	}
 
 	@Override
@@ -90,24 +90,25 @@ public class ParseTreeBuilder implements Serializable {
 			//higher precedence, insert below
 			expr.setParent(current);
 			current.addChild(expr);
+			current = expr;
 		} else {
 			//lower precedence,walk upwards until a node is found with lower precedence and insert below
 			Expression next = current;
 			Expression prev = null;
 			for ( ; next != root && prec <= next.getPrecedence(); prev = next, next = next.getParent()) {}
 			if (null != prev) {
-				if (prev.getPrecedence() > prec) {
+				if (prev.getPrecedence() == prec && prev.isMultiOperand() && prev.getToken().equals(expr.getToken())) {
+					//same multi operand operator as prev, following operand goes to prev
+					current = prev;
+				} else {
 					//insert between next and prev
+					next.removeChild(prev);
 					expr.setParent(next);
 					next.addChild(expr);
+					prev.setParent(expr);
+					expr.addChild(prev);
 					current = expr;
-				} else {
-					//same precedence as prev
-					current = prev;
 				}
-				next.removeChild(prev);
-				prev.setParent(expr);
-				expr.addChild(prev);
 			} else {
 				expr.setParent(next);
 				next.addChild(expr);
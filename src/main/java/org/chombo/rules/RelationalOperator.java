@@ -54,7 +54,7 @@ public class RelationalOperator extends Operator {
 		} else if (left.type.equals(BaseAttribute.DATA_TYPE_DOUBLE) && right.type.equals(BaseAttribute.DATA_TYPE_INT)) {
 			value = relOperator((Double)leftVal, (Integer)rightVal, token);
 		} else if (left.type.equals(BaseAttribute.DATA_TYPE_STRING) && right.type.equals(BaseAttribute.DATA_TYPE_STRING)) {
-			if (token.equals(EQUAL_TO_OP)) {
+			if (token.equals(EQUAL_TO_OP) || token.equals(EQUAL_TO_STRING_OP)) {
 				value = ((String)leftVal).equals((String)rightVal);
 			}
 		}
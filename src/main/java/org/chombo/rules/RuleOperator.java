@@ -36,7 +36,7 @@ public class RuleOperator extends Operator {
 
 	@Override
 	public Object evaluate() {
-		if (children.size() != 1 || children.size() != 2) {
+		if (children.size() != 1 && children.size() != 2) {
 			throw new IllegalStateException("rule operator has invalid number of operands " + children.size());
 		}
 		value = null;
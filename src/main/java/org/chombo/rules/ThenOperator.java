@@ -36,18 +36,33 @@ public class ThenOperator extends Operator {
 	
 	@Override
 	public Object evaluate() {
-		if (children.size() != 1) {
-			throw new IllegalStateException("unary operator has invalid number of operands " + children.size());
+		if (children.size() != 1 && children.size() != 2) {
+			throw new IllegalStateException("then operator has invalid number of operands " + children.size());
 		}
 		
-		Expression child = children.get(0);
-		Object childVal = child.evaluate();
-		if (child.type.equals(BaseAttribute.DATA_TYPE_BOOLEAN)) {
+		value = null;
+		Expression child = children.get(children.size() - 1);
+		Object childVal = Boolean.TRUE;
+		if (children.size() == 2) {
+			//if condition followed by consequent, consequent evaluated only when condition holds
+			Expression cond = children.get(0);
+			Object condVal = cond.evaluate();
+			if (!cond.type.equals(BaseAttribute.DATA_TYPE_BOOLEAN)) {
+				throw new IllegalStateException("failed evaluation for if operator " + cond.type);
+			}
+			if ((Boolean)condVal) {
+				childVal = child.evaluate();
+			}
+		} else {
+			childVal = child.evaluate();
+		}
+		if (childVal instanceof Boolean) {
 			value = childVal;
 		}
 		if (null == value) {
 			throw new IllegalStateException("failed evaluation for then operator " + child.type);
 		}
+		type = promotedType = BaseAttribute.DATA_TYPE_BOOLEAN;
 		return value;
 	}
 
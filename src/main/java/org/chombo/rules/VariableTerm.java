@@ -57,7 +57,7 @@ public class VariableTerm extends Term {
 		} else {
 			throw new IllegalStateException("unsupported data type");
 		}
-		return null;
+		return value;
 	}
 	
 	@Override
@@ -0,0 +1,361 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.stats;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Histogram bin counts in primitive arrays. Starts as a dense array over the observed bin index
+ * range and switches to sorted sparse index and count arrays when the range gets wide compared
+ * to number of bins. Bin with zero count is treated as non existent
+ * @author pranab
+ *
+ */
+public class BinStore implements Serializable {
+	private boolean dense = true;
+	private long[] counts;
+	private int offset;
+	private int[] indexes;
+	private int size;
+	private int minIndex;
+	private int maxIndex;
+	private int[] sortedIndexes;
+	private long[] sortedCounts;
+	private static final int MIN_CAPACITY = 16;
+	private static final int MAX_DENSE_RANGE = 4096;
+	private static final int DENSE_FILL_FACTOR = 4;
+
+	/**
+	 *
+	 */
+	public void clear() {
+		dense = true;
+		counts = null;
+		indexes = null;
+		size = 0;
+		invalidate();
+	}
+
+	/**
+	 * @param index
+	 * @param count
+	 */
+	public void add(int index, long count) {
+		if (count != 0) {
+			if (dense && !fitsDense(index)) {
+				//too wide and sparsely filled
+				toSparse();
+			}
+			if (dense) {
+				addDense(index, count);
+			} else {
+				addSparse(index, count);
+			}
+			invalidate();
+		}
+	}
+
+	/**
+	 * @param index
+	 * @return count or 0 if there is no such bin
+	 */
+	public long get(int index) {
+		long count = 0;
+		if (size > 0) {
+			if (dense) {
+				int pos = index - offset;
+				if (pos >= 0 && pos < counts.length) {
+					count = counts[pos];
+				}
+			} else {
+				int pos = Arrays.binarySearch(indexes, 0, size, index);
+				if (pos >= 0) {
+					count = counts[pos];
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return number of bins
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return
+	 */
+	public int getMinIndex() {
+		return minIndex;
+	}
+
+	/**
+	 * @return
+	 */
+	public int getMaxIndex() {
+		return maxIndex;
+	}
+
+	/**
+	 * @return
+	 */
+	public boolean isDense() {
+		return dense;
+	}
+
+	/**
+	 * @return bin indexes in ascending order, shared until next modification
+	 */
+	public int[] getIndexes() {
+		snapshot();
+		return sortedIndexes;
+	}
+
+	/**
+	 * @return bin counts in ascending order of index, shared until next modification
+	 */
+	public long[] getCounts() {
+		snapshot();
+		return sortedCounts;
+	}
+
+	/**
+	 * Adds counts of other store in one pass over bins
+	 * @param other
+	 */
+	public void merge(BinStore other) {
+		if (other.size > 0) {
+			if (size == 0) {
+				copyFrom(other);
+			} else {
+				int[] thisIndexes = getIndexes();
+				long[] thisCounts = getCounts();
+				int[] thatIndexes = other.getIndexes();
+				long[] thatCounts = other.getCounts();
+
+				//merge sorted bins
+				int[] mergedIndexes = new int[size + other.size];
+				long[] mergedCounts = new long[size + other.size];
+				int i = 0;
+				int j = 0;
+				int k = 0;
+				while (i < thisIndexes.length || j < thatIndexes.length) {
+					if (j == thatIndexes.length || (i < thisIndexes.length && thisIndexes[i] < thatIndexes[j])) {
+						mergedIndexes[k] = thisIndexes[i];
+						mergedCounts[k++] = thisCounts[i++];
+					} else if (i == thisIndexes.length || thatIndexes[j] < thisIndexes[i]) {
+						mergedIndexes[k] = thatIndexes[j];
+						mergedCounts[k++] = thatCounts[j++];
+					} else {
+						mergedIndexes[k] = thisIndexes[i];
+						mergedCounts[k++] = thisCounts[i++] + thatCounts[j++];
+					}
+				}
+				fromSorted(mergedIndexes, mergedCounts, k);
+			}
+		}
+	}
+
+	/**
+	 * @param other
+	 */
+	public void copyFrom(BinStore other) {
+		dense = other.dense;
+		counts = null != other.counts ? other.counts.clone() : null;
+		indexes = null != other.indexes ? other.indexes.clone() : null;
+		offset = other.offset;
+		size = other.size;
+		minIndex = other.minIndex;
+		maxIndex = other.maxIndex;
+		invalidate();
+	}
+
+	/**
+	 * @param index
+	 * @param count
+	 */
+	private void addDense(int index, long count) {
+		if (null == counts) {
+			counts = new long[MIN_CAPACITY];
+			offset = index - MIN_CAPACITY / 2;
+			minIndex = maxIndex = index;
+		} else {
+			int newMin = Math.min(minIndex, index);
+			int newMax = Math.max(maxIndex, index);
+			if (index < offset || index >= offset + counts.length) {
+				growDense(newMin, newMax);
+			}
+			minIndex = newMin;
+			maxIndex = newMax;
+		}
+
+		int pos = index - offset;
+		if (counts[pos] == 0) {
+			++size;
+		}
+		counts[pos] += count;
+		if (counts[pos] == 0) {
+			--size;
+		}
+	}
+
+	/**
+	 * @param index
+	 * @return true if dense array can be extended to include the index
+	 */
+	private boolean fitsDense(int index) {
+		boolean fits = true;
+		if (null != counts) {
+			long range = (long)Math.max(maxIndex, index) - Math.min(minIndex, index) + 1;
+			fits = range <= MAX_DENSE_RANGE || range <= DENSE_FILL_FACTOR * ((long)size + 1);
+		}
+		return fits;
+	}
+
+	/**
+	 * @param newMin
+	 * @param newMax
+	 */
+	private void growDense(int newMin, int newMax) {
+		int range = newMax - newMin + 1;
+		int capacity = Math.max(counts.length * 2, range + range / 2);
+		int newOffset = newMin - (capacity - range) / 2;
+		long[] newCounts = new long[capacity];
+		System.arraycopy(counts, minIndex - offset, newCounts, minIndex - newOffset, maxIndex - minIndex + 1);
+		counts = newCounts;
+		offset = newOffset;
+	}
+
+	/**
+	 *
+	 */
+	private void toSparse() {
+		int[] newIndexes = new int[Math.max(MIN_CAPACITY, size * 2)];
+		long[] newCounts = new long[newIndexes.length];
+		int k = 0;
+		for (int i = minIndex - offset; i <= maxIndex - offset; ++i) {
+			if (counts[i] != 0) {
+				newIndexes[k] = i + offset;
+				newCounts[k++] = counts[i];
+			}
+		}
+		indexes = newIndexes;
+		counts = newCounts;
+		dense = false;
+	}
+
+	/**
+	 * @param index
+	 * @param count
+	 */
+	private void addSparse(int index, long count) {
+		int pos = Arrays.binarySearch(indexes, 0, size, index);
+		if (pos >= 0) {
+			counts[pos] += count;
+			if (counts[pos] == 0) {
+				//remove
+				System.arraycopy(indexes, pos + 1, indexes, pos, size - pos - 1);
+				System.arraycopy(counts, pos + 1, counts, pos, size - pos - 1);
+				--size;
+			}
+		} else {
+			pos = -pos - 1;
+			if (size == indexes.length) {
+				indexes = Arrays.copyOf(indexes, size * 2);
+				counts = Arrays.copyOf(counts, size * 2);
+			}
+			System.arraycopy(indexes, pos, indexes, pos + 1, size - pos);
+			System.arraycopy(counts, pos, counts, pos + 1, size - pos);
+			indexes[pos] = index;
+			counts[pos] = count;
+			++size;
+		}
+		if (size > 0) {
+			minIndex = indexes[0];
+			maxIndex = indexes[size - 1];
+		}
+	}
+
+	/**
+	 * Rebuilds from sorted bins, choosing dense or sparse by range
+	 * @param sortedIndexes
+	 * @param sortedCounts
+	 * @param numBins
+	 */
+	private void fromSorted(int[] sortedIndexes, long[] sortedCounts, int numBins) {
+		size = 0;
+		counts = null;
+		indexes = null;
+		minIndex = sortedIndexes[0];
+		maxIndex = sortedIndexes[numBins - 1];
+		long range = (long)maxIndex - minIndex + 1;
+		dense = range <= MAX_DENSE_RANGE || range <= DENSE_FILL_FACTOR * (long)numBins;
+		if (dense) {
+			counts = new long[(int)range];
+			offset = minIndex;
+			for (int i = 0; i < numBins; ++i) {
+				counts[sortedIndexes[i] - offset] = sortedCounts[i];
+			}
+		} else {
+			indexes = Arrays.copyOf(sortedIndexes, numBins);
+			counts = Arrays.copyOf(sortedCounts, numBins);
+		}
+		size = numBins;
+		invalidate();
+	}
+
+	/**
+	 * creates sorted bin arrays if stale
+	 */
+	private void snapshot() {
+		if (null == sortedIndexes) {
+			if (dense) {
+				sortedIndexes = new int[size];
+				sortedCounts = new long[size];
+				int k = 0;
+				for (int i = minIndex - offset; size > 0 && i <= maxIndex - offset; ++i) {
+					if (counts[i] != 0) {
+						sortedIndexes[k] = i + offset;
+						sortedCounts[k++] = counts[i];
+					}
+				}
+			} else {
+				sortedIndexes = Arrays.copyOf(indexes, size);
+				sortedCounts = Arrays.copyOf(counts, size);
+			}
+		}
+	}
+
+	/**
+	 *
+	 */
+	private void invalidate() {
+		sortedIndexes = null;
+		sortedCounts = null;
+	}
+}
@@ -20,37 +20,40 @@ package org.chombo.stats;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 
 import org.chombo.util.BasicUtils;
 
 /**
- * Histogram that chnges as data gets added
+ * Histogram that chnges as data gets added. Bin counts are kept in primitive arrays and derived
+ * distributions are computed in one pass over bins in ascending order of bin index
  * 
  * @author pranab
  *
  */
 public class HistogramStat implements Serializable {
 	protected double binWidth = -1;
-	protected Map<Integer, Bin> binMap = new TreeMap<Integer, Bin>();
+	protected BinStore binStore = new BinStore();
 	protected int count;
 	protected double sum = 0.0;
 	protected double sumSq = 0.0;
 	protected int  sampleCount;
 	protected boolean normalized;
-	protected Map<Double, Double> histogram = new TreeMap<Double, Double>();
+	protected Map<Double, Double> histogram = new LinkedHashMap<Double, Double>();
 	protected boolean extendedOutput;
 	protected int outputPrecision = 3;
 	private boolean debugOn = false;
 	private boolean serializeBins;
 	private Map<Integer, Double> percentiles = new HashMap<Integer, Double>();
-	protected Map<Double, Double> cumHistogram = new TreeMap<Double, Double>();
-	protected Map<Integer, Double> cumCount = new TreeMap<Integer, Double>();
+	protected Map<Double, Double> cumHistogram = new LinkedHashMap<Double, Double>();
+	protected int[] cumIndexes;
+	protected long[] cumCounts;
+	private boolean normalizeBinCount;
 	public static String fieldDelim = ",";
 	
 	/**
@@ -81,9 +84,12 @@ public class HistogramStat implements Serializable {
 	 * 
 	 */
 	public void initialize() {
-		binMap.clear();
+		binStore.clear();
 		histogram.clear();
 		percentiles.clear();
+		cumHistogram.clear();
+		cumIndexes = null;
+		cumCounts = null;
 		count = 0;
 		sum = 0;
 		sumSq = 0;
@@ -97,7 +103,7 @@ public class HistogramStat implements Serializable {
 	 */
 	public void initialize(String[] items, int offset, boolean normalized)  {
 		int histSize = Integer.parseInt(items[offset]);
-		for (int i = ++offset; i < 2 * histSize; ) {
+		for (int i = ++offset; i < offset + 2 * histSize; ) {
 			double base = Double.parseDouble(items[i++]);
 			double value = Double.parseDouble(items[i++]);
 			histogram.put(base, value);
@@ -116,12 +122,7 @@ public class HistogramStat implements Serializable {
 		for (int k = 0 ; k < numBins; ++k) {
 			int binIndex = BasicUtils.getIntField(items, i++);
 			int binCount = BasicUtils.getIntField(items, i++);
-			Bin bin = binMap.get(binIndex);
-			if (null == bin) {
-				bin = new Bin(binIndex);
-				binMap.put(binIndex, bin);
-			}
-			bin.addCount(binCount);
+			binStore.add(binIndex, binCount);
 		}
 		
 		this.count = BasicUtils.getIntField(items, i++);
@@ -315,12 +316,7 @@ public class HistogramStat implements Serializable {
 			System.out.println("index: " + index + " value: " + BasicUtils.formatDouble(value, outputPrecision) + 
 					" count: " + count);
 		}
-		Bin bin = binMap.get(index);
-		if (null == bin) {
-			bin = new Bin(index);
-			binMap.put(index, bin);
-		}
-		bin.addCount(count);
+		binStore.add(index, count);
 		this.count += count;
 		sum += value * count;
 		sumSq += value * value * count;
@@ -332,12 +328,7 @@ public class HistogramStat implements Serializable {
 	 * @param count
 	 */
 	public void addBin(int index, int count) {
-		Bin bin = binMap.get(index);
-		if (null == bin) {
-			bin = new Bin(index);
-			binMap.put(index, bin);
-		}
-		bin.addCount(count);
+		binStore.add(index, count);
 
 		this.count += count;
 		double value = index * binWidth;
@@ -354,12 +345,11 @@ public class HistogramStat implements Serializable {
 	 * @return
 	 */
 	public int getMeanCount() {
-		int sum = 0;
-		for (Integer index : binMap.keySet()) {
-			Bin bin = binMap.get(index);
-			sum += bin.count;
+		long sum = 0;
+		for (long binCount : binStore.getCounts()) {
+			sum += binCount;
 		}
-		return sum / binMap.size();
+		return (int)(sum / binStore.size());
 	}
 
 	/**
@@ -374,23 +364,23 @@ public class HistogramStat implements Serializable {
 		int confCount = 0;
 		int confidenceLimit = (int)((count * confidenceLimitPercent) / 100);
 		int binCount = 0;
-		Bin bin = binMap.get(meanIndex);
-		if (null != bin) {
-			confCount += bin.getCount();
+		long thisCount = binStore.get(meanIndex);
+		if (thisCount != 0) {
+			confCount += thisCount;
 			++binCount;
 		}
 		
 		//starting for mean index extend to both sides to include other bins
 		int offset = 1;
-		for(; binCount < binMap.size() ; ++offset) {
-			bin = binMap.get(meanIndex + offset);
-			if (null != bin) {
-				confCount += bin.getCount();
+		for(; binCount < binStore.size() ; ++offset) {
+			thisCount = binStore.get(meanIndex + offset);
+			if (thisCount != 0) {
+				confCount += thisCount;
 				++binCount;
 			}
-			bin = binMap.get(meanIndex - offset);
-			if (bin != null) {
-				confCount += bin.getCount();
+			thisCount = binStore.get(meanIndex - offset);
+			if (thisCount != 0) {
+				confCount += thisCount;
 				++binCount;
 			}
 			if (confCount >= confidenceLimit) {
@@ -433,13 +423,15 @@ public class HistogramStat implements Serializable {
 	 * @return
 	 */
 	public HistogramStat.Bin[] getSortedBins() {
-		Bin[] bins = new Bin[binMap.size()];
-		int i = 0;
-		for (Integer index : binMap.keySet()) {
-			Bin bin = binMap.get(index);
-			bins[i++] = bin;
+		int[] indexes = binStore.getIndexes();
+		long[] counts = binStore.getCounts();
+		Bin[] bins = new Bin[indexes.length];
+		for (int i = 0; i < indexes.length; ++i) {
+			bins[i] = new Bin(indexes[i], (int)counts[i]);
+			if (normalizeBinCount) {
+				bins[i].normalize(count);
+			}
 		}		
-		//Arrays.sort(bins);
 		return bins;
 	}
 	
@@ -447,28 +439,14 @@ public class HistogramStat implements Serializable {
 	 * @return
 	 */
 	public HistogramStat.Bin[] getSortedBinsByCount() {
-		//sort by count
-		Map<Integer, List<HistogramStat.Bin>> binSotredByCount = new TreeMap<Integer, List<HistogramStat.Bin>>();
-		for (Integer index : binMap.keySet()) {
-			Bin bin = binMap.get(index);
-			List<HistogramStat.Bin> binList = binSotredByCount.get(bin.count);
-			if (null == binList) {
-				binList = new ArrayList<HistogramStat.Bin>();
-				binSotredByCount.put(bin.count, binList);
+		//stable sort by count, retaining index order for same count
+		Bin[] bins = getSortedBins();
+		Arrays.sort(bins, new Comparator<Bin>() {
+			@Override
+			public int compare(Bin thisBin, Bin thatBin) {
+				return thisBin.count < thatBin.count ?  -1 : (thisBin.count > thatBin.count ? 1 : 0);
 			}
-			binList.add(bin);
-		}
-		
-		//into an array
-		Bin[] bins = new Bin[binMap.size()];
-		int i = 0;
-		for (Integer count : binSotredByCount.keySet()) {
-			List<HistogramStat.Bin> binList = binSotredByCount.get(count);
-			for (HistogramStat.Bin bin : binList) {
-				bins[i++] = bin;
-			}
-		}		
-		
+		});
 		return bins;
 	}
 
@@ -500,20 +478,21 @@ public class HistogramStat implements Serializable {
 		double median = 0;
 		int quantileCount = (int)(count * quantile);
 
-		int curCount = 0;
-		Bin bin = null;
-		for (int binIndex: binMap.keySet()) {
-			curCount += binMap.get(binIndex).count;
+		int[] indexes = binStore.getIndexes();
+		long[] counts = binStore.getCounts();
+		long curCount = 0;
+		int i = 0;
+		for ( ; i < indexes.length; ++i) {
+			curCount += counts[i];
 			if (curCount > quantileCount) {
-				bin = binMap.get(binIndex);
 				break;
 			}
 		}
 		
 		//assume uniform distribution within bin
-		median = bin.index * binWidth;
-		int prevCount = curCount - bin.count;
-		median += (binWidth * (quantileCount - prevCount)) / bin.count;
+		median = indexes[i] * binWidth;
+		long prevCount = curCount - counts[i];
+		median += (binWidth * (quantileCount - prevCount)) / counts[i];
 		return median;
 	}
 	
@@ -522,18 +501,19 @@ public class HistogramStat implements Serializable {
 	 */
 	public double getMode() {
 		double mode = 0;
-		int maxCount = 0;
-		Bin maxBin = null;
-		for (int binIndex: binMap.keySet()) {
-			int thisCount = binMap.get(binIndex).count;
-			if (thisCount > maxCount) {
-				maxCount = thisCount;
-				maxBin = binMap.get(binIndex);
+		int[] indexes = binStore.getIndexes();
+		long[] counts = binStore.getCounts();
+		long maxCount = 0;
+		int maxBinIndex = 0;
+		for (int i = 0; i < indexes.length; ++i) {
+			if (counts[i] > maxCount) {
+				maxCount = counts[i];
+				maxBinIndex = indexes[i];
 			}
 		}		
 		
 		//average within bin
-		mode = maxBin.index * binWidth + binWidth / 2;
+		mode = maxBinIndex * binWidth + binWidth / 2;
 		return mode;
 	}
 
@@ -542,14 +522,11 @@ public class HistogramStat implements Serializable {
 	 */
 	public Map<Double, Double> getDistribution() {
 		if (histogram.isEmpty()) {
-			for (Integer index : binMap.keySet()) {
-				double val = 0;
-				if (index > 0) {
-					val = index * binWidth + binWidth / 2;
-				} else {
-					val = index * binWidth - binWidth / 2;
-				}
-				histogram.put(val,  ((double)binMap.get(index).count) / count);
+			//ascending bin order, bin value is monotonic with index
+			int[] indexes = binStore.getIndexes();
+			long[] counts = binStore.getCounts();
+			for (int i = 0; i < indexes.length; ++i) {
+				histogram.put(getBinValue(indexes[i]),  ((double)counts[i]) / count);
 			}
 			normalized = true;
 		}
@@ -582,8 +559,10 @@ public class HistogramStat implements Serializable {
 				nearestBase = thisBase;
 			}
 		}
-		System.out.println("base " + BasicUtils.formatDouble(base) + " nearestBase " + BasicUtils.formatDouble(nearestBase) + 
-				" minDiff " + BasicUtils.formatDouble(minDiff) + " binWidth " + BasicUtils.formatDouble(binWidth));
+		if (debugOn) {
+			System.out.println("base " + BasicUtils.formatDouble(base) + " nearestBase " + BasicUtils.formatDouble(nearestBase) + 
+					" minDiff " + BasicUtils.formatDouble(minDiff) + " binWidth " + BasicUtils.formatDouble(binWidth));
+		}
 		
 		//if not within any bin
 		if (minDiff > binWidth / 2) {
@@ -597,28 +576,18 @@ public class HistogramStat implements Serializable {
 	 */
 	public Map<Double, Double> getCumDistribution() {
 		if (cumHistogram.isEmpty()) {
-			Object[] keys = binMap.keySet().toArray();
-			int firstBinIndex = (Integer)keys[0];
-			int lasttBinIndex = (Integer)keys[keys.length - 1];
-			double sum = 0;
-			for (int indx = firstBinIndex; indx <= lasttBinIndex; ++indx) {
-				Bin bin = binMap.get(indx);
-				if (null != bin) {
-					sum += bin.getCount();
-				}
-				cumCount.put(indx, sum);
-			}
+			getCumCounts();
 			
-			//normalize
+			//contiguous over bin index range
+			int firstBinIndex = cumIndexes[0];
+			int lastBinIndex = cumIndexes[cumIndexes.length - 1];
 			double lastIndx = 0;
-			for (Integer index : cumCount.keySet()) {
-				double base = 0;
-				if (index > 0) {
-					base = index * binWidth + binWidth / 2;
-				} else {
-					base = index * binWidth - binWidth / 2;
+			for (int indx = firstBinIndex, i = 0; indx <= lastBinIndex; ++indx) {
+				if (i + 1 < cumIndexes.length && cumIndexes[i + 1] == indx) {
+					++i;
 				}
-				cumHistogram.put(base,  cumCount.get(index) / count);
+				double base = getBinValue(indx);
+				cumHistogram.put(base,  ((double)cumCounts[i]) / count);
 				lastIndx = base;
 			}
 			
@@ -632,55 +601,60 @@ public class HistogramStat implements Serializable {
 	}
 	
 	/**
-	 * Max diff in cumulative distribution
+	 * cumulative count at each bin
+	 */
+	private void getCumCounts() {
+		if (null == cumIndexes) {
+			cumIndexes = binStore.getIndexes();
+			long[] counts = binStore.getCounts();
+			cumCounts = new long[counts.length];
+			long sum = 0;
+			for (int i = 0; i < counts.length; ++i) {
+				sum += counts[i];
+				cumCounts[i] = sum;
+			}
+		}
+	}
+	
+	/**
+	 * @param index
+	 * @return
+	 */
+	private double getBinValue(int index) {
+		double val = 0;
+		if (index > 0) {
+			val = index * binWidth + binWidth / 2;
+		} else {
+			val = index * binWidth - binWidth / 2;
+		}
+		return val;
+	}
+	
+	/**
+	 * Max diff in cumulative distribution. Cumulative distributions are step functions changing only 
+	 * at bins, so it's enough to scan the union of bins
 	 * @param that
 	 * @return
 	 */
 	public double getKolmogorovSmirnovStatistic(HistogramStat that) {
-		getCumDistribution();
-		that.getCumDistribution();
-		
-		//begin and end indexes
-		Object[] thisKeys = cumCount.keySet().toArray();
-		int thisBegIndex = (Integer)thisKeys[0];
-		int thisEndIndex = (Integer)thisKeys[thisKeys.length - 1];
-		
-		Object[] thatKeys = that.cumCount.keySet().toArray();
-		int thatBegIndex = (Integer)thatKeys[0];
-		int thatEndIndex = (Integer)thatKeys[thatKeys.length - 1];
-		
-		//overlapped beg and end index
-		int begIndex = BasicUtils.min(thisBegIndex, thatBegIndex);
-		int endIndex = BasicUtils.max(thisEndIndex, thatEndIndex);
+		getCumCounts();
+		that.getCumCounts();
 		
-		//scan all indexes
 		double maxDiff = 0;
-		for (int i = begIndex; i <= endIndex; ++i) {
-			Double thisCount = cumCount.get(i);
-			if (null == thisCount) {
-				if (i < thisBegIndex) {
-					thisCount = 0.0;
-				} else if (i > thisEndIndex) {
-					thisCount = 1.0;
-				} else {
-					BasicUtils.assertFail("cum distribution not contiguous");
-				}
-			} else {
-				thisCount /= count;
+		int i = 0;
+		int j = 0;
+		double thisCumDistr = 0;
+		double thatCumDistr = 0;
+		while (i < cumIndexes.length || j < that.cumIndexes.length) {
+			int thisIndex = i < cumIndexes.length ? cumIndexes[i] : Integer.MAX_VALUE;
+			int thatIndex = j < that.cumIndexes.length ? that.cumIndexes[j] : Integer.MAX_VALUE;
+			if (thisIndex <= thatIndex) {
+				thisCumDistr = ((double)cumCounts[i++]) / count;
 			}
-			Double thatCount = that.cumCount.get(i);
-			if (null == thatCount) {
-				if (i < thatBegIndex) {
-					thatCount = 0.0;
-				} else if (i > thatEndIndex) {
-					thatCount = 1.0;
-				} else {
-					BasicUtils.assertFail("cum distribution not contiguous");
-				} 
-			} else {
-				thatCount /= that.count;
+			if (thatIndex <= thisIndex) {
+				thatCumDistr = ((double)that.cumCounts[j++]) / that.count;
 			}
-			double diff = Math.abs(thisCount - thatCount);
+			double diff = Math.abs(thisCumDistr - thatCumDistr);
 			if (diff > maxDiff) {
 				maxDiff = diff;
 			}
@@ -701,10 +675,7 @@ public class HistogramStat implements Serializable {
 	 * 
 	 */
 	public void normalizeCount() {
-		for (Integer index : binMap.keySet()) {
-			Bin bin = binMap.get(index);
-			bin.normalize(count);
-		}		
+		normalizeBinCount = true;
 	}
 	
 	/**
@@ -736,14 +707,8 @@ public class HistogramStat implements Serializable {
 		mergedHistStat.outputPrecision = outputPrecision;
 		
 		//bins
-		for (Integer index : binMap.keySet()) {
-			Bin bin = binMap.get(index);
-			mergedHistStat.addBin(index, bin.count);
-		}
-		for (Integer index : histStat.binMap.keySet()) {
-			Bin bin = histStat.binMap.get(index);
-			mergedHistStat.addBin(index, bin.count);
-		}
+		mergedHistStat.binStore.copyFrom(binStore);
+		mergedHistStat.binStore.merge(histStat.binStore);
 		
 		if (debugOn) {
 			System.out.println("merging histogram " + binsToString());
@@ -849,10 +814,11 @@ public class HistogramStat implements Serializable {
 		stBld.append(BasicUtils.formatDouble(binWidth, outputPrecision)).append(fieldDelim);
 		
 		//bin distribution
-		stBld.append(binMap.size()).append(fieldDelim);
-		for(int x : binMap.keySet()) {
-			Bin y = binMap.get(x);
-			stBld.append(x).append(fieldDelim).append(y.count).append(fieldDelim);
+		int[] indexes = binStore.getIndexes();
+		long[] counts = binStore.getCounts();
+		stBld.append(indexes.length).append(fieldDelim);
+		for(int i = 0; i < indexes.length; ++i) {
+			stBld.append(indexes[i]).append(fieldDelim).append(counts[i]).append(fieldDelim);
 		}
 		return stBld.substring(0, stBld.length() - 1);
 	}
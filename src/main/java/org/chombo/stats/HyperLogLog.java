@@ -0,0 +1,187 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.stats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.Writable;
+import org.chombo.util.BasicUtils;
+
+/**
+ * HyperLogLog cardinality estimator. With precision p, there are 2^p one byte registers and
+ * relative standard error is about 1.04 / sqrt(2^p). Linear counting is used for small cardinality.
+ * Registers of estimators with same precision can be merged
+ * @author pranab
+ *
+ */
+public class HyperLogLog implements Writable, Serializable {
+	private int precision;
+	private byte[] registers;
+	public static final int MIN_PRECISION = 4;
+	//registers travel as tuple byte array, whose length is a signed short
+	public static final int MAX_PRECISION = 14;
+	public static final int DEF_PRECISION = 14;
+
+	/**
+	 *
+	 */
+	public HyperLogLog() {
+		this(DEF_PRECISION);
+	}
+
+	/**
+	 * @param precision
+	 */
+	public HyperLogLog(int precision) {
+		if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+			throw new IllegalArgumentException("precision should be between " + MIN_PRECISION + " and " + MAX_PRECISION);
+		}
+		this.precision = precision;
+		registers = new byte[1 << precision];
+	}
+
+	/**
+	 * @param registers
+	 */
+	public HyperLogLog(byte[] registers) {
+		this(Integer.numberOfTrailingZeros(registers.length));
+		if (registers.length != 1 << precision) {
+			throw new IllegalArgumentException("register count should be power of 2");
+		}
+		System.arraycopy(registers, 0, this.registers, 0, registers.length);
+	}
+
+	/**
+	 *
+	 */
+	public void initialize() {
+		Arrays.fill(registers, (byte)0);
+	}
+
+	/**
+	 * @param value
+	 */
+	public void add(String value) {
+		long hash = BasicUtils.longHash(value);
+		int index = (int)(hash >>> (64 - precision));
+
+		//position of first 1 bit in the rest, with a sentinel bit so that it's bounded
+		long rest = (hash << precision) | (1L << (precision - 1));
+		byte rank = (byte)(Long.numberOfLeadingZeros(rest) + 1);
+		if (rank > registers[index]) {
+			registers[index] = rank;
+		}
+	}
+
+	/**
+	 * @param other
+	 */
+	public void merge(HyperLogLog other) {
+		merge(other.registers);
+	}
+
+	/**
+	 * @param otherRegisters
+	 */
+	public void merge(byte[] otherRegisters) {
+		if (otherRegisters.length != registers.length) {
+			throw new IllegalArgumentException("can not merge estimators with different precision");
+		}
+		for (int i = 0; i < registers.length; ++i) {
+			if (otherRegisters[i] > registers[i]) {
+				registers[i] = otherRegisters[i];
+			}
+		}
+	}
+
+	/**
+	 * @return estimated number of distinct values
+	 */
+	public long getCardinality() {
+		int numRegisters = registers.length;
+		double sum = 0;
+		int zeroCount = 0;
+		for (byte register : registers) {
+			sum += 1.0 / (1L << register);
+			if (register == 0) {
+				++zeroCount;
+			}
+		}
+		double estimate = getAlpha(numRegisters) * numRegisters * numRegisters / sum;
+		if (estimate <= 2.5 * numRegisters && zeroCount > 0) {
+			//linear counting
+			estimate = numRegisters * Math.log((double)numRegisters / zeroCount);
+		}
+		return Math.round(estimate);
+	}
+
+	/**
+	 * @param numRegisters
+	 * @return
+	 */
+	private static double getAlpha(int numRegisters) {
+		double alpha = 0;
+		if (numRegisters == 16) {
+			alpha = 0.673;
+		} else if (numRegisters == 32) {
+			alpha = 0.697;
+		} else if (numRegisters == 64) {
+			alpha = 0.709;
+		} else {
+			alpha = 0.7213 / (1 + 1.079 / numRegisters);
+		}
+		return alpha;
+	}
+
+	/**
+	 * @return
+	 */
+	public int getPrecision() {
+		return precision;
+	}
+
+	/**
+	 * @return
+	 */
+	public byte[] getRegisters() {
+		return registers;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.hadoop.io.Writable#write(java.io.DataOutput)
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeByte(precision);
+		out.write(registers);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.hadoop.io.Writable#readFields(java.io.DataInput)
+	 */
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		precision = in.readByte();
+		registers = new byte[1 << precision];
+		in.readFully(registers);
+	}
+}
@@ -39,7 +39,35 @@ public class MedianStatsManager implements Serializable{
     private Map<String, Map<Integer, Double>> keyedMedians = new HashMap<String, Map<Integer, Double>>();
     private Map<Integer, Double> medAbsDiv = new HashMap<Integer, Double>();
     private Map<String, Map<Integer, Double>> keyedMedAbsDiv = new HashMap<String, Map<Integer, Double>>();
+    private Map<Integer, QuantileSketch> sketches = new HashMap<Integer, QuantileSketch>();
+    private Map<String, Map<Integer, QuantileSketch>> keyedSketches = new HashMap<String, Map<Integer, QuantileSketch>>();
 	private int[] idOrdinals;
+	public static final double MAD_SCALE = 1.4296;
+
+	/**
+	 * 
+	 */
+	private MedianStatsManager() {
+	}
+	
+	/**
+	 * Median and median absolute divergence from quantile sketches, as generated by NumericalAttrMedian 
+	 * in sketch mode
+	 * @param config
+	 * @param sketchFilePathParam
+	 * @param delim
+	 * @param idOrdinals
+	 * @param seasonal
+	 * @return
+	 * @throws IOException
+	 */
+	public static MedianStatsManager createFromSketches(Configuration config, String sketchFilePathParam,  
+			String delim, int[] idOrdinals, boolean seasonal) throws IOException {
+		MedianStatsManager statsManager = new MedianStatsManager();
+		statsManager.idOrdinals = idOrdinals;
+		statsManager.loadSketchStat(Utility.getFileLines(config, sketchFilePathParam), delim, seasonal);
+		return statsManager;
+	}
 
 	/**
 	 * @param config
@@ -222,6 +250,56 @@ public class MedianStatsManager implements Serializable{
 		}
 		
 	}
+	/**
+	 * @param lines
+	 * @param delim
+	 * @param seasonal
+	 */
+	private void loadSketchStat(List<String> lines, String delim, boolean seasonal) {
+		for (String line : lines) {
+			String[] items = line.split(delim);
+			int i = 0;
+			Map<Integer, Double> medians = this.medians;
+			Map<Integer, Double> medAbsDiv = this.medAbsDiv;
+			Map<Integer, QuantileSketch> sketches = this.sketches;
+			if (null != idOrdinals) {
+				//with IDs
+				String compId = BasicUtils.join(items, 0, idOrdinals.length, delim);
+				i = idOrdinals.length;
+	    		if (seasonal) {
+	    			compId = compId + delim + items[i] + delim + items[i+1];
+	    			i += 2;
+	    		}
+				medians = getKeyedStats(keyedMedians, compId);
+				medAbsDiv = getKeyedStats(keyedMedAbsDiv, compId);
+				sketches = keyedSketches.get(compId);
+				if (null == sketches) {
+					sketches = new HashMap<Integer, QuantileSketch>();
+					keyedSketches.put(compId, sketches);
+				}
+			}
+			int attr = Integer.parseInt(items[i]);
+			QuantileSketch sketch = QuantileSketch.fromBase64(items[i + 1]);
+			sketches.put(attr, sketch);
+			medians.put(attr, sketch.getMedian());
+			medAbsDiv.put(attr, MAD_SCALE * sketch.getMedAbsDeviation());
+		}
+	}
+	
+	/**
+	 * @param keyedStats
+	 * @param compId
+	 * @return
+	 */
+	private Map<Integer, Double> getKeyedStats(Map<String, Map<Integer, Double>> keyedStats, String compId) {
+		Map<Integer, Double> stats = keyedStats.get(compId);
+		if (null == stats) {
+			stats = new HashMap<Integer, Double>();
+			keyedStats.put(compId, stats);
+		}
+		return stats;
+	}
+	
 	/**
 	 * @param config
 	 * @param medContent
@@ -313,6 +391,42 @@ public class MedianStatsManager implements Serializable{
 		return keyedMedAbsDiv.get(key).get(attribute);
 	}
 
+	/**
+	 * @param attribute
+	 * @param quantile
+	 * @return
+	 */
+	public double getQuantile(int attribute, double quantile) {
+		return getSketch(sketches, attribute).getQuantile(quantile);
+	}
+	
+	/**
+	 * @param key
+	 * @param attribute
+	 * @param quantile
+	 * @return
+	 */
+	public double getKeyedQuantile(String key, int attribute, double quantile) {
+		Map<Integer, QuantileSketch> sketches = keyedSketches.get(key);
+		if (null == sketches) {
+			throw new IllegalStateException("no quantile sketch for key " + key);
+		}
+		return getSketch(sketches, attribute).getQuantile(quantile);
+	}
+	
+	/**
+	 * @param sketches
+	 * @param attribute
+	 * @return
+	 */
+	private QuantileSketch getSketch(Map<Integer, QuantileSketch> sketches, int attribute) {
+		QuantileSketch sketch = sketches.get(attribute);
+		if (null == sketch) {
+			throw new IllegalStateException("no quantile sketch for attribute " + attribute);
+		}
+		return sketch;
+	}
+
 	public int[] getIdOrdinals() {
 		return idOrdinals;
 	}
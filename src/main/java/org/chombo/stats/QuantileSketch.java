@@ -0,0 +1,458 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.stats;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import org.apache.hadoop.io.Writable;
+
+/**
+ * Mergeable quantile sketch based on KLL. Values are kept in a hierarchy of compactors, an item
+ * at level h standing for 2^h values. When full, a level is sorted and every other item is
+ * promoted to the next level. Memory is O(k) irrespective of number of values. Rank error is
+ * roughly 1.7 / k. Sketch is exact as long as number of values does not exceed k
+ * @author pranab
+ *
+ */
+public class QuantileSketch implements Writable, Serializable {
+	private int k;
+	private long count;
+	private double min;
+	private double max;
+	private List<double[]> levels = new ArrayList<double[]>();
+	private List<Integer> levelSizes = new ArrayList<Integer>();
+	private int totalSize;
+	private boolean compactOffset;
+	private double[] sortedValues;
+	private long[] sortedCumWeights;
+	private static final double DECAY = 2.0 / 3.0;
+	private static final int MIN_CAPACITY = 2;
+	public static final int DEF_K = 200;
+
+	/**
+	 *
+	 */
+	public QuantileSketch() {
+		this(DEF_K);
+	}
+
+	/**
+	 * @param k accuracy parameter
+	 */
+	public QuantileSketch(int k) {
+		if (k < MIN_CAPACITY * 4) {
+			throw new IllegalArgumentException("sketch size parameter too small");
+		}
+		this.k = k;
+		initialize();
+	}
+
+	/**
+	 *
+	 */
+	public void initialize() {
+		count = 0;
+		min = Double.MAX_VALUE;
+		max = -Double.MAX_VALUE;
+		levels.clear();
+		levelSizes.clear();
+		totalSize = 0;
+		addLevel();
+		sortedValues = null;
+	}
+
+	/**
+	 * @param value
+	 */
+	public void add(double value) {
+		append(0, value);
+		++count;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+		compress();
+		sortedValues = null;
+	}
+
+	/**
+	 * @param other
+	 */
+	public void merge(QuantileSketch other) {
+		while (levels.size() < other.levels.size()) {
+			addLevel();
+		}
+		for (int h = 0; h < other.levels.size(); ++h) {
+			double[] otherLevel = other.levels.get(h);
+			for (int i = 0; i < other.levelSizes.get(h); ++i) {
+				append(h, otherLevel[i]);
+			}
+		}
+		count += other.count;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+		compress();
+		sortedValues = null;
+	}
+
+	/**
+	 * @return
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return
+	 */
+	public double getMin() {
+		return min;
+	}
+
+	/**
+	 * @return
+	 */
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * @return true if no compaction has happened and quantiles are exact
+	 */
+	public boolean isExact() {
+		return levels.size() == 1;
+	}
+
+	/**
+	 * @param quantile between 0 and 1
+	 * @return smallest value whose rank is at least quantile times count
+	 */
+	public double getQuantile(double quantile) {
+		if (quantile < 0 || quantile > 1) {
+			throw new IllegalArgumentException("quantile should be between 0 and 1");
+		}
+		assertNotEmpty();
+		double value = 0;
+		if (quantile == 0) {
+			value = min;
+		} else if (quantile == 1) {
+			value = max;
+		} else {
+			buildSortedView();
+			value = sortedValues[findRankIndex(sortedCumWeights, (long)Math.ceil(quantile * count))];
+		}
+		return value;
+	}
+
+	/**
+	 * @param value
+	 * @return approximate fraction of values less than or equal to the value
+	 */
+	public double getRank(double value) {
+		assertNotEmpty();
+		buildSortedView();
+		int index = Arrays.binarySearch(sortedValues, value);
+		if (index >= 0) {
+			while (index < sortedValues.length - 1 && sortedValues[index + 1] == value) {
+				++index;
+			}
+		} else {
+			index = -index - 2;
+		}
+		return index < 0 ? 0 : (double)sortedCumWeights[index] / count;
+	}
+
+	/**
+	 * @return median, averaging the two middle values for even count when exact
+	 */
+	public double getMedian() {
+		assertNotEmpty();
+		double median = 0;
+		buildSortedView();
+		if (isExact() && count % 2 == 0) {
+			int mid = (int)(count / 2);
+			median = (sortedValues[mid - 1] + sortedValues[mid]) / 2;
+		} else {
+			median = getQuantile(0.5);
+		}
+		return median;
+	}
+
+	/**
+	 * median of absolute deviation from median, computed from the same sketch
+	 * @return
+	 */
+	public double getMedAbsDeviation() {
+		double median = getMedian();
+		double[] deviations = new double[sortedValues.length];
+		long[] weights = new long[sortedValues.length];
+
+		//deviations are sorted by merging both sides of the median
+		int lo = Arrays.binarySearch(sortedValues, median);
+		lo = lo >= 0 ? lo - 1 : -lo - 2;
+		int hi = lo + 1;
+		for (int i = 0; i < deviations.length; ++i) {
+			boolean useLow = hi >= sortedValues.length ||
+				lo >= 0 && median - sortedValues[lo] <= sortedValues[hi] - median;
+			int index = useLow ? lo-- : hi++;
+			deviations[i] = Math.abs(sortedValues[index] - median);
+			weights[i] = sortedCumWeights[index] - (index > 0 ? sortedCumWeights[index - 1] : 0);
+			if (i > 0) {
+				weights[i] += weights[i - 1];
+			}
+		}
+		double medAbsDev = 0;
+		if (isExact() && count % 2 == 0) {
+			int mid = (int)(count / 2);
+			medAbsDev = (deviations[mid - 1] + deviations[mid]) / 2;
+		} else {
+			medAbsDev = deviations[findRankIndex(weights, (count + 1) / 2)];
+		}
+		return medAbsDev;
+	}
+
+	/**
+	 * @param value
+	 */
+	private void append(int level, double value) {
+		double[] items = levels.get(level);
+		int size = levelSizes.get(level);
+		if (size == items.length) {
+			items = Arrays.copyOf(items, Math.max(2 * items.length, MIN_CAPACITY));
+			levels.set(level, items);
+		}
+		items[size] = value;
+		levelSizes.set(level, size + 1);
+		++totalSize;
+	}
+
+	/**
+	 *
+	 */
+	private void addLevel() {
+		levels.add(new double[MIN_CAPACITY]);
+		levelSizes.add(0);
+	}
+
+	/**
+	 * @param level
+	 * @return
+	 */
+	private int getCapacity(int level) {
+		int depth = levels.size() - level - 1;
+		return Math.max((int)Math.ceil(k * Math.pow(DECAY, depth)), MIN_CAPACITY);
+	}
+
+	/**
+	 * @return
+	 */
+	private int getTotalCapacity() {
+		int capacity = 0;
+		for (int h = 0; h < levels.size(); ++h) {
+			capacity += getCapacity(h);
+		}
+		return capacity;
+	}
+
+	/**
+	 * compacts lowest full levels until size is within capacity
+	 */
+	private void compress() {
+		while (totalSize > getTotalCapacity()) {
+			for (int h = 0; h < levels.size(); ++h) {
+				if (levelSizes.get(h) >= getCapacity(h)) {
+					compact(h);
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * sorts level and promotes every other item to next level, leaving out one item when odd
+	 * @param level
+	 */
+	private void compact(int level) {
+		if (level == levels.size() - 1) {
+			addLevel();
+		}
+		double[] items = levels.get(level);
+		int size = levelSizes.get(level);
+		Arrays.sort(items, 0, size);
+		int leftOver = size % 2;
+		int start = leftOver + (compactOffset ? 1 : 0);
+		compactOffset = !compactOffset;
+		for (int i = start; i < size; i += 2) {
+			append(level + 1, items[i]);
+		}
+		totalSize -= size - leftOver;
+		levelSizes.set(level, leftOver);
+	}
+
+	/**
+	 * sorted values with cumulative weights, by merging sorted levels. Compaction conserves total 
+	 * weight, so the last cumulative weight is the count 
+	 */
+	private void buildSortedView() {
+		if (null == sortedValues) {
+			double[] values = new double[0];
+			long[] weights = new long[0];
+			for (int h = 0; h < levels.size(); ++h) {
+				int size = levelSizes.get(h);
+				double[] items = Arrays.copyOf(levels.get(h), size);
+				Arrays.sort(items);
+				long weight = 1L << h;
+
+				double[] mergedValues = new double[values.length + size];
+				long[] mergedWeights = new long[mergedValues.length];
+				int i = 0;
+				int j = 0;
+				for (int m = 0; m < mergedValues.length; ++m) {
+					if (j == size || i < values.length && values[i] <= items[j]) {
+						mergedValues[m] = values[i];
+						mergedWeights[m] = weights[i++];
+					} else {
+						mergedValues[m] = items[j++];
+						mergedWeights[m] = weight;
+					}
+				}
+				values = mergedValues;
+				weights = mergedWeights;
+			}
+
+			for (int i = 1; i < weights.length; ++i) {
+				weights[i] += weights[i - 1];
+			}
+			sortedValues = values;
+			sortedCumWeights = weights;
+		}
+	}
+
+	/**
+	 * @param cumWeights
+	 * @param rank
+	 * @return first index with cumulative weight at least rank
+	 */
+	private static int findRankIndex(long[] cumWeights, long rank) {
+		int index = Arrays.binarySearch(cumWeights, Math.max(rank, 1));
+		if (index < 0) {
+			index = -index - 1;
+		} else {
+			while (index > 0 && cumWeights[index - 1] == cumWeights[index]) {
+				--index;
+			}
+		}
+		return Math.min(index, cumWeights.length - 1);
+	}
+
+	/**
+	 *
+	 */
+	private void assertNotEmpty() {
+		if (count == 0) {
+			throw new IllegalStateException("empty sketch");
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.hadoop.io.Writable#write(java.io.DataOutput)
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(k);
+		out.writeLong(count);
+		out.writeDouble(min);
+		out.writeDouble(max);
+		out.writeInt(levels.size());
+		for (int h = 0; h < levels.size(); ++h) {
+			double[] items = levels.get(h);
+			int size = levelSizes.get(h);
+			out.writeInt(size);
+			for (int i = 0; i < size; ++i) {
+				out.writeDouble(items[i]);
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.hadoop.io.Writable#readFields(java.io.DataInput)
+	 */
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		k = in.readInt();
+		initialize();
+		count = in.readLong();
+		min = in.readDouble();
+		max = in.readDouble();
+		int numLevels = in.readInt();
+		for (int h = 0; h < numLevels; ++h) {
+			if (h > 0) {
+				addLevel();
+			}
+			int size = in.readInt();
+			double[] items = new double[Math.max(size, MIN_CAPACITY)];
+			for (int i = 0; i < size; ++i) {
+				items[i] = in.readDouble();
+			}
+			levels.set(h, items);
+			levelSizes.set(h, size);
+			totalSize += size;
+		}
+	}
+
+	/**
+	 * serializes to text, for storing in HDFS text files
+	 * @return
+	 */
+	public String toBase64() {
+		ByteArrayOutputStream byteStrm = new ByteArrayOutputStream();
+		try {
+			DataOutputStream outStrm = new DataOutputStream(byteStrm);
+			write(outStrm);
+			outStrm.close();
+		} catch (IOException ex) {
+			throw new IllegalStateException("failed to serialize sketch " + ex.getMessage());
+		}
+		return Base64.getEncoder().encodeToString(byteStrm.toByteArray());
+	}
+
+	/**
+	 * @param encoded
+	 * @return
+	 */
+	public static QuantileSketch fromBase64(String encoded) {
+		QuantileSketch sketch = new QuantileSketch();
+		try {
+			DataInputStream inStrm = new DataInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(encoded)));
+			sketch.readFields(inStrm);
+			inStrm.close();
+		} catch (IOException ex) {
+			throw new IllegalArgumentException("failed to deserialize sketch " + ex.getMessage());
+		}
+		return sketch;
+	}
+}
@@ -18,9 +18,7 @@
 package org.chombo.stats;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  *  Maintains a  list of histogram based on sliding interval. Active histogram is based on recent 
@@ -66,7 +64,7 @@ public class RecencyWeightedHistogramStat extends HistogramStat {
 		//switch active histogram 
 		if (sampleCount % windowSize == 0) {
 			BackupHistogramStat histStat = backupHistStats.remove(0);
-			this.binMap = histStat.binMap;
+			this.binStore = histStat.binStore;
 			this.count =  histStat.count;
 			this.sum  = histStat.sum;
 			sampleCount = 0;
@@ -74,7 +72,7 @@ public class RecencyWeightedHistogramStat extends HistogramStat {
 	}
 	
 	public class BackupHistogramStat {
-		private Map<Integer, HistogramStat.Bin> binMap = new HashMap<Integer, HistogramStat.Bin>();
+		private BinStore binStore = new BinStore();
 		private int count;
 		private double sum = 0.0;
 		
@@ -84,12 +82,7 @@ public class RecencyWeightedHistogramStat extends HistogramStat {
 		 */
 		public void add(int value, int count) {
 			int index = (int)(value / binWidth);
-			Bin bin = binMap.get(index);
-			if (null == bin) {
-				bin = new Bin(index);
-				binMap.put(index, bin);
-			}
-			bin.addCount(count);
+			binStore.add(index, count);
 			this.count += count;
 			sum += value * count;
 		}
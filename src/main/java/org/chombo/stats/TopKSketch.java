@@ -0,0 +1,337 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.stats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.apache.hadoop.io.Writable;
+import org.chombo.util.BasicUtils;
+
+/**
+ * Heavy hitter sketch. Space saving counters track candidate items with count upper bound and
+ * error. Count min sketch gives an independent upper bound for any item. Both are mergeable, so
+ * sketches can be built in mappers and merged in combiners and reducers
+ * @author pranab
+ *
+ */
+public class TopKSketch implements Writable, Serializable {
+	private int maxCounters;
+	private int width;
+	private int depth;
+	private long[][] cmCounts;
+	private long totalCount;
+	private Map<String, Counter> counters = new HashMap<String, Counter>();
+	private TreeSet<Counter> sortedCounters = new TreeSet<Counter>(new CounterComparator());
+
+	/**
+	 *
+	 */
+	public TopKSketch() {
+	}
+
+	/**
+	 * @param maxCounters number of space saving counters
+	 * @param width count min sketch width
+	 * @param depth count min sketch depth
+	 */
+	public TopKSketch(int maxCounters, int width, int depth) {
+		if (maxCounters <= 0 || width <= 0 || depth <= 0) {
+			throw new IllegalArgumentException("sketch parameters should be positive");
+		}
+		this.maxCounters = maxCounters;
+		this.width = width;
+		this.depth = depth;
+		cmCounts = new long[depth][width];
+	}
+
+	/**
+	 *
+	 */
+	public void initialize() {
+		for (long[] row : cmCounts) {
+			Arrays.fill(row, 0);
+		}
+		totalCount = 0;
+		counters.clear();
+		sortedCounters.clear();
+	}
+
+	/**
+	 * @param item
+	 */
+	public void add(String item) {
+		add(item, 1);
+	}
+
+	/**
+	 * @param item
+	 * @param count
+	 */
+	public void add(String item, long count) {
+		long hash = BasicUtils.longHash(item);
+		for (int i = 0; i < depth; ++i) {
+			cmCounts[i][getCmIndex(hash, i)] += count;
+		}
+		totalCount += count;
+
+		//space saving
+		Counter counter = counters.get(item);
+		if (null != counter) {
+			sortedCounters.remove(counter);
+			counter.count += count;
+			sortedCounters.add(counter);
+		} else if (counters.size() < maxCounters) {
+			addCounter(new Counter(item, count, 0));
+		} else {
+			//replace minimum
+			Counter minCounter = sortedCounters.pollFirst();
+			counters.remove(minCounter.item);
+			addCounter(new Counter(item, minCounter.count + count, minCounter.count));
+		}
+	}
+
+	/**
+	 * @param other
+	 */
+	public void merge(TopKSketch other) {
+		if (width != other.width || depth != other.depth) {
+			throw new IllegalArgumentException("can not merge sketches of different size");
+		}
+		for (int i = 0; i < depth; ++i) {
+			for (int j = 0; j < width; ++j) {
+				cmCounts[i][j] += other.cmCounts[i][j];
+			}
+		}
+		totalCount += other.totalCount;
+
+		//items missing in a full summary could have count up to its minimum
+		long thisMin = getMinCount();
+		long otherMin = other.getMinCount();
+		Map<String, Counter> merged = new HashMap<String, Counter>();
+		for (Counter counter : counters.values()) {
+			Counter otherCounter = other.counters.get(counter.item);
+			if (null != otherCounter) {
+				merged.put(counter.item, new Counter(counter.item, counter.count + otherCounter.count,
+						counter.error + otherCounter.error));
+			} else {
+				merged.put(counter.item, new Counter(counter.item, counter.count + otherMin, counter.error + otherMin));
+			}
+		}
+		for (Counter otherCounter : other.counters.values()) {
+			if (!merged.containsKey(otherCounter.item)) {
+				merged.put(otherCounter.item, new Counter(otherCounter.item, otherCounter.count + thisMin,
+						otherCounter.error + thisMin));
+			}
+		}
+
+		//keep largest
+		List<Counter> mergedCounters = new ArrayList<Counter>(merged.values());
+		Collections.sort(mergedCounters, Collections.reverseOrder(new CounterComparator()));
+		counters.clear();
+		sortedCounters.clear();
+		for (int i = 0; i < mergedCounters.size() && i < maxCounters; ++i) {
+			addCounter(mergedCounters.get(i));
+		}
+	}
+
+	/**
+	 * @param k
+	 * @return top k items with estimated count and maximum error, in descending order of count
+	 */
+	public List<Counter> getTopK(int k) {
+		List<Counter> topK = new ArrayList<Counter>();
+		for (Counter counter : sortedCounters) {
+			//tighter upper bound from count min sketch
+			long estimate = Math.min(counter.count, getCmEstimate(counter.item));
+			long lowerBound = counter.count - counter.error;
+			topK.add(new Counter(counter.item, estimate, estimate - lowerBound));
+		}
+		Collections.sort(topK, Collections.reverseOrder(new CounterComparator()));
+		return topK.size() > k ? topK.subList(0, k) : topK;
+	}
+
+	/**
+	 * @param item
+	 * @return upper bound of item count
+	 */
+	public long getEstimate(String item) {
+		long estimate = getCmEstimate(item);
+		Counter counter = counters.get(item);
+		if (null != counter) {
+			estimate = Math.min(estimate, counter.count);
+		}
+		return estimate;
+	}
+
+	/**
+	 * @return
+	 */
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	/**
+	 * @return count min sketch error bound with probability 1 - exp(-depth)
+	 */
+	public long getCmErrorBound() {
+		return (long)Math.ceil(Math.E / width * totalCount);
+	}
+
+	/**
+	 * @param item
+	 * @return
+	 */
+	private long getCmEstimate(String item) {
+		long hash = BasicUtils.longHash(item);
+		long estimate = Long.MAX_VALUE;
+		for (int i = 0; i < depth; ++i) {
+			estimate = Math.min(estimate, cmCounts[i][getCmIndex(hash, i)]);
+		}
+		return estimate;
+	}
+
+	/**
+	 * double hashing for row index
+	 * @param hash
+	 * @param row
+	 * @return
+	 */
+	private int getCmIndex(long hash, int row) {
+		int hash1 = (int)hash;
+		int hash2 = (int)(hash >>> 32);
+		return ((hash1 + (row + 1) * hash2) & Integer.MAX_VALUE) % width;
+	}
+
+	/**
+	 * @return
+	 */
+	private long getMinCount() {
+		return counters.size() < maxCounters ? 0 : sortedCounters.first().count;
+	}
+
+	/**
+	 * @param counter
+	 */
+	private void addCounter(Counter counter) {
+		counters.put(counter.item, counter);
+		sortedCounters.add(counter);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.hadoop.io.Writable#write(java.io.DataOutput)
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(maxCounters);
+		out.writeInt(width);
+		out.writeInt(depth);
+		for (long[] row : cmCounts) {
+			for (long count : row) {
+				out.writeLong(count);
+			}
+		}
+		out.writeLong(totalCount);
+		out.writeInt(counters.size());
+		for (Counter counter : counters.values()) {
+			out.writeUTF(counter.item);
+			out.writeLong(counter.count);
+			out.writeLong(counter.error);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.hadoop.io.Writable#readFields(java.io.DataInput)
+	 */
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		maxCounters = in.readInt();
+		width = in.readInt();
+		depth = in.readInt();
+		cmCounts = new long[depth][width];
+		for (long[] row : cmCounts) {
+			for (int j = 0; j < width; ++j) {
+				row[j] = in.readLong();
+			}
+		}
+		totalCount = in.readLong();
+		counters.clear();
+		sortedCounters.clear();
+		int numCounters = in.readInt();
+		for (int i = 0; i < numCounters; ++i) {
+			addCounter(new Counter(in.readUTF(), in.readLong(), in.readLong()));
+		}
+	}
+
+	/**
+	 * Item count with maximum over estimation
+	 * @author pranab
+	 *
+	 */
+	public static class Counter implements Serializable {
+		private String item;
+		private long count;
+		private long error;
+
+		/**
+		 * @param item
+		 * @param count
+		 * @param error
+		 */
+		public Counter(String item, long count, long error) {
+			this.item = item;
+			this.count = count;
+			this.error = error;
+		}
+
+		public String getItem() {
+			return item;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getError() {
+			return error;
+		}
+	}
+
+	/**
+	 * Ascending count, ties broken by item
+	 * @author pranab
+	 *
+	 */
+	private static class CounterComparator implements Comparator<Counter>, Serializable {
+		@Override
+		public int compare(Counter thisCounter, Counter thatCounter) {
+			int ret = Long.compare(thisCounter.count, thatCounter.count);
+			return ret != 0 ? ret : thisCounter.item.compareTo(thatCounter.item);
+		}
+	}
+}
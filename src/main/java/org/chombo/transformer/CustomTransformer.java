@@ -18,7 +18,7 @@
 package org.chombo.transformer;
 
 import groovy.lang.Binding;
-import groovy.lang.GroovyShell;
+import groovy.lang.Script;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -29,7 +29,8 @@ import com.typesafe.config.Config;
 import com.typesafe.config.ConfigValue;
 
 /**
- * Groovy script based custom transformer
+ * Groovy script based custom transformer. Script is compiled once and the compiled class is
+ * shared with other transformers with same script
  * @author pranab
  *
  */
@@ -37,6 +38,9 @@ public abstract class CustomTransformer extends AttributeTransformer {
 	private String script;
 	private Map<String, Object> params = new HashMap<String, Object>();
 	private Binding binding = new Binding();
+	private boolean staticCompile;
+	private transient Script compiledScript;
+	public static final String STATIC_COMPILE_PARAM = "staticCompile";
 	
 	public CustomTransformer(ProcessorAttribute prAttr, Config config) {
 		super(prAttr.getTargetFieldOrdinals().length);
@@ -45,6 +49,8 @@ public abstract class CustomTransformer extends AttributeTransformer {
 			Object value = entry.getValue().unwrapped();
 			binding.setVariable(entry.getKey(), value);
 		}
+		staticCompile = config.hasPath(STATIC_COMPILE_PARAM) && config.getBoolean(STATIC_COMPILE_PARAM);
+		compiledScript = GroovyScriptCache.createScript(script, staticCompile, binding);
 	}
 	
 	public CustomTransformer(String script, Map<String, Object> params) {
@@ -54,6 +60,8 @@ public abstract class CustomTransformer extends AttributeTransformer {
 		for (String name : params.keySet()) {
 			binding.setVariable(name, params.get(name));
 		}
+		staticCompile = Boolean.TRUE.equals(params.get(STATIC_COMPILE_PARAM));
+		compiledScript = GroovyScriptCache.createScript(script, staticCompile, binding);
 	}
 
 
@@ -61,8 +69,11 @@ public abstract class CustomTransformer extends AttributeTransformer {
 	public String[] tranform(String value) {
 		Object in = getFieldValue(value);
 		binding.setVariable("field", in);
-		GroovyShell shell = new GroovyShell(binding);
-		Object out = shell.evaluate(script);
+		if (null == compiledScript) {
+			//deserialized
+			compiledScript = GroovyScriptCache.createScript(script, staticCompile, binding);
+		}
+		Object out = compiledScript.run();
 		transformed[0] =  getOutput(out);
 		return transformed;
 	}
@@ -19,17 +19,14 @@ package org.chombo.transformer;
 
 import java.io.Serializable;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TimeZone;
 
 import org.chombo.util.BasicUtils;
+import org.chombo.util.DateCodec;
 import org.chombo.util.ProcessorAttribute;
-import org.chombo.util.Utility;
 
 import com.typesafe.config.Config;
 
@@ -69,24 +66,24 @@ public class DateTransformer implements Serializable {
 	 *
 	 */
 	public static class DateGenerator extends AttributeTransformer {
-		private SimpleDateFormat dateFormat;
+		private DateCodec dateFormat;
 		
 		/**
 		 * @param prAttr
 		 */
 		public DateGenerator(ProcessorAttribute prAttr, Config config) {
 			super(prAttr.getTargetFieldOrdinals().length);
-			dateFormat = new SimpleDateFormat(config.getString("dateFormat"));
+			dateFormat = DateCodec.create(config.getString("dateFormat"));
 		}
 		
 		public DateGenerator(String dateFormat) {
 			super(1);
-			this.dateFormat = new SimpleDateFormat(dateFormat);
+			this.dateFormat = DateCodec.create(dateFormat);
 		}
 
 		@Override
 		public String[] tranform(String value) {
-			transformed[0] = dateFormat.format(Calendar.getInstance().getTime());
+			transformed[0] = dateFormat.format(System.currentTimeMillis());
 			return transformed;
 		}
 	}	
@@ -96,10 +93,8 @@ public class DateTransformer implements Serializable {
 	 *
 	 */
 	public static class DateFormatTransformer extends AttributeTransformer {
-		private SimpleDateFormat sourceDateFormat;
-		private SimpleDateFormat targetDateFormat;
-		private boolean sourceEpochTime;
-		private boolean targetEpochTime;
+		private DateCodec sourceDateFormat;
+		private DateCodec targetDateFormat;
 		
 		/**
 		 * @param prAttr
@@ -129,42 +124,15 @@ public class DateTransformer implements Serializable {
 		 * @param targetTimeZone
 		 */
 		private void intialize(String sourceDateFormatStr, String sourceTimeZone, String targetDateFormatStr, String targetTimeZone) {
-			if (sourceDateFormatStr.equals("epochTime")) {
-				sourceEpochTime = true;
-			} else  {
-				sourceDateFormat = new SimpleDateFormat(sourceDateFormatStr);
-				if (!Utility.isBlank(sourceTimeZone)) {
-					sourceDateFormat.setTimeZone(TimeZone.getTimeZone(sourceTimeZone));
-				}
-			}
-
-			if (targetDateFormatStr.equals("epochTime")) {
-				targetEpochTime = true;
-			} else  {
-				targetDateFormat = new SimpleDateFormat(targetDateFormatStr);
-				if (!Utility.isBlank(targetTimeZone)) {
-					targetDateFormat.setTimeZone(TimeZone.getTimeZone(targetTimeZone));
-				}
-			}
+			//epoch time handled by codec
+			sourceDateFormat = DateCodec.create(sourceDateFormatStr, sourceTimeZone);
+			targetDateFormat = DateCodec.create(targetDateFormatStr, targetTimeZone);
 		}
 
 		@Override
 		public String[] tranform(String value) {
 			try {
-				Date date = null;
-				if (null != sourceDateFormat) {
-					//date format
-					date = sourceDateFormat.parse(value);
-				} else {
-					//epoch time
-					date = new Date(Long.parseLong(value));
-				}
-				
-				if (null != targetDateFormat) {
-					transformed[0] = targetDateFormat.format(date);
-				} else {
-					transformed[0] =  "" + date.getTime();
-				}
+				transformed[0] = targetDateFormat.format(sourceDateFormat.parse(value));
 			} catch (ParseException ex) {
 				throw new IllegalArgumentException("failed to parse date " + ex.getMessage());
 			}
@@ -178,8 +146,7 @@ public class DateTransformer implements Serializable {
 	 *
 	 */
 	public static class ElapsedTimeTransformer extends AttributeTransformer  {
-		private SimpleDateFormat dateFormat;
-		private boolean epochTime;
+		private DateCodec dateFormat;
 		private long refTime;
 		private String timeUnit;
 		private boolean failOnInvalid;
@@ -216,23 +183,11 @@ public class DateTransformer implements Serializable {
 		private void intialize(String dateFormatStr, String timeZone, String timeUnit, boolean failOnInvalid, 
 				boolean refTimeAlwaysBehind, String refDateStr) {
 			try {
-				if (dateFormatStr.equals("epochTime")) {
-					epochTime = true;
-				} else  {
-					dateFormat = new SimpleDateFormat(dateFormatStr);
-					if (!Utility.isBlank(timeZone)) {
-						dateFormat.setTimeZone(TimeZone.getTimeZone(timeZone));
-					}
-				}
+				dateFormat = DateCodec.create(dateFormatStr, timeZone);
 				
 				//set reference time
 				if (null != refDateStr) {
-					if (epochTime) {
-						refTime = Long.parseLong(refDateStr);
-					} else {
-						Date refDate = dateFormat.parse(refDateStr);
-						refTime = refDate.getTime();
-					}
+					refTime = dateFormat.parse(refDateStr);
 				} else {
 					refTime = System.currentTimeMillis();
 				}
@@ -248,15 +203,7 @@ public class DateTransformer implements Serializable {
 			long elapsed  = 0;
 			long time = 0;
 			try {
-				Date date = null;
-				if (null != dateFormat) {
-					//date format
-					date = dateFormat.parse(value);
-					time = date.getTime();
-				} else {
-					//epoch time
-					time = Long.parseLong(value);
-				}
+				time = dateFormat.parse(value);
 				if (!refTimeAlwaysBehind || time > refTime) {
 					elapsed = time - refTime;
 					elapsed = BasicUtils.convertTimeUnit(elapsed, timeUnit);
@@ -281,11 +228,10 @@ public class DateTransformer implements Serializable {
 	 */
 	public static class ContextualElapsedTimeTransformer extends AttributeTransformer implements ContextAwareTransformer {
 		private String[] fields;
-		private boolean epochTime;
 		private long refTime;
 		private String timeUnit;
 		private boolean failOnInvalid;
-		private SimpleDateFormat dateFormat;
+		private DateCodec dateFormat;
 		private int refDateFieldOrdinal;
 		private boolean refTimeAlwaysBehind;
 		
@@ -321,14 +267,7 @@ public class DateTransformer implements Serializable {
 		 */
 		private void intialize(String dateFormatStr, String timeZone, String timeUnit, boolean failOnInvalid, 
 				boolean refTimeAlwaysBehind) {
-			if (dateFormatStr.equals("epochTime")) {
-				epochTime = true;
-			} else  {
-				dateFormat = new SimpleDateFormat(dateFormatStr);
-				if (!Utility.isBlank(timeZone)) {
-					dateFormat.setTimeZone(TimeZone.getTimeZone(timeZone));
-				}
-			}
+			dateFormat = DateCodec.create(dateFormatStr, timeZone);
 			this.timeUnit = timeUnit;
 			this.refTimeAlwaysBehind = refTimeAlwaysBehind;
 		}
@@ -344,23 +283,9 @@ public class DateTransformer implements Serializable {
 			long time = 0;
 			try {
 				//reference date time
-				String refDateStr = fields[refDateFieldOrdinal];
-				if (epochTime) {
-					refTime = Long.parseLong(refDateStr);
-				} else {
-					Date refDate = dateFormat.parse(refDateStr);
-					refTime = refDate.getTime();
-				}
+				refTime = dateFormat.parse(fields[refDateFieldOrdinal]);
 
-				Date date = null;
-				if (null != dateFormat) {
-					//date format
-					date = dateFormat.parse(value);
-					time = date.getTime();
-				} else {
-					//epoch time
-					time = Long.parseLong(value);
-				}
+				time = dateFormat.parse(value);
 				if (!refTimeAlwaysBehind || time > refTime) {
 					elapsed = time - refTime;
 					elapsed = BasicUtils.convertTimeUnit(elapsed, timeUnit);
@@ -385,11 +310,11 @@ public class DateTransformer implements Serializable {
 	 *
 	 */
 	public static class TimeCyclicShiftTransformer extends AttributeTransformer  {
-		private SimpleDateFormat dateFormat;
-		private boolean epochTime;
+		private DateCodec dateFormat;
 		private long refTime;
 		private String timeUnit;
 		private boolean failOnInvalid;
+		private Calendar date = Calendar.getInstance();
 		
 		/**
 		 * @param prAttr
@@ -421,15 +346,11 @@ public class DateTransformer implements Serializable {
 		private void intialize(String dateFormatStr, String timeZone, String timeUnit, boolean failOnInvalid, 
 			String refDateStr) {
 			try {
-				dateFormat = new SimpleDateFormat(dateFormatStr);
-				if (!Utility.isBlank(timeZone)) {
-					dateFormat.setTimeZone(TimeZone.getTimeZone(timeZone));
-				}
+				dateFormat = DateCodec.create(dateFormatStr, timeZone);
 				
 				//set reference time
 				if (null != refDateStr) {
-					Date refDate = dateFormat.parse(refDateStr);
-					refTime = refDate.getTime();
+					refTime = dateFormat.parse(refDateStr);
 				} else {
 					refTime = System.currentTimeMillis();
 				}
@@ -442,8 +363,7 @@ public class DateTransformer implements Serializable {
 		@Override
 		public String[] tranform(String value) {
 			try {
-				Calendar date = Calendar.getInstance();
-				date.setTime(dateFormat.parse(value));
+				date.setTimeInMillis(dateFormat.parse(value));
 				for (long time = date.getTimeInMillis(); time < refTime; time = date.getTimeInMillis()) {
 					if (timeUnit.equals(BasicUtils.TIME_UNIT_MONTH)) {
 						date.add(Calendar.MONTH, 1);
@@ -457,7 +377,7 @@ public class DateTransformer implements Serializable {
 						throw new IllegalStateException("invalid time cycle unit for time shift");
 					}
 				}
-				transformed[0] = dateFormat.format(date.getTime());
+				transformed[0] = dateFormat.format(date.getTimeInMillis());
 			} catch (ParseException ex) {
 				throw new IllegalArgumentException("failed to parse date " + ex.getMessage());
 			}
@@ -471,13 +391,13 @@ public class DateTransformer implements Serializable {
 	 *
 	 */
 	public static class ContextualTimeCyclicShiftTransformer extends AttributeTransformer implements ContextAwareTransformer {
-		private SimpleDateFormat dateFormat;
+		private DateCodec dateFormat;
 		private long refTime;
 		private String timeUnit;
 		private String[] fields;
 		private int timeUnitColOrd;
 		private int refDateColOrd;
-		private boolean epochTime;
+		private Calendar date = Calendar.getInstance();
 		
 		/**
 		 * @param prAttr
@@ -512,19 +432,12 @@ public class DateTransformer implements Serializable {
 		private void intialize(String dateFormatStr, String timeZone, int timeUnitColOrd, String timeUnit, 
 			boolean failOnInvalid, int refDateColOrd, String refDateStr) {
 			try {
-				//date format
-				if (dateFormatStr.equals("epochTime")) {
-					epochTime = true;
-				} else {
-					dateFormat = new SimpleDateFormat(dateFormatStr);
-					if (!Utility.isBlank(timeZone)) {
-						dateFormat.setTimeZone(TimeZone.getTimeZone(timeZone));
-					}
-				}
+				//date format or epoch time
+				dateFormat = DateCodec.create(dateFormatStr, timeZone);
 				
 				//set configured reference time
 				if (null != refDateStr) {
-					refTime = BasicUtils.getEpochTime(refDateStr,  dateFormat);
+					refTime = dateFormat.parse(refDateStr);
 				} 
 				this.timeUnit = timeUnit;
 				this.timeUnitColOrd = timeUnitColOrd;
@@ -541,7 +454,7 @@ public class DateTransformer implements Serializable {
 				long thisRefTime = 0;
 				if (refDateColOrd >= 0) {
 					//from a field in data
-					thisRefTime = BasicUtils.getEpochTime(fields[refDateColOrd],  dateFormat);
+					thisRefTime = dateFormat.parse(fields[refDateColOrd]);
 				} else if (refTime > 0) {
 					//from configuration
 					thisRefTime = refTime;
@@ -560,8 +473,7 @@ public class DateTransformer implements Serializable {
 				}
 				
 				//roll forward
-				Calendar date = Calendar.getInstance();
-				date.setTimeInMillis(BasicUtils.getEpochTime(value, dateFormat));
+				date.setTimeInMillis(dateFormat.parse(value));
 				for (long time = date.getTimeInMillis(); time < thisRefTime; time = date.getTimeInMillis()) {
 					if (thisTimeUnit.equals(BasicUtils.TIME_UNIT_MONTH)) {
 						date.add(Calendar.MONTH, 1);
@@ -573,8 +485,7 @@ public class DateTransformer implements Serializable {
 						throw new IllegalStateException("invalid time cycle unit for time shift");
 					}
 				}
-				transformed[0] = null != dateFormat ? dateFormat.format(date.getTime()) : 
-					"" + date.getTimeInMillis();
+				transformed[0] = dateFormat.format(date.getTimeInMillis());
 			} catch (ParseException ex) {
 				throw new IllegalArgumentException("failed to parse date " + ex.getMessage());
 			}
@@ -594,10 +505,10 @@ public class DateTransformer implements Serializable {
 	 *
 	 */
 	public static class DateComponentTransformer extends AttributeTransformer {
-		private SimpleDateFormat sourceDateFormat;
-		private Map<String, SimpleDateFormat> componentDateFormats = new HashMap<String, SimpleDateFormat>();
-		private boolean sourceEpochTime;
+		private DateCodec sourceDateFormat;
+		private Map<String, DateCodec> componentDateFormats = new HashMap<String, DateCodec>();
 		private List<String> dateComponents;
+		private Calendar cal = Calendar.getInstance();
 
 		/**
 		 * @param prAttr
@@ -644,47 +555,28 @@ public class DateTransformer implements Serializable {
 		private void intialize(String sourceDateFormatStr, String sourceTimeZone, List<String> dateComponents,  
 				Map<String, String> componentFormats, String targetTimeZone) {
 			this.dateComponents = dateComponents;
-			if (sourceDateFormatStr.equals("epochTime")) {
-				sourceEpochTime = true;
-			} else  {
-				sourceDateFormat = new SimpleDateFormat(sourceDateFormatStr);
-				if (!Utility.isBlank(sourceTimeZone)) {
-					sourceDateFormat.setTimeZone(TimeZone.getTimeZone(sourceTimeZone));
-				}
-			}
+			sourceDateFormat = DateCodec.create(sourceDateFormatStr, sourceTimeZone);
 
 			//format object for all components
 			for (Map.Entry<String,String> entry :componentFormats.entrySet()) {
-				SimpleDateFormat targetDateFormat = new SimpleDateFormat(entry.getValue());
-				if (!Utility.isBlank(targetTimeZone)) {
-					targetDateFormat.setTimeZone(TimeZone.getTimeZone(targetTimeZone));
-				}
-				componentDateFormats.put(entry.getKey(), targetDateFormat);
+				componentDateFormats.put(entry.getKey(), DateCodec.create(entry.getValue(), targetTimeZone));
 			}
 		}
 
 		@Override
 		public String[] tranform(String value) {
 			try {
-				Calendar cal = Calendar.getInstance();
-				Date date = null;
-				if (null != sourceDateFormat) {
-					//date format
-					date = sourceDateFormat.parse(value);
-				} else {
-					//epoch time
-					date = new Date(Long.parseLong(value));
-				}
+				long date = sourceDateFormat.parse(value);
 				
 				int i = 0;
 				for (String dateComponent : dateComponents) {
 					if (dateComponent.equals(BasicUtils.TIME_UNIT_QUARTER)) {
-						cal.setTime(date);
+						cal.setTimeInMillis(date);
 						int month = cal.get(Calendar.MONTH);
 						int quarter = month / 3 + 1;
 						transformed[i++] = "" + quarter;
 					} else {
-						SimpleDateFormat targetDateFormat = componentDateFormats.get(dateComponent);
+						DateCodec targetDateFormat = componentDateFormats.get(dateComponent);
 						transformed[i++] = targetDateFormat.format(date);
 					}
 				}
@@ -700,9 +592,9 @@ public class DateTransformer implements Serializable {
 	 *
 	 */
 	public static class TimeCycleTransformer extends AttributeTransformer  {
-		private SimpleDateFormat sourceDateFormat;
+		private DateCodec sourceDateFormat;
 		private String sourceDateFormatStr;
-		private boolean sourceEpochTime;
+		private Calendar cal = Calendar.getInstance();
 		private String timeCycle;
 		private int hourGranularity;
 		
@@ -736,14 +628,9 @@ public class DateTransformer implements Serializable {
 		 */
 		private void intialize(String sourceDateFormatStr, String sourceTimeZone, String timeCycle, int hourGranularity) {
 			this.sourceDateFormatStr = sourceDateFormatStr;
-			if (sourceDateFormatStr.equals(BasicUtils.EPOCH_TIME) || sourceDateFormatStr.equals(BasicUtils.EPOCH_TIME_SEC)) {
-				sourceEpochTime = true;
-			} else  {
-				sourceDateFormat = new SimpleDateFormat(sourceDateFormatStr);
-				if (!Utility.isBlank(sourceTimeZone)) {
-					sourceDateFormat.setTimeZone(TimeZone.getTimeZone(sourceTimeZone));
-				}
-			}
+			
+			//epoch time in ms or sec handled by codec
+			sourceDateFormat = DateCodec.create(sourceDateFormatStr, sourceTimeZone);
 			this.timeCycle = timeCycle;
 			if (hourGranularity % 2 == 1) {
 				throw new IllegalStateException("hour granularity should be even");
@@ -757,20 +644,7 @@ public class DateTransformer implements Serializable {
 		@Override
 		public String[] tranform(String value) {
 			try {
-				Date date = null;
-				if (null != sourceDateFormat) {
-					//date format
-					date = sourceDateFormat.parse(value);
-				} else {
-					//epoch time
-					long lValue = Long.parseLong(value);
-					if (sourceDateFormatStr.equals(BasicUtils.EPOCH_TIME_SEC)) {
-						lValue *= 1000;
-					}
-					date = new Date(lValue);
-				}
-				Calendar cal = Calendar.getInstance();
-				cal.setTime(date);
+				cal.setTimeInMillis(sourceDateFormat.parse(value));
 				
 				if (timeCycle.equals("hourOfDay")) {
 					int hour = cal.get(Calendar.HOUR_OF_DAY);
@@ -807,9 +681,9 @@ public class DateTransformer implements Serializable {
 	 *
 	 */
 	public static class MultiTimeCycleTransformer extends AttributeTransformer  {
-		private SimpleDateFormat sourceDateFormat;
+		private DateCodec sourceDateFormat;
 		private String sourceDateFormatStr;
-		private boolean sourceEpochTime;
+		private Calendar cal = Calendar.getInstance();
 		private List<String> timeCycles;
 		private int hourGranularity;
 		
@@ -845,14 +719,9 @@ public class DateTransformer implements Serializable {
 		 */
 		private void intialize(String sourceDateFormatStr, String sourceTimeZone, List<String> timeCycles, int hourGranularity) {
 			this.sourceDateFormatStr = sourceDateFormatStr;
-			if (sourceDateFormatStr.equals(BasicUtils.EPOCH_TIME) || sourceDateFormatStr.equals(BasicUtils.EPOCH_TIME_SEC)) {
-				sourceEpochTime = true;
-			} else  {
-				sourceDateFormat = new SimpleDateFormat(sourceDateFormatStr);
-				if (!Utility.isBlank(sourceTimeZone)) {
-					sourceDateFormat.setTimeZone(TimeZone.getTimeZone(sourceTimeZone));
-				}
-			}
+			
+			//epoch time in ms or sec handled by codec
+			sourceDateFormat = DateCodec.create(sourceDateFormatStr, sourceTimeZone);
 			this.timeCycles = timeCycles;
 			if (hourGranularity % 2 == 1) {
 				throw new IllegalStateException("hour granularity should be even");
@@ -866,20 +735,7 @@ public class DateTransformer implements Serializable {
 		@Override
 		public String[] tranform(String value) {
 			try {
-				Date date = null;
-				if (null != sourceDateFormat) {
-					//date format
-					date = sourceDateFormat.parse(value);
-				} else {
-					//epoch time
-					long lValue = Long.parseLong(value);
-					if (sourceDateFormatStr.equals(BasicUtils.EPOCH_TIME_SEC)) {
-						lValue *= 1000;
-					}
-					date = new Date(lValue);
-				}
-				Calendar cal = Calendar.getInstance();
-				cal.setTime(date);
+				cal.setTimeInMillis(sourceDateFormat.parse(value));
 				
 				for (int i = 0; i < timeCycles.size(); ++i) {
 					String timeCycle = timeCycles.get(i);
@@ -0,0 +1,93 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.transformer;
+
+import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.Script;
+import groovy.transform.CompileStatic;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.customizers.ASTTransformationCustomizer;
+import org.codehaus.groovy.runtime.InvokerHelper;
+
+/**
+ * Compiles groovy script source to a script class once per JVM. Transformers with same script
+ * source share the class and create their own script instance with their own binding
+ * @author pranab
+ *
+ */
+public class GroovyScriptCache {
+	private static Map<String, Class<?>> scriptClasses = new HashMap<String, Class<?>>();
+	private static GroovyClassLoader dynamicLoader;
+	private static GroovyClassLoader staticLoader;
+
+	/**
+	 * @param source
+	 * @param staticCompile compiles with CompileStatic, script variables should then be accessed through binding
+	 * @param binding
+	 * @return
+	 */
+	public static Script createScript(String source, boolean staticCompile, Binding binding) {
+		return InvokerHelper.createScript(getScriptClass(source, staticCompile), binding);
+	}
+
+	/**
+	 * @param source
+	 * @param staticCompile
+	 * @return
+	 */
+	public static synchronized Class<?> getScriptClass(String source, boolean staticCompile) {
+		String key = (staticCompile ? "static:" : "dynamic:") + source;
+		Class<?> scriptClass = scriptClasses.get(key);
+		if (null == scriptClass) {
+			scriptClass = getClassLoader(staticCompile).parseClass(source);
+			if (!Script.class.isAssignableFrom(scriptClass)) {
+				throw new IllegalArgumentException("groovy source is not a script");
+			}
+			scriptClasses.put(key, scriptClass);
+		}
+		return scriptClass;
+	}
+
+	/**
+	 * @param staticCompile
+	 * @return
+	 */
+	private static GroovyClassLoader getClassLoader(boolean staticCompile) {
+		GroovyClassLoader loader = null;
+		ClassLoader parent = GroovyScriptCache.class.getClassLoader();
+		if (staticCompile) {
+			if (null == staticLoader) {
+				CompilerConfiguration compilerConfig = new CompilerConfiguration();
+				compilerConfig.addCompilationCustomizers(new ASTTransformationCustomizer(CompileStatic.class));
+				staticLoader = new GroovyClassLoader(parent, compilerConfig);
+			}
+			loader = staticLoader;
+		} else {
+			if (null == dynamicLoader) {
+				dynamicLoader = new GroovyClassLoader(parent);
+			}
+			loader = dynamicLoader;
+		}
+		return loader;
+	}
+}
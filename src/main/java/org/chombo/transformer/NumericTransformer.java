@@ -17,7 +17,6 @@
 
 package org.chombo.transformer;
 
-import java.util.HashMap;
 import java.util.Map;
 
 import org.chombo.util.BaseAttribute;
@@ -27,10 +26,6 @@ import org.chombo.util.ProcessorAttribute;
 import org.chombo.util.Utility;
 
 import com.typesafe.config.Config;
-import com.typesafe.config.ConfigValue;
-
-import groovy.lang.Binding;
-import groovy.lang.GroovyShell;
 
 
 /**
@@ -110,44 +105,15 @@ public class NumericTransformer  {
 	 * @author pranab
 	 *
 	 */
-	public static abstract class Custom extends AttributeTransformer {
-		private String script;
-		private Map<String, Object> params = new HashMap<String, Object>();
-		private Binding binding = new Binding();
+	public static abstract class Custom extends CustomTransformer {
 		
 		public Custom(ProcessorAttribute prAttr, Config config) {
-			super(prAttr.getTargetFieldOrdinals().length);
-			this.script = config.getString("script");
-			for (Map.Entry<String, ConfigValue> entry : config.entrySet()) {
-				Object value = entry.getValue().unwrapped();
-				binding.setVariable(entry.getKey(), value);
-			}
+			super(prAttr, config);
 		}
 		
 		public Custom(String script, Map<String, Object> params) {
-			super(1);
-			this.script = script;
-			this.params = params;
-			for (String name : params.keySet()) {
-				binding.setVariable(name, params.get(name));
-			}
+			super(script, params);
 		}
-
-
-		@Override
-		public String[] tranform(String value) {
-			Object in = getFieldValue(value);
-			binding.setVariable("field", in);
-			GroovyShell shell = new GroovyShell(binding);
-			Object out = shell.evaluate(script);
-			transformed[0] =  getOutput(out);
-			return transformed;
-		}
-		
-		protected abstract Object getFieldValue(String value);
-		
-		protected abstract String getOutput(Object out);
-		
 	}
 	
 	
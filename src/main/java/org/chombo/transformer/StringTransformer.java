@@ -38,6 +38,7 @@ import java.util.regex.Pattern;
 import org.apache.commons.lang3.StringUtils;
 import org.chombo.util.AttributePredicate;
 import org.chombo.util.BasicUtils;
+import org.chombo.util.MultiPatternMatcher;
 import org.chombo.util.Pair;
 import org.chombo.util.ProcessorAttribute;
 
@@ -269,6 +270,8 @@ public class StringTransformer implements Serializable {
 		private Matcher matcher;
 		private Set<String> searchResults = new HashSet<String>();
 		private List<Pair<Pattern, Integer>> patterns = new ArrayList<Pair<Pattern, Integer>>();
+		private MultiPatternMatcher prefilter;
+		private int[] matchedIds;
 		
 		/**
 		 * @param prAttr
@@ -281,11 +284,15 @@ public class StringTransformer implements Serializable {
 			
 			//all patterns
 			List<? extends Config> patternConfigs = config.getConfigList("patterns");
+			String[] regExes = new String[patternConfigs.size()];
+			int i = 0;
 			for (Config patConfig : patternConfigs) {
 				String regEx = patConfig.getString("regEx");
 				int numGroups = patConfig.getInt("numGroups");
 				patterns.add(new Pair<Pattern, Integer>(Pattern.compile(regEx), numGroups));
+				regExes[i++] = regEx;
 			}
+			createPrefilter(regExes);
 		}
 		
 		/**
@@ -303,6 +310,21 @@ public class StringTransformer implements Serializable {
 			for (int i = 0; i < regExes.length; ++i) {
 				patterns.add(new Pair<Pattern, Integer>(Pattern.compile(regExes[i]), numGroups[i]));
 			}
+			createPrefilter(regExes);
+		}
+		
+		/**
+		 * All patterns checked in one pass, so that groups are extracted only from matching patterns
+		 * @param regExes
+		 */
+		private void createPrefilter(String[] regExes) {
+			//search for variable number of groups, full match for known number of groups
+			boolean[] fullMatch = new boolean[regExes.length];
+			for (int i = 0; i < regExes.length; ++i) {
+				fullMatch[i] = patterns.get(i).getRight() != -1;
+			}
+			prefilter = new MultiPatternMatcher(regExes, fullMatch);
+			matchedIds = new int[regExes.length];
 		}
 
 		/* (non-Javadoc)
@@ -312,9 +334,11 @@ public class StringTransformer implements Serializable {
 		public String[] tranform(String value) {
 			searchResults.clear();
 			
-			//all patterns
+			//only patterns that passed prefilter, in pattern order
 			boolean matched = false;
-			for (Pair<Pattern, Integer> pattern : patterns) {
+			int count = prefilter.match(value, matchedIds);
+			for (int i = 0; i < count; ++i) {
+				Pair<Pattern, Integer> pattern = patterns.get(matchedIds[i]);
 				matcher = pattern.getLeft().matcher(value);
 				int numGroups = pattern.getRight();
 				if (-1 == numGroups) {
@@ -20,6 +20,8 @@ import java.io.Serializable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.chombo.util.ValueTypeScanner;
+
 
 /**
  * @author pranab
@@ -57,6 +59,16 @@ public abstract class DataType implements Serializable, Comparable<DataType> {
 	
 	public abstract boolean isMatched(String value);
 	
+	/**
+	 * Numeric types override to use value already classified by the scanner
+	 * @param value
+	 * @param scanner scanned with the value
+	 * @return
+	 */
+	public boolean isMatched(String value, ValueTypeScanner scanner) {
+		return isMatched(value);
+	}
+	
 	@Override
 	public int compareTo(DataType that) {
 		return this.strength < that.strength ? -1 : (this.strength > that.strength ? 1 : 0);
@@ -26,6 +26,7 @@ import java.util.Set;
 
 import org.chombo.util.BaseAttribute;
 import org.chombo.util.BasicUtils;
+import org.chombo.util.ValueTypeScanner;
 
 /**
  * @author pranab
@@ -57,6 +58,7 @@ public class DataTypeHandler implements Serializable {
 	private List<String> customIntTypes = new ArrayList<String>();
 	
 	private Set<String> needsUpperCasing = new HashSet<String>();
+	private ValueTypeScanner scanner = new ValueTypeScanner();
 	
 	/**
 	 * 
@@ -310,9 +312,12 @@ public class DataTypeHandler implements Serializable {
 	 */
 	public List<String> findTypes(String value) {
 		List<String> matchedTypes = new ArrayList<String>();
+		
+		//classified once for all numeric types
+		scanner.scan(value);
 		for (DataType dataType : dataTypes) {
 			String transVal = needsUpperCasing.contains(dataType.name) ? value.toUpperCase() : value;
-			if (dataType.isMatched(transVal)) {
+			if (dataType.isMatched(transVal, scanner)) {
 				matchedTypes.add(dataType.name);
 				if (matchStrongestType) {
 					break;
@@ -16,18 +16,18 @@
  */
 package org.chombo.types;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.chombo.util.BasicUtils;
+import org.chombo.util.DateCodec;
+import org.chombo.util.ValueTypeScanner;
 
 /**
  * @author pranab
  *
  */
 public class DateDataType extends DataType {
-	private List<SimpleDateFormat> formatList = new ArrayList<SimpleDateFormat>();
+	private List<DateCodec> formatList = new ArrayList<DateCodec>();
 	
 	/**
 	 * @param name
@@ -37,17 +37,25 @@ public class DateDataType extends DataType {
 	public DateDataType(String name, List<String> formatStringList, int strength) {
 		super(name, strength);
 		for (String formatString : formatStringList) {
-			formatList.add(new SimpleDateFormat(formatString));
+			formatList.add(DateCodec.create(formatString));
 		}
 	}
 
 	@Override
 	public boolean isMatched(String value) {
+		return isMatched(value, new ValueTypeScanner().scan(value));
+	}
+
+	/* (non-Javadoc)
+	 * @see org.chombo.types.DataType#isMatched(java.lang.String, org.chombo.util.ValueTypeScanner)
+	 */
+	@Override
+	public boolean isMatched(String value, ValueTypeScanner scanner) {
 		boolean isDate = false;
 		value = value.trim();
-	    for (SimpleDateFormat dateFormat : formatList) {
-    		//date if at least 1 format is able to parse
-    		isDate = BasicUtils.isDate(value, dateFormat);
+	    for (DateCodec dateFormat : formatList) {
+    		//date if at least 1 format is able to parse, numeric formats need a digit
+    		isDate = (scanner.isDateCandidate() || !dateFormat.isNumericLayout()) && dateFormat.isValid(value);
     		if (isDate)
     			break;
     	}
@@ -17,6 +17,8 @@
 
 package org.chombo.types;
 
+import org.chombo.util.ValueTypeScanner;
+
 /**
  * @author pranab
  *
@@ -52,13 +54,27 @@ public class FloatDataType extends DataType {
 	
 	@Override
 	public boolean isMatched(String value) {
+		return isMatched(value, new ValueTypeScanner().scan(value));
+	}
+
+	/* (non-Javadoc)
+	 * @see org.chombo.types.DataType#isMatched(java.lang.String, org.chombo.util.ValueTypeScanner)
+	 */
+	@Override
+	public boolean isMatched(String value, ValueTypeScanner scanner) {
 		boolean matched = false;
-		float fVal = 0;
-		try {
-			fVal = Float.parseFloat(value);
-			matched = withLimitCheck ? (fVal >= min && fVal <= max) : true;
-		} catch (Exception ex) {
+		if (scanner.isFloat()) {
+			//parsed only when range is checked
+			matched = withLimitCheck ? isInRange(Float.parseFloat(value)) : true;
 		}
 		return matched;
 	}
+	
+	/**
+	 * @param fVal
+	 * @return
+	 */
+	private boolean isInRange(float fVal) {
+		return fVal >= min && fVal <= max;
+	}
 }
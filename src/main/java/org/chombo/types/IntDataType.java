@@ -18,6 +18,8 @@ package org.chombo.types;
 
 import java.util.Set;
 
+import org.chombo.util.ValueTypeScanner;
+
 /**
  * @author pranab
  *
@@ -64,11 +66,17 @@ public class IntDataType extends DataType{
 
 	@Override
 	public boolean isMatched(String value) {
+		return isMatched(value, new ValueTypeScanner().scan(value));
+	}
+
+	/* (non-Javadoc)
+	 * @see org.chombo.types.DataType#isMatched(java.lang.String, org.chombo.util.ValueTypeScanner)
+	 */
+	@Override
+	public boolean isMatched(String value, ValueTypeScanner scanner) {
 		boolean matched = false;
-		int iVal = 0;
-		try {
-			iVal = Integer.parseInt(value);
-			
+		if (scanner.isInt()) {
+			int iVal = scanner.getIntValue();
 			if (withLimitCheck) {
 				matched = (iVal >= min && iVal <= max);
 			} else if (withSetCheck) {
@@ -76,7 +84,6 @@ public class IntDataType extends DataType{
 			} else {
 				matched = true;
 			}
-		} catch (Exception ex) {
 		}
 		return matched;
 	}
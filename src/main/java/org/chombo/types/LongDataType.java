@@ -17,6 +17,8 @@
 
 package org.chombo.types;
 
+import org.chombo.util.ValueTypeScanner;
+
 /**
  * @author pranab
  *
@@ -52,12 +54,18 @@ public class LongDataType extends DataType {
 	
 	@Override
 	public boolean isMatched(String value) {
+		return isMatched(value, new ValueTypeScanner().scan(value));
+	}
+
+	/* (non-Javadoc)
+	 * @see org.chombo.types.DataType#isMatched(java.lang.String, org.chombo.util.ValueTypeScanner)
+	 */
+	@Override
+	public boolean isMatched(String value, ValueTypeScanner scanner) {
 		boolean matched = false;
-		long lVal = 0;
-		try {
-			lVal = Long.parseLong(value);
+		if (scanner.isLong()) {
+			long lVal = scanner.getLongValue();
 			matched = withLimitCheck ? (lVal >= min && lVal <= max) : true;
-		} catch (Exception ex) {
 		}
 		return matched;
 	}
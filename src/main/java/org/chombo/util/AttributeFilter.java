@@ -18,21 +18,42 @@
 package org.chombo.util;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
 /**
+ * Filter with disjunction of conjunctive predicates. Numeric fields are parsed at most once per record,
+ * no matter how many predicates refer to them. With adaptive ordering, predicates within a conjunct are
+ * periodically reordered by cost and selectivity observed in sampled records, so that cheap and selective
+ * predicates are evaluated first. It's off by default, since configured order may guard later predicates.
  * @author pranab
  *
  */
 public class AttributeFilter extends BaseAttributeFilter {
-	private List<List<BasePredicate>> disjunctPredicates = new ArrayList<List<BasePredicate>>();
+	private List<Conjunct> disjunctPredicates = new ArrayList<Conjunct>();
 	private String operandDataType;
+	private boolean adaptiveOrdering;
+	private int sampleInterval = 64;
+	private int reorderInterval = 4096;
+	private long recordCount;
+	private int numPredicates;
+	private int[] intValues;
+	private double[] doubleValues;
+	private long[] intParsedAt;
+	private long[] doubleParsedAt;
 	public static final String CONJUNCT_SEP = " and ";
 	public static final String DISJUNCT_SEP = " or ";
 	private static String conjunctSeparator;
 	private static String disjunctSeparator;
 	private static final String FIELD_PREFIX = "$";
+	private static final int MIN_SAMPLE_COUNT = 16;
+	public static final String COUNTER_GROUP = "Filter predicates";
+	private static final int MAX_COUNTED_PREDICATES = 8;
+	private static final int MAX_COUNTER_TEXT_LENGTH = 40;
 	
 	public AttributeFilter(){
 	}
@@ -60,15 +81,54 @@ public class AttributeFilter extends BaseAttributeFilter {
 		
 		//all conjunctive predicates
 		for (String conjuctPred : conjuctPreds) {
-			disjunctPredicates.add(buildConjuctPredicate(conjuctPred.trim()));
+			disjunctPredicates.add(new Conjunct(buildConjuctPredicate(conjuctPred.trim())));
 		}
+		
+		//parsed field value cache
+		int maxField = -1;
+		for (Conjunct conjunct : disjunctPredicates) {
+			for (FilterPredicate predicate : conjunct.predicates) {
+				maxField = Math.max(maxField, predicate.predicate.attribute);
+			}
+		}
+		intValues = new int[maxField + 1];
+		doubleValues = new double[maxField + 1];
+		intParsedAt = new long[maxField + 1];
+		doubleParsedAt = new long[maxField + 1];
+	}
+	
+	/**
+	 * @param adaptiveOrdering only for predicates that don't depend on being guarded by earlier ones
+	 * @return
+	 */
+	public AttributeFilter withAdaptiveOrdering(boolean adaptiveOrdering) {
+		this.adaptiveOrdering = adaptiveOrdering;
+		return this;
+	}
+
+	/**
+	 * @param sampleInterval every so many records, all predicates are evaluated for cost and selectivity
+	 * @return
+	 */
+	public AttributeFilter withSampleInterval(int sampleInterval) {
+		this.sampleInterval = sampleInterval;
+		return this;
+	}
+
+	/**
+	 * @param reorderInterval
+	 * @return
+	 */
+	public AttributeFilter withReorderInterval(int reorderInterval) {
+		this.reorderInterval = reorderInterval;
+		return this;
 	}
 	
 	/**
 	 * @param filter
 	 */
-	private List<BasePredicate> buildConjuctPredicate(String filter) {
-		List<BasePredicate> predicates = new ArrayList<BasePredicate>();
+	private List<FilterPredicate> buildConjuctPredicate(String filter) {
+		List<FilterPredicate> predicates = new ArrayList<FilterPredicate>();
 		BasePredicate  predicate = null;
 		String[] preds = filter.split(getConjunctSeparator());
 		for (String pred : preds) {
@@ -97,7 +157,7 @@ public class AttributeFilter extends BaseAttributeFilter {
 				} else {
 					throw new IllegalArgumentException("invalid data type");
 				}
-				predicates.add(predicate);
+				predicates.add(new FilterPredicate(predicate, pred.trim(), numPredicates++));
 			} else if (compSize == 1) {
 				//udf
 				String udf = predParts[0].substring(0, predParts[0].length()-2);
@@ -112,7 +172,7 @@ public class AttributeFilter extends BaseAttributeFilter {
 				} catch (Exception ex) {
 					throw new IllegalStateException("failed create filter udf object "+ ex.getMessage());
 				}
-				predicates.add(udfPredicate);
+				predicates.add(new FilterPredicate(udfPredicate, pred.trim(), numPredicates++));
 			} else {
 				throw new IllegalStateException("invalid predicate  format");
 			}
@@ -165,15 +225,23 @@ public class AttributeFilter extends BaseAttributeFilter {
 	 * @see org.chombo.util.BaseAttributeFilter#evaluate(java.lang.String[])
 	 */
 	public boolean evaluate(String[] record) {
+		++recordCount;
+		boolean sampled = adaptiveOrdering && recordCount % sampleInterval == 0;
 		boolean status = false;
-		for (List<BasePredicate> predicates : disjunctPredicates) {
-			status = status || evaluateConjuctPredicates(record, predicates);
+		for (Conjunct conjunct : disjunctPredicates) {
+			status = sampled ? sampleConjuctPredicates(record, conjunct) : 
+				evaluateConjuctPredicates(record, conjunct);
 			if (status) {
 				//conjunctive predicates or connected
 				break;
 			}
 		}
 		
+		if (adaptiveOrdering && recordCount % reorderInterval == 0) {
+			for (Conjunct conjunct : disjunctPredicates) {
+				conjunct.reorder();
+			}
+		}
 		return status;
 	}
 	
@@ -182,19 +250,113 @@ public class AttributeFilter extends BaseAttributeFilter {
 	 * @param record
 	 * @return
 	 */
-	private boolean evaluateConjuctPredicates(String[] record, List<BasePredicate> predicates) {
+	private boolean evaluateConjuctPredicates(String[] record, Conjunct conjunct) {
 		boolean status = true;
-		for (BasePredicate  predicate : predicates) {
-			status = status & predicate.evaluate(record);
+		for (FilterPredicate  predicate : conjunct.predicates) {
+			status = evaluatePredicate(record, predicate);
+			++predicate.evalCount;
 			if (!status) {
 				//predicates and connected
 				break;
 			}
+			++predicate.passCount;
 		}
 		
 		return status;
 	}
 	
+	/**
+	 * evaluates all conjunctive predicates, to collect unconditional selectivity and cost
+	 * @param record
+	 * @param conjunct
+	 * @return
+	 */
+	private boolean sampleConjuctPredicates(String[] record, Conjunct conjunct) {
+		boolean status = true;
+		for (FilterPredicate  predicate : conjunct.predicates) {
+			long start = System.nanoTime();
+			boolean predStatus = status ? evaluatePredicate(record, predicate) : 
+				evaluateUnguardedPredicate(record, predicate);
+			predicate.sampleTime += System.nanoTime() - start;
+			++predicate.sampleCount;
+			if (predStatus) {
+				++predicate.samplePassCount;
+			}
+			
+			//counted as if evaluation was short circuited
+			if (status) {
+				++predicate.evalCount;
+				if (predStatus) {
+					++predicate.passCount;
+				}
+			}
+			status = status && predStatus;
+		}
+		
+		return status;
+	}
+
+	/**
+	 * evaluates predicate normally skipped because an earlier one failed
+	 * @param record
+	 * @param predicate
+	 * @return false if the field value can not be evaluated
+	 */
+	private boolean evaluateUnguardedPredicate(String[] record, FilterPredicate predicate) {
+		boolean status = false;
+		try {
+			status = evaluatePredicate(record, predicate);
+		} catch (RuntimeException ex) {
+			status = false;
+		}
+		return status;
+	}
+	
+	/**
+	 * @param record
+	 * @param predicate
+	 * @return
+	 */
+	private boolean evaluatePredicate(String[] record, FilterPredicate predicate) {
+		boolean status = false;
+		int field = predicate.predicate.attribute;
+		if (predicate.predicate instanceof IntAttributePredicate) {
+			if (intParsedAt[field] != recordCount) {
+				intValues[field] = Integer.parseInt(record[field]);
+				intParsedAt[field] = recordCount;
+			}
+			status = ((IntAttributePredicate)predicate.predicate).evaluate(intValues[field]);
+		} else if (predicate.predicate instanceof DoubleAttributePredicate) {
+			if (doubleParsedAt[field] != recordCount) {
+				doubleValues[field] = Double.parseDouble(record[field]);
+				doubleParsedAt[field] = recordCount;
+			}
+			status = ((DoubleAttributePredicate)predicate.predicate).evaluate(doubleValues[field]);
+		} else {
+			status = predicate.predicate.evaluate(record);
+		}
+		return status;
+	}
+	
+	/**
+	 * Reports number of times each predicate was evaluated and passed as counters. Only the first
+	 * few predicates are reported, with counter names based on position and truncated text
+	 * @param context
+	 */
+	public void reportPassRates(TaskInputOutputContext<?, ?, ?, ?> context) {
+		for (Conjunct conjunct : disjunctPredicates) {
+			for (FilterPredicate  predicate : conjunct.predicates) {
+				if (predicate.ordinal < MAX_COUNTED_PREDICATES) {
+					String name = "p" + predicate.ordinal + " " + (predicate.text.length() > MAX_COUNTER_TEXT_LENGTH ? 
+						predicate.text.substring(0, MAX_COUNTER_TEXT_LENGTH) : predicate.text);
+					context.getCounter(COUNTER_GROUP, name + " evaluated").increment(predicate.evalCount);
+					context.getCounter(COUNTER_GROUP, name + " passed").increment(predicate.passCount);
+				}
+				predicate.evalCount = predicate.passCount = 0;
+			}
+		}
+	}
+	
 	/**
 	 * @return
 	 */
@@ -233,6 +395,63 @@ public class AttributeFilter extends BaseAttributeFilter {
 		return predParts.length == 3;
 	}
 	
+	/**
+	 * Predicate with evaluation statistics
+	 * @author pranab
+	 *
+	 */
+	private static class FilterPredicate {
+		private BasePredicate predicate;
+		private String text;
+		private int ordinal;
+		private long evalCount;
+		private long passCount;
+		private long sampleCount;
+		private long samplePassCount;
+		private long sampleTime;
+		private double rank;
+		
+		public FilterPredicate(BasePredicate predicate, String text, int ordinal) {
+			this.predicate = predicate;
+			this.text = text;
+			this.ordinal = ordinal;
+		}
+	}
 	
-	
+	/**
+	 * Conjunctive predicates
+	 * @author pranab
+	 *
+	 */
+	private static class Conjunct {
+		private FilterPredicate[] predicates;
+		
+		public Conjunct(List<FilterPredicate> predicates) {
+			this.predicates = predicates.toArray(new FilterPredicate[predicates.size()]);
+		}
+		
+		/**
+		 * Ascending order of cost per record rejected. Sort is stable, so that configured
+		 * order is retained for predicates of same rank
+		 */
+		public void reorder() {
+			boolean enoughSamples = predicates.length > 1;
+			for (FilterPredicate predicate : predicates) {
+				enoughSamples = enoughSamples && predicate.sampleCount >= MIN_SAMPLE_COUNT;
+			}
+			if (enoughSamples) {
+				for (FilterPredicate predicate : predicates) {
+					double cost = (double)predicate.sampleTime / predicate.sampleCount;
+					double rejectRate = 1.0 - (double)predicate.samplePassCount / predicate.sampleCount;
+					predicate.rank = cost / Math.max(rejectRate, 0.001);
+				}
+				Arrays.sort(predicates, new Comparator<FilterPredicate>() {
+					@Override
+					public int compare(FilterPredicate thisPred, FilterPredicate thatPred) {
+						return Double.compare(thisPred.rank, thatPred.rank);
+					}
+				});
+			}
+		}
+	}
 }
@@ -35,6 +35,13 @@ public abstract class AttributePredicate extends BasePredicate{
 	public static final String PREDICATE_SEP = "\\s+";
 	public static final String DATA_TYPE_SEP = ":";
 	public static final String VALUE_LIST_SEP = "\\|";
+	protected static final int OP_GREATER_THAN = 0;
+	protected static final int OP_LESS_THAN = 1;
+	protected static final int OP_EQUAL_TO = 2;
+	protected static final int OP_GREATER_THAN_OREQUAL_TO = 3;
+	protected static final int OP_LESS_THAN_OREQUAL_TO = 4;
+	protected static final int OP_IN = 5;
+	protected static final int OP_NOT_IN = 6;
 	
 	/**
 	 * 
@@ -58,6 +65,34 @@ public abstract class AttributePredicate extends BasePredicate{
 		return create(predicateStr, null);
 	}	
 	
+	/**
+	 * Operator code, so that operator is not string compared for every record
+	 * @param operator
+	 * @param numeric
+	 * @return
+	 */
+	protected static int getOpCode(String operator, boolean numeric) {
+		int opCode = -1;
+		if (operator.equals(GREATER_THAN)) {
+			opCode = OP_GREATER_THAN;
+		} else if (operator.equals(LESS_THAN)) {
+			opCode = OP_LESS_THAN;
+		} else if (operator.equals(EQUAL_TO)) {
+			opCode = OP_EQUAL_TO;
+		} else if (operator.equals(GREATER_THAN_OREQUAL_TO)) {
+			opCode = OP_GREATER_THAN_OREQUAL_TO;
+		} else if (operator.equals(LESS_THAN_OREQUAL_TO)) {
+			opCode = OP_LESS_THAN_OREQUAL_TO;
+		} else if (!numeric && operator.equals(IN)) {
+			opCode = OP_IN;
+		} else if (!numeric && operator.equals(NOT_IN)) {
+			opCode = OP_NOT_IN;
+		} else {
+			throw new IllegalArgumentException("invalid operator " + operator);
+		}
+		return opCode;
+	}
+	
 	/**
 	 * @param predicateStr
 	 * @param context
@@ -28,7 +28,9 @@ import java.io.StringReader;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
+import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -1653,13 +1655,8 @@ public class BasicUtils {
      * @return
      */
     public static boolean isInt(String val) {
-    	boolean valid = true;
-		try {
-			int iVal = Integer.parseInt(val);
-		} catch (Exception ex) {
-			valid = false;
-		}
-    	return valid;
+    	//without exception
+    	return ValueTypeScanner.isInt(val);
     }
     
     /**
@@ -1680,13 +1677,7 @@ public class BasicUtils {
      * @return
      */
     public static boolean isLong(String val) {
-    	boolean valid = true;
-		try {
-			long lVal = Long.parseLong(val);
-		} catch (Exception ex) {
-			valid = false;
-		}
-    	return valid;
+    	return ValueTypeScanner.isLong(val);
     }
 
     /**
@@ -1706,13 +1697,7 @@ public class BasicUtils {
      * @return
      */
     public static boolean isFloat(String val) {
-    	boolean valid = true;
-		try {
-			float dVal = Float.parseFloat(val);
-		} catch (Exception ex) {
-			valid = false;
-		}
-    	return valid;
+    	return ValueTypeScanner.isFloat(val);
     }
     
 
@@ -1721,13 +1706,8 @@ public class BasicUtils {
      * @return
      */
     public static boolean isDouble(String val) {
-    	boolean valid = true;
-		try {
-			double dVal = Double.parseDouble(val);
-		} catch (Exception ex) {
-			valid = false;
-		}
-    	return valid;
+    	//same syntax as float, neither fails on range
+    	return ValueTypeScanner.isFloat(val);
     }
     
     /**
@@ -1760,14 +1740,8 @@ public class BasicUtils {
      * @return
      */
     public static boolean isDate(String val, SimpleDateFormat formatter) {
-    	boolean valid = true;
-    	try {
-    		Date date = formatter.parse(val);	
-    		valid = null != date;
-    	}catch (Exception ex) {
-			valid = false;
-		}
-    	return valid;
+    	//parse position based parsing returns null on failure
+    	return null != formatter.parse(val, new ParsePosition(0));
     }
     
     /**
@@ -2283,6 +2257,26 @@ public class BasicUtils {
 
     }    	
     
+    /**
+     * 64 bit hash of UTF-8 bytes, FNV-1a followed by murmur3 finalizer
+     * @param value
+     * @return
+     */
+    public static long longHash(String value) {
+    	byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    	long hash = 0xcbf29ce484222325L;
+    	for (byte b : bytes) {
+    		hash ^= b & 0xff;
+    		hash *= 0x100000001b3L;
+    	}
+    	hash ^= hash >>> 33;
+    	hash *= 0xff51afd7ed558ccdL;
+    	hash ^= hash >>> 33;
+    	hash *= 0xc4ceb9fe1a85ec53L;
+    	hash ^= hash >>> 33;
+    	return hash;
+    }
+    
     /**
      * @param obj
      * @return
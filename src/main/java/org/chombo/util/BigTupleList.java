@@ -17,11 +17,12 @@
 
 package org.chombo.util;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -29,12 +30,12 @@ import java.util.List;
 
 /**
  * Big list of tuple. Spills data to disk when in memory size threshold exceeds.
- * Allows sequential write and read
+ * Allows sequential write and read. Can be read multiple times after write 
  * @author pranab
  *
  */
 public class BigTupleList {
-	private List<Tuple> tuples;
+	private List<Tuple> tuples = new ArrayList<Tuple>();
 	private int maxInMemory;
 	private String spillDirPath;
 	private String spillFilePath;
@@ -45,10 +46,10 @@ public class BigTupleList {
 	private Mode mode;
 	private int readCount;
 	private int writeCount;
-	private byte[] tupleFieldTypes;
 	private DataOutputStream outStream;
 	private int size;
 	private DataInputStream inStream;
+	private long spilledBytes;
 	
 	/**
 	 * @param maxInMemory
@@ -56,6 +57,9 @@ public class BigTupleList {
 	 */
 	public BigTupleList(int maxInMemory, String spillDirPath) {
 		super();
+		if (maxInMemory <= 0) {
+			throw new IllegalArgumentException("in memory threshold must be positive");
+		}
 		this.maxInMemory = maxInMemory;
 		this.spillDirPath = spillDirPath;
 	}
@@ -64,13 +68,34 @@ public class BigTupleList {
 	 * @param mode
 	 */
 	public void open(Mode mode) {
+		this.mode = mode;
 		if (mode == Mode.Read) {
 			readCount = 0;
+			closeInStream();
 		} else {
-			tuples = new ArrayList<Tuple>();
-			writeCount = 0;
-			size = 0;
+			clear();
+		}
+	}
+
+	/**
+	 * releases memory and deletes spill file
+	 */
+	public void clear() {
+		closeInStream();
+		if (null != outStream) {
+			try {
+				outStream.close();
+				outStream = null;
+			} catch (IOException ioe) {
+				throw new RuntimeException("Failed to close spil file" +ioe);
+			}
 		}
+		deleteSpillFile();
+		tuples.clear();
+		writeCount = 0;
+		readCount = 0;
+		size = 0;
+		spilledBytes = 0;
 	}
 
 	/**
@@ -82,30 +107,20 @@ public class BigTupleList {
 	
 	/**
 	 * closes streams deletes spill file if necessary 
+	 * @param done if true spill file is deleted, otherwise list can be read again
 	 */
 	public void close(boolean done)  {
 		if (mode == Mode.Read) {
-			try {
-				if (null != inStream) {
-					inStream.close();
-					inStream = null;
-					
-					//delete spill file
-					if (done) {
-						File file = new File(spillFilePath);
-			    		if(!file.delete()){
-							throw new RuntimeException("Failed to delete spill file after read");
-			    		}						
-					}
-				}
-			} catch (IOException ioe) {
-				throw new RuntimeException("Failed to close spill file after read" +ioe);
-			}			
+			closeInStream();
+			if (done) {
+				deleteSpillFile();
+			}
 		} else {
 			size = writeCount;
 			try {
 				if (null != outStream) {
 					outStream.flush();
+					spilledBytes = outStream.size();
 					outStream.close();
 					outStream = null;
 				}
@@ -117,66 +132,44 @@ public class BigTupleList {
 
 	/**
 	 * @param tuple
+	 * @return tuple if it was spilled and can be reused by caller, null otherwise
 	 */
 	public Tuple write(Tuple tuple) {
 		Tuple retTuple = null;
 		if (writeCount < maxInMemory) {
 			tuples.add(tuple);
-			if (++writeCount == maxInMemory) {
-				//switch to spill
-				prepareForSpilWritel(tuple);
-			}
 		} else {
 			//write to disk
 			try {
-				for (int i = 0; i < tupleFieldTypes.length; ++i ) {
-					if (tupleFieldTypes[i] == Tuple.STRING) {
-						outStream.writeUTF(tuple.getString(i));
-					} else if (tupleFieldTypes[i] == Tuple.INT) {
-						outStream.writeInt(tuple.getInt(i));
-					} else if (tupleFieldTypes[i] == Tuple.LONG) {
-						outStream.writeLong(tuple.getInt(i));
-					} else if (tupleFieldTypes[i] == Tuple.DOUBLE) {
-						outStream.writeDouble(tuple.getDouble(i));
-					}
-				}			
+				if (null == outStream) {
+					prepareForSpillWrite();
+				}
+				tuple.write(outStream);
 				retTuple = tuple;
 			} catch (IOException ioe) {
 				throw new RuntimeException("Failed spilling data to spill file" + ioe);
 			}
 		}
-		
+		++writeCount;
 		return retTuple;
 	}
 	
 	/**
-	 * @return
+	 * @return next tuple or null if all read
 	 */
 	public Tuple read() {
 		Tuple tuple = null;
-		if (readCount < maxInMemory) {
+		if (readCount < tuples.size()) {
 			//from memory
-			if (readCount < tuples.size()) {
-				tuple = tuples.get(readCount);
-				if (++readCount == maxInMemory) {
-					prepareForSpilReadl();
-				}
-			}
+			tuple = tuples.get(readCount++);
 		} else if (readCount < size){
 			//from spill
 			try {
+				if (null == inStream) {
+					prepareForSpillRead();
+				}
 				tuple = new Tuple();
-				for (int i = 0; i < tupleFieldTypes.length; ++i ) {
-					if (tupleFieldTypes[i] == Tuple.STRING) {
-						tuple.add(inStream.readUTF());
-					} else if (tupleFieldTypes[i] == Tuple.INT) {
-						tuple.add(inStream.readInt());
-					} else if (tupleFieldTypes[i] == Tuple.LONG) {
-						tuple.add(inStream.readLong());
-					} else if (tupleFieldTypes[i] == Tuple.DOUBLE) {
-						tuple.add(inStream.readDouble());
-					}
-				}			
+				tuple.readFields(inStream);
 				++readCount;
 			} catch (IOException ioe) {
 				throw new RuntimeException("Failed to read data from spilli spill file" + ioe);
@@ -185,44 +178,75 @@ public class BigTupleList {
 		return tuple;
 	}
 	
+	/**
+	 * @return
+	 */
 	public int getSize() {
 		return size;
 	}
 
 	/**
-	 * @param tuple
+	 * @return
 	 */
-	private void prepareForSpilWritel(Tuple tuple) {
-		tupleFieldTypes = new byte[tuple.getSize()];
-		for (int i = 0; i < tupleFieldTypes.length; ++i ) {
-			Object obj = tuple.get(i);
-			if (obj instanceof String) {
-				tupleFieldTypes[i] = Tuple.STRING;
-			} else if (obj instanceof Integer) {
-				tupleFieldTypes[i] = Tuple.INT;
-			} else if (obj instanceof Long) {
-				tupleFieldTypes[i] = Tuple.LONG;
-			} else if (obj instanceof Double) {
-				tupleFieldTypes[i] = Tuple.DOUBLE;
-			}
-		}
-		spillFilePath = spillDirPath + "/spill-" + System.currentTimeMillis();
+	public boolean isSpilled() {
+		return null != spillFilePath;
+	}
+
+	/**
+	 * @return bytes written to spill file
+	 */
+	public long getSpilledBytes() {
+		return spilledBytes;
+	}
+
+	/**
+	 * 
+	 */
+	private void prepareForSpillWrite() {
 		try {
-			outStream = new DataOutputStream(new FileOutputStream(spillFilePath));
-		} catch (FileNotFoundException fnf) {
-			throw new RuntimeException("error creating spill file" + fnf);
+			File spillFile = File.createTempFile("spill-", ".dat", new File(spillDirPath));
+			spillFilePath = spillFile.getPath();
+			outStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile)));
+		} catch (IOException ioe) {
+			throw new RuntimeException("error creating spill file" + ioe);
 		}
 	}
 
 	/**
-	 * @param tuple
+	 * 
 	 */
-	private void prepareForSpilReadl() {
+	private void prepareForSpillRead() {
         try {
-			inStream = new DataInputStream(new FileInputStream(spillFilePath));
-		} catch (FileNotFoundException fnf) {
-			throw new RuntimeException("Error opening spill file for read" + fnf);
+			inStream = new DataInputStream(new BufferedInputStream(new FileInputStream(spillFilePath)));
+		} catch (IOException ioe) {
+			throw new RuntimeException("Error opening spill file for read" + ioe);
 		}
 	}
 
+	/**
+	 * 
+	 */
+	private void closeInStream() {
+		try {
+			if (null != inStream) {
+				inStream.close();
+				inStream = null;
+			}
+		} catch (IOException ioe) {
+			throw new RuntimeException("Failed to close spill file after read" +ioe);
+		}			
+	}
+	
+	/**
+	 * 
+	 */
+	private void deleteSpillFile() {
+		if (null != spillFilePath) {
+			File file = new File(spillFilePath);
+    		if(!file.delete()){
+				throw new RuntimeException("Failed to delete spill file");
+    		}
+    		spillFilePath = null;
+		}
+	}
 }
@@ -0,0 +1,139 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Writable;
+
+/**
+ * Bloom filter for string keys. Sized from expected count and false positive probability. Uses
+ * double hashing on a 64 bit hash of the UTF-8 bytes of the key
+ * @author pranab
+ *
+ */
+public class BloomFilter implements Writable {
+	private long[] bits;
+	private int numBits;
+	private int numHashes;
+	private static final double LN2 = Math.log(2);
+
+	/**
+	 *
+	 */
+	public BloomFilter() {
+	}
+
+	/**
+	 * @param expectedCount
+	 * @param falsePosProb
+	 */
+	public BloomFilter(long expectedCount, double falsePosProb) {
+		if (falsePosProb <= 0 || falsePosProb >= 1) {
+			throw new IllegalArgumentException("false positive probability must be between 0 and 1");
+		}
+		expectedCount = Math.max(expectedCount, 1);
+		double optBits = Math.ceil(-expectedCount * Math.log(falsePosProb) / (LN2 * LN2));
+		numBits = (int)Math.max(Math.min(optBits, Integer.MAX_VALUE - 63), 64);
+		numHashes = (int)Math.max(Math.round((double)numBits / expectedCount * LN2), 1);
+		bits = new long[(numBits + 63) / 64];
+	}
+
+	/**
+	 * @param key
+	 */
+	public void add(String key) {
+		long hash = BasicUtils.longHash(key);
+		int hash1 = (int)hash;
+		int hash2 = (int)(hash >>> 32);
+		for (int i = 1; i <= numHashes; ++i) {
+			int index = ((hash1 + i * hash2) & Integer.MAX_VALUE) % numBits;
+			bits[index >>> 6] |= 1L << index;
+		}
+	}
+
+	/**
+	 * @param key
+	 * @return false if definitely not a member
+	 */
+	public boolean mightContain(String key) {
+		long hash = BasicUtils.longHash(key);
+		int hash1 = (int)hash;
+		int hash2 = (int)(hash >>> 32);
+		boolean found = true;
+		for (int i = 1; i <= numHashes && found; ++i) {
+			int index = ((hash1 + i * hash2) & Integer.MAX_VALUE) % numBits;
+			found = (bits[index >>> 6] & (1L << index)) != 0;
+		}
+		return found;
+	}
+
+	/**
+	 * merges other filter of same size
+	 * @param other
+	 */
+	public void union(BloomFilter other) {
+		if (numBits != other.numBits || numHashes != other.numHashes) {
+			throw new IllegalArgumentException("bloom filters have different size");
+		}
+		for (int i = 0; i < bits.length; ++i) {
+			bits[i] |= other.bits[i];
+		}
+	}
+
+	/**
+	 * @return
+	 */
+	public int getNumBits() {
+		return numBits;
+	}
+
+	/**
+	 * @return
+	 */
+	public int getNumHashes() {
+		return numHashes;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.hadoop.io.Writable#write(java.io.DataOutput)
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(numBits);
+		out.writeInt(numHashes);
+		for (long word : bits) {
+			out.writeLong(word);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.hadoop.io.Writable#readFields(java.io.DataInput)
+	 */
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		numBits = in.readInt();
+		numHashes = in.readInt();
+		bits = new long[(numBits + 63) / 64];
+		for (int i = 0; i < bits.length; ++i) {
+			bits[i] = in.readLong();
+		}
+	}
+}
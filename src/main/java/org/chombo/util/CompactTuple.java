@@ -0,0 +1,789 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+
+/**
+ * Tuple with compact binary encoding. Counts, lengths and integers are written as zig-zag
+ * varints. When the field types match one of the job level signatures, only the signature
+ * index is written instead of per field type tags. String fields share UTF-8 byte prefix with the 
+ * previous string field or refer back to a recent identical string. Serialized tuples are compared 
+ * field by field without deserializing. Opted in per job through Utility.setTupleMapOutput()
+ * @author pranab
+ *
+ */
+public class CompactTuple extends Tuple implements Configurable {
+	public static final String ENCODING_PARAM = "compact.tuple.encoding";
+	public static final String SIGNATURES_PARAM = "compact.tuple.signatures";
+	public static final String SIGNATURE_DELIM = ";";
+	private static final byte TAGGED = 0;
+	private static final int STRING_DICT_SIZE = 16;
+
+	private transient Configuration conf;
+	private byte[][] signatures;
+	private byte[] fieldTypes = new byte[8];
+	private int lastSignature = -1;
+	private List<String> strings = new ArrayList<String>();
+	private List<byte[]> stringBytes = new ArrayList<byte[]>();
+
+	/**
+	 *
+	 */
+	public CompactTuple() {
+		super();
+	}
+
+	/**
+	 * @param signatures
+	 */
+	public CompactTuple(byte[][] signatures) {
+		super();
+		this.signatures = signatures;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.hadoop.conf.Configurable#setConf(org.apache.hadoop.conf.Configuration)
+	 */
+	@Override
+	public void setConf(Configuration conf) {
+		this.conf = conf;
+		if (null != conf) {
+			signatures = parseSignatures(conf.get(SIGNATURES_PARAM));
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.hadoop.conf.Configurable#getConf()
+	 */
+	@Override
+	public Configuration getConf() {
+		return conf;
+	}
+
+	/**
+	 * parses signatures e.g. string,int;double,double,int
+	 * @param signaturesSt
+	 * @return
+	 */
+	public static byte[][] parseSignatures(String signaturesSt) {
+		byte[][] signatures = null;
+		if (null != signaturesSt) {
+			String[] items = signaturesSt.split(SIGNATURE_DELIM);
+			if (items.length > 127) {
+				throw new IllegalArgumentException("too many tuple signatures");
+			}
+			signatures = new byte[items.length][];
+			for (int i = 0; i < items.length; ++i) {
+				String[] typeNames = items[i].trim().split(",");
+				signatures[i] = new byte[typeNames.length];
+				for (int j = 0; j < typeNames.length; ++j) {
+					signatures[i][j] = getType(typeNames[j].trim());
+				}
+			}
+		}
+		return signatures;
+	}
+
+	/**
+	 * @param typeName
+	 * @return
+	 */
+	private static byte getType(String typeName) {
+		byte type = 0;
+		if (typeName.equals("byte")) {
+			type = BYTE;
+		} else if (typeName.equals("boolean")) {
+			type = BOOLEAN;
+		} else if (typeName.equals("int")) {
+			type = INT;
+		} else if (typeName.equals("long")) {
+			type = LONG;
+		} else if (typeName.equals("float")) {
+			type = FLOAT;
+		} else if (typeName.equals("double")) {
+			type = DOUBLE;
+		} else if (typeName.equals("string")) {
+			type = STRING;
+		} else {
+			throw new IllegalArgumentException("invalid tuple signature field type " + typeName);
+		}
+		return type;
+	}
+
+	/**
+	 * @param field
+	 * @return
+	 */
+	private static byte getType(Object field) {
+		byte type = 0;
+		if (field instanceof String){
+			type = STRING;
+		} else if (field instanceof Integer){
+			type = INT;
+		} else if (field instanceof Double){
+			type = DOUBLE;
+		} else if (field instanceof Long){
+			type = LONG;
+		} else if (field instanceof Float){
+			type = FLOAT;
+		} else if (field instanceof Boolean){
+			type = BOOLEAN;
+		} else if (field instanceof Byte){
+			type = BYTE;
+		} else if (field instanceof byte[]){
+			type = BYTE_ARRAY;
+		} else if (field instanceof Tuple){
+			type = TUPLE;
+		} else {
+			throw new IllegalArgumentException("Failed encoding, unknown element type in tuple");
+		}
+		return type;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.chombo.util.Tuple#createClone()
+	 */
+	@Override
+	public Tuple createClone() {
+		CompactTuple clone = new CompactTuple(signatures);
+		return createClone(clone);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.chombo.util.Tuple#write(java.io.DataOutput)
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException {
+		int numFields = getSize();
+		if (fieldTypes.length < numFields) {
+			fieldTypes = new byte[2 * numFields];
+		}
+		for (int i = 0; i < numFields; ++i) {
+			fieldTypes[i] = getType(get(i));
+		}
+
+		int signature = findSignature(numFields);
+		out.writeByte(signature + 1);
+		if (signature < 0) {
+			writeVarInt(out, numFields);
+		}
+
+		strings.clear();
+		stringBytes.clear();
+		for (int i = 0; i < numFields; ++i) {
+			byte type = fieldTypes[i];
+			if (signature < 0) {
+				out.writeByte(type);
+			}
+			writeField(out, type, get(i));
+		}
+	}
+
+	/**
+	 * index of signature matching field types, -1 if none
+	 * @param numFields
+	 * @return
+	 */
+	private int findSignature(int numFields) {
+		int found = -1;
+		if (null != signatures) {
+			if (lastSignature >= 0 && matchSignature(signatures[lastSignature], numFields)) {
+				found = lastSignature;
+			} else {
+				for (int i = 0; i < signatures.length && found < 0; ++i) {
+					if (matchSignature(signatures[i], numFields)) {
+						found = i;
+					}
+				}
+				if (found >= 0) {
+					lastSignature = found;
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * @param signature
+	 * @param numFields
+	 * @return
+	 */
+	private boolean matchSignature(byte[] signature, int numFields) {
+		boolean matched = signature.length == numFields;
+		for (int i = 0; i < numFields && matched; ++i) {
+			matched = signature[i] == fieldTypes[i];
+		}
+		return matched;
+	}
+
+	/**
+	 * @param out
+	 * @param type
+	 * @param field
+	 * @throws IOException
+	 */
+	private void writeField(DataOutput out, byte type, Object field) throws IOException {
+		if (type ==  BYTE ) {
+			out.writeByte((Byte)field);
+		} else if (type ==  BOOLEAN ) {
+			out.writeBoolean((Boolean)field);
+		} else if (type ==  INT ) {
+			writeVarInt(out, zigZagEncode((Integer)field));
+		}  else if (type ==  LONG ) {
+			writeVarLong(out, zigZagEncode((Long)field));
+		}  else if (type ==  FLOAT ) {
+			out.writeFloat((Float)field);
+		} else if (type ==  DOUBLE ) {
+			out.writeDouble((Double)field);
+		} else if (type ==  STRING) {
+			writeString(out, (String)field);
+		} else if (type ==  BYTE_ARRAY) {
+			byte[] bytes = (byte[])field;
+			writeVarInt(out, bytes.length);
+			out.write(bytes);
+		} else if (type ==  TUPLE) {
+			CompactTuple child = null;
+			if (field instanceof CompactTuple) {
+				child = (CompactTuple)field;
+			} else {
+				child = new CompactTuple(signatures);
+				child.add((Tuple)field);
+			}
+			child.write(out);
+		}
+	}
+
+	/**
+	 * Writes string either as back reference to a recent identical string or as UTF-8 suffix
+	 * following the byte prefix shared with the previous string
+	 * @param out
+	 * @param field
+	 * @throws IOException
+	 */
+	private void writeString(DataOutput out, String field) throws IOException {
+		int numStrings = strings.size();
+		int distance = 0;
+		for (int i = numStrings - 1; i >= 0 && i >= numStrings - STRING_DICT_SIZE && distance == 0; --i) {
+			if (strings.get(i).equals(field)) {
+				distance = numStrings - i;
+			}
+		}
+
+		byte[] bytes = null;
+		if (distance > 0) {
+			writeVarInt(out, (distance << 1) | 1);
+			bytes = stringBytes.get(numStrings - distance);
+		} else {
+			bytes = field.getBytes(StandardCharsets.UTF_8);
+			int prefixLen = 0;
+			if (numStrings > 0) {
+				byte[] prev = stringBytes.get(numStrings - 1);
+				int maxLen = Math.min(prev.length, bytes.length);
+				while (prefixLen < maxLen && prev[prefixLen] == bytes[prefixLen]) {
+					++prefixLen;
+				}
+			}
+			writeVarInt(out, prefixLen << 1);
+			writeVarInt(out, bytes.length - prefixLen);
+			out.write(bytes, prefixLen, bytes.length - prefixLen);
+		}
+		strings.add(field);
+		stringBytes.add(bytes);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.chombo.util.Tuple#readFields(java.io.DataInput)
+	 */
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		initialize();
+		strings.clear();
+		stringBytes.clear();
+		int signature = in.readByte() - 1;
+		if (signature < 0) {
+			int numFields = readVarInt(in);
+			for (int i = 0; i < numFields; ++i) {
+				append(readField(in, in.readByte()));
+			}
+		} else {
+			if (null == signatures || signature >= signatures.length) {
+				throw new IllegalArgumentException("Failed decoding, unknown tuple signature " + signature);
+			}
+			for (byte type : signatures[signature]) {
+				append(readField(in, type));
+			}
+		}
+	}
+
+	/**
+	 * @param in
+	 * @param type
+	 * @return
+	 * @throws IOException
+	 */
+	private Object readField(DataInput in, byte type) throws IOException {
+		Object field = null;
+		if (type ==  BYTE ) {
+			field = in.readByte();
+		} else if (type ==  BOOLEAN ) {
+			field = in.readBoolean();
+		} else if (type ==  INT ) {
+			field = zigZagDecode(readVarInt(in));
+		}  else if (type ==  LONG ) {
+			field = zigZagDecode(readVarLong(in));
+		}  else if (type ==  FLOAT ) {
+			field = in.readFloat();
+		} else if (type ==  DOUBLE ) {
+			field = in.readDouble();
+		} else if (type ==  STRING) {
+			field = readString(in);
+		} else if (type ==  BYTE_ARRAY) {
+			byte[] bytes = new byte[readVarInt(in)];
+			in.readFully(bytes);
+			field = bytes;
+		} else if (type ==  TUPLE) {
+			CompactTuple child = new CompactTuple(signatures);
+			child.readFields(in);
+			field = child;
+		} else {
+			throw new IllegalArgumentException("Failed decoding, unknown element type in stream");
+		}
+		return field;
+	}
+
+	/**
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	private String readString(DataInput in) throws IOException {
+		String field = null;
+		byte[] bytes = null;
+		int code = readVarInt(in);
+		if ((code & 1) == 1) {
+			//back reference
+			int index = strings.size() - (code >>> 1);
+			field = strings.get(index);
+			bytes = stringBytes.get(index);
+		} else {
+			//prefix shared with previous and suffix
+			int prefixLen = code >>> 1;
+			bytes = new byte[prefixLen + readVarInt(in)];
+			if (prefixLen > 0) {
+				System.arraycopy(stringBytes.get(stringBytes.size() - 1), 0, bytes, 0, prefixLen);
+			}
+			in.readFully(bytes, prefixLen, bytes.length - prefixLen);
+			field = new String(bytes, StandardCharsets.UTF_8);
+		}
+		strings.add(field);
+		stringBytes.add(bytes);
+		return field;
+	}
+
+	/**
+	 * @param value
+	 * @return
+	 */
+	private static int zigZagEncode(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	/**
+	 * @param value
+	 * @return
+	 */
+	private static int zigZagDecode(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * @param value
+	 * @return
+	 */
+	private static long zigZagEncode(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	/**
+	 * @param value
+	 * @return
+	 */
+	private static long zigZagDecode(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * unsigned LEB128 varint
+	 * @param out
+	 * @param value
+	 * @throws IOException
+	 */
+	private static void writeVarInt(DataOutput out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	/**
+	 * @param out
+	 * @param value
+	 * @throws IOException
+	 */
+	private static void writeVarLong(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int)value);
+	}
+
+	/**
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	private static int readVarInt(DataInput in) throws IOException {
+		int value = 0;
+		int shift = 0;
+		byte b = 0;
+		do {
+			b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+	/**
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	private static long readVarLong(DataInput in) throws IOException {
+		long value = 0;
+		int shift = 0;
+		byte b = 0;
+		do {
+			b = in.readByte();
+			value |= (long)(b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+	/**
+	 * Sort comparator for compact tuples. Compares serialized fields in place, consistent with 
+	 * compareTo(). Needs the job level signatures
+	 * @author pranab
+	 *
+	 */
+	public static class Comparator extends WritableComparator implements Configurable {
+		private Configuration conf;
+		private byte[][] signatures;
+		private EncodedReader reader1 = new EncodedReader();
+		private EncodedReader reader2 = new EncodedReader();
+
+		public Comparator() {
+			super(CompactTuple.class);
+		}
+
+		@Override
+		public void setConf(Configuration conf) {
+			this.conf = conf;
+			if (null != conf) {
+				signatures = parseSignatures(conf.get(SIGNATURES_PARAM));
+			}
+		}
+
+		@Override
+		public Configuration getConf() {
+			return conf;
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			return compareSerialized(b1, s1, b2, s2, false);
+		}
+
+		/**
+		 * compares serialized tuples, optionally based on all but the last element
+		 * @param b1
+		 * @param s1
+		 * @param b2
+		 * @param s2
+		 * @param base
+		 * @return
+		 */
+		protected int compareSerialized(byte[] b1, int s1, byte[] b2, int s2, boolean base) {
+			reader1.reset(b1, s1);
+			reader2.reset(b2, s2);
+			byte[] signature1 = getSignature(reader1.readByte() - 1);
+			byte[] signature2 = getSignature(reader2.readByte() - 1);
+			int numFields1 = null != signature1 ? signature1.length : reader1.readVarInt();
+			int numFields2 = null != signature2 ? signature2.length : reader2.readVarInt();
+			if (numFields1 != numFields2) {
+				throw new IllegalArgumentException("Can not compare tuples of unequal length this:"  + 
+					numFields1 + " that:" +  numFields2);
+			}
+			
+			int numCompared = base ? numFields1 - 1 : numFields1;
+			int compared = 0;
+			for (int i = 0; i < numCompared && compared == 0; ++i) {
+				byte type1 = null != signature1 ? signature1[i] : reader1.readByte();
+				byte type2 = null != signature2 ? signature2[i] : reader2.readByte();
+				if (type1 != type2) {
+					throw new IllegalArgumentException("Failed in compare, element types differ");
+				}
+				compared = compareField(type1);
+			}
+			return compared;
+		}
+
+		/**
+		 * @param signature
+		 * @return signature field types or null if tagged
+		 */
+		private byte[] getSignature(int signature) {
+			byte[] types = null;
+			if (signature >= 0) {
+				if (null == signatures || signature >= signatures.length) {
+					throw new IllegalArgumentException("Failed decoding, unknown tuple signature " + signature);
+				}
+				types = signatures[signature];
+			}
+			return types;
+		}
+
+		/**
+		 * @param type
+		 * @return
+		 */
+		private int compareField(byte type) {
+			int compared = 0;
+			if (type ==  BYTE || type == BOOLEAN) {
+				compared = reader1.readByte() - reader2.readByte();
+			} else if (type ==  INT ) {
+				compared = Integer.compare(zigZagDecode(reader1.readVarInt()), zigZagDecode(reader2.readVarInt()));
+			}  else if (type ==  LONG ) {
+				compared = Long.compare(zigZagDecode(reader1.readVarLong()), zigZagDecode(reader2.readVarLong()));
+			}  else if (type ==  FLOAT ) {
+				compared = Float.compare(Float.intBitsToFloat(reader1.readInt()), 
+					Float.intBitsToFloat(reader2.readInt()));
+			} else if (type ==  DOUBLE ) {
+				compared = Double.compare(Double.longBitsToDouble(reader1.readLong()), 
+					Double.longBitsToDouble(reader2.readLong()));
+			} else if (type ==  STRING) {
+				int slot1 = reader1.readString();
+				int slot2 = reader2.readString();
+				compared = compareUtf8(reader1.strings[slot1], reader1.stringLengths[slot1], 
+					reader2.strings[slot2], reader2.stringLengths[slot2]);
+			} else {
+				throw new IllegalArgumentException("Failed in compare, unknown element type in tuple  ");
+			}
+			return compared;
+		}
+	}
+
+	/**
+	 * Compares UTF-8 bytes in UTF-16 code unit order, same as String.compareTo(). Byte order is
+	 * code point order, except that characters from U+E000 to U+FFFF sort after supplementary 
+	 * characters, which are surrogate pairs in UTF-16
+	 * @param b1
+	 * @param l1
+	 * @param b2
+	 * @param l2
+	 * @return
+	 */
+	private static int compareUtf8(byte[] b1, int l1, byte[] b2, int l2) {
+		int len = Math.min(l1, l2);
+		int i = 0;
+		while (i < len && b1[i] == b2[i]) {
+			++i;
+		}
+		
+		int compared = 0;
+		if (i == len) {
+			compared = l1 - l2;
+		} else {
+			int c1 = b1[i] & 0xFF;
+			int c2 = b2[i] & 0xFF;
+			if ((c1 & 0xC0) != 0x80) {
+				//differing characters start here, lead bytes 0xEE and 0xEF moved above 0xF0 to 0xF4
+				c1 = c1 == 0xEE || c1 == 0xEF ? c1 + 0x10 : c1;
+				c2 = c2 == 0xEE || c2 == 0xEF ? c2 + 0x10 : c2;
+			}
+			compared = c1 - c2;
+		}
+		return compared;
+	}
+
+	/**
+	 * Reads serialized compact tuple fields in place. Recent strings are kept as UTF-8 bytes in
+	 * a ring, enough for resolving back references and shared prefixes
+	 * @author pranab
+	 *
+	 */
+	private static class EncodedReader {
+		private byte[] bytes;
+		private int pos;
+		private byte[][] strings = new byte[STRING_DICT_SIZE][];
+		private int[] stringLengths = new int[STRING_DICT_SIZE];
+		private int numStrings;
+
+		/**
+		 * @param bytes
+		 * @param start
+		 */
+		public void reset(byte[] bytes, int start) {
+			this.bytes = bytes;
+			pos = start;
+			numStrings = 0;
+		}
+
+		/**
+		 * @return
+		 */
+		public byte readByte() {
+			return bytes[pos++];
+		}
+
+		/**
+		 * @return
+		 */
+		public int readInt() {
+			int value = WritableComparator.readInt(bytes, pos);
+			pos += 4;
+			return value;
+		}
+
+		/**
+		 * @return
+		 */
+		public long readLong() {
+			long value = WritableComparator.readLong(bytes, pos);
+			pos += 8;
+			return value;
+		}
+
+		/**
+		 * @return
+		 */
+		public int readVarInt() {
+			int value = 0;
+			int shift = 0;
+			byte b = 0;
+			do {
+				b = bytes[pos++];
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return value;
+		}
+
+		/**
+		 * @return
+		 */
+		public long readVarLong() {
+			long value = 0;
+			int shift = 0;
+			byte b = 0;
+			do {
+				b = bytes[pos++];
+				value |= (long)(b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return value;
+		}
+
+		/**
+		 * @return ring slot of the string read
+		 */
+		public int readString() {
+			int slot = numStrings % STRING_DICT_SIZE;
+			int code = readVarInt();
+			if ((code & 1) == 1) {
+				//back reference
+				int refSlot = (numStrings - (code >>> 1)) % STRING_DICT_SIZE;
+				if (refSlot != slot) {
+					setString(slot, strings[refSlot], 0, stringLengths[refSlot], 0);
+				}
+			} else {
+				//prefix shared with previous and suffix
+				int prefixLen = code >>> 1;
+				int suffixLen = readVarInt();
+				int prevSlot = (numStrings + STRING_DICT_SIZE - 1) % STRING_DICT_SIZE;
+				if (prefixLen > 0) {
+					setString(slot, strings[prevSlot], 0, prefixLen, suffixLen);
+				} else {
+					setString(slot, bytes, pos, 0, suffixLen);
+				}
+				System.arraycopy(bytes, pos, strings[slot], prefixLen, suffixLen);
+				stringLengths[slot] = prefixLen + suffixLen;
+				pos += suffixLen;
+			}
+			++numStrings;
+			return slot;
+		}
+
+		/**
+		 * copies source bytes into slot with room for more
+		 * @param slot
+		 * @param source
+		 * @param start
+		 * @param length
+		 * @param extra
+		 */
+		private void setString(int slot, byte[] source, int start, int length, int extra) {
+			if (null == strings[slot] || strings[slot].length < length + extra) {
+				strings[slot] = new byte[2 * (length + extra) + 16];
+			}
+			System.arraycopy(source, start, strings[slot], 0, length);
+			stringLengths[slot] = length;
+		}
+	}
+
+	/**
+	 * Grouping comparator for compact tuples based on all but the last element
+	 * @author pranab
+	 *
+	 */
+	public static class BaseComparator extends Comparator {
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			return compareSerialized(b1, s1, b2, s2, true);
+		}
+
+		@Override
+		public int compare(WritableComparable w1, WritableComparable w2) {
+			return ((Tuple)w1).compareToBase((Tuple)w2);
+		}
+	}
+}
@@ -0,0 +1,605 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.util;
+
+import java.io.Serializable;
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Date parser and formatter compiled once from a format string. Thread safe and shared through
+ * create(). Formats made of numeric fields (yyyy MM dd HH mm ss SSS) and literal separators are
+ * parsed and formatted with hand written digit code, with same lenient semantics as SimpleDateFormat.
+ * Values the digit code can not decide on, other formats and dates near a time zone transition are
+ * handled by a thread local SimpleDateFormat, with recent conversions memoized. Epoch time in ms
+ * and sec are also supported.
+ * @author pranab
+ *
+ */
+public class DateCodec implements Serializable {
+	private String format;
+	private TimeZone timeZone;
+	private boolean epochTime;
+	private boolean epochTimeSec;
+	private int[] elemTypes;
+	private int[] elemCounts;
+	private transient ThreadLocal<SimpleDateFormat> dateFormats;
+	private transient volatile OffsetWindow offsetWindow;
+	private transient ParseEntry[] parseCache;
+	private transient FormatEntry[] formatCache;
+	private static Map<String, DateCodec> codecs = new HashMap<String, DateCodec>();
+
+	private static final int LITERAL = 0;
+	private static final int YEAR = 1;
+	private static final int MONTH = 2;
+	private static final int DAY = 3;
+	private static final int HOUR = 4;
+	private static final int MINUTE = 5;
+	private static final int SECOND = 6;
+	private static final int MILLI_SECOND = 7;
+	private static final long INVALID = Long.MIN_VALUE;
+	private static final long DELEGATE = Long.MIN_VALUE + 1;
+	//gregorian only and no local mean time offsets, which differ between time zone implementations
+	private static final int MIN_FAST_YEAR = 1901;
+	private static final int MAX_FAST_YEAR = 9998;
+	private static final int MAX_FIELD_DIGITS = 9;
+	private static final int CACHE_SIZE = 1024;
+
+	/**
+	 * @param format
+	 * @return shared codec
+	 */
+	public static DateCodec create(String format) {
+		return create(format, null);
+	}
+
+	/**
+	 * @param format date format, epochTime or epochTimeSec
+	 * @param timeZone default time zone if blank
+	 * @return shared codec
+	 */
+	public static synchronized DateCodec create(String format, String timeZone) {
+		String key = format + "|" + (BasicUtils.isBlank(timeZone) ? "" : timeZone);
+		DateCodec codec = codecs.get(key);
+		if (null == codec) {
+			codec = new DateCodec(format, timeZone);
+			codecs.put(key, codec);
+		}
+		return codec;
+	}
+
+	/**
+	 * @param format
+	 * @param timeZone
+	 */
+	public DateCodec(String format, String timeZone) {
+		this.format = format;
+		if (format.equals(BasicUtils.EPOCH_TIME)) {
+			epochTime = true;
+		} else if (format.equals(BasicUtils.EPOCH_TIME_SEC)) {
+			epochTime = true;
+			epochTimeSec = true;
+		} else {
+			this.timeZone = BasicUtils.isBlank(timeZone) ? TimeZone.getDefault() : TimeZone.getTimeZone(timeZone);
+
+			//validates format
+			new SimpleDateFormat(format);
+			compileNumericLayout();
+		}
+	}
+
+	/**
+	 * Numeric fields and single char literals only, otherwise SimpleDateFormat is used
+	 */
+	private void compileNumericLayout() {
+		int len = format.length();
+		int[] types = new int[len];
+		int[] counts = new int[len];
+		int numElems = 0;
+		boolean numeric = true;
+		for (int i = 0; numeric && i < len; ) {
+			char ch = format.charAt(i);
+			int count = 1;
+			while (i + count < len && format.charAt(i + count) == ch) {
+				++count;
+			}
+			if (ch >= 'a' && ch <= 'z' || ch >= 'A' && ch <= 'Z') {
+				int type = getFieldType(ch, count);
+				numeric = type != LITERAL;
+				types[numElems] = type;
+				counts[numElems++] = count;
+				i += count;
+			} else if (ch == '\'') {
+				//only quoted single char
+				numeric = i + 2 < len && format.charAt(i + 1) != '\'' && format.charAt(i + 2) == '\'';
+				if (numeric) {
+					types[numElems] = LITERAL;
+					counts[numElems++] = format.charAt(i + 1);
+				}
+				i += 3;
+			} else {
+				types[numElems] = LITERAL;
+				counts[numElems++] = ch;
+				++i;
+			}
+		}
+		if (numeric) {
+			elemTypes = java.util.Arrays.copyOf(types, numElems);
+			elemCounts = java.util.Arrays.copyOf(counts, numElems);
+		}
+	}
+
+	/**
+	 * @param ch
+	 * @param count
+	 * @return field type, LITERAL if not a plain numeric field
+	 */
+	private int getFieldType(char ch, int count) {
+		int type = LITERAL;
+		if (ch == 'y' && count >= 3) {
+			//2 digit year has century adjustment
+			type = YEAR;
+		} else if (ch == 'M' && count <= 2) {
+			type = MONTH;
+		} else if (ch == 'd' && count <= 2) {
+			type = DAY;
+		} else if (ch == 'H' && count <= 2) {
+			type = HOUR;
+		} else if (ch == 'm' && count <= 2) {
+			type = MINUTE;
+		} else if (ch == 's' && count <= 2) {
+			type = SECOND;
+		} else if (ch == 'S' && count <= 3) {
+			type = MILLI_SECOND;
+		}
+		return type;
+	}
+
+	/**
+	 * @return
+	 */
+	public String getFormat() {
+		return format;
+	}
+
+	/**
+	 * @return
+	 */
+	public boolean isEpochTime() {
+		return epochTime;
+	}
+
+	/**
+	 * @return true if parsed and formatted with digit code
+	 */
+	public boolean isNumericLayout() {
+		return null != elemTypes;
+	}
+
+	/**
+	 * @param value
+	 * @return epoch time in ms
+	 * @throws ParseException
+	 */
+	public long parse(String value) throws ParseException {
+		long time = parseTime(value);
+		if (time == INVALID) {
+			throw new ParseException("Unparseable date: \"" + value + "\"", 0);
+		}
+		return time;
+	}
+
+	/**
+	 * @param value
+	 * @return
+	 * @throws ParseException
+	 */
+	public Date parseDate(String value) throws ParseException {
+		return new Date(parse(value));
+	}
+
+	/**
+	 * @param value
+	 * @return true if parsable, without exception on failure
+	 */
+	public boolean isValid(String value) {
+		return parseTime(value) != INVALID;
+	}
+
+	/**
+	 * @param time epoch time in ms
+	 * @return
+	 */
+	public String format(long time) {
+		String formatted = null;
+		if (epochTime) {
+			formatted = "" + (epochTimeSec ? time / 1000 : time);
+		} else {
+			formatted = null != elemTypes ? formatNumeric(time) : null;
+			if (null == formatted) {
+				formatted = formatWithDateFormat(time);
+			}
+		}
+		return formatted;
+	}
+
+	/**
+	 * @param date
+	 * @return
+	 */
+	public String format(Date date) {
+		return format(date.getTime());
+	}
+
+	/**
+	 * @param value
+	 * @return epoch time or INVALID
+	 */
+	private long parseTime(String value) {
+		long time = INVALID;
+		if (epochTime) {
+			time = parseEpochTime(value);
+		} else {
+			time = null != elemTypes ? parseNumeric(value) : DELEGATE;
+			if (time == DELEGATE) {
+				time = parseWithDateFormat(value);
+			}
+		}
+		return time;
+	}
+
+	/**
+	 * @param value
+	 * @return
+	 */
+	private long parseEpochTime(String value) {
+		long time = INVALID;
+		int len = value.length();
+		boolean valid = len > 0 && len <= 19;
+		for (int i = 0; valid && i < len; ++i) {
+			char ch = value.charAt(i);
+			valid = ch >= '0' && ch <= '9' || (i == 0 && ch == '-' && len > 1);
+		}
+		if (valid) {
+			try {
+				time = Long.parseLong(value);
+				if (epochTimeSec) {
+					time *= 1000;
+				}
+			} catch (NumberFormatException ex) {
+				time = INVALID;
+			}
+		}
+		return time;
+	}
+
+	/**
+	 * Parses numeric layout. Any input where SimpleDateFormat could behave differently e.g. leading
+	 * white space, signs, non ASCII digits, abutting fields with short digits is delegated.
+	 * @param value
+	 * @return epoch time, INVALID or DELEGATE
+	 */
+	private long parseNumeric(String value) {
+		long result = 0;
+		int[] fields = {1970, 1, 1, 0, 0, 0, 0};
+		int len = value.length();
+		int pos = 0;
+		for (int e = 0; result == 0 && e < elemTypes.length; ++e) {
+			if (pos >= len) {
+				result = INVALID;
+			} else if (elemTypes[e] == LITERAL) {
+				char ch = value.charAt(pos++);
+				if (ch != elemCounts[e]) {
+					result = Character.isWhitespace(ch) || ch >= 128 ? DELEGATE : INVALID;
+				}
+			} else {
+				//abutting numeric fields are parsed with field width
+				boolean obeyCount = e + 1 < elemTypes.length && elemTypes[e + 1] != LITERAL;
+				int limit = obeyCount ? Math.min(len, pos + elemCounts[e]) : len;
+				int start = pos;
+				int fieldValue = 0;
+				char ch = 0;
+				while (pos < limit && pos - start < MAX_FIELD_DIGITS && (ch = value.charAt(pos)) >= '0' && ch <= '9') {
+					fieldValue = fieldValue * 10 + (ch - '0');
+					++pos;
+				}
+				if (pos == start) {
+					result = ch == ' ' || ch == '\t' || ch == '-' || ch == '+' || ch >= 128 ? DELEGATE : INVALID;
+				} else if (obeyCount ? pos - start < elemCounts[e] : (pos < len && (pos - start == MAX_FIELD_DIGITS ||
+					value.charAt(pos) >= 128))) {
+					result = DELEGATE;
+				} else {
+					fields[elemTypes[e] - 1] = fieldValue;
+				}
+			}
+		}
+
+		if (result == 0) {
+			//lenient fields roll over as in calendar
+			int month = fields[MONTH - 1] - 1;
+			long year = fields[YEAR - 1] + Math.floorDiv(month, 12);
+			month = Math.floorMod(month, 12);
+			if (fields[YEAR - 1] < MIN_FAST_YEAR || fields[YEAR - 1] > MAX_FAST_YEAR || year > MAX_FAST_YEAR) {
+				result = DELEGATE;
+			} else {
+				long localTime = (daysFromCivil(year, month + 1, 1) + fields[DAY - 1] - 1) * BasicUtils.MILISEC_PER_DAY +
+					fields[HOUR - 1] * BasicUtils.MILISEC_PER_HOUR + fields[MINUTE - 1] * BasicUtils.MILISEC_PER_MIN +
+					fields[SECOND - 1] * BasicUtils.MILISEC_PER_SEC + fields[MILLI_SECOND - 1];
+				result = toEpochTime(localTime);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param localTime
+	 * @return epoch time or DELEGATE if local time is close to a time zone transition
+	 */
+	private long toEpochTime(long localTime) {
+		long time = DELEGATE;
+		OffsetWindow window = offsetWindow;
+		if (null == window || !window.isSafe(localTime - window.offset)) {
+			window = createOffsetWindow(localTime - timeZone.getRawOffset());
+		}
+		if (null != window && window.isSafe(localTime - window.offset)) {
+			time = localTime - window.offset;
+		}
+		return time;
+	}
+
+	/**
+	 * @param time
+	 * @return
+	 */
+	private String formatNumeric(long time) {
+		String formatted = null;
+		OffsetWindow window = offsetWindow;
+		if (null == window || !window.contains(time)) {
+			window = createOffsetWindow(time);
+		}
+		if (null != window && window.contains(time)) {
+			long localTime = time + window.offset;
+			long days = Math.floorDiv(localTime, BasicUtils.MILISEC_PER_DAY);
+			int dayTime = (int)Math.floorMod(localTime, BasicUtils.MILISEC_PER_DAY);
+			int[] civil = civilFromDays(days);
+			if (civil[0] >= MIN_FAST_YEAR && civil[0] <= MAX_FAST_YEAR) {
+				int[] fields = {civil[0], civil[1], civil[2], dayTime / (int)BasicUtils.MILISEC_PER_HOUR,
+					(dayTime / (int)BasicUtils.MILISEC_PER_MIN) % 60, (dayTime / (int)BasicUtils.MILISEC_PER_SEC) % 60,
+					dayTime % 1000};
+				StringBuilder stBld = new StringBuilder(elemTypes.length + 8);
+				for (int e = 0; e < elemTypes.length; ++e) {
+					if (elemTypes[e] == LITERAL) {
+						stBld.append((char)elemCounts[e]);
+					} else {
+						appendPadded(stBld, fields[elemTypes[e] - 1], elemCounts[e]);
+					}
+				}
+				formatted = stBld.toString();
+			}
+		}
+		return formatted;
+	}
+
+	/**
+	 * @param stBld
+	 * @param value
+	 * @param width
+	 */
+	private static void appendPadded(StringBuilder stBld, int value, int width) {
+		for (int limit = 10, i = 1; i < width; ++i, limit *= 10) {
+			if (value < limit) {
+				stBld.append('0');
+			}
+		}
+		stBld.append(value);
+	}
+
+	/**
+	 * @param time
+	 * @return window around time with constant zone offset, null if offsets disagree
+	 */
+	private OffsetWindow createOffsetWindow(long time) {
+		ZoneRules rules = timeZone.toZoneId().getRules();
+		Instant instant = Instant.ofEpochMilli(time);
+		int offset = rules.getOffset(instant).getTotalSeconds() * 1000;
+		OffsetWindow window = null;
+		if (offset == timeZone.getOffset(time)) {
+			//transition at time included
+			ZoneOffsetTransition prev = rules.previousTransition(instant.plusMillis(1));
+			ZoneOffsetTransition next = rules.nextTransition(instant);
+			long start = null == prev ? Long.MIN_VALUE : prev.toEpochSecond() * 1000;
+			long end = null == next ? Long.MAX_VALUE : next.toEpochSecond() * 1000;
+			window = new OffsetWindow(start, end, offset);
+			offsetWindow = window;
+		}
+		return window;
+	}
+
+	/**
+	 * @param year
+	 * @param month 1 based
+	 * @param day
+	 * @return days since epoch in proleptic gregorian calendar
+	 */
+	private static long daysFromCivil(long year, int month, int day) {
+		year -= month <= 2 ? 1 : 0;
+		long era = Math.floorDiv(year, 400);
+		long yearOfEra = year - era * 400;
+		long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	/**
+	 * @param days since epoch
+	 * @return year, month 1 based and day
+	 */
+	private static int[] civilFromDays(long days) {
+		days += 719468;
+		long era = Math.floorDiv(days, 146097);
+		long dayOfEra = days - era * 146097;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		long mp = (5 * dayOfYear + 2) / 153;
+		int day = (int)(dayOfYear - (153 * mp + 2) / 5 + 1);
+		int month = (int)(mp < 10 ? mp + 3 : mp - 9);
+		int year = (int)(yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+		return new int[] {year, month, day};
+	}
+
+	/**
+	 * @param value
+	 * @return
+	 */
+	private long parseWithDateFormat(String value) {
+		ParseEntry[] cache = getParseCache();
+		int slot = value.hashCode() & (CACHE_SIZE - 1);
+		ParseEntry entry = cache[slot];
+		long time = INVALID;
+		if (null != entry && entry.value.equals(value)) {
+			time = entry.time;
+		} else {
+			Date date = getDateFormat().parse(value, new ParsePosition(0));
+			if (null != date) {
+				time = date.getTime();
+				cache[slot] = new ParseEntry(value, time);
+			}
+		}
+		return time;
+	}
+
+	/**
+	 * @param time
+	 * @return
+	 */
+	private String formatWithDateFormat(long time) {
+		FormatEntry[] cache = getFormatCache();
+		int slot = (int)(time ^ (time >>> 32)) & (CACHE_SIZE - 1);
+		FormatEntry entry = cache[slot];
+		String formatted = null;
+		if (null != entry && entry.time == time) {
+			formatted = entry.value;
+		} else {
+			formatted = getDateFormat().format(new Date(time));
+			cache[slot] = new FormatEntry(time, formatted);
+		}
+		return formatted;
+	}
+
+	/**
+	 * @return
+	 */
+	private SimpleDateFormat getDateFormat() {
+		if (null == dateFormats) {
+			dateFormats = new ThreadLocal<SimpleDateFormat>() {
+				@Override
+				protected SimpleDateFormat initialValue() {
+					SimpleDateFormat dateFormat = new SimpleDateFormat(format);
+					dateFormat.setTimeZone(timeZone);
+					return dateFormat;
+				}
+			};
+		}
+		return dateFormats.get();
+	}
+
+	/**
+	 * @return
+	 */
+	private ParseEntry[] getParseCache() {
+		if (null == parseCache) {
+			parseCache = new ParseEntry[CACHE_SIZE];
+		}
+		return parseCache;
+	}
+
+	/**
+	 * @return
+	 */
+	private FormatEntry[] getFormatCache() {
+		if (null == formatCache) {
+			formatCache = new FormatEntry[CACHE_SIZE];
+		}
+		return formatCache;
+	}
+
+	/**
+	 * Interval with constant time zone offset
+	 * @author pranab
+	 *
+	 */
+	private static class OffsetWindow {
+		private final long start;
+		private final long end;
+		private final int offset;
+
+		public OffsetWindow(long start, long end, int offset) {
+			this.start = start;
+			this.end = end;
+			this.offset = offset;
+		}
+
+		public boolean contains(long time) {
+			return time >= start && time < end;
+		}
+
+		/**
+		 * @param time
+		 * @return true if local time converted with this offset is unambiguous
+		 */
+		public boolean isSafe(long time) {
+			return time >= start + BasicUtils.MILISEC_PER_DAY && time < end - BasicUtils.MILISEC_PER_DAY;
+		}
+	}
+
+	/**
+	 * @author pranab
+	 *
+	 */
+	private static class ParseEntry {
+		private final String value;
+		private final long time;
+
+		public ParseEntry(String value, long time) {
+			this.value = value;
+			this.time = time;
+		}
+	}
+
+	/**
+	 * @author pranab
+	 *
+	 */
+	private static class FormatEntry {
+		private final long time;
+		private final String value;
+
+		public FormatEntry(long time, String value) {
+			this.time = time;
+			this.value = value;
+		}
+	}
+}
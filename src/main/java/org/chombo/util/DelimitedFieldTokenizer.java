@@ -0,0 +1,425 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.hadoop.io.Text;
+
+/**
+ * Reusable field tokenizer working directly on the UTF-8 bytes of a record. Only field boundaries
+ * are found while tokenizing. Field values are decoded or parsed only when accessed. Delimiter
+ * regex that is a literal, single or multi character, is matched on bytes. Any other regex falls
+ * back to String.split(). Optional guard e.g. quote protects embedded delimiters within a field, as
+ * in BasicUtils.splitWithEmbeddedDelim()
+ * @author pranab
+ *
+ */
+public class DelimitedFieldTokenizer {
+	private String delimRegex;
+	private byte[] delim;
+	private String guard;
+	private byte[] guardBytes;
+	private byte[] bytes;
+	private int numFields;
+	private int[] starts = new int[16];
+	private int[] ends = new int[16];
+	private boolean[] guarded = new boolean[16];
+	private String[] items = new String[16];
+	private String[] regexItems;
+	private String outDelim;
+	private byte[] outDelimBytes;
+	private List<String> keyFields = new ArrayList<String>();
+	private StringBuilder stBld = new StringBuilder();
+
+	/**
+	 * @param delimRegex
+	 */
+	public DelimitedFieldTokenizer(String delimRegex) {
+		this.delimRegex = delimRegex;
+		String literal = toLiteral(delimRegex);
+		if (null != literal && !literal.isEmpty()) {
+			delim = literal.getBytes(StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * @param guard
+	 * @return
+	 */
+	public DelimitedFieldTokenizer withGuard(String guard) {
+		if (null != guard && !guard.isEmpty()) {
+			if (null == delim) {
+				throw new IllegalArgumentException("delimiter guard requires literal delimiter");
+			}
+			this.guard = guard;
+			guardBytes = guard.getBytes(StandardCharsets.UTF_8);
+		}
+		return this;
+	}
+
+	/**
+	 * converts regex to literal string if the regex has no meta character other than escaped ones
+	 * @param regex
+	 * @return literal or null if it's a real regex
+	 */
+	public static String toLiteral(String regex) {
+		StringBuilder literal = new StringBuilder();
+		boolean isLiteral = true;
+		for (int i = 0; i < regex.length() && isLiteral; ++i) {
+			char ch = regex.charAt(i);
+			if (ch == '\\') {
+				if (i == regex.length() - 1) {
+					isLiteral = false;
+				} else {
+					char next = regex.charAt(++i);
+					if (next == 't') {
+						literal.append('\t');
+					} else if (next == 'n') {
+						literal.append('\n');
+					} else if (next == 'r') {
+						literal.append('\r');
+					} else if (Character.isLetterOrDigit(next)) {
+						//character class or back reference
+						isLiteral = false;
+					} else {
+						literal.append(next);
+					}
+				}
+			} else if (".$|()[]{}^?*+".indexOf(ch) >= 0) {
+				isLiteral = false;
+			} else {
+				literal.append(ch);
+			}
+		}
+		return isLiteral ? literal.toString() : null;
+	}
+
+	/**
+	 * @param text
+	 * @return
+	 */
+	public DelimitedFieldTokenizer tokenize(Text text) {
+		return tokenize(text.getBytes(), text.getLength());
+	}
+
+	/**
+	 * finds field boundaries
+	 * @param bytes
+	 * @param length
+	 * @return
+	 */
+	public DelimitedFieldTokenizer tokenize(byte[] bytes, int length) {
+		this.bytes = bytes;
+		if (null == delim) {
+			//regex delimiter
+			regexItems = new String(bytes, 0, length, StandardCharsets.UTF_8).split(delimRegex, -1);
+			numFields = regexItems.length;
+		} else {
+			numFields = 0;
+			int start = 0;
+			int pos = 0;
+			boolean inGuard = false;
+			boolean fieldGuarded = false;
+			byte first = delim[0];
+			while (pos < length) {
+				if (null != guardBytes && matches(guardBytes, pos, length)) {
+					inGuard = !inGuard;
+					fieldGuarded = true;
+					pos += guardBytes.length;
+				} else if (!inGuard && bytes[pos] == first && (delim.length == 1 || matches(delim, pos, length))) {
+					addField(start, pos, fieldGuarded);
+					pos += delim.length;
+					start = pos;
+					fieldGuarded = false;
+				} else {
+					++pos;
+				}
+			}
+			if (inGuard) {
+				throw new IllegalStateException("no matching guard delimeter found");
+			}
+			addField(start, length, fieldGuarded);
+		}
+		Arrays.fill(items, 0, Math.min(numFields, items.length), null);
+		return this;
+	}
+
+	/**
+	 * @param pattern
+	 * @param pos
+	 * @param length
+	 * @return
+	 */
+	private boolean matches(byte[] pattern, int pos, int length) {
+		boolean matched = pos + pattern.length <= length;
+		for (int i = 0; i < pattern.length && matched; ++i) {
+			matched = bytes[pos + i] == pattern[i];
+		}
+		return matched;
+	}
+
+	/**
+	 * @param start
+	 * @param end
+	 * @param fieldGuarded
+	 */
+	private void addField(int start, int end, boolean fieldGuarded) {
+		if (numFields == starts.length) {
+			int size = 2 * numFields;
+			starts = Arrays.copyOf(starts, size);
+			ends = Arrays.copyOf(ends, size);
+			guarded = Arrays.copyOf(guarded, size);
+			items = Arrays.copyOf(items, size);
+		}
+		starts[numFields] = start;
+		ends[numFields] = end;
+		guarded[numFields] = fieldGuarded;
+		++numFields;
+	}
+
+	/**
+	 * @return
+	 */
+	public int getNumFields() {
+		return numFields;
+	}
+
+	/**
+	 * @param ordinal
+	 */
+	private void checkOrdinal(int ordinal) {
+		if (ordinal < 0 || ordinal >= numFields) {
+			throw new ArrayIndexOutOfBoundsException("invalid field ordinal " + ordinal + " field count " + numFields);
+		}
+	}
+
+	/**
+	 * field value, decoded on first access
+	 * @param ordinal
+	 * @return
+	 */
+	public String getString(int ordinal) {
+		checkOrdinal(ordinal);
+		String item = null;
+		if (null == delim) {
+			item = regexItems[ordinal];
+		} else {
+			item = items[ordinal];
+			if (null == item) {
+				item = new String(bytes, starts[ordinal], ends[ordinal] - starts[ordinal], StandardCharsets.UTF_8);
+				if (guarded[ordinal]) {
+					item = item.replace(guard, "");
+				}
+				items[ordinal] = item;
+			}
+		}
+		return item;
+	}
+
+	/**
+	 * @param ordinal
+	 * @return
+	 */
+	public boolean isEmpty(int ordinal) {
+		checkOrdinal(ordinal);
+		return null == delim || guarded[ordinal] ? getString(ordinal).isEmpty() : starts[ordinal] == ends[ordinal];
+	}
+
+	/**
+	 * @param ordinal
+	 * @return
+	 */
+	public int getInt(int ordinal) {
+		checkOrdinal(ordinal);
+		int value = 0;
+		if (isPlainInteger(ordinal, 9)) {
+			value = (int)parseDigits(ordinal);
+		} else {
+			value = Integer.parseInt(getString(ordinal));
+		}
+		return value;
+	}
+
+	/**
+	 * @param ordinal
+	 * @return
+	 */
+	public long getLong(int ordinal) {
+		checkOrdinal(ordinal);
+		long value = 0;
+		if (isPlainInteger(ordinal, 18)) {
+			value = parseDigits(ordinal);
+		} else {
+			value = Long.parseLong(getString(ordinal));
+		}
+		return value;
+	}
+
+	/**
+	 * @param ordinal
+	 * @return
+	 */
+	public double getDouble(int ordinal) {
+		checkOrdinal(ordinal);
+		double value = 0;
+		if (isPlainInteger(ordinal, 15)) {
+			value = parseDigits(ordinal);
+		} else {
+			value = Double.parseDouble(getString(ordinal));
+		}
+		return value;
+	}
+
+	/**
+	 * true if the field is optional sign followed by limited number of digits
+	 * @param ordinal
+	 * @param maxDigits
+	 * @return
+	 */
+	private boolean isPlainInteger(int ordinal, int maxDigits) {
+		boolean plain = null != delim && !guarded[ordinal];
+		if (plain) {
+			int pos = starts[ordinal];
+			int end = ends[ordinal];
+			if (pos < end && (bytes[pos] == '-' || bytes[pos] == '+')) {
+				++pos;
+			}
+			plain = end > pos && end - pos <= maxDigits;
+			for ( ; pos < end && plain; ++pos) {
+				plain = bytes[pos] >= '0' && bytes[pos] <= '9';
+			}
+		}
+		return plain;
+	}
+
+	/**
+	 * @param ordinal
+	 * @return
+	 */
+	private long parseDigits(int ordinal) {
+		int pos = starts[ordinal];
+		int end = ends[ordinal];
+		boolean negative = bytes[pos] == '-';
+		if (negative || bytes[pos] == '+') {
+			++pos;
+		}
+		long value = 0;
+		for ( ; pos < end; ++pos) {
+			value = value * 10 + (bytes[pos] - '0');
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * all fields
+	 * @return
+	 */
+	public String[] getItems() {
+		String[] allItems = new String[numFields];
+		for (int i = 0; i < numFields; ++i) {
+			allItems[i] = getString(i);
+		}
+		return allItems;
+	}
+
+	/**
+	 * Same as BasicUtils.extractFields()
+	 * @param fields
+	 * @param delim
+	 * @param sortKeyFields
+	 * @return
+	 */
+	public String extractFields(int[] fields, String delim, boolean sortKeyFields) {
+		keyFields.clear();
+		for (int field : fields) {
+			keyFields.add(getString(field));
+		}
+		if  (sortKeyFields) {
+			Collections.sort(keyFields);
+		}
+
+		stBld.delete(0, stBld.length());
+		for (int i = 0; i < keyFields.size(); ++i) {
+			if (i > 0) {
+				stBld.append(delim);
+			}
+			stBld.append(keyFields.get(i));
+		}
+		return stBld.toString();
+	}
+
+	/**
+	 * Sets selected fields to the output text, copying bytes without decoding wherever possible
+	 * @param out
+	 * @param fields
+	 * @param delim
+	 */
+	public void setFields(Text out, int[] fields, String delim) {
+		if (null == this.delim || null != guard) {
+			out.set(extractFields(fields, delim, false));
+		} else {
+			if (!delim.equals(outDelim)) {
+				outDelim = delim;
+				outDelimBytes = delim.getBytes(StandardCharsets.UTF_8);
+			}
+			out.clear();
+			for (int i = 0; i < fields.length; ++i) {
+				int field = fields[i];
+				checkOrdinal(field);
+				if (i > 0) {
+					out.append(outDelimBytes, 0, outDelimBytes.length);
+				}
+				out.append(bytes, starts[field], ends[field] - starts[field]);
+			}
+		}
+	}
+
+	/**
+	 * Same as Utility.createStringTuple()
+	 * @param filterFieldOrdinal
+	 * @param tuple
+	 * @param toInclude
+	 */
+	public void createStringTuple(int[] filterFieldOrdinal, Tuple tuple, boolean toInclude) {
+		tuple.initialize();
+		for (int i = 0; i < numFields; ++i) {
+			if (toInclude == ArrayUtils.contains(filterFieldOrdinal, i)) {
+				tuple.add(getString(i));
+			}
+		}
+	}
+
+	/**
+	 * adds selected fields in given order
+	 * @param tuple
+	 * @param fields
+	 */
+	public void addToTuple(Tuple tuple, int[] fields) {
+		if (null != fields) {
+			for (int field : fields) {
+				tuple.append(getString(field));
+			}
+		}
+	}
+}
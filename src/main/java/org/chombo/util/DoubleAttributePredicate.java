@@ -24,6 +24,7 @@ package org.chombo.util;
  */
 public class DoubleAttributePredicate extends AttributePredicate {
 	private double value;
+	private int opCode;
 	
 	/**
 	 * @param attribute
@@ -33,6 +34,7 @@ public class DoubleAttributePredicate extends AttributePredicate {
 	public DoubleAttributePredicate(int attribute, String operator, String value) {
 		super(attribute, operator);
 		this.value = Double.parseDouble(value);
+		opCode = getOpCode(operator, true);
 	}
 
 	@Override
@@ -40,37 +42,32 @@ public class DoubleAttributePredicate extends AttributePredicate {
 		this.attribute = attribute;
 		this.operator = operator;
 		this.value = Double.parseDouble(value);
+		opCode = getOpCode(operator, true);
 	}
 	
 	@Override
 	public boolean evaluate(String[] record) {
 		double operand = Double.parseDouble(record[attribute]);
-		return evaluateHelper(operand);
+		return evaluate(operand);
 	}
 
 	@Override
 	public boolean evaluate(String field) {
-		return evaluateHelper(Double.parseDouble(field));
+		return evaluate(Double.parseDouble(field));
 	}
 	
 	/**
-	 * @param operand
+	 * @param operand already parsed field value
 	 * @return
 	 */
-	private boolean evaluateHelper(double operand) {
+	public boolean evaluate(double operand) {
 		boolean status = false;
-		if (operator.equals(GREATER_THAN)) {
-			status = operand > value;
-		} else if (operator.equals(LESS_THAN)) {
-			status = operand < value;
-		} else if (operator.equals(EQUAL_TO)) {
-			status = operand == value;
-		}  else if (operator.equals(GREATER_THAN_OREQUAL_TO)) {
-			status = operand >= value;
-		} else if (operator.equals(LESS_THAN_OREQUAL_TO)) {
-			status = operand <= value;
-		} else {
-			throw new IllegalArgumentException("invalid operator");
+		switch (opCode) {
+			case OP_GREATER_THAN: status = operand > value; break;
+			case OP_LESS_THAN: status = operand < value; break;
+			case OP_EQUAL_TO: status = operand == value; break;
+			case OP_GREATER_THAN_OREQUAL_TO: status = operand >= value; break;
+			case OP_LESS_THAN_OREQUAL_TO: status = operand <= value; break;
 		}
 		return status;
 	}
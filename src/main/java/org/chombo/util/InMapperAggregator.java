@@ -0,0 +1,276 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.util;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.hadoop.util.ReflectionUtils;
+
+/**
+ * In mapper hash aggregation of map output. Values with same key are merged in memory and
+ * emitted later, cutting down on serialization, spill and shuffle. Memory is bounded by entry count
+ * and estimated size. When any bound is exceeded, least recently used entries are flushed.
+ * Everything remaining is flushed in mapper cleanup
+ * @author pranab
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class InMapperAggregator<K extends Writable, V extends Writable> {
+	private Configuration config;
+	private ValueAccumulator<V, Object> accumulator;
+	private int maxEntries;
+	private long maxSize;
+	private long size;
+	private LinkedHashMap<K, Entry> entries = new LinkedHashMap<K, Entry>(1024, 0.75f, true);
+	private DataOutputBuffer outBuffer = new DataOutputBuffer();
+	private DataInputBuffer inBuffer = new DataInputBuffer();
+	private long flushCount;
+	private static final int ENTRY_OVERHEAD = 96;
+	private static final int SIZE_FACTOR = 2;
+
+	/**
+	 * @param config
+	 * @param maxEntries
+	 * @param maxSize max estimated memory in bytes
+	 * @param merger
+	 */
+	public InMapperAggregator(Configuration config, int maxEntries, long maxSize, ValueMerger<V> merger) {
+		this(config, maxEntries, maxSize, new MergerAccumulator<V>(merger));
+	}
+
+	/**
+	 * @param config
+	 * @param maxEntries
+	 * @param maxSize max estimated memory in bytes
+	 * @param accumulator
+	 */
+	@SuppressWarnings("unchecked")
+	public InMapperAggregator(Configuration config, int maxEntries, long maxSize, ValueAccumulator<V, ?> accumulator) {
+		if (maxEntries <= 0 || maxSize <= 0) {
+			throw new IllegalArgumentException("in mapper aggregation bounds should be positive");
+		}
+		this.config = config;
+		this.maxEntries = maxEntries;
+		this.maxSize = maxSize;
+		this.accumulator = (ValueAccumulator<V, Object>)accumulator;
+	}
+
+	/**
+	 * Creates aggregator if enabled through <prefix>.in.mapper.aggr
+	 * @param config
+	 * @param configPrefix
+	 * @param merger
+	 * @return aggregator or null if not enabled
+	 */
+	public static <K extends Writable, V extends Writable> InMapperAggregator<K, V> create(Configuration config,
+			String configPrefix, ValueMerger<V> merger) {
+		return create(config, configPrefix, new MergerAccumulator<V>(merger));
+	}
+
+	/**
+	 * Creates aggregator if enabled through <prefix>.in.mapper.aggr
+	 * @param config
+	 * @param configPrefix
+	 * @param accumulator
+	 * @return aggregator or null if not enabled
+	 */
+	public static <K extends Writable, V extends Writable> InMapperAggregator<K, V> create(Configuration config,
+			String configPrefix, ValueAccumulator<V, ?> accumulator) {
+		InMapperAggregator<K, V> aggregator = null;
+		if (config.getBoolean(configPrefix + ".in.mapper.aggr", false)) {
+			int maxEntries = config.getInt(configPrefix + ".in.mapper.max.entries", 10000);
+			long maxSize = config.getLong(configPrefix + ".in.mapper.max.memory.mb", 32) * 1024 * 1024;
+			aggregator = new InMapperAggregator<K, V>(config, maxEntries, maxSize, accumulator);
+		}
+		return aggregator;
+	}
+
+	/**
+	 * Merges value with existing aggregate for the key or adds a new entry. Key and value are
+	 * copied, so that caller can reuse them
+	 * @param key
+	 * @param value
+	 * @param context
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void aggregate(K key, V value, TaskInputOutputContext<?, ?, K, V> context)
+		throws IOException, InterruptedException {
+		Entry entry = entries.get(key);
+		if (null != entry) {
+			int growth = accumulator.merge(entry.aggregate, value);
+			entry.size += growth;
+			size += growth;
+		} else {
+			K keyCopy = copy(key);
+			int keySize = outBuffer.getLength();
+			V valueCopy = copy(value);
+			entry = new Entry(accumulator.createAggregate(valueCopy), ENTRY_OVERHEAD + SIZE_FACTOR * 
+				(keySize + outBuffer.getLength()));
+			entries.put(keyCopy, entry);
+			size += entry.size;
+		}
+
+		//evict least recently used
+		Iterator<Map.Entry<K, Entry>> iter = entries.entrySet().iterator();
+		while ((entries.size() > maxEntries || size > maxSize) && iter.hasNext()) {
+			Map.Entry<K, Entry> eldest = iter.next();
+			context.write(eldest.getKey(), accumulator.getValue(eldest.getValue().aggregate));
+			size -= eldest.getValue().size;
+			iter.remove();
+			++flushCount;
+		}
+	}
+
+	/**
+	 * Emits all aggregates. Should be called in mapper cleanup
+	 * @param context
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void flush(TaskInputOutputContext<?, ?, K, V> context) throws IOException, InterruptedException {
+		for (Map.Entry<K, Entry> entry : entries.entrySet()) {
+			context.write(entry.getKey(), accumulator.getValue(entry.getValue().aggregate));
+		}
+		entries.clear();
+		size = 0;
+		context.getCounter("In mapper aggregation", "evicted count").increment(flushCount);
+		flushCount = 0;
+	}
+
+	/**
+	 * Copies through serialization, same as what map output collector does. Serialized size is
+	 * left in the output buffer
+	 * @param obj
+	 * @return
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	private <T extends Writable> T copy(T obj) throws IOException {
+		outBuffer.reset();
+		obj.write(outBuffer);
+		T copy = (T)ReflectionUtils.newInstance(obj.getClass(), config);
+		inBuffer.reset(outBuffer.getData(), 0, outBuffer.getLength());
+		copy.readFields(inBuffer);
+		return copy;
+	}
+
+	/**
+	 * @return
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Aggregate with estimated size
+	 * @author pranab
+	 *
+	 */
+	private static class Entry {
+		private Object aggregate;
+		private long size;
+
+		public Entry(Object aggregate, long size) {
+			this.aggregate = aggregate;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * Merges a value into aggregate
+	 * @author pranab
+	 *
+	 * @param <V>
+	 */
+	public static interface ValueMerger<V> {
+		/**
+		 * @param aggregate
+		 * @param value
+		 * @return approximate growth of aggregate in bytes
+		 */
+		public int merge(V aggregate, V value);
+	}
+
+	/**
+	 * Merges values into an aggregate of different type, which is converted to value only when
+	 * emitted. Useful when the value type is not suitable for merging in place
+	 * @author pranab
+	 *
+	 * @param <V>
+	 * @param <A>
+	 */
+	public static interface ValueAccumulator<V, A> {
+		/**
+		 * @param value copy owned by the aggregator
+		 * @return aggregate
+		 */
+		public A createAggregate(V value);
+
+		/**
+		 * @param aggregate
+		 * @param value
+		 * @return approximate growth of aggregate in bytes
+		 */
+		public int merge(A aggregate, V value);
+
+		/**
+		 * @param aggregate
+		 * @return value to emit, may be reused after it's written
+		 */
+		public V getValue(A aggregate);
+	}
+
+	/**
+	 * Value itself as aggregate
+	 * @author pranab
+	 *
+	 * @param <V>
+	 */
+	private static class MergerAccumulator<V> implements ValueAccumulator<V, V> {
+		private ValueMerger<V> merger;
+
+		public MergerAccumulator(ValueMerger<V> merger) {
+			this.merger = merger;
+		}
+
+		@Override
+		public V createAggregate(V value) {
+			return value;
+		}
+
+		@Override
+		public int merge(V aggregate, V value) {
+			return merger.merge(aggregate, value);
+		}
+
+		@Override
+		public V getValue(V aggregate) {
+			return aggregate;
+		}
+	}
+}
@@ -24,10 +24,12 @@ package org.chombo.util;
  */
 public class IntAttributePredicate  extends AttributePredicate {
 	private int value;
+	private int opCode;
 
 	public IntAttributePredicate(int attribute, String operator, String value) {
 		super(attribute, operator);
 		this.value = Integer.parseInt(value);
+		opCode = getOpCode(operator, true);
 	}
 	
 	@Override
@@ -35,33 +37,32 @@ public class IntAttributePredicate  extends AttributePredicate {
 		this.attribute = attribute;
 		this.operator = operator;
 		this.value = Integer.parseInt(value);
+		opCode = getOpCode(operator, true);
 	}
 
 	@Override
 	public boolean evaluate(String[] record) {
 		int operand = Integer.parseInt(record[attribute]);
-		return evaluateHelper(operand);
+		return evaluate(operand);
 	}
 	
 	@Override
 	public boolean evaluate(String field) {
-		return evaluateHelper(Integer.parseInt(field));
+		return evaluate(Integer.parseInt(field));
 	}
 	
-	private boolean evaluateHelper(int operand) {
+	/**
+	 * @param operand already parsed field value
+	 * @return
+	 */
+	public boolean evaluate(int operand) {
 		boolean status = false;
-		if (operator.equals(GREATER_THAN)) {
-			status = operand > value;
-		} else if (operator.equals(LESS_THAN)) {
-			status = operand < value;
-		} else if (operator.equals(EQUAL_TO)) {
-			status = operand == value;
-		} else if (operator.equals(GREATER_THAN_OREQUAL_TO)) {
-			status = operand >= value;
-		} else if (operator.equals(LESS_THAN_OREQUAL_TO)) {
-			status = operand <= value;
-		} else {
-			throw new IllegalArgumentException("invalid operator");
+		switch (opCode) {
+			case OP_GREATER_THAN: status = operand > value; break;
+			case OP_LESS_THAN: status = operand < value; break;
+			case OP_EQUAL_TO: status = operand == value; break;
+			case OP_GREATER_THAN_OREQUAL_TO: status = operand >= value; break;
+			case OP_LESS_THAN_OREQUAL_TO: status = operand <= value; break;
 		}
 		return status;
 	}
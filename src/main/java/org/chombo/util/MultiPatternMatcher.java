@@ -0,0 +1,973 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Matches a value against a set of regex patterns in one pass and returns ids of all matching patterns.
+ * Patterns are compiled into one automaton, which is converted lazily to a DFA. Anchored literal patterns
+ * are looked up in a hash map. Unanchored literals are handled by the same DFA, which for a set of literals
+ * is the Aho Corasick automaton. Patterns with constructs outside the supported subset (back references,
+ * look around, inline flags, possessive quantifiers, boundaries, unicode classes, class intersection,
+ * anchors with top level alternation) are matched with java.util.regex. A pattern is either fully matched or searched for within the value.
+ * @author pranab
+ *
+ */
+public class MultiPatternMatcher implements Serializable {
+	private int numPatterns;
+	private Pattern[] regexPatterns;
+	private boolean[] fullMatch;
+	private boolean[] endAnchored;
+	private boolean[] inAutomaton;
+	private int[] fallbackIds;
+	private Map<String, int[]> literalPatterns = new HashMap<String, int[]>();
+	private boolean anyAutomatonPattern;
+	private boolean anySearchEndAnchored;
+	private int[] matchStamps;
+	private int stamp;
+
+	//nfa
+	private int numStates;
+	private int[] stateTypes = new int[64];
+	private int[] outs1 = new int[64];
+	private int[] outs2 = new int[64];
+	private int[][] charSets = new int[64][];
+	private int[] stateStarts;
+	private int[] unanchoredStarts;
+
+	//lazy dfa
+	private List<DfaState> dfaStates = new ArrayList<DfaState>();
+	private Map<StateSetKey, Integer> dfaIndex = new HashMap<StateSetKey, Integer>();
+	private int[] closureStamps;
+	private int closureStamp;
+	private int[] stack;
+	private int[] setBuffer;
+
+	private static final int CHAR_STATE = 0;
+	private static final int SPLIT_STATE = 1;
+	private static final int ACCEPT_STATE = 2;
+	private static final int NO_STATE = -1;
+	private static final int MAX_NFA_STATES_PER_PATTERN = 20000;
+	private static final int MAX_DFA_STATES = 10000;
+	private static final int ASCII_SIZE = 128;
+	private static final int MAX_CHAR = 0xFFFF;
+	private static final int[] DIGIT_CHARS = {'0', '9'};
+	private static final int[] WORD_CHARS = {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'};
+	private static final int[] SPACE_CHARS = {'\t', '\r', ' ', ' '};
+	private static final int[] ANY_CHARS = complement(new int[] {'\n', '\n', '\r', '\r', 0x85, 0x85, 0x2028, 0x2029});
+
+	/**
+	 * @param patterns
+	 * @param fullMatch true for full match of value, false for search within value
+	 */
+	public MultiPatternMatcher(String[] patterns, boolean fullMatch) {
+		this(patterns, fill(patterns.length, fullMatch));
+	}
+
+	/**
+	 * @param patterns
+	 * @param fullMatch full match or search for each pattern
+	 */
+	public MultiPatternMatcher(String[] patterns, boolean[] fullMatch) {
+		numPatterns = patterns.length;
+		this.fullMatch = fullMatch;
+		regexPatterns = new Pattern[numPatterns];
+		endAnchored = new boolean[numPatterns];
+		inAutomaton = new boolean[numPatterns];
+		matchStamps = new int[numPatterns];
+		List<Integer> fallbacks = new ArrayList<Integer>();
+		List<Integer> starts = new ArrayList<Integer>();
+		List<Integer> unanchored = new ArrayList<Integer>();
+
+		for (int i = 0; i < numPatterns; ++i) {
+			//validates syntax, also needed for fallback
+			regexPatterns[i] = Pattern.compile(patterns[i]);
+
+			Node node = null;
+			boolean startAnchored = fullMatch[i];
+			endAnchored[i] = fullMatch[i];
+			try {
+				Parser parser = new Parser(patterns[i]);
+				node = parser.parse();
+				startAnchored = startAnchored || parser.startAnchored;
+				endAnchored[i] = endAnchored[i] || parser.endAnchored;
+				if (node.size() > MAX_NFA_STATES_PER_PATTERN) {
+					node = null;
+				}
+			} catch (UnsupportedPatternException ex) {
+				node = null;
+			}
+
+			String literal = null != node && startAnchored && endAnchored[i] ? node.getLiteral() : null;
+			if (null != literal) {
+				//anchored literal
+				int[] ids = literalPatterns.get(literal);
+				ids = null == ids ? new int[1] : Arrays.copyOf(ids, ids.length + 1);
+				ids[ids.length - 1] = i;
+				literalPatterns.put(literal, ids);
+				anySearchEndAnchored = anySearchEndAnchored || (endAnchored[i] && !fullMatch[i]);
+			} else if (null != node) {
+				int start = compile(node, newState(ACCEPT_STATE, i, NO_STATE, null));
+				starts.add(start);
+				if (!startAnchored) {
+					unanchored.add(start);
+				}
+				inAutomaton[i] = true;
+				anyAutomatonPattern = true;
+				anySearchEndAnchored = anySearchEndAnchored || (endAnchored[i] && !fullMatch[i]);
+			} else {
+				fallbacks.add(i);
+			}
+		}
+		fallbackIds = BasicUtils.fromListToIntArray(fallbacks);
+		stateStarts = BasicUtils.fromListToIntArray(starts);
+		unanchoredStarts = BasicUtils.fromListToIntArray(unanchored);
+		closureStamps = new int[numStates];
+		stack = new int[numStates];
+		setBuffer = new int[numStates];
+	}
+
+	/**
+	 * @param size
+	 * @param value
+	 * @return
+	 */
+	private static boolean[] fill(int size, boolean value) {
+		boolean[] values = new boolean[size];
+		Arrays.fill(values, value);
+		return values;
+	}
+
+	/**
+	 * @return
+	 */
+	public int getNumPatterns() {
+		return numPatterns;
+	}
+
+	/**
+	 * @param id
+	 * @return true if pattern is matched without java regex
+	 */
+	public boolean isCompiled(int id) {
+		return inAutomaton[id] || Arrays.binarySearch(fallbackIds, id) < 0;
+	}
+
+	/**
+	 * @param value
+	 * @return true if any pattern matches
+	 */
+	public boolean matchesAny(CharSequence value) {
+		return match(value, new int[numPatterns]) > 0;
+	}
+
+	/**
+	 * @param value
+	 * @param matchedIds should be at least as long as number of patterns
+	 * @return number of matching pattern ids placed in matchedIds in ascending order
+	 */
+	public int match(CharSequence value, int[] matchedIds) {
+		if (++stamp == 0) {
+			Arrays.fill(matchStamps, 0);
+			stamp = 1;
+		}
+		int count = 0;
+		if (needsRegex(value)) {
+			//input with surrogate pairs or trailing line terminator for $
+			for (int i = 0; i < numPatterns; ++i) {
+				count = regexMatch(i, value, matchedIds, count);
+			}
+		} else {
+			int[] ids = literalPatterns.isEmpty() ? null : literalPatterns.get(value.toString());
+			if (null != ids) {
+				for (int id : ids) {
+					count = addMatch(id, matchedIds, count);
+				}
+			}
+			if (anyAutomatonPattern) {
+				count = automatonMatch(value, matchedIds, count);
+			}
+			for (int id : fallbackIds) {
+				count = regexMatch(id, value, matchedIds, count);
+			}
+		}
+		Arrays.sort(matchedIds, 0, count);
+		return count;
+	}
+
+	/**
+	 * @param value
+	 * @return
+	 */
+	private boolean needsRegex(CharSequence value) {
+		boolean needed = false;
+		int len = value.length();
+		for (int i = 0; !needed && i < len; ++i) {
+			needed = Character.isSurrogate(value.charAt(i));
+		}
+		if (!needed && anySearchEndAnchored && len > 0) {
+			char last = value.charAt(len - 1);
+			needed = !inRanges(ANY_CHARS, last);
+		}
+		return needed;
+	}
+
+	/**
+	 * @param id
+	 * @param value
+	 * @param matchedIds
+	 * @param count
+	 * @return
+	 */
+	private int regexMatch(int id, CharSequence value, int[] matchedIds, int count) {
+		java.util.regex.Matcher matcher = regexPatterns[id].matcher(value);
+		if (fullMatch[id] ? matcher.matches() : matcher.find()) {
+			count = addMatch(id, matchedIds, count);
+		}
+		return count;
+	}
+
+	/**
+	 * @param id
+	 * @param matchedIds
+	 * @param count
+	 * @return
+	 */
+	private int addMatch(int id, int[] matchedIds, int count) {
+		if (matchStamps[id] != stamp) {
+			matchStamps[id] = stamp;
+			matchedIds[count++] = id;
+		}
+		return count;
+	}
+
+	/**
+	 * @param value
+	 * @param matchedIds
+	 * @param count
+	 * @return
+	 */
+	private int automatonMatch(CharSequence value, int[] matchedIds, int count) {
+		if (dfaStates.isEmpty()) {
+			addDfaState(closure(stateStarts, stateStarts.length, false));
+		}
+		DfaState state = dfaStates.get(0);
+		int len = value.length();
+		boolean dead = false;
+		for (int id : state.acceptAny) {
+			count = addMatch(id, matchedIds, count);
+		}
+		for (int i = 0; i < len && !dead; ++i) {
+			state = nextState(state, value.charAt(i));
+			for (int id : state.acceptAny) {
+				count = addMatch(id, matchedIds, count);
+			}
+			dead = state.nfaStates.length == 0;
+		}
+		if (!dead) {
+			for (int id : state.acceptEnd) {
+				count = addMatch(id, matchedIds, count);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @param state
+	 * @param ch
+	 * @return
+	 */
+	private DfaState nextState(DfaState state, char ch) {
+		int next = NO_STATE;
+		Integer cached = null;
+		if (ch < ASCII_SIZE) {
+			next = state.asciiNext[ch];
+		} else if (null != state.otherNext) {
+			cached = state.otherNext.get(ch);
+			next = null == cached ? NO_STATE : cached;
+		}
+
+		if (next == NO_STATE) {
+			if (dfaStates.size() >= MAX_DFA_STATES) {
+				//start over with current state
+				int[] current = state.nfaStates;
+				dfaStates.clear();
+				dfaIndex.clear();
+				addDfaState(closure(stateStarts, stateStarts.length, false));
+				state = dfaStates.get(addDfaState(current));
+			}
+
+			//move over char
+			int size = 0;
+			for (int s : state.nfaStates) {
+				if (stateTypes[s] == CHAR_STATE && inRanges(charSets[s], ch)) {
+					setBuffer[size++] = outs1[s];
+				}
+			}
+			next = addDfaState(closure(setBuffer, size, true));
+			if (ch < ASCII_SIZE) {
+				state.asciiNext[ch] = next;
+			} else {
+				if (null == state.otherNext) {
+					state.otherNext = new HashMap<Character, Integer>();
+				}
+				state.otherNext.put(ch, next);
+			}
+		}
+		return dfaStates.get(next);
+	}
+
+	/**
+	 * Epsilon closure, keeping only char and accept states
+	 * @param states
+	 * @param size
+	 * @param withUnanchored
+	 * @return sorted nfa states
+	 */
+	private int[] closure(int[] states, int size, boolean withUnanchored) {
+		if (++closureStamp == 0) {
+			Arrays.fill(closureStamps, 0);
+			closureStamp = 1;
+		}
+		int top = 0;
+		List<Integer> result = new ArrayList<Integer>();
+		int[] seeds = Arrays.copyOf(states, size);
+		for (int i = 0; i < seeds.length + (withUnanchored ? unanchoredStarts.length : 0); ++i) {
+			int seed = i < seeds.length ? seeds[i] : unanchoredStarts[i - seeds.length];
+			if (closureStamps[seed] != closureStamp) {
+				closureStamps[seed] = closureStamp;
+				stack[top++] = seed;
+			}
+			while (top > 0) {
+				int s = stack[--top];
+				if (stateTypes[s] == SPLIT_STATE) {
+					int[] nexts = {outs1[s], outs2[s]};
+					for (int next : nexts) {
+						if (closureStamps[next] != closureStamp) {
+							closureStamps[next] = closureStamp;
+							stack[top++] = next;
+						}
+					}
+				} else {
+					result.add(s);
+				}
+			}
+		}
+		int[] closed = BasicUtils.fromListToIntArray(result);
+		Arrays.sort(closed);
+		return closed;
+	}
+
+	/**
+	 * @param nfaStates
+	 * @return dfa state index
+	 */
+	private int addDfaState(int[] nfaStates) {
+		StateSetKey key = new StateSetKey(nfaStates);
+		Integer index = dfaIndex.get(key);
+		if (null == index) {
+			DfaState state = new DfaState(nfaStates);
+			List<Integer> acceptAny = new ArrayList<Integer>();
+			List<Integer> acceptEnd = new ArrayList<Integer>();
+			for (int s : nfaStates) {
+				if (stateTypes[s] == ACCEPT_STATE) {
+					if (endAnchored[outs1[s]]) {
+						acceptEnd.add(outs1[s]);
+					} else {
+						acceptAny.add(outs1[s]);
+					}
+				}
+			}
+			state.acceptAny = BasicUtils.fromListToIntArray(acceptAny);
+			state.acceptEnd = BasicUtils.fromListToIntArray(acceptEnd);
+			index = dfaStates.size();
+			dfaStates.add(state);
+			dfaIndex.put(key, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Thompson construction, compiled backwards from the continuation state
+	 * @param node
+	 * @param next
+	 * @return start state
+	 */
+	private int compile(Node node, int next) {
+		int start = next;
+		if (node.type == Node.CHARS) {
+			start = newState(CHAR_STATE, next, NO_STATE, node.chars);
+		} else if (node.type == Node.CONCAT) {
+			for (int i = node.children.size() - 1; i >= 0; --i) {
+				start = compile(node.children.get(i), start);
+			}
+		} else if (node.type == Node.ALTERNATE) {
+			start = compile(node.children.get(node.children.size() - 1), next);
+			for (int i = node.children.size() - 2; i >= 0; --i) {
+				start = newState(SPLIT_STATE, compile(node.children.get(i), next), start, null);
+			}
+		} else if (node.type == Node.REPEAT) {
+			Node child = node.children.get(0);
+			if (node.max < 0) {
+				//loop
+				int loop = newState(SPLIT_STATE, NO_STATE, next, null);
+				//state arrays may grow while compiling body, assign after
+				int body = compile(child, loop);
+				outs1[loop] = body;
+				start = loop;
+			} else {
+				//optional copies
+				for (int i = node.min; i < node.max; ++i) {
+					start = newState(SPLIT_STATE, compile(child, start), next, null);
+				}
+			}
+			//mandatory copies
+			for (int i = 0; i < node.min; ++i) {
+				start = compile(child, start);
+			}
+		}
+		return start;
+	}
+
+	/**
+	 * @param type
+	 * @param out1 next state or pattern id for accept state
+	 * @param out2
+	 * @param chars
+	 * @return
+	 */
+	private int newState(int type, int out1, int out2, int[] chars) {
+		if (numStates == stateTypes.length) {
+			int capacity = numStates * 2;
+			stateTypes = Arrays.copyOf(stateTypes, capacity);
+			outs1 = Arrays.copyOf(outs1, capacity);
+			outs2 = Arrays.copyOf(outs2, capacity);
+			charSets = Arrays.copyOf(charSets, capacity);
+		}
+		stateTypes[numStates] = type;
+		outs1[numStates] = out1;
+		outs2[numStates] = out2;
+		charSets[numStates] = chars;
+		return numStates++;
+	}
+
+	/**
+	 * @param ranges sorted disjoint char ranges as lower, upper bound pairs
+	 * @param ch
+	 * @return
+	 */
+	private static boolean inRanges(int[] ranges, char ch) {
+		boolean found = false;
+		for (int i = 0; !found && i < ranges.length && ranges[i] <= ch; i += 2) {
+			found = ch <= ranges[i + 1];
+		}
+		return found;
+	}
+
+	/**
+	 * @param first
+	 * @param second
+	 * @return
+	 */
+	private static int[] union(int[] first, int[] second) {
+		int[][] pairs = new int[(first.length + second.length) / 2][];
+		int k = 0;
+		for (int i = 0; i < first.length; i += 2) {
+			pairs[k++] = new int[] {first[i], first[i + 1]};
+		}
+		for (int i = 0; i < second.length; i += 2) {
+			pairs[k++] = new int[] {second[i], second[i + 1]};
+		}
+		Arrays.sort(pairs, new java.util.Comparator<int[]>() {
+			@Override
+			public int compare(int[] thisPair, int[] thatPair) {
+				return thisPair[0] - thatPair[0];
+			}
+		});
+
+		//merge overlapping and adjacent
+		List<Integer> merged = new ArrayList<Integer>();
+		for (int[] pair : pairs) {
+			int last = merged.size() - 1;
+			if (last > 0 && pair[0] <= merged.get(last) + 1) {
+				merged.set(last, Math.max(merged.get(last), pair[1]));
+			} else {
+				merged.add(pair[0]);
+				merged.add(pair[1]);
+			}
+		}
+		return BasicUtils.fromListToIntArray(merged);
+	}
+
+	/**
+	 * @param ranges
+	 * @return
+	 */
+	private static int[] complement(int[] ranges) {
+		List<Integer> complement = new ArrayList<Integer>();
+		int lower = 0;
+		for (int i = 0; i < ranges.length; i += 2) {
+			if (ranges[i] > lower) {
+				complement.add(lower);
+				complement.add(ranges[i] - 1);
+			}
+			lower = ranges[i + 1] + 1;
+		}
+		if (lower <= MAX_CHAR) {
+			complement.add(lower);
+			complement.add(MAX_CHAR);
+		}
+		return BasicUtils.fromListToIntArray(complement);
+	}
+
+	/**
+	 * Lazily built DFA state
+	 * @author pranab
+	 *
+	 */
+	private static class DfaState implements Serializable {
+		private int[] nfaStates;
+		private int[] asciiNext = new int[ASCII_SIZE];
+		private Map<Character, Integer> otherNext;
+		private int[] acceptAny;
+		private int[] acceptEnd;
+
+		public DfaState(int[] nfaStates) {
+			this.nfaStates = nfaStates;
+			Arrays.fill(asciiNext, NO_STATE);
+		}
+	}
+
+	/**
+	 * @author pranab
+	 *
+	 */
+	private static class StateSetKey implements Serializable {
+		private int[] states;
+		private int hashCode;
+
+		public StateSetKey(int[] states) {
+			this.states = states;
+			hashCode = Arrays.hashCode(states);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof StateSetKey && Arrays.equals(states, ((StateSetKey)obj).states);
+		}
+	}
+
+	/**
+	 * Regex syntax tree
+	 * @author pranab
+	 *
+	 */
+	private static class Node implements Serializable {
+		private static final int CHARS = 0;
+		private static final int CONCAT = 1;
+		private static final int ALTERNATE = 2;
+		private static final int REPEAT = 3;
+		private int type;
+		private int[] chars;
+		private List<Node> children = new ArrayList<Node>();
+		private int min;
+		private int max;
+
+		public Node(int type) {
+			this.type = type;
+		}
+
+		/**
+		 * @return approximate number of nfa states
+		 */
+		public long size() {
+			long size = type == CHARS ? 1 : 0;
+			for (Node child : children) {
+				size += child.size();
+			}
+			if (type == ALTERNATE) {
+				size += children.size();
+			} else if (type == REPEAT) {
+				size = max < 0 ? size * Math.max(min, 1) + 1 : size * max + max - min;
+			}
+			return size;
+		}
+
+		/**
+		 * @return literal string if the node matches only one string
+		 */
+		public String getLiteral() {
+			StringBuilder stBld = new StringBuilder();
+			boolean literal = true;
+			if (type == CHARS) {
+				literal = chars.length == 2 && chars[0] == chars[1];
+				stBld.append((char)chars[0]);
+			} else if (type == CONCAT) {
+				for (int i = 0; literal && i < children.size(); ++i) {
+					String childLiteral = children.get(i).getLiteral();
+					literal = null != childLiteral;
+					stBld.append(childLiteral);
+				}
+			} else {
+				literal = false;
+			}
+			return literal ? stBld.toString() : null;
+		}
+	}
+
+	/**
+	 * @author pranab
+	 *
+	 */
+	private static class UnsupportedPatternException extends Exception {
+		public UnsupportedPatternException(String message) {
+			super(message);
+		}
+	}
+
+	/**
+	 * Recursive descent parser for the supported regex subset
+	 * @author pranab
+	 *
+	 */
+	private static class Parser {
+		private String pattern;
+		private int pos;
+		private int end;
+		private boolean startAnchored;
+		private boolean endAnchored;
+		private int groupDepth;
+		private boolean topLevelAlternation;
+
+		public Parser(String pattern) {
+			this.pattern = pattern;
+			end = pattern.length();
+		}
+
+		/**
+		 * @return
+		 * @throws UnsupportedPatternException
+		 */
+		public Node parse() throws UnsupportedPatternException {
+			if (pos < end && pattern.charAt(pos) == '^') {
+				startAnchored = true;
+				++pos;
+			}
+			if (end > pos && pattern.charAt(end - 1) == '$' && !isEscaped(end - 1)) {
+				endAnchored = true;
+				--end;
+			}
+			Node node = parseAlternate();
+			if (pos != end) {
+				throw new UnsupportedPatternException("unexpected " + pattern.charAt(pos));
+			}
+			
+			//anchor binds only to first or last top level alternative
+			if ((startAnchored || endAnchored) && topLevelAlternation) {
+				throw new UnsupportedPatternException("anchored alternation");
+			}
+			return node;
+		}
+
+		/**
+		 * @param index
+		 * @return true if preceded by odd number of back slashes
+		 */
+		private boolean isEscaped(int index) {
+			int count = 0;
+			for (int i = index - 1; i >= 0 && pattern.charAt(i) == '\\'; --i) {
+				++count;
+			}
+			return count % 2 == 1;
+		}
+
+		/**
+		 * @return
+		 * @throws UnsupportedPatternException
+		 */
+		private Node parseAlternate() throws UnsupportedPatternException {
+			Node node = new Node(Node.ALTERNATE);
+			node.children.add(parseConcat());
+			while (pos < end && pattern.charAt(pos) == '|') {
+				++pos;
+				topLevelAlternation = topLevelAlternation || groupDepth == 0;
+				node.children.add(parseConcat());
+			}
+			return node.children.size() == 1 ? node.children.get(0) : node;
+		}
+
+		/**
+		 * @return
+		 * @throws UnsupportedPatternException
+		 */
+		private Node parseConcat() throws UnsupportedPatternException {
+			Node node = new Node(Node.CONCAT);
+			while (pos < end && pattern.charAt(pos) != '|' && pattern.charAt(pos) != ')') {
+				node.children.add(parseRepeat());
+			}
+			return node.children.size() == 1 ? node.children.get(0) : node;
+		}
+
+		/**
+		 * @return
+		 * @throws UnsupportedPatternException
+		 */
+		private Node parseRepeat() throws UnsupportedPatternException {
+			Node node = parseAtom();
+			boolean quantified = false;
+			while (pos < end && "*+?{".indexOf(pattern.charAt(pos)) >= 0) {
+				if (quantified) {
+					throw new UnsupportedPatternException("multiple quantifiers");
+				}
+				char ch = pattern.charAt(pos++);
+				Node repeat = new Node(Node.REPEAT);
+				repeat.children.add(node);
+				if (ch == '*') {
+					repeat.min = 0;
+					repeat.max = -1;
+				} else if (ch == '+') {
+					repeat.min = 1;
+					repeat.max = -1;
+				} else if (ch == '?') {
+					repeat.min = 0;
+					repeat.max = 1;
+				} else {
+					parseBounds(repeat);
+				}
+
+				//lazy quantifier matches same set of strings, possessive does not
+				if (pos < end && pattern.charAt(pos) == '?') {
+					++pos;
+				} else if (pos < end && pattern.charAt(pos) == '+') {
+					throw new UnsupportedPatternException("possessive quantifier");
+				}
+				node = repeat;
+				quantified = true;
+			}
+			return node;
+		}
+
+		/**
+		 * @param repeat
+		 * @throws UnsupportedPatternException
+		 */
+		private void parseBounds(Node repeat) throws UnsupportedPatternException {
+			int close = pattern.indexOf('}', pos);
+			if (close < 0 || close >= end) {
+				throw new UnsupportedPatternException("invalid repetition");
+			}
+			String[] bounds = pattern.substring(pos, close).split(",", -1);
+			try {
+				repeat.min = Integer.parseInt(bounds[0]);
+				if (bounds.length == 1) {
+					repeat.max = repeat.min;
+				} else if (bounds.length == 2) {
+					repeat.max = bounds[1].isEmpty() ? -1 : Integer.parseInt(bounds[1]);
+				} else {
+					throw new UnsupportedPatternException("invalid repetition");
+				}
+			} catch (NumberFormatException ex) {
+				throw new UnsupportedPatternException("invalid repetition");
+			}
+			if (repeat.min < 0 || (repeat.max >= 0 && repeat.max < repeat.min)) {
+				throw new UnsupportedPatternException("invalid repetition");
+			}
+			pos = close + 1;
+		}
+
+		/**
+		 * @return
+		 * @throws UnsupportedPatternException
+		 */
+		private Node parseAtom() throws UnsupportedPatternException {
+			char ch = pattern.charAt(pos++);
+			Node node = null;
+			if (ch == '(') {
+				if (pos < end && pattern.charAt(pos) == '?') {
+					if (pos + 1 < end && pattern.charAt(pos + 1) == ':') {
+						pos += 2;
+					} else {
+						throw new UnsupportedPatternException("special group");
+					}
+				}
+				++groupDepth;
+				node = parseAlternate();
+				--groupDepth;
+				if (pos >= end || pattern.charAt(pos) != ')') {
+					throw new UnsupportedPatternException("unclosed group");
+				}
+				++pos;
+			} else if (ch == '[') {
+				node = charsNode(parseClass());
+			} else if (ch == '.') {
+				node = charsNode(ANY_CHARS);
+			} else if (ch == '\\') {
+				node = charsNode(parseEscape(false));
+			} else if ("*+?{^$)".indexOf(ch) >= 0) {
+				throw new UnsupportedPatternException("unexpected " + ch);
+			} else {
+				node = charsNode(new int[] {ch, ch});
+			}
+			return node;
+		}
+
+		/**
+		 * @param chars
+		 * @return
+		 */
+		private Node charsNode(int[] chars) {
+			Node node = new Node(Node.CHARS);
+			node.chars = chars;
+			return node;
+		}
+
+		/**
+		 * @return
+		 * @throws UnsupportedPatternException
+		 */
+		private int[] parseClass() throws UnsupportedPatternException {
+			boolean negated = false;
+			if (pos < end && pattern.charAt(pos) == '^') {
+				negated = true;
+				++pos;
+			}
+			if (pos < end && pattern.charAt(pos) == ']') {
+				throw new UnsupportedPatternException("empty class");
+			}
+
+			int[] chars = new int[0];
+			boolean closed = false;
+			while (pos < end && !closed) {
+				char ch = pattern.charAt(pos++);
+				if (ch == ']') {
+					closed = true;
+				} else if (ch == '[' || (ch == '&' && pos < end && pattern.charAt(pos) == '&')) {
+					throw new UnsupportedPatternException("nested class");
+				} else {
+					int[] item = null;
+					int lower = ch;
+					if (ch == '\\') {
+						item = parseEscape(true);
+						lower = item.length == 2 && item[0] == item[1] ? item[0] : -1;
+					} else {
+						item = new int[] {ch, ch};
+					}
+
+					//range
+					if (lower >= 0 && pos + 1 < end && pattern.charAt(pos) == '-' && pattern.charAt(pos + 1) != ']') {
+						++pos;
+						char upperCh = pattern.charAt(pos++);
+						int upper = upperCh;
+						if (upperCh == '\\') {
+							int[] upperItem = parseEscape(true);
+							if (upperItem.length != 2 || upperItem[0] != upperItem[1]) {
+								throw new UnsupportedPatternException("invalid range");
+							}
+							upper = upperItem[0];
+						} else if (upperCh == '[') {
+							throw new UnsupportedPatternException("nested class");
+						}
+						if (upper < lower) {
+							throw new UnsupportedPatternException("invalid range");
+						}
+						item = new int[] {lower, upper};
+					}
+					chars = union(chars, item);
+				}
+			}
+			if (!closed) {
+				throw new UnsupportedPatternException("unclosed class");
+			}
+			return negated ? complement(chars) : chars;
+		}
+
+		/**
+		 * @param inClass
+		 * @return char ranges
+		 * @throws UnsupportedPatternException
+		 */
+		private int[] parseEscape(boolean inClass) throws UnsupportedPatternException {
+			if (pos >= end) {
+				throw new UnsupportedPatternException("trailing back slash");
+			}
+			char ch = pattern.charAt(pos++);
+			int[] chars = null;
+			switch (ch) {
+				case 'd': chars = DIGIT_CHARS; break;
+				case 'D': chars = complement(DIGIT_CHARS); break;
+				case 'w': chars = WORD_CHARS; break;
+				case 'W': chars = complement(WORD_CHARS); break;
+				case 's': chars = SPACE_CHARS; break;
+				case 'S': chars = complement(SPACE_CHARS); break;
+				case 't': chars = single('\t'); break;
+				case 'n': chars = single('\n'); break;
+				case 'r': chars = single('\r'); break;
+				case 'f': chars = single('\f'); break;
+				case 'a': chars = single('\u0007'); break;
+				case 'e': chars = single('\u001B'); break;
+				case 'x': chars = single(parseHex(2)); break;
+				case 'u': chars = single(parseHex(4)); break;
+				default:
+					if (Character.isLetterOrDigit(ch)) {
+						throw new UnsupportedPatternException("escape " + ch);
+					}
+					chars = single(ch);
+			}
+			return chars;
+		}
+
+		/**
+		 * @param numDigits
+		 * @return
+		 * @throws UnsupportedPatternException
+		 */
+		private int parseHex(int numDigits) throws UnsupportedPatternException {
+			if (pos + numDigits > end) {
+				throw new UnsupportedPatternException("invalid hex escape");
+			}
+			int value = 0;
+			try {
+				value = Integer.parseInt(pattern.substring(pos, pos + numDigits), 16);
+			} catch (NumberFormatException ex) {
+				throw new UnsupportedPatternException("invalid hex escape");
+			}
+			pos += numDigits;
+			return value;
+		}
+
+		/**
+		 * @param ch
+		 * @return
+		 */
+		private int[] single(int ch) {
+			return new int[] {ch, ch};
+		}
+	}
+}
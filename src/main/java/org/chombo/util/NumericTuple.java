@@ -0,0 +1,498 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * Tuple backed by primitive long and double arrays with an optional string prefix. Avoids
+ * boxing in numeric stats jobs. Ordering is by prefix, then longs and then doubles. Base
+ * comparison for secondary sorting is by prefix and all but the last long
+ * @author pranab
+ *
+ */
+public class NumericTuple implements WritableComparable<NumericTuple> {
+	private Text prefix = new Text();
+	private boolean hasPrefix;
+	private long[] longs;
+	private int numLongs;
+	private double[] doubles;
+	private int numDoubles;
+	private String delim = ",";
+	private StringBuilder prefixBld;
+	private static final char PREFIX_FIELD_SEP = '\u0000';
+	private static final char PREFIX_FIELD_ESC = '\u0001';
+
+	static {
+		//raw comparator for sorting serialized keys
+		WritableComparator.define(NumericTuple.class, new Comparator());
+	}
+
+	/**
+	 *
+	 */
+	public NumericTuple() {
+		this(4, 4);
+	}
+
+	/**
+	 * @param longCapacity
+	 * @param doubleCapacity
+	 */
+	public NumericTuple(int longCapacity, int doubleCapacity) {
+		longs = new long[longCapacity];
+		doubles = new double[doubleCapacity];
+	}
+
+	/**
+	 * clears all elements
+	 */
+	public void initialize() {
+		hasPrefix = false;
+		prefix.clear();
+		numLongs = 0;
+		numDoubles = 0;
+	}
+
+	/**
+	 * @param prefix
+	 */
+	public void setPrefix(String prefix) {
+		this.prefix.set(prefix);
+		hasPrefix = true;
+	}
+
+	/**
+	 * Sets selected fields as prefix, kept apart by a separator that sorts below any character. Ordering
+	 * is field by field and fields containing the output delimiter don't collide
+	 * @param items
+	 * @param ordinals
+	 */
+	public void setPrefix(String[] items, int[] ordinals) {
+		if (null == prefixBld) {
+			prefixBld = new StringBuilder();
+		}
+		prefixBld.delete(0, prefixBld.length());
+		for (int i = 0; i < ordinals.length; ++i) {
+			if (i > 0) {
+				prefixBld.append(PREFIX_FIELD_SEP).append(PREFIX_FIELD_SEP);
+			}
+			String item = items[ordinals[i]];
+			for (int c = 0; c < item.length(); ++c) {
+				char ch = item.charAt(c);
+				prefixBld.append(ch);
+				if (ch == PREFIX_FIELD_SEP) {
+					//escaped separator sorts above field boundary
+					prefixBld.append(PREFIX_FIELD_ESC);
+				}
+			}
+		}
+		setPrefix(prefixBld.toString());
+	}
+
+	/**
+	 * @return
+	 */
+	public boolean hasPrefix() {
+		return hasPrefix;
+	}
+
+	/**
+	 * @return
+	 */
+	public String getPrefix() {
+		return hasPrefix ? prefix.toString() : null;
+	}
+
+	/**
+	 * @param values
+	 */
+	public void addLong(long... values) {
+		for (long value : values) {
+			if (numLongs == longs.length) {
+				longs = Arrays.copyOf(longs, 2 * longs.length + 1);
+			}
+			longs[numLongs++] = value;
+		}
+	}
+
+	/**
+	 * @param values
+	 */
+	public void addDouble(double... values) {
+		for (double value : values) {
+			if (numDoubles == doubles.length) {
+				doubles = Arrays.copyOf(doubles, 2 * doubles.length + 1);
+			}
+			doubles[numDoubles++] = value;
+		}
+	}
+
+	/**
+	 * @param index
+	 * @return
+	 */
+	public long getLong(int index) {
+		if (index >= numLongs) {
+			throw new IndexOutOfBoundsException("invalid long index " + index);
+		}
+		return longs[index];
+	}
+
+	/**
+	 * @param index
+	 * @return
+	 */
+	public int getInt(int index) {
+		return (int)getLong(index);
+	}
+
+	/**
+	 * @param index
+	 * @return
+	 */
+	public double getDouble(int index) {
+		if (index >= numDoubles) {
+			throw new IndexOutOfBoundsException("invalid double index " + index);
+		}
+		return doubles[index];
+	}
+
+	/**
+	 * @param index
+	 * @param value
+	 */
+	public void setLong(int index, long value) {
+		getLong(index);
+		longs[index] = value;
+	}
+
+	/**
+	 * @param index
+	 * @param value
+	 */
+	public void setDouble(int index, double value) {
+		getDouble(index);
+		doubles[index] = value;
+	}
+
+	/**
+	 * @return
+	 */
+	public int getNumLongs() {
+		return numLongs;
+	}
+
+	/**
+	 * @return
+	 */
+	public int getNumDoubles() {
+		return numDoubles;
+	}
+
+	/**
+	 * creates clone
+	 * @return
+	 */
+	public NumericTuple createClone() {
+		NumericTuple clone = new NumericTuple(numLongs, numDoubles);
+		if (hasPrefix) {
+			clone.prefix.set(prefix);
+			clone.hasPrefix = true;
+		}
+		clone.addLong(Arrays.copyOf(longs, numLongs));
+		clone.addDouble(Arrays.copyOf(doubles, numDoubles));
+		clone.delim = delim;
+		return clone;
+	}
+
+	/**
+	 * sets delimeter
+	 * @param delim
+	 */
+	public void setDelim(String delim) {
+		this.delim = delim;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.hadoop.io.Writable#write(java.io.DataOutput)
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeBoolean(hasPrefix);
+		if (hasPrefix) {
+			prefix.write(out);
+		}
+		WritableUtils.writeVInt(out, numLongs);
+		for (int i = 0; i < numLongs; ++i) {
+			WritableUtils.writeVLong(out, longs[i]);
+		}
+		WritableUtils.writeVInt(out, numDoubles);
+		for (int i = 0; i < numDoubles; ++i) {
+			out.writeDouble(doubles[i]);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.hadoop.io.Writable#readFields(java.io.DataInput)
+	 */
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		initialize();
+		hasPrefix = in.readBoolean();
+		if (hasPrefix) {
+			prefix.readFields(in);
+		}
+		int count = WritableUtils.readVInt(in);
+		if (longs.length < count) {
+			longs = new long[count];
+		}
+		for (int i = 0; i < count; ++i) {
+			longs[i] = WritableUtils.readVLong(in);
+		}
+		numLongs = count;
+
+		count = WritableUtils.readVInt(in);
+		if (doubles.length < count) {
+			doubles = new double[count];
+		}
+		for (int i = 0; i < count; ++i) {
+			doubles[i] = in.readDouble();
+		}
+		numDoubles = count;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Comparable#compareTo(java.lang.Object)
+	 */
+	@Override
+	public int compareTo(NumericTuple that) {
+		int compared = compareBase(that, numLongs, that.numLongs);
+		for (int i = 0; i < numDoubles && i < that.numDoubles && compared == 0; ++i) {
+			compared = Double.compare(doubles[i], that.doubles[i]);
+		}
+		if (compared == 0) {
+			compared = numDoubles - that.numDoubles;
+		}
+		return compared;
+	}
+
+	/**
+	 * comparison based on prefix and all but the last long element
+	 * @param that
+	 * @return
+	 */
+	public int compareToBase(NumericTuple that) {
+		return compareBase(that, numLongs - 1, that.numLongs - 1);
+	}
+
+	/**
+	 * @param that
+	 * @param thisLongCount
+	 * @param thatLongCount
+	 * @return
+	 */
+	private int compareBase(NumericTuple that, int thisLongCount, int thatLongCount) {
+		int compared = (hasPrefix ? 1 : 0) - (that.hasPrefix ? 1 : 0);
+		if (compared == 0 && hasPrefix) {
+			compared = prefix.compareTo(that.prefix);
+		}
+		for (int i = 0; i < thisLongCount && i < thatLongCount && compared == 0; ++i) {
+			compared = longs[i] < that.longs[i] ? -1 : (longs[i] == that.longs[i] ? 0 : 1);
+		}
+		if (compared == 0) {
+			compared = thisLongCount - thatLongCount;
+		}
+		return compared;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	public int hashCode() {
+		int hashCode = hashCodeBase(numLongs);
+		for (int i = 0; i < numDoubles; ++i) {
+			long bits = Double.doubleToLongBits(doubles[i]);
+			hashCode = 31 * hashCode + (int)(bits ^ (bits >>> 32));
+		}
+		return hashCode;
+	}
+
+	/**
+	 * hash code based on prefix and all but the last long element
+	 * @return
+	 */
+	public int hashCodeBase() {
+		int hashCode = hashCodeBase(numLongs - 1);
+		return hashCode < 0 ? -hashCode : hashCode;
+	}
+
+	/**
+	 * @param longCount
+	 * @return
+	 */
+	private int hashCodeBase(int longCount) {
+		int hashCode = hasPrefix ? prefix.hashCode() : 0;
+		for (int i = 0; i < longCount; ++i) {
+			hashCode = 31 * hashCode + (int)(longs[i] ^ (longs[i] >>> 32));
+		}
+		return hashCode;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	public boolean equals(Object obj ) {
+		boolean isEqual = false;
+		if (null != obj && obj instanceof NumericTuple){
+			isEqual =  compareTo((NumericTuple)obj) == 0;
+		}
+		return isEqual;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		StringBuilder stBld = new  StringBuilder();
+		if (hasPrefix) {
+			//prefix fields separated with delimiter
+			String prefixStr = prefix.toString();
+			for (int c = 0; c < prefixStr.length(); ++c) {
+				char ch = prefixStr.charAt(c);
+				if (ch == PREFIX_FIELD_SEP && c + 1 < prefixStr.length()) {
+					++c;
+					if (prefixStr.charAt(c) == PREFIX_FIELD_SEP) {
+						stBld.append(delim);
+					} else {
+						stBld.append(ch);
+					}
+				} else {
+					stBld.append(ch);
+				}
+			}
+		}
+		for (int i = 0; i < numLongs; ++i) {
+			if (stBld.length() > 0) {
+				stBld.append(delim);
+			}
+			stBld.append(longs[i]);
+		}
+		for (int i = 0; i < numDoubles; ++i) {
+			if (stBld.length() > 0) {
+				stBld.append(delim);
+			}
+			stBld.append(doubles[i]);
+		}
+		return stBld.toString();
+	}
+
+	/**
+	 * Raw comparator operating on serialized tuples. Consistent with compareTo()
+	 * @author pranab
+	 *
+	 */
+	public static class Comparator extends WritableComparator {
+		public Comparator() {
+			super(NumericTuple.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			return compareSerialized(b1, s1, b2, s2, false);
+		}
+	}
+
+	/**
+	 * compares serialized tuples, optionally based on prefix and all but the last long element
+	 * @param b1
+	 * @param s1
+	 * @param b2
+	 * @param s2
+	 * @param base
+	 * @return
+	 */
+	public static int compareSerialized(byte[] b1, int s1, byte[] b2, int s2, boolean base) {
+		try {
+			int pos1 = s1 + 1;
+			int pos2 = s2 + 1;
+			int compared = b1[s1] - b2[s2];
+			if (compared == 0 && b1[s1] != 0) {
+				//prefix
+				int len1 = WritableComparator.readVInt(b1, pos1);
+				int len2 = WritableComparator.readVInt(b2, pos2);
+				pos1 += WritableUtils.decodeVIntSize(b1[pos1]);
+				pos2 += WritableUtils.decodeVIntSize(b2[pos2]);
+				compared = WritableComparator.compareBytes(b1, pos1, len1, b2, pos2, len2);
+				pos1 += len1;
+				pos2 += len2;
+			}
+
+			//longs
+			int count1 = 0;
+			int count2 = 0;
+			if (compared == 0) {
+				count1 = WritableComparator.readVInt(b1, pos1);
+				count2 = WritableComparator.readVInt(b2, pos2);
+				pos1 += WritableUtils.decodeVIntSize(b1[pos1]);
+				pos2 += WritableUtils.decodeVIntSize(b2[pos2]);
+				if (base) {
+					--count1;
+					--count2;
+				}
+			}
+			for (int i = 0; i < count1 && i < count2 && compared == 0; ++i) {
+				long val1 = WritableComparator.readVLong(b1, pos1);
+				long val2 = WritableComparator.readVLong(b2, pos2);
+				compared = val1 < val2 ? -1 : (val1 == val2 ? 0 : 1);
+				pos1 += WritableUtils.decodeVIntSize(b1[pos1]);
+				pos2 += WritableUtils.decodeVIntSize(b2[pos2]);
+			}
+			if (compared == 0) {
+				compared = count1 - count2;
+			}
+
+			//doubles
+			if (compared == 0 && !base) {
+				count1 = WritableComparator.readVInt(b1, pos1);
+				count2 = WritableComparator.readVInt(b2, pos2);
+				pos1 += WritableUtils.decodeVIntSize(b1[pos1]);
+				pos2 += WritableUtils.decodeVIntSize(b2[pos2]);
+				for (int i = 0; i < count1 && i < count2 && compared == 0; ++i) {
+					compared = Double.compare(WritableComparator.readDouble(b1, pos1), WritableComparator.readDouble(b2, pos2));
+					pos1 += 8;
+					pos2 += 8;
+				}
+				if (compared == 0) {
+					compared = count1 - count2;
+				}
+			}
+			return compared;
+		} catch (IOException ex) {
+			throw new IllegalArgumentException("Failed in compare, invalid serialized tuple " + ex.getMessage());
+		}
+	}
+}
@@ -109,6 +109,15 @@ public class SecondarySort {
     		int comp = t1.baseCompareTo(t2);
     		return comp;
     	}
+    	
+    	/* (non-Javadoc)
+    	 * @see org.apache.hadoop.io.WritableComparator#compare(byte[], int, int, byte[], int, int)
+    	 */
+    	@Override
+    	public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+    		//consider only the base part of the serialized key
+    		return TextInt.compareSerialized(b1, s1, b2, s2, true);
+    	}
      }
 
     
@@ -130,6 +139,54 @@ public class SecondarySort {
     		int comp =t1.compareToBase(t2);
     		return comp;
     	}
+    	
+    	/* (non-Javadoc)
+    	 * @see org.apache.hadoop.io.WritableComparator#compare(byte[], int, int, byte[], int, int)
+    	 */
+    	@Override
+    	public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+    		//consider only the base part of the serialized key
+    		return Tuple.compareSerialized(b1, s1, b2, s2, true);
+    	}
+     }
+   
+    /**
+     * @author pranab
+     *
+     */
+    public static class NumericTuplePairPartitioner extends Partitioner<NumericTuple, NumericTuple> {
+	     @Override
+	     public int getPartition(NumericTuple key, NumericTuple value, int numPartitions) {
+	    	 //consider only base part of  key
+		     return key.hashCodeBase() % numPartitions;
+	     }
+   }
+
+    /**
+     * @author pranab
+     *
+     */
+    public static class NumericTuplePairGroupComprator extends WritableComparator {
+    	protected NumericTuplePairGroupComprator() {
+    		super(NumericTuple.class, true);
+    	}
+
+    	@Override
+    	public int compare(WritableComparable w1, WritableComparable w2) {
+    		//consider only the base part of the key
+    		NumericTuple t1 = (NumericTuple)w1;
+    		NumericTuple t2 = (NumericTuple)w2;
+    		return t1.compareToBase(t2);
+    	}
+    	
+    	/* (non-Javadoc)
+    	 * @see org.apache.hadoop.io.WritableComparator#compare(byte[], int, int, byte[], int, int)
+    	 */
+    	@Override
+    	public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+    		//consider only the base part of the serialized key
+    		return NumericTuple.compareSerialized(b1, s1, b2, s2, true);
+    	}
      }
    
     /**
@@ -29,6 +29,7 @@ import java.util.Set;
 public class StringAttributePredicate extends AttributePredicate {
 	private String value;
 	private Set<String> valueSet;
+	private int opCode;
 
 	/**
 	 * 
@@ -55,6 +56,7 @@ public class StringAttributePredicate extends AttributePredicate {
 		this.attribute = attribute;
 		this.operator = operator;
 		this.value = value;
+		opCode = getOpCode(operator, false);
 		
 		if (null != context) {
 			//large value set from external source
@@ -95,18 +97,14 @@ public class StringAttributePredicate extends AttributePredicate {
 	 */
 	private boolean evaluateHelper(String operand) {
 		boolean status = false;
-		if (operator.equals(GREATER_THAN)) {
-			status = operand.compareTo(value) > 0;
-		} else if (operator.equals(LESS_THAN)) {
-			status = operand.compareTo(value) < 0;
-		} else if (operator.equals(EQUAL_TO)) {
-			status = operand.equals(value);
-		} else if (operator.equals(IN)) {
-			status = valueSet.contains(operand);
-		} else if (operator.equals(NOT_IN)) {
-			status = !valueSet.contains(operand);
-		} else {
-			throw new IllegalArgumentException("invalid operator");
+		switch (opCode) {
+			case OP_GREATER_THAN: status = operand.compareTo(value) > 0; break;
+			case OP_LESS_THAN: status = operand.compareTo(value) < 0; break;
+			case OP_EQUAL_TO: status = operand.equals(value); break;
+			case OP_GREATER_THAN_OREQUAL_TO: status = operand.compareTo(value) >= 0; break;
+			case OP_LESS_THAN_OREQUAL_TO: status = operand.compareTo(value) <= 0; break;
+			case OP_IN: status = valueSet.contains(operand); break;
+			case OP_NOT_IN: status = !valueSet.contains(operand); break;
 		}
 		return status;
 	}
@@ -24,6 +24,8 @@ import java.io.IOException;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
 
 
 /**
@@ -34,6 +36,11 @@ public class TextInt implements WritableComparable<TextInt>{
 	private Text first;
 	private IntWritable second;
 	
+	static {
+		//raw comparator for sorting serialized keys
+		WritableComparator.define(TextInt.class, new Comparator());
+	}
+	
 	public TextInt() {
 		first = new Text();
 		second =  new IntWritable();
@@ -104,5 +111,48 @@ public class TextInt implements WritableComparable<TextInt>{
 		return first.toString() + ":" + second.get();
 	}
 
+	/**
+	 * Raw comparator operating on serialized keys
+	 * @author pranab
+	 *
+	 */
+	public static class Comparator extends WritableComparator {
+		public Comparator() {
+			super(TextInt.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			return compareSerialized(b1, s1, b2, s2, false);
+		}
+	}
+	
+	/**
+	 * compares serialized keys, optionally considering only the text part
+	 * @param b1
+	 * @param s1
+	 * @param b2
+	 * @param s2
+	 * @param base
+	 * @return
+	 */
+	public static int compareSerialized(byte[] b1, int s1, byte[] b2, int s2, boolean base) {
+		try {
+			int vIntSize1 = WritableUtils.decodeVIntSize(b1[s1]);
+			int vIntSize2 = WritableUtils.decodeVIntSize(b2[s2]);
+			int len1 = WritableComparator.readVInt(b1, s1);
+			int len2 = WritableComparator.readVInt(b2, s2);
+			int cmp = WritableComparator.compareBytes(b1, s1 + vIntSize1, len1, b2, s2 + vIntSize2, len2);
+			if (0 == cmp && !base) {
+				int thisVal = WritableComparator.readInt(b1, s1 + vIntSize1 + len1);
+				int thatVal = WritableComparator.readInt(b2, s2 + vIntSize2 + len2);
+				cmp = thisVal < thatVal ? -1 : (thisVal == thatVal ? 0 : 1);
+			}
+			return cmp;
+		} catch (IOException ex) {
+			throw new IllegalArgumentException("Failed in compare, invalid serialized key " + ex.getMessage());
+		}
+	}
+
 
 }
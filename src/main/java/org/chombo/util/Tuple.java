@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
 
 /**
  * General purpose tuple consisting list of primitive types. Implements WritableComparable
@@ -45,6 +46,11 @@ public class Tuple  implements WritableComparable<Tuple> , Serializable {
 	private List<Object> fields;
 	private String delim = ",";
 	
+	static {
+		//raw comparator for sorting serialized keys
+		WritableComparator.define(Tuple.class, new Comparator());
+	}
+	
 	/**
 	 * 
 	 */
@@ -460,6 +466,9 @@ public class Tuple  implements WritableComparable<Tuple> , Serializable {
 				out.writeUTF((String)field);
 			} else if (field instanceof byte[]){
 				byte[] bytes = (byte[])field;
+				if (bytes.length > Short.MAX_VALUE) {
+					throw new IllegalArgumentException("Failed encoding, byte array too long " + bytes.length);
+				}
 				out.writeByte(BYTE_ARRAY);
 				out.writeShort(bytes.length);
 				out.write(bytes);
@@ -553,6 +562,159 @@ public class Tuple  implements WritableComparable<Tuple> , Serializable {
 		return subThis.hashCode();
 	}
 
+	/**
+	 * Raw comparator operating on serialized tuples. Consistent with compareTo(), without
+	 * deserializing
+	 * @author pranab
+	 *
+	 */
+	public static class Comparator extends WritableComparator {
+		public Comparator() {
+			super(Tuple.class);
+		}
+
+		/* (non-Javadoc)
+		 * @see org.apache.hadoop.io.WritableComparator#compare(byte[], int, int, byte[], int, int)
+		 */
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			return compareSerialized(b1, s1, b2, s2, false);
+		}
+		
+		/**
+		 * comparison based on all but the last element of serialized tuples
+		 * @param b1
+		 * @param s1
+		 * @param l1
+		 * @param b2
+		 * @param s2
+		 * @param l2
+		 * @return
+		 */
+		public int compareBase(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			return compareSerialized(b1, s1, b2, s2, true);
+		}
+	}
+	
+	/**
+	 * compares serialized tuples, optionally ignoring the last element
+	 * @param b1
+	 * @param s1
+	 * @param b2
+	 * @param s2
+	 * @param base
+	 * @return
+	 */
+	public static int compareSerialized(byte[] b1, int s1, byte[] b2, int s2, boolean base) {
+		int numFields = WritableComparator.readInt(b1, s1);
+		int thatNumFields = WritableComparator.readInt(b2, s2);
+		if (numFields != thatNumFields) {
+			throw new IllegalArgumentException("Can not compare tuples of unequal length this:"  + 
+					numFields + " that:" +  thatNumFields);
+		}
+		if (base) {
+			--numFields;
+		}
+		
+		int compared = 0;
+		int pos1 = s1 + 4;
+		int pos2 = s2 + 4;
+		for (int i = 0; i < numFields && compared == 0; ++i) {
+			byte type = b1[pos1++];
+			if (type != b2[pos2++]) {
+				throw new IllegalArgumentException("Failed in compare, mismatched element type in tuple  ");
+			}
+			
+			if (type ==  BYTE || type == BOOLEAN) {
+				compared = b1[pos1] - b2[pos2];
+				++pos1;
+				++pos2;
+			} else if (type ==  INT ) {
+				int thisVal = WritableComparator.readInt(b1, pos1);
+				int thatVal = WritableComparator.readInt(b2, pos2);
+				compared = thisVal < thatVal ? -1 : (thisVal == thatVal ? 0 : 1);
+				pos1 += 4;
+				pos2 += 4;
+			}  else if (type ==  LONG ) {
+				long thisVal = WritableComparator.readLong(b1, pos1);
+				long thatVal = WritableComparator.readLong(b2, pos2);
+				compared = thisVal < thatVal ? -1 : (thisVal == thatVal ? 0 : 1);
+				pos1 += 8;
+				pos2 += 8;
+			}  else if (type ==  FLOAT ) {
+				compared = Float.compare(WritableComparator.readFloat(b1, pos1), WritableComparator.readFloat(b2, pos2));
+				pos1 += 4;
+				pos2 += 4;
+			} else if (type ==  DOUBLE ) {
+				compared = Double.compare(WritableComparator.readDouble(b1, pos1), WritableComparator.readDouble(b2, pos2));
+				pos1 += 8;
+				pos2 += 8;
+			} else if (type ==  STRING) {
+				int len1 = WritableComparator.readUnsignedShort(b1, pos1);
+				int len2 = WritableComparator.readUnsignedShort(b2, pos2);
+				pos1 += 2;
+				pos2 += 2;
+				compared = compareModifiedUTF(b1, pos1, len1, b2, pos2, len2);
+				pos1 += len1;
+				pos2 += len2;
+			}  else {
+				throw new IllegalArgumentException("Failed in compare, unknown element type in tuple  ");
+			}
+		}
+		return compared;
+	}
+	
+	/**
+	 * Compares strings encoded by writeUTF in the same order as String.compareTo(). Bytes are
+	 * compared directly and only the first differing characters are decoded
+	 * @param b1
+	 * @param s1
+	 * @param l1
+	 * @param b2
+	 * @param s2
+	 * @param l2
+	 * @return
+	 */
+	private static int compareModifiedUTF(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+		int len = Math.min(l1, l2);
+		int i = 0;
+		while (i < len && b1[s1 + i] == b2[s2 + i]) {
+			++i;
+		}
+		
+		int compared = 0;
+		if (i == len) {
+			//one is prefix of the other
+			compared = l1 - l2;
+		} else {
+			//back up to the start of the character containing the first differing byte
+			while (i > 0 && (b1[s1 + i] & 0xC0) == 0x80 && (b2[s2 + i] & 0xC0) == 0x80) {
+				--i;
+			}
+			compared = decodeModifiedUTFChar(b1, s1 + i) - decodeModifiedUTFChar(b2, s2 + i);
+		}
+		return compared;
+	}
+	
+	/**
+	 * decodes one character from modified UTF-8 
+	 * @param bytes
+	 * @param pos
+	 * @return
+	 */
+	private static int decodeModifiedUTFChar(byte[] bytes, int pos) {
+		int lead = bytes[pos] & 0xFF;
+		int ch = 0;
+		if ((lead & 0x80) == 0) {
+			ch = lead;
+		} else if ((lead & 0xE0) == 0xC0) {
+			ch = ((lead & 0x1F) << 6) | (bytes[pos + 1] & 0x3F);
+		} else {
+			ch = ((lead & 0x0F) << 12) | ((bytes[pos + 1] & 0x3F) << 6) | (bytes[pos + 2] & 0x3F);
+		}
+		return ch;
+	}
+
 	/**
 	 * returns true if starts with given object
 	 * @param obj
@@ -40,9 +40,11 @@ import org.apache.commons.lang3.ArrayUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.lucene.analysis.Analyzer;
 import org.chombo.distance.AttributeDistanceSchema;
 import org.codehaus.jackson.map.ObjectMapper;
@@ -1754,7 +1756,115 @@ public class Utility {
      * @param job
      */
     public static void setTuplePairSecondarySorting(Job job) {
-        job.setGroupingComparatorClass(SecondarySort.TuplePairGroupComprator.class);
+    	setTuplePairSecondarySorting(job, null);
+    }
+    
+    /**
+     * Grouping comparator consistent with the tuple encoding for the job
+     * @param job
+     * @param configPrefix
+     */
+    public static void setTuplePairSecondarySorting(Job job, String configPrefix) {
+    	if (isCompactTupleEncoding(job.getConfiguration(), configPrefix)) {
+    		job.setGroupingComparatorClass(CompactTuple.BaseComparator.class);
+    	} else {
+    		job.setGroupingComparatorClass(SecondarySort.TuplePairGroupComprator.class);
+    	}
         job.setPartitionerClass(SecondarySort.TuplePairPartitioner.class);
     }
+    
+    /**
+     * Job specific setting overrides global setting
+     * @param config
+     * @param configPrefix
+     * @return true if compact tuple encoding is enabled
+     */
+    public static boolean isCompactTupleEncoding(Configuration config, String configPrefix) {
+    	boolean compactEncoding = config.getBoolean(CompactTuple.ENCODING_PARAM, false);
+    	if (null != configPrefix) {
+    		compactEncoding = config.getBoolean(configPrefix + "." + CompactTuple.ENCODING_PARAM, compactEncoding);
+    	}
+    	return compactEncoding;
+    }
+    
+    /**
+     * Sets tuple as map output key and value class. Uses compact tuple encoding if enabled
+     * for the job with optional type signatures
+     * @param job
+     * @param configPrefix
+     */
+    public static void setTupleMapOutput(Job job, String configPrefix) {
+    	Configuration config = job.getConfiguration();
+    	boolean compactEncoding = isCompactTupleEncoding(config, configPrefix);
+    	config.setBoolean(CompactTuple.ENCODING_PARAM, compactEncoding);
+    	if (compactEncoding) {
+    		String signatures = config.get(configPrefix + "." + CompactTuple.SIGNATURES_PARAM);
+    		if (null != signatures) {
+    			config.set(CompactTuple.SIGNATURES_PARAM, signatures);
+    		}
+            job.setMapOutputKeyClass(CompactTuple.class);
+            job.setMapOutputValueClass(CompactTuple.class);
+            job.setSortComparatorClass(CompactTuple.Comparator.class);
+    	} else {
+            job.setMapOutputKeyClass(Tuple.class);
+            job.setMapOutputValueClass(Tuple.class);
+    	}
+    }
+    
+    /**
+     * Creates tuple for map or combiner output, consistent with the encoding set for the job
+     * @param config
+     * @return
+     */
+    public static Tuple createTuple(Configuration config) {
+    	Tuple tuple = null;
+    	if (config.getBoolean(CompactTuple.ENCODING_PARAM, false)) {
+    		CompactTuple compactTuple = new CompactTuple();
+    		compactTuple.setConf(config);
+    		tuple = compactTuple;
+    	} else {
+    		tuple = new Tuple();
+    	}
+    	return tuple;
+    }
+    
+    /**
+     * Lists job input files, splitting them by file name prefix. Directories are expanded 
+     * and hidden files skipped
+     * @param job
+     * @param prefix
+     * @param prefixFiles
+     * @param otherFiles
+     * @return total size of files with prefix
+     * @throws IOException
+     */
+    public static long listInputFiles(Job job, String prefix, List<Path> prefixFiles, List<Path> otherFiles) 
+    	throws IOException {
+		Configuration config = job.getConfiguration();
+		long prefixFileSize = 0;
+		for (Path inPath : FileInputFormat.getInputPaths(job)) {
+			FileSystem fs = inPath.getFileSystem(config);
+			FileStatus[] matchedStats = fs.globStatus(inPath);
+			if (null == matchedStats) {
+				continue;
+			}
+			for (FileStatus matchedStat : matchedStats) {
+				FileStatus[] stats = matchedStat.isDir() ? fs.listStatus(matchedStat.getPath()) : 
+					new FileStatus[]{matchedStat};
+				for (FileStatus stat : stats) {
+					String name = stat.getPath().getName();
+					if (stat.isDir() || name.startsWith("_") || name.startsWith(".")) {
+						continue;
+					}
+					if (name.startsWith(prefix)) {
+						prefixFiles.add(stat.getPath());
+						prefixFileSize += stat.getLen();
+					} else {
+						otherFiles.add(stat.getPath());
+					}
+				}
+			}
+		}
+		return prefixFileSize;
+    }
 }
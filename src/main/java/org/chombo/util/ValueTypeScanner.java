@@ -0,0 +1,263 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.util;
+
+import java.io.Serializable;
+
+/**
+ * Classifies a field value as int, long, float or string in one walk over the characters, without
+ * exceptions. Accepts exactly what Integer.parseInt, Long.parseLong and Float.parseFloat accept. Rare
+ * forms (NaN, Infinity, hex floating point, non ASCII digits) are checked by parsing. Integer value is
+ * kept for range checks. Instance is reused across values and is not thread safe.
+ * @author pranab
+ *
+ */
+public class ValueTypeScanner implements Serializable {
+	private int flags;
+	private long longValue;
+
+	public static final int INT = 1;
+	public static final int LONG = 2;
+	public static final int FLOAT = 4;
+	public static final int HAS_DIGIT = 8;
+
+	/**
+	 * @param value
+	 * @return this
+	 */
+	public ValueTypeScanner scan(String value) {
+		flags = 0;
+		longValue = 0;
+		int len = value.length();
+
+		//float parsing trims
+		int begin = 0;
+		int end = len;
+		while (begin < end && value.charAt(begin) <= ' ') {
+			++begin;
+		}
+		while (end > begin && value.charAt(end - 1) <= ' ') {
+			--end;
+		}
+
+		int pos = begin;
+		boolean negative = false;
+		if (pos < end && (value.charAt(pos) == '-' || value.charAt(pos) == '+')) {
+			negative = value.charAt(pos) == '-';
+			++pos;
+		}
+
+		//mantissa integer part, accumulated negative as in Long.parseLong
+		int intDigits = 0;
+		boolean overflow = false;
+		long result = 0;
+		long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		long multMin = limit / 10;
+		char ch = 0;
+		while (pos < end && (ch = value.charAt(pos)) >= '0' && ch <= '9') {
+			int digit = ch - '0';
+			if (result < multMin || result * 10 < limit + digit) {
+				overflow = true;
+			} else {
+				result = result * 10 - digit;
+			}
+			++intDigits;
+			++pos;
+		}
+		if (intDigits > 0) {
+			flags |= HAS_DIGIT;
+		}
+
+		if (pos == end && intDigits > 0 && begin == 0 && end == len) {
+			//integer
+			if (!overflow) {
+				longValue = negative ? result : -result;
+				flags |= LONG;
+				if (longValue >= Integer.MIN_VALUE && longValue <= Integer.MAX_VALUE) {
+					flags |= INT;
+				}
+			}
+			flags |= FLOAT;
+		} else if (pos < end && isSpecial(value.charAt(pos), intDigits == 1 && value.charAt(pos - 1) == '0')) {
+			//special values, hex and unicode digits
+			flags |= classifyByParsing(value);
+		} else {
+			//fraction, exponent and type suffix
+			int fracDigits = 0;
+			if (pos < end && value.charAt(pos) == '.') {
+				++pos;
+				while (pos < end && (ch = value.charAt(pos)) >= '0' && ch <= '9') {
+					++fracDigits;
+					++pos;
+				}
+			}
+			boolean valid = intDigits + fracDigits > 0;
+			if (valid && pos < end && (value.charAt(pos) == 'e' || value.charAt(pos) == 'E')) {
+				++pos;
+				if (pos < end && (value.charAt(pos) == '-' || value.charAt(pos) == '+')) {
+					++pos;
+				}
+				int expDigits = 0;
+				while (pos < end && (ch = value.charAt(pos)) >= '0' && ch <= '9') {
+					++expDigits;
+					++pos;
+				}
+				valid = expDigits > 0;
+			}
+			if (valid && pos == end - 1) {
+				ch = value.charAt(pos);
+				if (ch == 'f' || ch == 'F' || ch == 'd' || ch == 'D') {
+					++pos;
+				}
+			}
+			if (valid && pos == end) {
+				flags |= FLOAT;
+			}
+		}
+
+		if ((flags & HAS_DIGIT) == 0) {
+			for (int i = 0; i < len && (flags & HAS_DIGIT) == 0; ++i) {
+				ch = value.charAt(i);
+				if (ch >= '0' && ch <= '9') {
+					flags |= HAS_DIGIT;
+				}
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * @param ch
+	 * @param afterZero
+	 * @return true for NaN, Infinity, hex prefix or non ASCII char
+	 */
+	private boolean isSpecial(char ch, boolean afterZero) {
+		return ch == 'N' || ch == 'I' || ch >= 128 || (afterZero && (ch == 'x' || ch == 'X'));
+	}
+
+	/**
+	 * @param value
+	 * @return
+	 */
+	private int classifyByParsing(String value) {
+		int typeFlags = 0;
+		try {
+			longValue = Long.parseLong(value);
+			typeFlags |= LONG;
+			if (longValue >= Integer.MIN_VALUE && longValue <= Integer.MAX_VALUE) {
+				typeFlags |= INT;
+			}
+		} catch (NumberFormatException ex) {
+			longValue = 0;
+		}
+		try {
+			Float.parseFloat(value);
+			typeFlags |= FLOAT;
+		} catch (NumberFormatException ex) {
+		}
+		return typeFlags;
+	}
+
+	/**
+	 * @return
+	 */
+	public int getFlags() {
+		return flags;
+	}
+
+	/**
+	 * @return
+	 */
+	public boolean isInt() {
+		return (flags & INT) != 0;
+	}
+
+	/**
+	 * @return
+	 */
+	public boolean isLong() {
+		return (flags & LONG) != 0;
+	}
+
+	/**
+	 * @return same as double, since float parsing does not fail on range
+	 */
+	public boolean isFloat() {
+		return (flags & FLOAT) != 0;
+	}
+
+	/**
+	 * @return
+	 */
+	public boolean isString() {
+		return (flags & (INT | LONG | FLOAT)) == 0;
+	}
+
+	/**
+	 * @return true if the value has a digit and hence could be a date in numeric format
+	 */
+	public boolean isDateCandidate() {
+		return (flags & HAS_DIGIT) != 0;
+	}
+
+	/**
+	 * @return
+	 */
+	public int getIntValue() {
+		return (int)longValue;
+	}
+
+	/**
+	 * @return
+	 */
+	public long getLongValue() {
+		return longValue;
+	}
+
+	/**
+	 * @param minTime
+	 * @return true if long value is after min epoch time
+	 */
+	public boolean isEpochTime(long minTime) {
+		return isLong() && longValue > minTime;
+	}
+
+	/**
+	 * @param value
+	 * @return
+	 */
+	public static boolean isInt(String value) {
+		return new ValueTypeScanner().scan(value).isInt();
+	}
+
+	/**
+	 * @param value
+	 * @return
+	 */
+	public static boolean isLong(String value) {
+		return new ValueTypeScanner().scan(value).isLong();
+	}
+
+	/**
+	 * @param value
+	 * @return
+	 */
+	public static boolean isFloat(String value) {
+		return new ValueTypeScanner().scan(value).isFloat();
+	}
+}
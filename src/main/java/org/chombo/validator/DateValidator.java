@@ -17,8 +17,6 @@
 
 package org.chombo.validator;
 
-import java.util.Date;
-
 import org.chombo.util.ProcessorAttribute;
 
 /**
@@ -44,10 +42,10 @@ public class DateValidator {
 			boolean valid = false;
 			try {
 				if (!value.isEmpty()) {
-					if (null != helper.getDateFormatter()) {
-						Date date = helper.getDateFormatter().parse(value);
-						Date earliestDate = helper.getDateFormatter().parse(prAttr.getEarliestDate());
-						valid = date.after(earliestDate);
+					if (null != helper.getDateCodec()) {
+						long date = helper.getDateCodec().parse(value);
+						long earliestDate = helper.getDateCodec().parse(prAttr.getEarliestDate());
+						valid = date > earliestDate;
 					} else  {
 						long epoch = Long.parseLong(value);
 						long earliestEpoch = Long.parseLong(prAttr.getEarliestDate());
@@ -81,10 +79,10 @@ public class DateValidator {
 			boolean valid = false;
 			try {
 				if (!value.isEmpty()) {
-					if (null != helper.getDateFormatter()) {
-						Date date = helper.getDateFormatter().parse(value);
-						Date latestDate = helper.getDateFormatter().parse(prAttr.getLatestDate());
-						valid = date.before(latestDate);
+					if (null != helper.getDateCodec()) {
+						long date = helper.getDateCodec().parse(value);
+						long latestDate = helper.getDateCodec().parse(prAttr.getLatestDate());
+						valid = date < latestDate;
 					} else  {
 						long epoch = Long.parseLong(value);
 						long latestEpoch = Long.parseLong(prAttr.getLatestDate());
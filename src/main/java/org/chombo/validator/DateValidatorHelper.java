@@ -18,10 +18,9 @@
 package org.chombo.validator;
 
 import java.io.Serializable;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 
 import org.chombo.util.BasicUtils;
+import org.chombo.util.DateCodec;
 import org.chombo.util.ProcessorAttribute;
 
 /**
@@ -30,56 +29,8 @@ import org.chombo.util.ProcessorAttribute;
  */
 public class DateValidatorHelper implements Serializable {
 	private boolean epochTimeMs;
-	private SafeDateFormatter safeDateFormatter;
+	private DateCodec dateCodec;
 
-	/**
-	 * @author pranab
-	 *
-	 */
-	private static class SafeDateFormatter extends ThreadLocal<SimpleDateFormat> implements Serializable {
-		private String dateFormatStr;
-		
-		/**
-		 * @param dateFormatStr
-		 */
-		public SafeDateFormatter(String dateFormatStr) {
-			this.dateFormatStr = dateFormatStr;
-		}
-		
-		/* (non-Javadoc)
-		 * @see java.lang.ThreadLocal#get()
-		 */
-		@Override
-		public SimpleDateFormat get() {
-		   return super.get();
-		}
-
-		/* (non-Javadoc)
-		 * @see java.lang.ThreadLocal#initialValue()
-		 */
-		@Override
-		protected SimpleDateFormat initialValue() {
-		   return new SimpleDateFormat(dateFormatStr);
-		}
-
-		/* (non-Javadoc)
-		 * @see java.lang.ThreadLocal#remove()
-		 */
-		@Override
-		public void remove() {
-		   super.remove();
-		}
-
-		/* (non-Javadoc)
-		 * @see java.lang.ThreadLocal#set(java.lang.Object)
-		 */
-		@Override
-		public void set(SimpleDateFormat value) {
-		   super.set(value);
-		}
-
-	};	
-	
 	/**
 	 * @param prAttr
 	 */
@@ -91,22 +42,23 @@ public class DateValidatorHelper implements Serializable {
 		} else if (datePattern.equals(BasicUtils.EPOCH_TIME_SEC)) {
 			epochTimeMs = false;
 		} else {
-			safeDateFormatter = new SafeDateFormatter(prAttr.getDatePattern());
+			//shared thread safe codec
+			dateCodec = DateCodec.create(datePattern);
 		}
 	}
 
 	/**
-	 * @return
+	 * @return codec, null for epoch time
 	 */
-	public SimpleDateFormat getDateFormatter() {
-		return safeDateFormatter.get();
+	public DateCodec getDateCodec() {
+		return dateCodec;
 	}
 
 	/**
-	 * @param dateFormatter
+	 * @param dateCodec
 	 */
-	public void setDateFormatter(SimpleDateFormat dateFormatter) {
-		safeDateFormatter.set(dateFormatter);
+	public void setDateCodec(DateCodec dateCodec) {
+		this.dateCodec = dateCodec;
 	}
 
 	/**
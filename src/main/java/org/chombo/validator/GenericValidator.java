@@ -161,8 +161,8 @@ public class GenericValidator {
 		public boolean isValid(String value) {
 			boolean valid = false;
 			if (!value.isEmpty()) {
-				if (null != helper.getDateFormatter()) {
-					valid =  BasicUtils.isDate(value, helper.getDateFormatter());
+				if (null != helper.getDateCodec()) {
+					valid =  helper.getDateCodec().isValid(value);
 				} else if (helper.isEpochTimeMs()) {
 					valid = BasicUtils.isLong(value) && value.length() >= 13;
 				} else {
@@ -17,11 +17,10 @@
 
 package org.chombo.validator;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.chombo.util.AttributeSchema;
 import org.chombo.util.BaseAttribute;
+import org.chombo.util.MultiPatternMatcher;
 import org.chombo.util.ProcessorAttribute;
 
 /**
@@ -115,7 +114,8 @@ public class StringValidator {
 	 *
 	 */
 	public static class PatternValidator extends Validator {
-		protected Pattern pattern;
+		protected MultiPatternMatcher matcher;
+		protected int[] matchedIds = new int[1];
 		
 		public PatternValidator(String tag, ProcessorAttribute prAttr) {
 			super(tag,  prAttr);
@@ -123,11 +123,10 @@ public class StringValidator {
 
 		@Override
 		public boolean isValid(String value) {
-			if (null == pattern) {
-				pattern = Pattern.compile(prAttr.getStringPattern());
+			if (null == matcher) {
+				matcher = new MultiPatternMatcher(new String[] {prAttr.getStringPattern()}, true);
 			}
-			Matcher matcher = pattern.matcher(value);
-			return matcher.matches();
+			return matcher.match(value, matchedIds) > 0;
 		}
 	}
 	
@@ -143,16 +142,15 @@ public class StringValidator {
 
 		@Override
 		public boolean isValid(String value) {
-			if (null == pattern) {
+			if (null == matcher) {
 				String patternName = prAttr.getStringPatternName();
 				String patternString = BaseAttribute.getPatternString(patternName);
 				if (null == patternString) {
 					throw new IllegalStateException("invalid pattern name " + patternName);
 				}
-				pattern = Pattern.compile(patternString);
+				matcher = new MultiPatternMatcher(new String[] {patternString}, true);
 			}
-			Matcher matcher = pattern.matcher(value);
-			return matcher.matches();
+			return matcher.match(value, matchedIds) > 0;
 		}
 	}
 }
@@ -0,0 +1,83 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.distance;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Distance with MinHash signatures compared with exact distance
+ * @author pranab
+ *
+ */
+public class JaccardSimilarityTest {
+
+	/**
+	 * @throws IOException
+	 */
+	@Test
+	public void testDuplicateTermsExact() throws IOException {
+		verify(new JaccardSimilarity(1.0, 1.0), "a a b c", "a a d e", 8, 0.5);
+		verify(new DiceSimilarity(), "a a b c", "a a d e", 8, 0.5);
+	}
+
+	/**
+	 * @throws IOException
+	 */
+	@Test
+	public void testMatchesExact() throws IOException {
+		Random random = new Random(1000);
+		for (int i = 0; i < 200; ++i) {
+			StringBuilder src = new StringBuilder();
+			StringBuilder target = new StringBuilder();
+			for (int t = 0; t < 50; ++t) {
+				src.append("s").append(t).append(" ");
+				target.append(random.nextInt(8) > 0 ? "s" : "t").append(t).append(" ");
+			}
+			
+			//margin for estimation error
+			verify(new JaccardSimilarity(1.0, 1.0), src.toString().trim(), target.toString().trim(), 128, 0.3);
+			verify(new DiceSimilarity(), src.toString().trim(), target.toString().trim(), 128, 0.3);
+		}
+	}
+
+	/**
+	 * distance within exact check distance of 0.5 should be same as exact
+	 * @param simStrategy
+	 * @param src
+	 * @param target
+	 * @param numHash
+	 * @param maxExactDist exact distance up to which the check is made
+	 * @throws IOException
+	 */
+	private void verify(DynamicVectorSimilarity simStrategy, String src, String target, int numHash, 
+		double maxExactDist) throws IOException {
+		double exactDist = simStrategy.findDistance(src, target);
+		simStrategy.setMinHash(numHash, 0.5);
+		String[] srcTerms = src.split(simStrategy.getFieldDelimRegex());
+		String[] trgTerms = target.split(simStrategy.getFieldDelimRegex());
+		double dist = simStrategy.findDistance(src, srcTerms, simStrategy.createSignature(srcTerms), target,
+			trgTerms, simStrategy.createSignature(trgTerms));
+		if (exactDist <= maxExactDist) {
+			Assert.assertEquals(dist, exactDist, 0.0, src + " / " + target);
+		}
+	}
+}
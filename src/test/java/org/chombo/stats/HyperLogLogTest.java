@@ -0,0 +1,67 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.stats;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.chombo.util.Tuple;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Registers sent between mapper, combiner and reducer as tuple byte array
+ * @author pranab
+ *
+ */
+public class HyperLogLogTest {
+
+	/**
+	 * @throws IOException
+	 */
+	@Test
+	public void testTupleRoundTripAtMaxPrecision() throws IOException {
+		HyperLogLog estimator = new HyperLogLog(HyperLogLog.MAX_PRECISION);
+		for (int i = 0; i < 100000; ++i) {
+			estimator.add("value" + i);
+		}
+		Tuple tuple = new Tuple();
+		tuple.add(estimator.getRegisters());
+
+		ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+		tuple.write(new DataOutputStream(byteStream));
+		Tuple copy = new Tuple();
+		copy.readFields(new DataInputStream(new ByteArrayInputStream(byteStream.toByteArray())));
+
+		HyperLogLog copyEstimator = new HyperLogLog((byte[])copy.get(0));
+		Assert.assertEquals(copyEstimator.getPrecision(), HyperLogLog.MAX_PRECISION);
+		Assert.assertEquals(copyEstimator.getRegisters(), estimator.getRegisters());
+		Assert.assertEquals(copyEstimator.getCardinality(), estimator.getCardinality());
+	}
+
+	/**
+	 *
+	 */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testPrecisionAboveMax() {
+		new HyperLogLog(HyperLogLog.MAX_PRECISION + 1);
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Predicate written first guards the ones after it
+ * @author pranab
+ *
+ */
+public class AttributeFilterTest {
+	private static final String FILTER = "$0 eq string:X and $1 gt int:10";
+
+	/**
+	 *
+	 */
+	@Test
+	public void testConfiguredOrderGuards() {
+		verify(new AttributeFilter(FILTER));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testSampledRecordsGuarded() {
+		verify(new AttributeFilter(FILTER).withAdaptiveOrdering(true).withSampleInterval(4).
+			withReorderInterval(1000000));
+	}
+
+	/**
+	 * @param filter
+	 */
+	private void verify(AttributeFilter filter) {
+		int passCount = 0;
+		for (int i = 0; i < 1000; ++i) {
+			//numeric field is present only when the guard passes
+			String[] record = i % 10 == 0 ? new String[] {"X", "" + i} : new String[] {"Y", "NA"};
+			if (filter.evaluate(record)) {
+				++passCount;
+			}
+		}
+		Assert.assertEquals(passCount, 98);
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Compact tuple encoding compared with default tuple encoding
+ * @author pranab
+ *
+ */
+public class CompactTupleTest {
+	private static final String SIGNATURES = "string,string,int,long,double,string";
+	private static final String[] STRINGS = {"", "a", "ab", "abc", "b", "aé", "a中", "a😀", 
+		"a", "a￿", "😁", "", "zz", "store-0001", "store-0002"};
+
+	/**
+	 * @throws IOException
+	 */
+	@Test
+	public void testRoundTrip() throws IOException {
+		byte[][] signatures = CompactTuple.parseSignatures(SIGNATURES);
+		for (Tuple tuple : createTuples(500, 1000)) {
+			Assert.assertEquals(roundTrip(tuple, new Tuple()), tuple);
+			Assert.assertEquals(roundTrip(toCompact(tuple, null), new CompactTuple()), tuple);
+			Assert.assertEquals(roundTrip(toCompact(tuple, signatures), new CompactTuple(signatures)), tuple);
+		}
+
+		Tuple tuple = new Tuple();
+		tuple.add(true, (byte)-3, 1.5f, new byte[] {1, 2, 3}, Integer.MIN_VALUE, Long.MAX_VALUE, "x");
+		Tuple copy = roundTrip(toCompact(tuple, null), new CompactTuple());
+		Assert.assertEquals((byte[])copy.get(3), new byte[] {1, 2, 3});
+		for (int i = 0; i < tuple.getSize(); ++i) {
+			if (i != 3) {
+				Assert.assertEquals(copy.get(i), tuple.get(i));
+			}
+		}
+	}
+
+	/**
+	 * @throws IOException
+	 */
+	@Test
+	public void testComparatorSameAsCompareTo() throws IOException {
+		Configuration config = new Configuration();
+		config.set(CompactTuple.SIGNATURES_PARAM, SIGNATURES);
+		CompactTuple.Comparator comparator = new CompactTuple.Comparator();
+		comparator.setConf(config);
+		CompactTuple.BaseComparator baseComparator = new CompactTuple.BaseComparator();
+		baseComparator.setConf(config);
+		byte[][] signatures = CompactTuple.parseSignatures(SIGNATURES);
+
+		List<Tuple> tuples = createTuples(300, 2000);
+		for (int i = 0; i < tuples.size(); ++i) {
+			for (int j = 0; j < tuples.size(); ++j) {
+				Tuple first = tuples.get(i);
+				Tuple second = tuples.get(j);
+				
+				//one with signature and other tagged
+				byte[] b1 = serialize(toCompact(first, signatures));
+				byte[] b2 = serialize(toCompact(second, (i + j) % 2 == 0 ? signatures : null));
+				Assert.assertEquals(Integer.signum(comparator.compare(b1, 0, b1.length, b2, 0, b2.length)), 
+					Integer.signum(first.compareTo(second)), first + " / " + second);
+				Assert.assertEquals(Integer.signum(baseComparator.compare(b1, 0, b1.length, b2, 0, b2.length)), 
+					Integer.signum(first.compareToBase(second)), first + " / " + second);
+			}
+		}
+	}
+
+	/**
+	 * Unique value counter and missing value counter map output
+	 * @throws IOException
+	 */
+	@Test
+	public void testSmallerEncoding() throws IOException {
+		String[] signaturesSt = {"string,int;string", "string,int;int"};
+		Random random = new Random(3000);
+		for (int job = 0; job < 2; ++job) {
+			byte[][] signatures = CompactTuple.parseSignatures(signaturesSt[job]);
+			long size = 0;
+			long compactSize = 0;
+			long taggedCompactSize = 0;
+			for (int i = 0; i < 1000; ++i) {
+				Tuple key = new Tuple();
+				Tuple value = new Tuple();
+				if (job == 0) {
+					key.add("store-" + (1000 + random.nextInt(20)), random.nextInt(8));
+					value.add("category-" + random.nextInt(50));
+				} else {
+					key.add("col", random.nextInt(30));
+					value.add(1);
+				}
+				size += serialize(key).length + serialize(value).length;
+				compactSize += serialize(toCompact(key, signatures)).length + 
+					serialize(toCompact(value, signatures)).length;
+				taggedCompactSize += serialize(toCompact(key, null)).length + 
+					serialize(toCompact(value, null)).length;
+			}
+			Assert.assertTrue(compactSize < size * 3 / 4, "compact " + compactSize + " default " + size);
+			Assert.assertTrue(taggedCompactSize < size, "tagged compact " + taggedCompactSize + " default " + size);
+		}
+	}
+
+	/**
+	 * @param numTuples
+	 * @param seed
+	 * @return
+	 */
+	private List<Tuple> createTuples(int numTuples, long seed) {
+		Random random = new Random(seed);
+		List<Tuple> tuples = new ArrayList<Tuple>();
+		for (int i = 0; i < numTuples; ++i) {
+			Tuple tuple = new Tuple();
+			String first = STRINGS[random.nextInt(STRINGS.length)];
+			String second = random.nextInt(3) == 0 ? first : STRINGS[random.nextInt(STRINGS.length)];
+			tuple.add(first, second, random.nextInt(5) - 2, random.nextInt(3) == 0 ? random.nextLong() : 
+				(long)random.nextInt(1000), (double)random.nextInt(4) - 1.5, STRINGS[random.nextInt(STRINGS.length)]);
+			tuples.add(tuple);
+		}
+		return tuples;
+	}
+
+	/**
+	 * @param tuple
+	 * @param signatures
+	 * @return
+	 */
+	private CompactTuple toCompact(Tuple tuple, byte[][] signatures) {
+		CompactTuple compactTuple = new CompactTuple(signatures);
+		compactTuple.add(tuple);
+		return compactTuple;
+	}
+
+	/**
+	 * @param tuple
+	 * @param copy
+	 * @return
+	 * @throws IOException
+	 */
+	private Tuple roundTrip(Tuple tuple, Tuple copy) throws IOException {
+		copy.readFields(new DataInputStream(new ByteArrayInputStream(serialize(tuple))));
+		return copy;
+	}
+
+	/**
+	 * @param tuple
+	 * @return
+	 * @throws IOException
+	 */
+	private byte[] serialize(Tuple tuple) throws IOException {
+		ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+		tuple.write(new DataOutputStream(byteStream));
+		return byteStream.toByteArray();
+	}
+}
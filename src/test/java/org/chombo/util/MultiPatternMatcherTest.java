@@ -0,0 +1,107 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.util;
+
+import java.util.regex.Pattern;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Multi pattern matcher results compared with java.util.regex
+ * @author pranab
+ *
+ */
+public class MultiPatternMatcherTest {
+	private static final String[] PATTERNS = {
+		"^a|b", "a|b$", "^ab|cd$", "^(a|b)$", "^abc$", "abc$", "^abc", "(ab|cd)+$", "^x(y|z)*", "[0-9]+$",
+		"ab|cd", "\\$", "a\\$", "^$"
+	};
+	private static final String[] VALUES = {
+		"", "a", "b", "xb", "ax", "xcd", "ab", "abx", "cd", "xab", "abc", "abc\n", "xabc", "abcx", "abcd",
+		"abcdab", "xyzzy", "xy", "x", "123", "a123", "123\n", "$", "a$", "xa$y", "\n", "b\r\n"
+	};
+
+	/**
+	 *
+	 */
+	@Test
+	public void testSearchSameAsRegex() {
+		verify(false);
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testFullMatchSameAsRegex() {
+		verify(true);
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testAnchorBindsToOneAlternative() {
+		Assert.assertTrue(new MultiPatternMatcher(new String[] {"^a|b"}, false).matchesAny("xb"));
+		Assert.assertTrue(new MultiPatternMatcher(new String[] {"a|b$"}, false).matchesAny("ax"));
+		Assert.assertTrue(new MultiPatternMatcher(new String[] {"^ab|cd$"}, false).matchesAny("xcd"));
+		Assert.assertTrue(new MultiPatternMatcher(new String[] {"^abc$"}, false).matchesAny("abc\n"));
+	}
+
+	/**
+	 * Long literal fills the state arrays, so that compiling the loop body grows them
+	 */
+	@Test
+	public void testLoopWithStateGrowth() {
+		StringBuilder stBld = new StringBuilder();
+		for (int i = 0; i < 60; ++i) {
+			stBld.append("q");
+		}
+		for (int extra = 0; extra < 64; ++extra) {
+			String[] patterns = {stBld.toString(), "(ab)+", "x(cd)*y"};
+			MultiPatternMatcher matcher = new MultiPatternMatcher(patterns, false);
+			int[] matchedIds = new int[patterns.length];
+			Assert.assertEquals(matcher.match("zabab", matchedIds), 1);
+			Assert.assertEquals(matchedIds[0], 1);
+			Assert.assertEquals(matcher.match("xcdcdy", matchedIds), 1);
+			Assert.assertEquals(matchedIds[0], 2);
+			stBld.append("q");
+		}
+	}
+
+	/**
+	 * @param fullMatch
+	 */
+	private void verify(boolean fullMatch) {
+		MultiPatternMatcher matcher = new MultiPatternMatcher(PATTERNS, fullMatch);
+		int[] matchedIds = new int[PATTERNS.length];
+		for (String value : VALUES) {
+			boolean[] matched = new boolean[PATTERNS.length];
+			int count = matcher.match(value, matchedIds);
+			for (int i = 0; i < count; ++i) {
+				matched[matchedIds[i]] = true;
+			}
+			for (int i = 0; i < PATTERNS.length; ++i) {
+				java.util.regex.Matcher regexMatcher = Pattern.compile(PATTERNS[i]).matcher(value);
+				boolean expected = fullMatch ? regexMatcher.matches() : regexMatcher.find();
+				Assert.assertEquals(matched[i], expected, "pattern " + PATTERNS[i] + " value " + value.replace("\n", "\\n"));
+			}
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * chombo: Hadoop Map Reduce utility
+ * Author: Pranab Ghosh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.chombo.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Multiple prefix fields compared field by field
+ * @author pranab
+ *
+ */
+public class NumericTupleTest {
+	private static final int[] ID_ORDINALS = {0, 1};
+
+	/**
+	 * @throws IOException
+	 */
+	@Test
+	public void testDelimiterInFieldNoCollision() throws IOException {
+		NumericTuple first = createKey("a,b", "c");
+		NumericTuple second = createKey("a", "b,c");
+		Assert.assertTrue(first.compareTo(second) != 0);
+		Assert.assertTrue(compareRaw(first, second) != 0);
+		Assert.assertEquals(first.toString(), "a,b,c,1");
+		Assert.assertEquals(second.toString(), "a,b,c,1");
+	}
+
+	/**
+	 * @throws IOException
+	 */
+	@Test
+	public void testFieldOrder() throws IOException {
+		String[][] ordered = {{"a", "z"}, {"a\u0000", "a"}, {"a,b", "c"}, {"ab", "a"}, {"b", ""}};
+		for (int i = 0; i + 1 < ordered.length; ++i) {
+			NumericTuple smaller = createKey(ordered[i][0], ordered[i][1]);
+			NumericTuple larger = createKey(ordered[i + 1][0], ordered[i + 1][1]);
+			Assert.assertTrue(smaller.compareTo(larger) < 0, smaller + " / " + larger);
+			Assert.assertTrue(compareRaw(smaller, larger) < 0, smaller + " / " + larger);
+			Assert.assertTrue(compareRaw(larger, smaller) > 0, smaller + " / " + larger);
+		}
+		Assert.assertEquals(compareRaw(createKey("a", "b"), createKey("a", "b")), 0);
+	}
+
+	/**
+	 * @param first
+	 * @param second
+	 * @return
+	 */
+	private NumericTuple createKey(String first, String second) {
+		NumericTuple key = new NumericTuple();
+		key.setPrefix(new String[] {first, second}, ID_ORDINALS);
+		key.addLong(1);
+		return key;
+	}
+
+	/**
+	 * @param first
+	 * @param second
+	 * @return
+	 * @throws IOException
+	 */
+	private int compareRaw(NumericTuple first, NumericTuple second) throws IOException {
+		byte[] firstBytes = serialize(first);
+		byte[] secondBytes = serialize(second);
+		return new NumericTuple.Comparator().compare(firstBytes, 0, firstBytes.length, secondBytes, 0, 
+			secondBytes.length);
+	}
+
+	/**
+	 * @param tuple
+	 * @return
+	 * @throws IOException
+	 */
+	private byte[] serialize(NumericTuple tuple) throws IOException {
+		ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+		tuple.write(new DataOutputStream(byteStream));
+		return byteStream.toByteArray();
+	}
+}